@@ -0,0 +1,42 @@
+package ru.mslotvi.config;
+
+import lombok.Data;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.boot.context.properties.EnableConfigurationProperties;
+import org.springframework.context.annotation.Configuration;
+
+@Data
+@EnableConfigurationProperties
+@ConfigurationProperties(prefix = "file-exchange")
+@Configuration
+public class FileExchangeConfig {
+
+    /**
+     * Регистрировать ли биржу на локальных файлах вместе с приложением.
+     */
+    private boolean enabled = false;
+
+    /**
+     * Имя биржи в {@link ru.mslotvi.exchange.ExchangeService}.
+     */
+    private String name = "FILE";
+
+    /**
+     * Каталог столбцовых файлов истории в формате {@link ru.mslotvi.data.StoredSeries}:
+     * {@code {directory}/{board}/{secId}}. Каталог хранилища {@link MarketStoreConfig#getDirectory()} подходит без
+     * преобразования; в этом случае биржа работает с теми же объектами {@link ru.mslotvi.data.StoredSeries},
+     * что и хранилище, чтобы импорт CSV не писал в файлы одновременно с ним.
+     */
+    private String directory = "file-exchange-data";
+
+    /**
+     * Каталог выгрузок CSV вида {@code {importDirectory}/{board}/{secId}.csv}, которые переводятся в столбцовые
+     * файлы при загрузке справочника. Пустое значение отключает импорт.
+     */
+    private String importDirectory = "";
+
+    /**
+     * Количество бумаг, история которых читается одновременно.
+     */
+    private int historyConcurrency = Runtime.getRuntime().availableProcessors();
+}
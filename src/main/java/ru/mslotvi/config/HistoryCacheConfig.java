@@ -0,0 +1,29 @@
+package ru.mslotvi.config;
+
+import lombok.Data;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.boot.context.properties.EnableConfigurationProperties;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.util.unit.DataSize;
+
+@Data
+@EnableConfigurationProperties
+@ConfigurationProperties(prefix = "history-cache")
+@Configuration
+public class HistoryCacheConfig {
+
+    /**
+     * Включает кэш истории торгов в памяти.
+     */
+    private boolean enabled = true;
+
+    /**
+     * Максимальный объём истории в кэше; при превышении вытесняются давно не использованные бумаги.
+     */
+    private DataSize maxSize = DataSize.ofMegabytes(256);
+
+    /**
+     * Хранить ли историю вне кучи (direct {@link java.nio.ByteBuffer}), чтобы большой кэш не нагружал сборщик мусора.
+     */
+    private boolean offHeap = false;
+}
@@ -0,0 +1,100 @@
+package ru.mslotvi.config;
+
+import lombok.Data;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.boot.context.properties.EnableConfigurationProperties;
+import org.springframework.context.annotation.Configuration;
+
+import java.time.Duration;
+import java.time.LocalDate;
+
+@Data
+@EnableConfigurationProperties
+@ConfigurationProperties(prefix = "iss-stub")
+@Configuration
+public class IssStubConfig {
+
+    /**
+     * Режим ответа заглушки ISS.
+     */
+    public enum Mode {
+        /**
+         * Все ответы синтезируются.
+         */
+        SYNTHETIC,
+        /**
+         * Ответы берутся из записей, а при отсутствии записи синтезируются.
+         */
+        REPLAY,
+        /**
+         * Запросы проксируются на {@link #getUpstream()}, а ответы сохраняются в записи.
+         */
+        RECORD
+    }
+
+    /**
+     * Запускать ли заглушку ISS вместе с приложением.
+     */
+    private boolean enabled = false;
+
+    /**
+     * Адрес, на котором заглушка принимает соединения. По умолчанию только локальный: в режиме {@link Mode#RECORD}
+     * заглушка без аутентификации проксирует запросы на {@link #getUpstream()}. {@code 0.0.0.0} открывает её
+     * на всех интерфейсах.
+     */
+    private String bindAddress = "127.0.0.1";
+
+    private int port = 8089;
+
+    private Mode mode = Mode.SYNTHETIC;
+
+    /**
+     * Каталог записанных ответов для режимов {@link Mode#REPLAY} и {@link Mode#RECORD}.
+     */
+    private String recordingsDirectory = "iss-recordings";
+
+    /**
+     * Адрес настоящего ISS для режима {@link Mode#RECORD}.
+     */
+    private String upstream = "https://iss.moex.com";
+
+    /**
+     * Количество синтетических бумаг в справочнике.
+     */
+    private int tickers = 2000;
+
+    /**
+     * Первый день синтетической истории торгов.
+     */
+    private LocalDate historyStart = LocalDate.of(2010, 1, 1);
+
+    /**
+     * Размер страницы истории, как у ISS.
+     */
+    private int pageSize = 100;
+
+    /**
+     * Начальное значение генератора синтетических данных.
+     */
+    private long seed = 42;
+
+    /**
+     * Минимальная задержка ответа.
+     */
+    private Duration latencyMin = Duration.ZERO;
+
+    /**
+     * Максимальная задержка ответа.
+     */
+    private Duration latencyMax = Duration.ZERO;
+
+    /**
+     * Доля запросов, на которые отвечается ошибкой 500.
+     */
+    private double errorRate = 0;
+
+    /**
+     * Максимальное количество запросов в секунду; сверх него отвечается 429. Ноль снимает ограничение.
+     */
+    private int requestsPerSecond = 0;
+}
@@ -0,0 +1,31 @@
+package ru.mslotvi.config;
+
+import lombok.Data;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.boot.context.properties.EnableConfigurationProperties;
+import org.springframework.context.annotation.Configuration;
+
+import java.time.Duration;
+
+@Data
+@EnableConfigurationProperties
+@ConfigurationProperties(prefix = "market-store")
+@Configuration
+public class MarketStoreConfig {
+
+    /**
+     * Включает локальное хранилище истории торгов.
+     */
+    private boolean enabled = true;
+
+    /**
+     * Каталог, в котором хранятся столбцовые файлы истории.
+     */
+    private String directory = "market-data";
+
+    /**
+     * Срок, за который ISS публикует итоги торгов. Дни после последнего торгового дня ответа отмечаются
+     * загруженными без торгов, только если они старше этого срока; более свежие дни запрашиваются повторно.
+     */
+    private Duration publicationLag = Duration.ofDays(3);
+}
@@ -5,6 +5,11 @@ import org.springframework.boot.context.properties.ConfigurationProperties;
 import org.springframework.boot.context.properties.EnableConfigurationProperties;
 import org.springframework.context.annotation.Configuration;
 
+import java.time.Duration;
+import java.time.Period;
+import java.util.ArrayList;
+import java.util.List;
+
 @Data
 @EnableConfigurationProperties
 @ConfigurationProperties(prefix = "moex")
@@ -13,4 +18,99 @@ public class MoexConfig {
     private String entryPoint;
     private String securitiesEntryPoint;
 
+    /**
+     * Адрес истории торгов по торговым доскам; история всех бумаг доски за день запрашивается
+     * по адресу {@code {boardHistoryEntryPoint}/{board}/securities.json?date=...}.
+     */
+    private String boardHistoryEntryPoint;
+
+    /**
+     * Максимальное количество бумаг, история которых загружается одновременно.
+     */
+    private int historyConcurrency = 8;
+
+    /**
+     * Средняя допустимая частота запросов к ISS в секунду.
+     */
+    private double requestsPerSecond = 10;
+
+    /**
+     * Количество запросов к ISS, которые можно выполнить подряд без ожидания.
+     */
+    private int requestBurst = 20;
+
+    /**
+     * Таймаут ожидания ответа ISS на один запрос.
+     */
+    private Duration requestTimeout = Duration.ofSeconds(30);
+
+    /**
+     * Интервал фонового обновления справочника ценных бумаг.
+     */
+    private Duration securitiesRefreshInterval = Duration.ofHours(1);
+
+    /**
+     * Столбцы истории торгов, запрашиваемые у ISS ({@code history.columns}).
+     * Пустой список означает все столбцы. {@code BOARDID} и {@code SECID} запрашиваются всегда, даже если их нет
+     * в списке, см. {@code MoexIssClient#historyProjection()}.
+     */
+    private List<String> historyColumns = new ArrayList<>(List.of(
+            "BOARDID", "TRADEDATE", "SHORTNAME", "SECID", "NUMTRADES", "VALUE",
+            "OPEN", "LOW", "HIGH", "CLOSE", "VOLUME"));
+
+    /**
+     * Столбцы внутридневных свечей, запрашиваемые у ISS ({@code candles.columns}).
+     * Пустой список означает все столбцы.
+     */
+    private List<String> candleColumns = new ArrayList<>(List.of(
+            "begin", "open", "high", "low", "close", "volume", "value"));
+
+    /**
+     * Столбцы справочника ценных бумаг, запрашиваемые у ISS ({@code securities.columns}).
+     * Пустой список означает все столбцы.
+     */
+    private List<String> securitiesColumns = new ArrayList<>();
+
+    /**
+     * Торговые доски, история которых загружается целиком по дням, см. {@code MoexBoardIngestion}.
+     */
+    private List<String> ingestionBoards = new ArrayList<>(List.of("TQBR"));
+
+    /**
+     * Количество последних завершённых дней, которые проверяет ночная загрузка по доскам.
+     */
+    private int ingestionDays = 3;
+
+    /**
+     * Расписание ночной загрузки по доскам в формате cron; значение {@code -} отключает загрузку.
+     */
+    private String ingestionCron = "0 30 3 * * *";
+
+    /**
+     * Количество самых востребованных бумаг, история которых загружается заранее, см. {@code MoexHistoryPrewarmer}.
+     * Ноль отключает прогрев.
+     */
+    private int prewarmTop = 50;
+
+    /**
+     * Глубина заранее загружаемой истории.
+     */
+    private Period prewarmPeriod = Period.ofYears(3);
+
+    /**
+     * Расписание прогрева в формате cron по московскому времени: до открытия и после закрытия торгов.
+     */
+    private String prewarmCron = "0 30 9,19 * * MON-FRI";
+
+    /**
+     * Доля корзины ограничителя запросов, которая должна оставаться свободной, чтобы прогрев отправил
+     * следующий запрос; остальное время прогрев уступает запросам пользователей.
+     */
+    private double prewarmHeadroom = 0.5;
+
+    /**
+     * Запрашивать ли у ISS блоки метаданных ({@code iss.meta}).
+     */
+    private boolean issMeta = false;
+
 }
@@ -0,0 +1,49 @@
+package ru.mslotvi.config;
+
+import lombok.Data;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.boot.context.properties.EnableConfigurationProperties;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.util.unit.DataSize;
+import ru.mslotvi.data.WeightEncoding;
+
+@Data
+@EnableConfigurationProperties
+@ConfigurationProperties(prefix = "portfolio-store")
+@Configuration
+public class PortfolioStoreConfig {
+
+    /**
+     * Способ хранения сгенерированных портфелей.
+     */
+    public enum Storage {
+        /**
+         * Каждый портфель — строка {@code storage_portfolio} и строки {@code portfolio_securities} по бумагам.
+         * Такие портфели переоцениваются {@link ru.mslotvi.exchange.PortfolioRevaluator}.
+         */
+        ROWS,
+        /**
+         * Вся генерация — одна запись {@link ru.mslotvi.data.GenerationRun} с упакованными столбцами.
+         */
+        RUNS
+    }
+
+    private Storage storage = Storage.ROWS;
+
+    /**
+     * Кодировка долей бумаг для {@link Storage#RUNS}.
+     */
+    private WeightEncoding weightEncoding = WeightEncoding.FLOAT64;
+
+    /**
+     * Наибольший размер упакованных столбцов одной записи {@link Storage#RUNS}; большая генерация делится на
+     * несколько записей. Запись отправляется одним пакетом, поэтому значение должно быть меньше
+     * {@code max_allowed_packet} MySQL (64 MB по умолчанию).
+     */
+    private DataSize maxRunSize = DataSize.ofMegabytes(32);
+
+    /**
+     * Количество портфелей в одном пакете вставки; состав портфелей пакета вставляется следующим пакетом.
+     */
+    private int batchSize = 2000;
+}
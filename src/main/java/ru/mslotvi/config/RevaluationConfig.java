@@ -0,0 +1,40 @@
+package ru.mslotvi.config;
+
+import lombok.Data;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.boot.context.properties.EnableConfigurationProperties;
+import org.springframework.context.annotation.Configuration;
+
+import java.time.Duration;
+
+@Data
+@EnableConfigurationProperties
+@ConfigurationProperties(prefix = "revaluation")
+@Configuration
+public class RevaluationConfig {
+
+    /**
+     * Включает переоценку сохранённых портфелей по текущим ценам.
+     */
+    private boolean enabled = true;
+
+    /**
+     * Интервал опроса текущих цен бумаг, входящих в портфели.
+     */
+    private Duration pollInterval = Duration.ofSeconds(10);
+
+    /**
+     * Интервал полной перезагрузки состава портфелей из базы данных.
+     */
+    private Duration reloadInterval = Duration.ofMinutes(15);
+
+    /**
+     * Количество бумаг в одном запросе текущих цен.
+     */
+    private int quoteBatchSize = 100;
+
+    /**
+     * Количество портфелей, состав которых читается из базы данных одним запросом.
+     */
+    private int reloadBatchSize = 50_000;
+}
@@ -0,0 +1,31 @@
+package ru.mslotvi.config;
+
+import lombok.Data;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.boot.context.properties.EnableConfigurationProperties;
+import org.springframework.context.annotation.Configuration;
+
+import java.time.Period;
+
+@Data
+@EnableConfigurationProperties
+@ConfigurationProperties(prefix = "screener")
+@Configuration
+public class ScreenerConfig {
+
+    /**
+     * Включает обновление скринера по расписанию.
+     */
+    private boolean enabled = true;
+
+    /**
+     * Окно истории, по которому считается сводная статистика скринера. Окно одно для всех бумаг,
+     * чтобы строки скринера были сравнимы между собой.
+     */
+    private Period window = Period.ofYears(1);
+
+    /**
+     * Расписание обновления скринера по всем биржам.
+     */
+    private String refreshCron = "0 0 4 * * *";
+}
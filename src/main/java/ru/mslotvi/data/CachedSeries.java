@@ -0,0 +1,168 @@
+package ru.mslotvi.data;
+
+import ru.mslotvi.exchange.ExchangeDateSnapshot;
+
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.DoubleBuffer;
+import java.nio.IntBuffer;
+import java.util.List;
+
+/**
+ * Дневная история одной ценной бумаги в памяти {@link HistoryCache}.
+ * <p>Хранится так же, как {@link StoredSeries}: по столбцам, упорядоченно по дню, вместе с уже загруженными
+ * интервалами дат. Столбцы не изменяются после создания: при догрузке промежутка строится новый набор буферов,
+ * поэтому выданные ранее срезы остаются корректными.</p>
+ *
+ * <p>Буферы выделяются в куче или вне её ({@link ByteBuffer#allocateDirect(int)}); во втором случае большой кэш
+ * не увеличивает нагрузку на сборщик мусора.</p>
+ */
+final class CachedSeries {
+
+    private static final int COLUMNS = 7;
+
+    /**
+     * Размер одной строки в байтах: день и семь значений.
+     */
+    static final int ROW_BYTES = Integer.BYTES + COLUMNS * Double.BYTES;
+
+    private final String secId;
+    private final String boardId;
+    private final boolean offHeap;
+
+    private int[] coverage = new int[0];
+    private int rows;
+    private IntBuffer days = IntBuffer.allocate(0);
+    private DoubleBuffer[] columns = allocateColumns(0, false);
+
+    /**
+     * Байты, учтённые в бюджете кэша; изменяется только под блокировкой {@link HistoryCache}.
+     */
+    long accountedBytes;
+
+    CachedSeries(String secId, String boardId, boolean offHeap) {
+        this.secId = secId;
+        this.boardId = boardId;
+        this.offHeap = offHeap;
+    }
+
+    synchronized List<int[]> missing(int from, int to) {
+        return StoredSeries.missing(coverage, from, to);
+    }
+
+    synchronized long bytes() {
+        return (long) rows * ROW_BYTES;
+    }
+
+    /**
+     * Добавляет загруженные записи и отмечает интервал {@code [from, to]} как загруженный.
+     * Записи вне интервала и без даты игнорируются; запись за уже известный день заменяет прежнюю.
+     */
+    synchronized void merge(List<? extends ExchangeDateSnapshot> pages, int from, int to) {
+        int count = 0;
+        for (ExchangeDateSnapshot page : pages) {
+            count += page.size();
+        }
+        int[] newDays = new int[count];
+        double[][] newValues = new double[COLUMNS][count];
+        int n = 0;
+        for (ExchangeDateSnapshot page : pages) {
+            for (int i = 0; i < page.size(); i++) {
+                int day = page.tradeDay(i);
+                if (day == ExchangeDateSnapshot.NO_DAY || day < from || day > to) {
+                    continue;
+                }
+                newDays[n] = day;
+                newValues[StoredSeries.OPEN][n] = page.open(i);
+                newValues[StoredSeries.HIGH][n] = page.high(i);
+                newValues[StoredSeries.LOW][n] = page.low(i);
+                newValues[StoredSeries.CLOSE][n] = page.close(i);
+                newValues[StoredSeries.VOLUME][n] = page.volume(i);
+                newValues[StoredSeries.VALUE][n] = page.value(i);
+                newValues[StoredSeries.NUM_TRADES][n] = page.numTrades(i);
+                n++;
+            }
+        }
+
+        if (n > 0) {
+            int capacity = rows + n;
+            IntBuffer mergedDays = allocateDays(capacity, offHeap);
+            DoubleBuffer[] merged = allocateColumns(capacity, offHeap);
+            int i = 0;
+            int j = 0;
+            int k = 0;
+            while (i < rows || j < n) {
+                int oldDay = i < rows ? days.get(i) : Integer.MAX_VALUE;
+                int newDay = j < n ? newDays[j] : Integer.MAX_VALUE;
+                if (newDay <= oldDay) {
+                    mergedDays.put(k, newDay);
+                    for (int c = 0; c < COLUMNS; c++) {
+                        merged[c].put(k, newValues[c][j]);
+                    }
+                    j++;
+                    if (newDay == oldDay) {
+                        i++;
+                    }
+                } else {
+                    mergedDays.put(k, oldDay);
+                    for (int c = 0; c < COLUMNS; c++) {
+                        merged[c].put(k, columns[c].get(i));
+                    }
+                    i++;
+                }
+                k++;
+            }
+            days = mergedDays.limit(k);
+            for (DoubleBuffer column : merged) {
+                column.limit(k);
+            }
+            columns = merged;
+            rows = k;
+        }
+
+        coverage = StoredSeries.addInterval(coverage, from, to);
+    }
+
+    /**
+     * Возвращает записи за интервал {@code [from, to]} срезами буферов без копирования.
+     */
+    synchronized ExchangeDateSnapshot slice(int from, int to) {
+        int low = lowerBound(from);
+        int length = lowerBound(to + 1) - low;
+        DoubleBuffer[] slices = new DoubleBuffer[COLUMNS];
+        for (int c = 0; c < COLUMNS; c++) {
+            slices[c] = columns[c].slice(low, length);
+        }
+        return new StoredSnapshot(secId, boardId, days.slice(low, length), slices);
+    }
+
+    private int lowerBound(int day) {
+        int low = 0;
+        int high = rows;
+        while (low < high) {
+            int middle = (low + high) >>> 1;
+            if (days.get(middle) < day) {
+                low = middle + 1;
+            } else {
+                high = middle;
+            }
+        }
+        return low;
+    }
+
+    private static IntBuffer allocateDays(int capacity, boolean offHeap) {
+        return offHeap
+                ? ByteBuffer.allocateDirect(capacity * Integer.BYTES).order(ByteOrder.nativeOrder()).asIntBuffer()
+                : IntBuffer.allocate(capacity);
+    }
+
+    private static DoubleBuffer[] allocateColumns(int capacity, boolean offHeap) {
+        DoubleBuffer[] result = new DoubleBuffer[COLUMNS];
+        for (int c = 0; c < COLUMNS; c++) {
+            result[c] = offHeap
+                    ? ByteBuffer.allocateDirect(capacity * Double.BYTES).order(ByteOrder.nativeOrder()).asDoubleBuffer()
+                    : DoubleBuffer.allocate(capacity);
+        }
+        return result;
+    }
+}
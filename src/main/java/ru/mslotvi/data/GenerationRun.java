@@ -0,0 +1,247 @@
+package ru.mslotvi.data;
+
+import jakarta.persistence.*;
+import lombok.AccessLevel;
+import lombok.Getter;
+import lombok.NoArgsConstructor;
+import lombok.experimental.Accessors;
+import ru.mslotvi.exchange.DefaultPortfolio;
+import ru.mslotvi.exchange.Frequency;
+
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.time.Instant;
+import java.time.LocalDate;
+import java.util.*;
+
+/**
+ * Результат одной генерации портфелей в упакованном виде.
+ * <p>Набор бумаг (в фиксированном порядке), интервал дат и параметры генерации хранятся один раз на запуск,
+ * а портфели — тремя двоичными столбцами little-endian: матрица долей {@code portfolios × universe} по строкам
+ * в кодировке {@link WeightEncoding}, ожидаемые доходности и риски в {@code double}. Названия бумаг не повторяются
+ * для каждого портфеля, как в строках {@code portfolio_securities} у {@link StoragePortfolio}.</p>
+ *
+ * <p>Для существующих расчётов портфели запуска доступны как {@link StoragePortfolio} без идентификатора,
+ * см. {@link #portfolios()}; они собираются при обращении и в базу данных не сохраняются.</p>
+ *
+ * <p>Запись сохраняется одним пакетом MySQL, поэтому большая генерация делится на несколько записей,
+ * см. {@link #chunked}.</p>
+ */
+@Entity
+@Getter
+@Accessors(fluent = true)
+@NoArgsConstructor(access = AccessLevel.PROTECTED)
+public class GenerationRun {
+
+    @Id
+    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    private Long id;
+
+    private String exchangeId;
+    private LocalDate startDate;
+    private LocalDate endDate;
+
+    @Enumerated(EnumType.STRING)
+    private Frequency frequency;
+
+    private Instant createDate;
+
+    private int portfolioCount;
+
+    /**
+     * Идентификаторы бумаг через запятую в порядке столбцов матрицы долей.
+     */
+    @Getter(AccessLevel.NONE)
+    @Lob
+    @Column(columnDefinition = "LONGTEXT")
+    private String universe;
+
+    @Enumerated(EnumType.STRING)
+    private WeightEncoding weightEncoding;
+
+    @Getter(AccessLevel.NONE)
+    @Lob
+    @Column(columnDefinition = "LONGBLOB")
+    private byte[] weights;
+
+    @Getter(AccessLevel.NONE)
+    @Lob
+    @Column(columnDefinition = "LONGBLOB")
+    private byte[] expectedReturns;
+
+    @Getter(AccessLevel.NONE)
+    @Lob
+    @Column(columnDefinition = "LONGBLOB")
+    private byte[] risks;
+
+    @Transient
+    @Getter(AccessLevel.NONE)
+    private List<String> universeList;
+
+    /**
+     * Упаковывает сгенерированные портфели.
+     *
+     * @param exchangeId Имя биржи.
+     * @param startDate Дата начала интервала истории.
+     * @param endDate Дата окончания интервала истории.
+     * @param frequency Частота наблюдений.
+     * @param portfolios Портфели; набор бумаг запуска — объединение их бумаг в порядке первого появления,
+     *                   отсутствующая в портфеле бумага хранится с нулевой долей.
+     * @param weightEncoding Кодировка долей.
+     * @return Несохранённый запуск.
+     * @throws IllegalArgumentException если доля не представима в кодировке {@link WeightEncoding#UINT16}.
+     */
+    public static GenerationRun of(String exchangeId, LocalDate startDate, LocalDate endDate, Frequency frequency,
+                                   List<? extends DefaultPortfolio> portfolios, WeightEncoding weightEncoding) {
+        Map<String, Integer> columns = new LinkedHashMap<>();
+        for (DefaultPortfolio portfolio : portfolios) {
+            for (String secId : portfolio.weights().keySet()) {
+                columns.putIfAbsent(secId, columns.size());
+            }
+        }
+
+        int width = columns.size();
+        ByteBuffer weights = buffer(Math.multiplyExact(Math.multiplyExact(portfolios.size(), width), weightEncoding.bytes()));
+        ByteBuffer expectedReturns = buffer(portfolios.size() * Double.BYTES);
+        ByteBuffer risks = buffer(portfolios.size() * Double.BYTES);
+        double[] row = new double[width];
+        for (DefaultPortfolio portfolio : portfolios) {
+            Arrays.fill(row, 0);
+            portfolio.weights().forEach((secId, weight) -> row[columns.get(secId)] = weight != null ? weight : 0);
+            for (double weight : row) {
+                weightEncoding.put(weights, weight);
+            }
+            expectedReturns.putDouble(portfolio.expectedReturn());
+            risks.putDouble(portfolio.risk());
+        }
+
+        GenerationRun run = new GenerationRun();
+        run.exchangeId = exchangeId;
+        run.startDate = startDate;
+        run.endDate = endDate;
+        run.frequency = frequency;
+        run.createDate = Instant.now();
+        run.portfolioCount = portfolios.size();
+        run.universe = String.join(",", columns.keySet());
+        run.weightEncoding = weightEncoding;
+        run.weights = weights.array();
+        run.expectedReturns = expectedReturns.array();
+        run.risks = risks.array();
+        return run;
+    }
+
+    /**
+     * Упаковывает сгенерированные портфели в несколько запусков, каждый не больше {@code maxBytes}.
+     * <p>Размер строки матрицы долей оценивается по набору бумаг всех портфелей, поэтому каждая часть заведомо
+     * укладывается в предел; один портфель, не укладывающийся в предел, сохраняется отдельной записью.</p>
+     *
+     * @param maxBytes Наибольший размер упакованных столбцов одной записи.
+     * @return Несохранённые запуски в порядке портфелей; пустой список, если портфелей нет.
+     * @see #of
+     */
+    public static List<GenerationRun> chunked(String exchangeId, LocalDate startDate, LocalDate endDate, Frequency frequency,
+                                              List<? extends DefaultPortfolio> portfolios, WeightEncoding weightEncoding,
+                                              long maxBytes) {
+        Set<String> secIds = new LinkedHashSet<>();
+        for (DefaultPortfolio portfolio : portfolios) {
+            secIds.addAll(portfolio.weights().keySet());
+        }
+        long universeBytes = String.join(",", secIds).length();
+        long rowBytes = (long) secIds.size() * weightEncoding.bytes() + 2L * Double.BYTES;
+        int chunk = (int) Math.clamp((maxBytes - universeBytes) / rowBytes, 1, Integer.MAX_VALUE);
+
+        List<GenerationRun> runs = new ArrayList<>();
+        for (int from = 0; from < portfolios.size(); from += chunk) {
+            runs.add(of(exchangeId, startDate, endDate, frequency,
+                    portfolios.subList(from, Math.min(from + chunk, portfolios.size())), weightEncoding));
+        }
+        return runs;
+    }
+
+    /**
+     * @return Идентификаторы бумаг в порядке столбцов матрицы долей.
+     */
+    public List<String> universe() {
+        List<String> list = universeList;
+        if (list == null) {
+            list = universe == null || universe.isEmpty() ? List.of() : List.of(universe.split(","));
+            universeList = list;
+        }
+        return list;
+    }
+
+    /**
+     * @param portfolio Номер портфеля в запуске.
+     * @param securitie Номер бумаги в {@link #universe()}.
+     * @return Доля бумаги в портфеле после декодирования.
+     */
+    public double weight(int portfolio, int securitie) {
+        int width = universe().size();
+        Objects.checkIndex(portfolio, portfolioCount);
+        Objects.checkIndex(securitie, width);
+        return weightEncoding.get(wrap(weights), (portfolio * width + securitie) * weightEncoding.bytes());
+    }
+
+    public double expectedReturn(int portfolio) {
+        return wrap(expectedReturns).getDouble(Objects.checkIndex(portfolio, portfolioCount) * Double.BYTES);
+    }
+
+    public double risk(int portfolio) {
+        return wrap(risks).getDouble(Objects.checkIndex(portfolio, portfolioCount) * Double.BYTES);
+    }
+
+    /**
+     * @return Размер упакованных столбцов в байтах.
+     */
+    public long packedBytes() {
+        return (long) weights.length + expectedReturns.length + risks.length
+                + (universe != null ? universe.length() : 0);
+    }
+
+    /**
+     * Возвращает портфели запуска в виде {@link StoragePortfolio} для существующих расчётов и ответов API.
+     * <p>Портфель собирается при обращении к элементу списка; бумаги с нулевой долей в него не попадают.
+     * Дата создания у всех портфелей — дата запуска.</p>
+     *
+     * @return Неизменяемый список из {@link #portfolioCount()} портфелей без идентификатора.
+     */
+    public List<StoragePortfolio> portfolios() {
+        List<String> secIds = universe();
+        ByteBuffer weightBuffer = wrap(weights);
+        ByteBuffer returnBuffer = wrap(expectedReturns);
+        ByteBuffer riskBuffer = wrap(risks);
+        return new AbstractList<>() {
+            @Override
+            public StoragePortfolio get(int i) {
+                Objects.checkIndex(i, portfolioCount);
+                Map<String, Double> securities = new HashMap<>();
+                int position = i * secIds.size() * weightEncoding.bytes();
+                for (String secId : secIds) {
+                    double weight = weightEncoding.get(weightBuffer, position);
+                    if (weight != 0) {
+                        securities.put(secId, weight);
+                    }
+                    position += weightEncoding.bytes();
+                }
+                return new StoragePortfolio()
+                        .securities(securities)
+                        .expectedReturn(returnBuffer.getDouble(i * Double.BYTES))
+                        .risk(riskBuffer.getDouble(i * Double.BYTES))
+                        .createDate(createDate);
+            }
+
+            @Override
+            public int size() {
+                return portfolioCount;
+            }
+        };
+    }
+
+    private static ByteBuffer buffer(int capacity) {
+        return ByteBuffer.allocate(capacity).order(ByteOrder.LITTLE_ENDIAN);
+    }
+
+    private static ByteBuffer wrap(byte[] bytes) {
+        return ByteBuffer.wrap(bytes).order(ByteOrder.LITTLE_ENDIAN);
+    }
+}
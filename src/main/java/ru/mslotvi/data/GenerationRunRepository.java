@@ -0,0 +1,11 @@
+package ru.mslotvi.data;
+
+import org.springframework.data.jpa.repository.JpaRepository;
+
+import java.time.Instant;
+import java.util.List;
+
+public interface GenerationRunRepository extends JpaRepository<GenerationRun, Long> {
+
+    List<GenerationRun> findByCreateDateBetween(Instant startDate, Instant endDate);
+}
@@ -0,0 +1,156 @@
+package ru.mslotvi.data;
+
+import lombok.extern.log4j.Log4j2;
+import org.springframework.stereotype.Component;
+import ru.mslotvi.config.HistoryCacheConfig;
+import ru.mslotvi.config.MarketStoreConfig;
+import ru.mslotvi.exchange.ExchangeDateSnapshot;
+
+import java.io.IOException;
+import java.time.LocalDate;
+import java.util.*;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Кэш дневной истории торгов в памяти с ограничением по объёму.
+ * <p>Для каждой бумаги хранятся уже загруженные интервалы дат ({@link CachedSeries}); запрос любого интервала
+ * внутри них обслуживается срезом без обращения к источнику, а для непокрытых промежутков вызывается
+ * {@link MarketDataStore.HistoryFetcher} — локальное хранилище или биржа. Как и в {@link MarketDataStore},
+ * текущий день не кэшируется и всегда запрашивается у источника, а дни после последнего торгового дня ответа
+ * отмечаются загруженными, только если старше {@link MarketStoreConfig#getPublicationLag()}.</p>
+ *
+ * <p>Суммарный объём истории ограничен {@link HistoryCacheConfig#getMaxSize()}: при превышении вытесняются
+ * бумаги, к которым дольше всего не обращались. Уже выданные срезы вытеснение не затрагивает.</p>
+ */
+@Log4j2
+@Component
+public class HistoryCache {
+
+    private final HistoryCacheConfig config;
+    private final MarketStoreConfig storeConfig;
+    /**
+     * Бумаги в порядке последнего обращения; защищено блокировкой на самой карте.
+     */
+    private final LinkedHashMap<String, CachedSeries> series = new LinkedHashMap<>(16, 0.75f, true);
+    private long bytes;
+
+    private final LongAdder hits = new LongAdder();
+    private final LongAdder misses = new LongAdder();
+    private final LongAdder evictions = new LongAdder();
+
+    public HistoryCache(HistoryCacheConfig config, MarketStoreConfig storeConfig) {
+        this.config = config;
+        this.storeConfig = storeConfig;
+    }
+
+    public boolean enabled() {
+        return config.isEnabled();
+    }
+
+    /**
+     * Возвращает историю за интервал, запрашивая у источника только промежутки, которых нет в кэше.
+     *
+     * @param boardId Код торговой доски.
+     * @param secId Идентификатор ценной бумаги.
+     * @param from Дата начала интервала.
+     * @param to Дата окончания интервала.
+     * @param fetcher Источник истории.
+     * @return Срез кэша за завершённые дни интервала и, если интервал включает текущий день, записи источника за него.
+     * @throws IOException если источник не смог загрузить историю.
+     * @throws InterruptedException если загрузка была прервана.
+     */
+    public List<ExchangeDateSnapshot> load(String boardId, String secId, LocalDate from, LocalDate to,
+                                           MarketDataStore.HistoryFetcher fetcher) throws IOException, InterruptedException {
+        int fromDay = (int) from.toEpochDay();
+        int toDay = (int) to.toEpochDay();
+        int cachedTo = Math.min(toDay, (int) LocalDate.now().minusDays(1).toEpochDay());
+        List<ExchangeDateSnapshot> result = new ArrayList<>();
+
+        if (fromDay <= cachedTo) {
+            String key = boardId + "/" + secId;
+            CachedSeries cached = entry(key, secId, boardId);
+            // Промежутки загружаются без блокировки бумаги: загрузка ждёт ответов ISS, и удержание монитора
+            // на это время закрепило бы несущие потоки виртуальных потоков. Одинаковые одновременные запросы
+            // к ISS объединяются на уровне MoexIssClient#historyFlights, а слияние перекрывающихся интервалов
+            // в CachedSeries безопасно.
+            List<int[]> gaps = cached.missing(fromDay, cachedTo);
+            (gaps.isEmpty() ? hits : misses).increment();
+            for (int[] gap : gaps) {
+                List<? extends ExchangeDateSnapshot> pages = fetcher.fetch(LocalDate.ofEpochDay(gap[0]), LocalDate.ofEpochDay(gap[1]));
+                int coveredTo = MarketDataStore.coveredTo(pages, gap[0], gap[1], storeConfig.getPublicationLag());
+                if (coveredTo >= gap[0]) {
+                    cached.merge(pages, gap[0], coveredTo);
+                }
+            }
+            ExchangeDateSnapshot slice = cached.slice(fromDay, cachedTo);
+            account(key, cached);
+            result.add(slice);
+        }
+
+        if (toDay > cachedTo) {
+            result.addAll(fetcher.fetch(LocalDate.ofEpochDay(Math.max(fromDay, cachedTo + 1)), to));
+        }
+        return result;
+    }
+
+    /**
+     * Удаляет историю бумаги из кэша.
+     */
+    public void invalidate(String boardId, String secId) {
+        synchronized (series) {
+            CachedSeries removed = series.remove(boardId + "/" + secId);
+            if (removed != null) {
+                bytes -= removed.accountedBytes;
+            }
+        }
+    }
+
+    /**
+     * @return Счётчики кэша: объём, количество бумаг, попадания, промахи и вытеснения.
+     */
+    public Map<String, Number> metrics() {
+        Map<String, Number> metrics = new LinkedHashMap<>();
+        synchronized (series) {
+            metrics.put("historyCache.bytes", bytes);
+            metrics.put("historyCache.series", series.size());
+        }
+        metrics.put("historyCache.maxBytes", config.getMaxSize().toBytes());
+        metrics.put("historyCache.hits", hits.sum());
+        metrics.put("historyCache.misses", misses.sum());
+        metrics.put("historyCache.evictions", evictions.sum());
+        return metrics;
+    }
+
+    private CachedSeries entry(String key, String secId, String boardId) {
+        synchronized (series) {
+            return series.computeIfAbsent(key, k -> new CachedSeries(secId, boardId, config.isOffHeap()));
+        }
+    }
+
+    /**
+     * Учитывает новый объём истории бумаги и вытесняет давно не использованные бумаги сверх бюджета.
+     * Только что использованная бумага не вытесняется, даже если сама превышает бюджет.
+     */
+    private void account(String key, CachedSeries cached) {
+        long size = cached.bytes();
+        long maxBytes = config.getMaxSize().toBytes();
+        synchronized (series) {
+            if (series.get(key) != cached) {
+                return;
+            }
+            bytes += size - cached.accountedBytes;
+            cached.accountedBytes = size;
+
+            Iterator<Map.Entry<String, CachedSeries>> eldest = series.entrySet().iterator();
+            while (bytes > maxBytes && eldest.hasNext()) {
+                CachedSeries candidate = eldest.next().getValue();
+                if (candidate == cached) {
+                    break;
+                }
+                eldest.remove();
+                bytes -= candidate.accountedBytes;
+                evictions.increment();
+            }
+        }
+    }
+}
@@ -0,0 +1,192 @@
+package ru.mslotvi.data;
+
+import lombok.extern.log4j.Log4j2;
+import org.springframework.stereotype.Component;
+import ru.mslotvi.config.MarketStoreConfig;
+import ru.mslotvi.exchange.ExchangeDateSnapshot;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Локальное хранилище дневной истории торгов.
+ * <p>История каждой бумаги хранится в каталоге {@code {directory}/{board}/{secId}} в виде столбцовых файлов
+ * {@link StoredSeries}. При запросе интервала с биржи загружаются только ещё не сохранённые промежутки,
+ * а остальное читается с диска. Текущий день не сохраняется, так как торги по нему ещё идут: он всегда
+ * запрашивается у биржи заново.</p>
+ */
+@Log4j2
+@Component
+public class MarketDataStore {
+
+    /**
+     * Загрузчик истории с биржи за интервал дат.
+     */
+    @FunctionalInterface
+    public interface HistoryFetcher {
+        List<? extends ExchangeDateSnapshot> fetch(LocalDate from, LocalDate to) throws IOException, InterruptedException;
+    }
+
+    private final MarketStoreConfig config;
+    private final Map<String, StoredSeries> series = new ConcurrentHashMap<>();
+
+    public MarketDataStore(MarketStoreConfig config) {
+        this.config = config;
+    }
+
+    public boolean enabled() {
+        return config.isEnabled();
+    }
+
+    /**
+     * @return Абсолютный путь каталога хранилища.
+     */
+    public Path directory() {
+        return Path.of(config.getDirectory()).toAbsolutePath().normalize();
+    }
+
+    /**
+     * Возвращает сохранённую историю бумаги, открывая её файлы при первом обращении.
+     *
+     * @param boardId Код торговой доски.
+     * @param secId Идентификатор ценной бумаги.
+     * @return Сохранённая история.
+     */
+    public StoredSeries series(String boardId, String secId) {
+        return series.computeIfAbsent(boardId + "/" + secId, key -> {
+            try {
+                return new StoredSeries(Path.of(config.getDirectory(), fileName(boardId), fileName(secId)), secId, boardId);
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+        });
+    }
+
+    /**
+     * Возвращает историю за интервал, догружая с биржи только отсутствующие промежутки.
+     *
+     * @param boardId Код торговой доски.
+     * @param secId Идентификатор ценной бумаги.
+     * @param from Дата начала интервала.
+     * @param to Дата окончания интервала.
+     * @param fetcher Загрузчик истории с биржи.
+     * @return Сохранённая часть интервала и, если интервал включает текущий день, загруженные с биржи записи за него.
+     * @throws IOException если не удалось прочитать или записать файлы.
+     * @throws InterruptedException если загрузка была прервана.
+     */
+    public List<ExchangeDateSnapshot> load(String boardId, String secId, LocalDate from, LocalDate to,
+                                           HistoryFetcher fetcher) throws IOException, InterruptedException {
+        int fromDay = (int) from.toEpochDay();
+        int toDay = (int) to.toEpochDay();
+        int storedTo = Math.min(toDay, (int) LocalDate.now().minusDays(1).toEpochDay());
+        List<ExchangeDateSnapshot> result = new ArrayList<>();
+
+        if (fromDay <= storedTo) {
+            StoredSeries stored = series(boardId, secId);
+            // Промежутки загружаются без блокировки бумаги: загрузка ждёт ответов ISS, и удержание монитора
+            // на это время закрепило бы несущие потоки виртуальных потоков. Запись перекрывающихся интервалов
+            // безопасна, а одинаковые одновременные запросы объединяются MoexIssClient#historyFlights.
+            for (int[] gap : stored.missing(fromDay, storedTo)) {
+                log.debug("Fetching {}/{} gap {}..{}", boardId, secId, LocalDate.ofEpochDay(gap[0]), LocalDate.ofEpochDay(gap[1]));
+                List<? extends ExchangeDateSnapshot> pages = fetcher.fetch(LocalDate.ofEpochDay(gap[0]), LocalDate.ofEpochDay(gap[1]));
+                int coveredTo = coveredTo(pages, gap[0], gap[1]);
+                if (coveredTo >= gap[0]) {
+                    stored.write(pages, gap[0], coveredTo);
+                }
+            }
+            result.add(stored.read(fromDay, storedTo));
+        }
+
+        if (toDay > storedTo) {
+            result.addAll(fetcher.fetch(LocalDate.ofEpochDay(Math.max(fromDay, storedTo + 1)), to));
+        }
+        return result;
+    }
+
+    private int coveredTo(List<? extends ExchangeDateSnapshot> pages, int from, int to) {
+        return coveredTo(pages, from, to, config.getPublicationLag());
+    }
+
+    /**
+     * Возвращает последний день промежутка, который можно отметить загруженным.
+     * <p>Дни после последнего торгового дня ответа могут быть как днями без торгов, так и ещё не опубликованными
+     * итогами. Они отмечаются, только если старше {@code publicationLag}, см. {@link MarketStoreConfig#getPublicationLag()}.
+     * Правило общее для хранилища и {@link HistoryCache}.</p>
+     *
+     * @return Последний отмечаемый день; меньше {@code from}, если отмечать нечего.
+     */
+    static int coveredTo(List<? extends ExchangeDateSnapshot> pages, int from, int to, Duration publicationLag) {
+        int published = (int) LocalDate.now().minusDays(publicationLag.toDays()).toEpochDay();
+        if (to < published) {
+            return to;
+        }
+        int lastDay = from - 1;
+        for (ExchangeDateSnapshot page : pages) {
+            for (int i = 0; i < page.size(); i++) {
+                int day = page.tradeDay(i);
+                if (day != ExchangeDateSnapshot.NO_DAY && day <= to) {
+                    lastDay = Math.max(lastDay, day);
+                }
+            }
+        }
+        return Math.max(lastDay, Math.min(to, published - 1));
+    }
+
+    /**
+     * Проверяет, сохранена ли опубликованная история бумаги за интервал.
+     * <p>Проверяются только дни старше {@link MarketStoreConfig#getPublicationLag()}: более свежие дни без торгов
+     * не отмечаются загруженными (см. {@link #coveredTo}) и запрашиваются у биржи при каждой загрузке, поэтому
+     * прогрев их заполнить не может.</p>
+     *
+     * @param boardId Код торговой доски.
+     * @param secId Идентификатор ценной бумаги.
+     * @param from Дата начала интервала.
+     * @param to Дата окончания интервала.
+     * @return {@code true}, если хранилище включено и все опубликованные дни интервала сохранены.
+     */
+    public boolean covered(String boardId, String secId, LocalDate from, LocalDate to) {
+        if (!enabled()) {
+            return false;
+        }
+        int fromDay = (int) from.toEpochDay();
+        int published = (int) LocalDate.now().minusDays(config.getPublicationLag().toDays()).toEpochDay();
+        int coveredTo = Math.min((int) to.toEpochDay(), published - 1);
+        return fromDay > coveredTo || series(boardId, secId).missing(fromDay, coveredTo).isEmpty();
+    }
+
+    /**
+     * Сохраняет записи, загруженные с биржи в обход {@link #load}, например историю всей торговой доски за день.
+     * <p>Интервал отмечается загруженным по тому же правилу, что и в {@link #load}: дни после последнего торгового
+     * дня записей отмечаются, только если они старше {@link MarketStoreConfig#getPublicationLag()}.</p>
+     *
+     * @param boardId Код торговой доски.
+     * @param secId Идентификатор ценной бумаги.
+     * @param pages Записи бумаги; пустой список отмечает опубликованную часть интервала как загруженную без торгов.
+     * @param from Первый день загруженного интервала.
+     * @param to Последний день загруженного интервала включительно.
+     * @throws IOException если не удалось записать файлы.
+     * @throws IllegalArgumentException если интервал включает текущий день.
+     */
+    public void store(String boardId, String secId, List<? extends ExchangeDateSnapshot> pages,
+                      LocalDate from, LocalDate to) throws IOException {
+        if (!to.isBefore(LocalDate.now())) {
+            throw new IllegalArgumentException("Текущий день не сохраняется: " + to);
+        }
+        int fromDay = (int) from.toEpochDay();
+        int coveredTo = coveredTo(pages, fromDay, (int) to.toEpochDay());
+        if (coveredTo >= fromDay) {
+            series(boardId, secId).write(pages, fromDay, coveredTo);
+        }
+    }
+
+    private static String fileName(String value) {
+        return value.replaceAll("[^A-Za-z0-9._-]", "_");
+    }
+}
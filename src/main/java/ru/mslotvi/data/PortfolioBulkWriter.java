@@ -0,0 +1,119 @@
+package ru.mslotvi.data;
+
+import jakarta.transaction.Transactional;
+import lombok.extern.log4j.Log4j2;
+import org.springframework.jdbc.datasource.DataSourceUtils;
+import org.springframework.stereotype.Component;
+import ru.mslotvi.config.PortfolioStoreConfig;
+
+import javax.sql.DataSource;
+import java.sql.*;
+import java.util.Calendar;
+import java.util.List;
+import java.util.Map;
+import java.util.TimeZone;
+
+/**
+ * Пакетная запись сгенерированных портфелей в обход JPA.
+ * <p>{@link StoragePortfolio} получает идентификатор от {@code AUTO_INCREMENT}, из-за чего Hibernate вставляет
+ * портфели по одному, а состав каждого портфеля — отдельной вставкой на бумагу. Здесь портфели и их состав
+ * вставляются пакетами JDBC по {@link PortfolioStoreConfig#getBatchSize()} портфелей; с параметром
+ * {@code rewriteBatchedStatements=true} драйвер MySQL отправляет пакет одним многострочным {@code INSERT}.
+ * Сгенерированные идентификаторы возвращаются драйвером для всего пакета и записываются в портфели.</p>
+ *
+ * <p>Схема таблиц та же, что строит Hibernate для {@link StoragePortfolio}, поэтому записанные портфели читаются
+ * {@link PortfolioRepository} как обычно.</p>
+ */
+@Log4j2
+@Component
+public class PortfolioBulkWriter {
+
+    private static final String INSERT_PORTFOLIO =
+            "insert into storage_portfolio (create_date, expected_return, risk) values (?, ?, ?)";
+    private static final String INSERT_SECURITY =
+            "insert into portfolio_securities (portfolio_id, security_name, amount) values (?, ?, ?)";
+
+    private final DataSource dataSource;
+    private final PortfolioStoreConfig config;
+
+    public PortfolioBulkWriter(DataSource dataSource, PortfolioStoreConfig config) {
+        this.dataSource = dataSource;
+        this.config = config;
+    }
+
+    /**
+     * Сохраняет новые портфели одной транзакцией.
+     *
+     * @param portfolios Портфели без идентификатора; после вызова у каждого заполнен {@link StoragePortfolio#id()}.
+     * @throws IllegalArgumentException если у портфеля уже есть идентификатор.
+     * @throws IllegalStateException если запись не удалась; транзакция откатывается, а идентификаторы сбрасываются.
+     */
+    @Transactional
+    public void saveAll(List<StoragePortfolio> portfolios) {
+        for (StoragePortfolio portfolio : portfolios) {
+            if (portfolio.id() != null) {
+                throw new IllegalArgumentException("Portfolio is already stored: " + portfolio.id());
+            }
+        }
+
+        long started = System.nanoTime();
+        int batchSize = Math.max(config.getBatchSize(), 1);
+        Connection connection = DataSourceUtils.getConnection(dataSource);
+        try (PreparedStatement insertPortfolio = connection.prepareStatement(INSERT_PORTFOLIO, Statement.RETURN_GENERATED_KEYS);
+             PreparedStatement insertSecurity = connection.prepareStatement(INSERT_SECURITY)) {
+            Calendar utc = Calendar.getInstance(TimeZone.getTimeZone("UTC"));
+            for (int from = 0; from < portfolios.size(); from += batchSize) {
+                List<StoragePortfolio> batch = portfolios.subList(from, Math.min(from + batchSize, portfolios.size()));
+                insertPortfolios(insertPortfolio, batch, utc);
+                insertSecurities(insertSecurity, batch);
+            }
+        } catch (SQLException e) {
+            portfolios.forEach(portfolio -> portfolio.id(null));
+            throw new IllegalStateException("Failed to store " + portfolios.size() + " portfolios", e);
+        } finally {
+            DataSourceUtils.releaseConnection(connection, dataSource);
+        }
+        log.debug("Stored {} portfolios in {} ms", portfolios.size(), (System.nanoTime() - started) / 1_000_000);
+    }
+
+    private void insertPortfolios(PreparedStatement statement, List<StoragePortfolio> batch, Calendar utc) throws SQLException {
+        for (StoragePortfolio portfolio : batch) {
+            // Instant хранится в UTC, как его записывает Hibernate.
+            if (portfolio.createDate() != null) {
+                statement.setTimestamp(1, Timestamp.from(portfolio.createDate()), utc);
+            } else {
+                statement.setNull(1, Types.TIMESTAMP);
+            }
+            statement.setDouble(2, portfolio.expectedReturn());
+            statement.setDouble(3, portfolio.risk());
+            statement.addBatch();
+        }
+        statement.executeBatch();
+
+        try (ResultSet keys = statement.getGeneratedKeys()) {
+            int i = 0;
+            while (keys.next() && i < batch.size()) {
+                batch.get(i++).id(keys.getLong(1));
+            }
+            if (i != batch.size()) {
+                throw new SQLException("Expected " + batch.size() + " generated keys, got " + i);
+            }
+        }
+    }
+
+    private void insertSecurities(PreparedStatement statement, List<StoragePortfolio> batch) throws SQLException {
+        for (StoragePortfolio portfolio : batch) {
+            for (Map.Entry<String, Double> entry : portfolio.securities().entrySet()) {
+                statement.setLong(1, portfolio.id());
+                statement.setString(2, entry.getKey());
+                if (entry.getValue() != null) {
+                    statement.setDouble(3, entry.getValue());
+                } else {
+                    statement.setNull(3, Types.DOUBLE);
+                }
+                statement.addBatch();
+            }
+        }
+        statement.executeBatch();
+    }
+}
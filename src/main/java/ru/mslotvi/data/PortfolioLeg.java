@@ -0,0 +1,13 @@
+package ru.mslotvi.data;
+
+/**
+ * Доля одной бумаги в сохранённом портфеле, см. {@link PortfolioRepository#findLegs(long, long)}.
+ */
+public interface PortfolioLeg {
+
+    Long getPortfolioId();
+
+    String getSecId();
+
+    Double getWeight();
+}
@@ -1,6 +1,7 @@
 package ru.mslotvi.data;
 
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Query;
 
 import java.time.Instant;
 import java.util.List;
@@ -9,4 +10,17 @@ public interface PortfolioRepository extends JpaRepository<StoragePortfolio, Lon
 
     List<StoragePortfolio> findByCreateDateBetween(Instant startDate, Instant endDate);
 
+    @Query("select coalesce(max(p.id), 0) from StoragePortfolio p")
+    long findMaxId();
+
+    /**
+     * Возвращает состав портфелей с идентификаторами в интервале {@code (afterId, untilId]} без загрузки сущностей.
+     *
+     * @return Доли бумаг, упорядоченные по идентификатору портфеля.
+     */
+    @Query("select p.id as portfolioId, key(s) as secId, value(s) as weight "
+            + "from StoragePortfolio p join p.securities s "
+            + "where p.id > :afterId and p.id <= :untilId order by p.id")
+    List<PortfolioLeg> findLegs(long afterId, long untilId);
+
 }
@@ -0,0 +1,432 @@
+package ru.mslotvi.data;
+
+import lombok.extern.log4j.Log4j2;
+import ru.mslotvi.exchange.ExchangeDateSnapshot;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.DoubleBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Локально сохранённая дневная история одной ценной бумаги на одной торговой доске.
+ * <p>Каждый столбец хранится в отдельном файле фиксированной ширины (little-endian): {@code day.i32} с эпохальными
+ * днями и {@code *.f64} с ценами, объёмом, оборотом и количеством сделок. Строки упорядочены по дню, новые дни
+ * дописываются в конец файлов. Файл {@code coverage.i32} хранит уже загруженные интервалы дат — в том числе дни
+ * без торгов, — чтобы повторный запрос того же интервала не обращался к бирже.</p>
+ *
+ * <p>Чтение выполняется через отображённые в память файлы без копирования. Если догружаемый интервал лежит раньше
+ * уже сохранённых дней, столбцы переписываются целиком: все новые файлы сначала пишутся рядом с расширением
+ * {@code .new}, затем последним пишется отметка {@code rewrite.commit}, и только после неё новые файлы переносятся
+ * на место прежних. Уже выданные снимки продолжают читать прежние отображения. Если работа прервалась, при открытии
+ * перезапись с отметкой доводится до конца, а без отметки — отбрасывается, так что дни одной версии никогда
+ * не оказываются рядом с ценами другой.</p>
+ */
+@Log4j2
+public final class StoredSeries {
+
+    static final int OPEN = 0;
+    static final int HIGH = 1;
+    static final int LOW = 2;
+    static final int CLOSE = 3;
+    static final int VOLUME = 4;
+    static final int VALUE = 5;
+    static final int NUM_TRADES = 6;
+
+    private static final String[] COLUMN_FILES = {
+            "open.f64", "high.f64", "low.f64", "close.f64", "volume.f64", "value.f64", "numtrades.f64"
+    };
+    private static final String DAY_FILE = "day.i32";
+    private static final String COVERAGE_FILE = "coverage.i32";
+    private static final String STAGED_SUFFIX = ".new";
+    private static final String COMMIT_FILE = "rewrite.commit";
+
+    private final Path directory;
+    private final String secId;
+    private final String boardId;
+
+    private int rows;
+    private int[] coverage = new int[0];
+    private ByteBuffer mappedDays;
+    private ByteBuffer[] mappedColumns;
+
+    StoredSeries(Path directory, String secId, String boardId) throws IOException {
+        this.directory = directory;
+        this.secId = secId;
+        this.boardId = boardId;
+        open();
+    }
+
+    /**
+     * Открывает историю бумаги в произвольном каталоге, например в выгрузке, подготовленной заранее.
+     *
+     * @param directory Каталог столбцовых файлов; создаётся, если его нет.
+     * @param secId Идентификатор ценной бумаги.
+     * @param boardId Код торговой доски.
+     * @return Открытая история.
+     * @throws IOException если не удалось прочитать файлы.
+     */
+    public static StoredSeries open(Path directory, String secId, String boardId) throws IOException {
+        return new StoredSeries(directory, secId, boardId);
+    }
+
+    private void open() throws IOException {
+        Files.createDirectories(directory);
+        recoverRewrite();
+        // После аварийной остановки во время дописывания файлы столбцов могут иметь разную длину:
+        // строки дописываются во все файлы в одном порядке, поэтому лишний хвост отбрасываем.
+        long minRows = size(DAY_FILE) / Integer.BYTES;
+        for (String file : COLUMN_FILES) {
+            minRows = Math.min(minRows, size(file) / Double.BYTES);
+        }
+        rows = (int) minRows;
+        truncate(DAY_FILE, (long) rows * Integer.BYTES);
+        for (String file : COLUMN_FILES) {
+            truncate(file, (long) rows * Double.BYTES);
+        }
+
+        Path coveragePath = directory.resolve(COVERAGE_FILE);
+        if (Files.exists(coveragePath)) {
+            ByteBuffer bytes = ByteBuffer.wrap(Files.readAllBytes(coveragePath)).order(ByteOrder.LITTLE_ENDIAN);
+            coverage = new int[bytes.remaining() / Integer.BYTES / 2 * 2];
+            bytes.asIntBuffer().get(coverage);
+        }
+    }
+
+    public String secId() {
+        return secId;
+    }
+
+    public String boardId() {
+        return boardId;
+    }
+
+    public synchronized int rows() {
+        return rows;
+    }
+
+    /**
+     * Возвращает ещё не загруженные интервалы внутри {@code [from, to]}.
+     *
+     * @param from Первый день интервала (эпохальный день).
+     * @param to Последний день интервала включительно (эпохальный день).
+     * @return Список пар {@code {from, to}} в порядке возрастания.
+     */
+    public synchronized List<int[]> missing(int from, int to) {
+        return missing(coverage, from, to);
+    }
+
+    /**
+     * Возвращает промежутки интервала {@code [from, to]}, не покрытые упорядоченными интервалами {@code coverage}.
+     *
+     * @param coverage Непересекающиеся интервалы в виде пар {@code from, to} по возрастанию.
+     */
+    static List<int[]> missing(int[] coverage, int from, int to) {
+        List<int[]> gaps = new ArrayList<>();
+        int cursor = from;
+        for (int i = 0; i < coverage.length && cursor <= to; i += 2) {
+            int coveredFrom = coverage[i];
+            int coveredTo = coverage[i + 1];
+            if (coveredTo < cursor) {
+                continue;
+            }
+            if (coveredFrom > cursor) {
+                gaps.add(new int[]{cursor, Math.min(coveredFrom - 1, to)});
+            }
+            cursor = Math.max(cursor, coveredTo + 1);
+        }
+        if (cursor <= to) {
+            gaps.add(new int[]{cursor, to});
+        }
+        return gaps;
+    }
+
+    /**
+     * Сохраняет загруженные записи и отмечает интервал {@code [from, to]} как загруженный.
+     * Записи вне интервала и без даты игнорируются; запись за уже сохранённый день заменяет прежнюю.
+     *
+     * @param pages Загруженные страницы истории.
+     * @param from Первый день загруженного интервала.
+     * @param to Последний день загруженного интервала включительно.
+     * @throws IOException если не удалось записать файлы.
+     */
+    public synchronized void write(List<? extends ExchangeDateSnapshot> pages, int from, int to) throws IOException {
+        int count = 0;
+        for (ExchangeDateSnapshot page : pages) {
+            count += page.size();
+        }
+        int[] days = new int[count];
+        double[][] values = new double[COLUMN_FILES.length][count];
+        int n = 0;
+        for (ExchangeDateSnapshot page : pages) {
+            for (int i = 0; i < page.size(); i++) {
+                int day = page.tradeDay(i);
+                if (day == ExchangeDateSnapshot.NO_DAY || day < from || day > to) {
+                    continue;
+                }
+                days[n] = day;
+                values[OPEN][n] = page.open(i);
+                values[HIGH][n] = page.high(i);
+                values[LOW][n] = page.low(i);
+                values[CLOSE][n] = page.close(i);
+                values[VOLUME][n] = page.volume(i);
+                values[VALUE][n] = page.value(i);
+                values[NUM_TRADES][n] = page.numTrades(i);
+                n++;
+            }
+        }
+
+        if (n > 0) {
+            if (rows == 0 || days[0] > lastDay()) {
+                append(days, values, n);
+            } else {
+                rewrite(days, values, n);
+            }
+        }
+
+        coverage = addInterval(coverage, from, to);
+        writeCoverage();
+    }
+
+    /**
+     * Возвращает сохранённые записи за интервал {@code [from, to]} без копирования данных.
+     *
+     * @param from Первый день интервала (эпохальный день).
+     * @param to Последний день интервала включительно (эпохальный день).
+     * @return Снимок, читающий отображённые в память файлы.
+     * @throws IOException если не удалось отобразить файлы.
+     */
+    public synchronized ExchangeDateSnapshot read(int from, int to) throws IOException {
+        map();
+        int low = lowerBound(from);
+        int high = lowerBound(to + 1);
+        int length = high - low;
+
+        DoubleBuffer[] columns = new DoubleBuffer[COLUMN_FILES.length];
+        for (int c = 0; c < columns.length; c++) {
+            columns[c] = mappedColumns[c].slice(low * Double.BYTES, length * Double.BYTES)
+                    .order(ByteOrder.LITTLE_ENDIAN).asDoubleBuffer();
+        }
+        return new StoredSnapshot(secId, boardId,
+                mappedDays.slice(low * Integer.BYTES, length * Integer.BYTES).order(ByteOrder.LITTLE_ENDIAN).asIntBuffer(),
+                columns);
+    }
+
+    private int lastDay() throws IOException {
+        map();
+        return mappedDays.getInt((rows - 1) * Integer.BYTES);
+    }
+
+    private int lowerBound(int day) {
+        int low = 0;
+        int high = rows;
+        while (low < high) {
+            int middle = (low + high) >>> 1;
+            if (mappedDays.getInt(middle * Integer.BYTES) < day) {
+                low = middle + 1;
+            } else {
+                high = middle;
+            }
+        }
+        return low;
+    }
+
+    private void append(int[] days, double[][] values, int n) throws IOException {
+        writeColumn(directory.resolve(DAY_FILE), intBytes(days, n), StandardOpenOption.APPEND);
+        for (int c = 0; c < COLUMN_FILES.length; c++) {
+            writeColumn(directory.resolve(COLUMN_FILES[c]), doubleBytes(values[c], n), StandardOpenOption.APPEND);
+        }
+        rows += n;
+        unmap();
+    }
+
+    private void rewrite(int[] days, double[][] values, int n) throws IOException {
+        map();
+        int total = rows + n;
+        int[] mergedDays = new int[total];
+        double[][] merged = new double[COLUMN_FILES.length][total];
+        int i = 0;
+        int j = 0;
+        int k = 0;
+        while (i < rows || j < n) {
+            int oldDay = i < rows ? mappedDays.getInt(i * Integer.BYTES) : Integer.MAX_VALUE;
+            int newDay = j < n ? days[j] : Integer.MAX_VALUE;
+            if (newDay <= oldDay) {
+                mergedDays[k] = newDay;
+                for (int c = 0; c < COLUMN_FILES.length; c++) {
+                    merged[c][k] = values[c][j];
+                }
+                j++;
+                if (newDay == oldDay) {
+                    i++;
+                }
+            } else {
+                mergedDays[k] = oldDay;
+                for (int c = 0; c < COLUMN_FILES.length; c++) {
+                    merged[c][k] = mappedColumns[c].getDouble(i * Double.BYTES);
+                }
+                i++;
+            }
+            k++;
+        }
+
+        writeColumn(directory.resolve(DAY_FILE + STAGED_SUFFIX), intBytes(mergedDays, k), StandardOpenOption.TRUNCATE_EXISTING);
+        for (int c = 0; c < COLUMN_FILES.length; c++) {
+            writeColumn(directory.resolve(COLUMN_FILES[c] + STAGED_SUFFIX), doubleBytes(merged[c], k),
+                    StandardOpenOption.TRUNCATE_EXISTING);
+        }
+        // Отметка пишется последней: с ней набор новых столбцов полон, и прерванный перенос доводится при открытии.
+        writeColumn(directory.resolve(COMMIT_FILE), ByteBuffer.allocate(0), StandardOpenOption.TRUNCATE_EXISTING);
+        commitRewrite();
+        rows = k;
+        unmap();
+    }
+
+    /**
+     * Переносит подготовленные столбцы на место прежних и удаляет отметку перезаписи.
+     */
+    private void commitRewrite() throws IOException {
+        moveStaged(DAY_FILE);
+        for (String file : COLUMN_FILES) {
+            moveStaged(file);
+        }
+        Files.delete(directory.resolve(COMMIT_FILE));
+    }
+
+    private void moveStaged(String file) throws IOException {
+        Path staged = directory.resolve(file + STAGED_SUFFIX);
+        if (Files.exists(staged)) {
+            Files.move(staged, directory.resolve(file), StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        }
+    }
+
+    /**
+     * Завершает или отбрасывает перезапись, прерванную аварийной остановкой, см. {@link #rewrite}.
+     */
+    private void recoverRewrite() throws IOException {
+        if (Files.exists(directory.resolve(COMMIT_FILE))) {
+            log.warn("Completing interrupted rewrite of {}", directory);
+            commitRewrite();
+            return;
+        }
+        boolean discarded = Files.deleteIfExists(directory.resolve(DAY_FILE + STAGED_SUFFIX));
+        for (String file : COLUMN_FILES) {
+            discarded |= Files.deleteIfExists(directory.resolve(file + STAGED_SUFFIX));
+        }
+        if (discarded) {
+            log.warn("Discarding incomplete rewrite of {}", directory);
+        }
+    }
+
+    private void writeCoverage() throws IOException {
+        ByteBuffer bytes = intBytes(coverage, coverage.length);
+        Path temp = directory.resolve(COVERAGE_FILE + ".tmp");
+        writeColumn(temp, bytes, StandardOpenOption.TRUNCATE_EXISTING);
+        Files.move(temp, directory.resolve(COVERAGE_FILE), StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+    }
+
+    private void map() throws IOException {
+        if (mappedDays != null) {
+            return;
+        }
+        mappedDays = mapFile(DAY_FILE, (long) rows * Integer.BYTES);
+        mappedColumns = new ByteBuffer[COLUMN_FILES.length];
+        for (int c = 0; c < COLUMN_FILES.length; c++) {
+            mappedColumns[c] = mapFile(COLUMN_FILES[c], (long) rows * Double.BYTES);
+        }
+    }
+
+    private void unmap() {
+        mappedDays = null;
+        mappedColumns = null;
+    }
+
+    private MappedByteBuffer mapFile(String file, long size) throws IOException {
+        Path path = directory.resolve(file);
+        if (!Files.exists(path)) {
+            Files.createFile(path);
+        }
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+            MappedByteBuffer buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, size);
+            buffer.order(ByteOrder.LITTLE_ENDIAN);
+            return buffer;
+        }
+    }
+
+    private long size(String file) throws IOException {
+        Path path = directory.resolve(file);
+        return Files.exists(path) ? Files.size(path) : 0;
+    }
+
+    private void truncate(String file, long size) throws IOException {
+        Path path = directory.resolve(file);
+        if (Files.exists(path) && Files.size(path) > size) {
+            log.warn("Truncating {} of {} to {} bytes", file, directory, size);
+            try (FileChannel channel = FileChannel.open(path, StandardOpenOption.WRITE)) {
+                channel.truncate(size);
+            }
+        }
+    }
+
+    private static void writeColumn(Path path, ByteBuffer bytes, StandardOpenOption mode) throws IOException {
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.CREATE, StandardOpenOption.WRITE, mode)) {
+            while (bytes.hasRemaining()) {
+                channel.write(bytes);
+            }
+            channel.force(false);
+        }
+    }
+
+    private static ByteBuffer intBytes(int[] values, int n) {
+        ByteBuffer bytes = ByteBuffer.allocate(n * Integer.BYTES).order(ByteOrder.LITTLE_ENDIAN);
+        bytes.asIntBuffer().put(values, 0, n);
+        return bytes;
+    }
+
+    private static ByteBuffer doubleBytes(double[] values, int n) {
+        ByteBuffer bytes = ByteBuffer.allocate(n * Double.BYTES).order(ByteOrder.LITTLE_ENDIAN);
+        bytes.asDoubleBuffer().put(values, 0, n);
+        return bytes;
+    }
+
+    /**
+     * Добавляет интервал к упорядоченному списку интервалов, объединяя пересекающиеся и смежные.
+     */
+    static int[] addInterval(int[] intervals, int from, int to) {
+        List<int[]> result = new ArrayList<>();
+        boolean inserted = false;
+        for (int i = 0; i < intervals.length; i += 2) {
+            int a = intervals[i];
+            int b = intervals[i + 1];
+            if (b + 1 < from) {
+                result.add(new int[]{a, b});
+            } else if (to + 1 < a) {
+                if (!inserted) {
+                    result.add(new int[]{from, to});
+                    inserted = true;
+                }
+                result.add(new int[]{a, b});
+            } else {
+                from = Math.min(from, a);
+                to = Math.max(to, b);
+            }
+        }
+        if (!inserted) {
+            result.add(new int[]{from, to});
+        }
+        int[] merged = new int[result.size() * 2];
+        for (int i = 0; i < result.size(); i++) {
+            merged[2 * i] = result.get(i)[0];
+            merged[2 * i + 1] = result.get(i)[1];
+        }
+        return merged;
+    }
+}
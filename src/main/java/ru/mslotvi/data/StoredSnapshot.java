@@ -0,0 +1,89 @@
+package ru.mslotvi.data;
+
+import ru.mslotvi.exchange.DailyTradeRecord;
+import ru.mslotvi.exchange.ExchangeDateSnapshot;
+
+import java.nio.DoubleBuffer;
+import java.nio.IntBuffer;
+import java.util.AbstractList;
+import java.util.List;
+
+/**
+ * Снимок истории, читающий значения напрямую из отображённых в память файлов {@link StoredSeries}
+ * или из буферов {@link CachedSeries}.
+ * <p>Столбцы представлены срезами буферов без копирования данных в кучу.</p>
+ */
+final class StoredSnapshot implements ExchangeDateSnapshot {
+
+    private final String secId;
+    private final String boardId;
+    private final IntBuffer tradeDay;
+    private final DoubleBuffer[] columns;
+
+    StoredSnapshot(String secId, String boardId, IntBuffer tradeDay, DoubleBuffer[] columns) {
+        this.secId = secId;
+        this.boardId = boardId;
+        this.tradeDay = tradeDay;
+        this.columns = columns;
+    }
+
+    @Override
+    public int size() {
+        return tradeDay.limit();
+    }
+
+    @Override
+    public int tradeDay(int i) {
+        return tradeDay.get(i);
+    }
+
+    @Override
+    public double open(int i) {
+        return columns[StoredSeries.OPEN].get(i);
+    }
+
+    @Override
+    public double high(int i) {
+        return columns[StoredSeries.HIGH].get(i);
+    }
+
+    @Override
+    public double low(int i) {
+        return columns[StoredSeries.LOW].get(i);
+    }
+
+    @Override
+    public double close(int i) {
+        return columns[StoredSeries.CLOSE].get(i);
+    }
+
+    @Override
+    public double volume(int i) {
+        return columns[StoredSeries.VOLUME].get(i);
+    }
+
+    @Override
+    public double value(int i) {
+        return columns[StoredSeries.VALUE].get(i);
+    }
+
+    @Override
+    public double numTrades(int i) {
+        return columns[StoredSeries.NUM_TRADES].get(i);
+    }
+
+    @Override
+    public List<DailyTradeRecord> tradeRecords() {
+        return new AbstractList<>() {
+            @Override
+            public DailyTradeRecord get(int i) {
+                return DailyTradeRecord.of(StoredSnapshot.this, i, boardId, secId, null);
+            }
+
+            @Override
+            public int size() {
+                return StoredSnapshot.this.size();
+            }
+        };
+    }
+}
@@ -0,0 +1,65 @@
+package ru.mslotvi.data;
+
+import java.nio.ByteBuffer;
+
+/**
+ * Кодировка долей бумаг в упакованной матрице весов {@link GenerationRun}.
+ */
+public enum WeightEncoding {
+    /**
+     * Без потерь, 8 байт на долю.
+     */
+    FLOAT64(Double.BYTES),
+    /**
+     * 4 байта на долю, относительная погрешность около {@code 6e-8}.
+     */
+    FLOAT32(Float.BYTES),
+    /**
+     * Доля из {@code [0, 1]}, квантованная в 65535 уровней: 2 байта на долю, погрешность не больше {@code 1 / 131070}.
+     */
+    UINT16(Short.BYTES);
+
+    private static final double UINT16_LEVELS = 0xFFFF;
+
+    private final int bytes;
+
+    WeightEncoding(int bytes) {
+        this.bytes = bytes;
+    }
+
+    /**
+     * @return Размер одной доли в байтах.
+     */
+    public int bytes() {
+        return bytes;
+    }
+
+    /**
+     * Записывает долю в текущую позицию буфера.
+     *
+     * @throws IllegalArgumentException если доля вне {@code [0, 1]} для {@link #UINT16}.
+     */
+    void put(ByteBuffer buffer, double weight) {
+        switch (this) {
+            case FLOAT64 -> buffer.putDouble(weight);
+            case FLOAT32 -> buffer.putFloat((float) weight);
+            case UINT16 -> {
+                if (!(weight >= 0 && weight <= 1)) {
+                    throw new IllegalArgumentException("Weight out of [0, 1] cannot be quantized: " + weight);
+                }
+                buffer.putShort((short) Math.round(weight * UINT16_LEVELS));
+            }
+        }
+    }
+
+    /**
+     * Читает долю по абсолютной позиции буфера.
+     */
+    double get(ByteBuffer buffer, int position) {
+        return switch (this) {
+            case FLOAT64 -> buffer.getDouble(position);
+            case FLOAT32 -> buffer.getFloat(position);
+            case UINT16 -> Short.toUnsignedInt(buffer.getShort(position)) / UINT16_LEVELS;
+        };
+    }
+}
@@ -0,0 +1,18 @@
+package ru.mslotvi.exchange;
+
+import java.util.Map;
+
+/**
+ * Результат расчёта по истории набора ценных бумаг вместе с бумагами, история которых не загрузилась.
+ * <p>Расчёт ведётся по тем бумагам, историю которых удалось загрузить; пропущенные бумаги перечислены
+ * в {@code failures}, чтобы результат не выглядел полным.</p>
+ *
+ * @param result Результат расчёта.
+ * @param failures Причины ошибок загрузки истории по идентификатору ценной бумаги.
+ */
+public record CalculationResult<T>(T result, Map<String, String> failures) {
+
+    public static <T> CalculationResult<T> of(T result, PortfolioCalculator calculator) {
+        return new CalculationResult<>(result, calculator.getFailures());
+    }
+}
@@ -0,0 +1,72 @@
+package ru.mslotvi.exchange;
+
+/**
+ * Интервал внутридневных свечей.
+ * <p>ISS отдаёт свечи только с интервалами 1, 10 и 60 минут и дневные; остальные интервалы собираются
+ * из ближайшего более мелкого интервала ISS, на который они делятся без остатка, см. {@link #source()}
+ * и {@link CandleSeries#aggregate(CandleInterval)}.</p>
+ *
+ * <p>Время свечи хранится эпохальной минутой местного (московского) времени биржи, поэтому границы периодов
+ * совпадают с границами торговых часов и дней.</p>
+ */
+public enum CandleInterval {
+    MINUTE_1(1, 1),
+    MINUTE_5(5, 0),
+    MINUTE_10(10, 10),
+    MINUTE_15(15, 0),
+    MINUTE_30(30, 0),
+    HOUR_1(60, 60),
+    HOUR_4(240, 0),
+    DAY(1440, 24);
+
+    private final int minutes;
+    private final int issCode;
+
+    CandleInterval(int minutes, int issCode) {
+        this.minutes = minutes;
+        this.issCode = issCode;
+    }
+
+    public int minutes() {
+        return minutes;
+    }
+
+    /**
+     * @return Значение параметра {@code interval} запроса свечей ISS или 0, если ISS не отдаёт такие свечи.
+     */
+    public int issCode() {
+        return issCode;
+    }
+
+    /**
+     * Возвращает самый крупный интервал ISS, из свечей которого собирается этот интервал.
+     *
+     * @return Этот интервал, если ISS отдаёт его напрямую.
+     */
+    public CandleInterval source() {
+        CandleInterval source = MINUTE_1;
+        for (CandleInterval candidate : values()) {
+            if (candidate.issCode != 0 && candidate.minutes <= minutes && minutes % candidate.minutes == 0) {
+                source = candidate;
+            }
+        }
+        return source;
+    }
+
+    /**
+     * Проверяет, собирается ли этот интервал из свечей интервала {@code finer}.
+     */
+    public boolean aggregates(CandleInterval finer) {
+        return minutes % finer.minutes == 0;
+    }
+
+    /**
+     * Возвращает начало периода, в который попадает минута.
+     *
+     * @param epochMinute Эпохальная минута местного времени, см. {@link CandleSeries#epochMinute}.
+     * @return Начало периода в эпохальных минутах.
+     */
+    public int periodStart(int epochMinute) {
+        return epochMinute - Math.floorMod(epochMinute, minutes);
+    }
+}
@@ -0,0 +1,316 @@
+package ru.mslotvi.exchange;
+
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.time.ZoneOffset;
+import java.util.Arrays;
+
+/**
+ * Компактный неизменяемый ряд внутридневных свечей одной ценной бумаги.
+ * <p>Время начала свечи хранится эпохальной минутой местного времени биржи, цены, объём и оборот — в примитивных
+ * столбцах: около 52 байт на свечу вместо объекта на каждую запись, поэтому ряды в миллионы свечей помещаются
+ * в память. Ряд собирается построчно {@link Builder} прямо при разборе ответа ISS.</p>
+ *
+ * <p>Ряд реализует {@link CloseSeries}, поэтому статистики {@link ru.mslotvi.util.MathUtil} считаются по нему так же,
+ * как по дневной истории. Более крупные свечи получаются из мелких за один проход {@link #aggregate(CandleInterval)},
+ * срезы по времени разделяют массивы с исходным рядом.</p>
+ */
+public final class CandleSeries implements CloseSeries {
+
+    private static final int INITIAL_CAPACITY = 512;
+
+    private final CandleInterval interval;
+    private final int[] begin;
+    private final double[] open;
+    private final double[] high;
+    private final double[] low;
+    private final double[] close;
+    private final double[] volume;
+    private final double[] value;
+    private final int offset;
+    private final int length;
+
+    private CandleSeries(CandleInterval interval, int[] begin, double[] open, double[] high, double[] low,
+                         double[] close, double[] volume, double[] value, int offset, int length) {
+        this.interval = interval;
+        this.begin = begin;
+        this.open = open;
+        this.high = high;
+        this.low = low;
+        this.close = close;
+        this.volume = volume;
+        this.value = value;
+        this.offset = offset;
+        this.length = length;
+    }
+
+    public static Builder builder(CandleInterval interval) {
+        return new Builder(interval);
+    }
+
+    /**
+     * Переводит местное время в эпохальную минуту.
+     */
+    public static int epochMinute(LocalDateTime time) {
+        return (int) Math.floorDiv(time.toEpochSecond(ZoneOffset.UTC), 60);
+    }
+
+    /**
+     * Переводит дату в эпохальную минуту начала дня.
+     */
+    public static int epochMinute(LocalDate date) {
+        return Math.toIntExact(date.toEpochDay() * 1440);
+    }
+
+    public CandleInterval interval() {
+        return interval;
+    }
+
+    @Override
+    public int size() {
+        return length;
+    }
+
+    public boolean isEmpty() {
+        return length == 0;
+    }
+
+    /**
+     * @return Эпохальная минута начала свечи {@code i}.
+     */
+    public int begin(int i) {
+        return begin[offset + checkIndex(i)];
+    }
+
+    /**
+     * @return Эпохальная минута начала свечи {@code i}, см. {@link #begin(int)}.
+     */
+    @Override
+    public int key(int i) {
+        return begin(i);
+    }
+
+    public LocalDateTime time(int i) {
+        return LocalDateTime.ofEpochSecond(begin(i) * 60L, 0, ZoneOffset.UTC);
+    }
+
+    public double open(int i) {
+        return open[offset + checkIndex(i)];
+    }
+
+    public double high(int i) {
+        return high[offset + checkIndex(i)];
+    }
+
+    public double low(int i) {
+        return low[offset + checkIndex(i)];
+    }
+
+    @Override
+    public double close(int i) {
+        return close[offset + checkIndex(i)];
+    }
+
+    public double volume(int i) {
+        return volume[offset + checkIndex(i)];
+    }
+
+    public double value(int i) {
+        return value[offset + checkIndex(i)];
+    }
+
+    /**
+     * Находит первую свечу, начавшуюся не раньше заданной минуты.
+     *
+     * @param epochMinute Эпохальная минута.
+     * @return Индекс свечи в диапазоне [0, {@link #size()}].
+     */
+    public int lowerBound(int epochMinute) {
+        int low = 0;
+        int high = length;
+        while (low < high) {
+            int middle = (low + high) >>> 1;
+            if (begin[offset + middle] < epochMinute) {
+                low = middle + 1;
+            } else {
+                high = middle;
+            }
+        }
+        return low;
+    }
+
+    /**
+     * Возвращает свечи, начавшиеся в интервале дат, без копирования данных.
+     *
+     * @param from Первый день интервала.
+     * @param to Последний день интервала включительно.
+     * @return Срез ряда; пустой, если в интервале нет свечей.
+     */
+    public CandleSeries slice(LocalDate from, LocalDate to) {
+        int fromIndex = lowerBound(epochMinute(from));
+        int toIndex = Math.max(fromIndex, lowerBound(epochMinute(to.plusDays(1))));
+        return slice(fromIndex, toIndex);
+    }
+
+    /**
+     * Возвращает срез ряда по индексам без копирования данных.
+     *
+     * @param fromIndex Первый индекс включительно.
+     * @param toIndex Последний индекс исключительно.
+     * @return Срез ряда.
+     * @throws IndexOutOfBoundsException если индексы вне ряда.
+     */
+    public CandleSeries slice(int fromIndex, int toIndex) {
+        if (fromIndex < 0 || toIndex > length || fromIndex > toIndex) {
+            throw new IndexOutOfBoundsException("Slice [" + fromIndex + ", " + toIndex + ") out of series of size " + length);
+        }
+        if (fromIndex == 0 && toIndex == length) {
+            return this;
+        }
+        return new CandleSeries(interval, begin, open, high, low, close, volume, value, offset + fromIndex, toIndex - fromIndex);
+    }
+
+    /**
+     * Собирает из ряда свечи более крупного интервала за один проход.
+     * <p>Цена открытия берётся из первой свечи периода, закрытия — из последней, максимум и минимум — по всем
+     * свечам периода, объём и оборот суммируются. Периоды без свечей в результат не попадают.</p>
+     *
+     * @param target Интервал результата.
+     * @return Ряд свечей интервала {@code target}; этот же ряд, если интервал совпадает.
+     * @throws IllegalArgumentException если интервал {@code target} не собирается из интервала ряда.
+     */
+    public CandleSeries aggregate(CandleInterval target) {
+        if (target == interval) {
+            return this;
+        }
+        if (!target.aggregates(interval)) {
+            throw new IllegalArgumentException("Cannot aggregate " + interval + " candles into " + target);
+        }
+        Builder builder = new Builder(target, (int) Math.max((long) length * interval.minutes() / target.minutes(), 1));
+        for (int i = offset; i < offset + length; i++) {
+            builder.merge(target.periodStart(begin[i]), open[i], high[i], low[i], close[i], volume[i], value[i]);
+        }
+        return builder.build();
+    }
+
+    private int checkIndex(int i) {
+        if (i < 0 || i >= length) {
+            throw new IndexOutOfBoundsException("Index " + i + " out of series of size " + length);
+        }
+        return i;
+    }
+
+    /**
+     * Построчная сборка ряда свечей в растущих примитивных столбцах.
+     * <p>Экземпляр не потокобезопасен.</p>
+     */
+    public static final class Builder {
+
+        private final CandleInterval interval;
+        private int[] begin;
+        private double[] open;
+        private double[] high;
+        private double[] low;
+        private double[] close;
+        private double[] volume;
+        private double[] value;
+        private int size;
+
+        private Builder(CandleInterval interval) {
+            this(interval, INITIAL_CAPACITY);
+        }
+
+        private Builder(CandleInterval interval, int capacity) {
+            this.interval = interval;
+            begin = new int[capacity];
+            open = new double[capacity];
+            high = new double[capacity];
+            low = new double[capacity];
+            close = new double[capacity];
+            volume = new double[capacity];
+            value = new double[capacity];
+        }
+
+        public CandleInterval interval() {
+            return interval;
+        }
+
+        public int size() {
+            return size;
+        }
+
+        /**
+         * Добавляет свечу в конец ряда. Свеча с тем же временем начала, что и последняя, заменяет её;
+         * свечи без цены закрытия пропускаются.
+         *
+         * @param epochMinute Эпохальная минута начала свечи, не раньше уже добавленных.
+         * @param candleOpen Цена открытия или {@link Double#NaN}, если неизвестна.
+         * @param candleHigh Максимальная цена или {@link Double#NaN}, если неизвестна.
+         * @param candleLow Минимальная цена или {@link Double#NaN}, если неизвестна.
+         * @param candleClose Цена закрытия.
+         * @param candleVolume Объём торгов в бумагах или {@link Double#NaN}.
+         * @param candleValue Оборот в деньгах или {@link Double#NaN}.
+         * @throws IllegalArgumentException если свеча начинается раньше последней добавленной.
+         */
+        public void append(int epochMinute, double candleOpen, double candleHigh, double candleLow, double candleClose,
+                           double candleVolume, double candleValue) {
+            if (Double.isNaN(candleClose)) {
+                return;
+            }
+            if (size > 0 && epochMinute < begin[size - 1]) {
+                throw new IllegalArgumentException("Candles must be appended in ascending order");
+            }
+            if (size > 0 && epochMinute == begin[size - 1]) {
+                size--;
+            }
+            if (size == begin.length) {
+                grow(Math.max(size * 2, INITIAL_CAPACITY));
+            }
+            begin[size] = epochMinute;
+            open[size] = Double.isNaN(candleOpen) ? candleClose : candleOpen;
+            high[size] = Double.isNaN(candleHigh) ? candleClose : candleHigh;
+            low[size] = Double.isNaN(candleLow) ? candleClose : candleLow;
+            close[size] = candleClose;
+            volume[size] = Double.isNaN(candleVolume) ? 0 : candleVolume;
+            value[size] = Double.isNaN(candleValue) ? 0 : candleValue;
+            size++;
+        }
+
+        /**
+         * Дополняет последнюю свечу, если она начинается в {@code periodStart}, иначе открывает новую.
+         */
+        private void merge(int periodStart, double candleOpen, double candleHigh, double candleLow, double candleClose,
+                           double candleVolume, double candleValue) {
+            if (size > 0 && begin[size - 1] == periodStart) {
+                int i = size - 1;
+                high[i] = Math.max(high[i], candleHigh);
+                low[i] = Math.min(low[i], candleLow);
+                close[i] = candleClose;
+                volume[i] += candleVolume;
+                value[i] += candleValue;
+                return;
+            }
+            append(periodStart, candleOpen, candleHigh, candleLow, candleClose, candleVolume, candleValue);
+        }
+
+        /**
+         * @return Неизменяемый ряд из добавленных свечей; сборщик после этого использовать нельзя.
+         */
+        public CandleSeries build() {
+            if (size < begin.length) {
+                grow(size);
+            }
+            return new CandleSeries(interval, begin, open, high, low, close, volume, value, 0, size);
+        }
+
+        private void grow(int capacity) {
+            begin = Arrays.copyOf(begin, capacity);
+            open = Arrays.copyOf(open, capacity);
+            high = Arrays.copyOf(high, capacity);
+            low = Arrays.copyOf(low, capacity);
+            close = Arrays.copyOf(close, capacity);
+            volume = Arrays.copyOf(volume, capacity);
+            value = Arrays.copyOf(value, capacity);
+        }
+    }
+}
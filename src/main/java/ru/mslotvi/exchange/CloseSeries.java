@@ -0,0 +1,19 @@
+package ru.mslotvi.exchange;
+
+/**
+ * Упорядоченный ряд цен закрытия, по которому считаются статистики {@link ru.mslotvi.util.MathUtil}.
+ * <p>Наблюдение {@code i} определяется ключом {@link #key(int)} — эпохальным днём для дневных рядов и баров
+ * или эпохальной минутой для внутридневных свечей. Ключи строго возрастают, поэтому общие наблюдения двух
+ * рядов одного вида находятся слиянием за один проход.</p>
+ */
+public interface CloseSeries {
+
+    int size();
+
+    /**
+     * @return Ключ наблюдения {@code i}; ключи возрастают вместе с индексом.
+     */
+    int key(int i);
+
+    double close(int i);
+}
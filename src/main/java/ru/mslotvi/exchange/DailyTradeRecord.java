@@ -0,0 +1,38 @@
+package ru.mslotvi.exchange;
+
+import java.time.LocalDate;
+import java.time.ZoneId;
+import java.util.Date;
+
+/**
+ * Неизменяемая дневная запись о торгах.
+ * <p>Используется столбцовыми снимками истории для материализации отдельных записей по запросу
+ * {@link ExchangeDateSnapshot#tradeRecords()}.</p>
+ */
+public record DailyTradeRecord(String boardId, Date tradeDate, String shortName, String secId,
+                               Double numTrades, Double value, Double volume,
+                               Double open, Double high, Double low, Double close) implements ExchangeTradeRecord {
+
+    /**
+     * Создаёт запись по строке столбцового снимка.
+     *
+     * @param snapshot Снимок истории.
+     * @param i Индекс записи в снимке.
+     * @param boardId Идентификатор торговой доски.
+     * @param secId Идентификатор ценной бумаги.
+     * @param shortName Краткое название ценной бумаги.
+     * @return Запись о торгах.
+     */
+    public static DailyTradeRecord of(ExchangeDateSnapshot snapshot, int i, String boardId, String secId, String shortName) {
+        int tradeDay = snapshot.tradeDay(i);
+        Date tradeDate = tradeDay == ExchangeDateSnapshot.NO_DAY ? null
+                : Date.from(LocalDate.ofEpochDay(tradeDay).atStartOfDay(ZoneId.systemDefault()).toInstant());
+        return new DailyTradeRecord(boardId, tradeDate, shortName, secId,
+                boxed(snapshot.numTrades(i)), boxed(snapshot.value(i)), boxed(snapshot.volume(i)),
+                boxed(snapshot.open(i)), boxed(snapshot.high(i)), boxed(snapshot.low(i)), boxed(snapshot.close(i)));
+    }
+
+    private static Double boxed(double value) {
+        return Double.isNaN(value) ? null : value;
+    }
+}
@@ -55,7 +55,23 @@ public interface Exchange {
      *
      * @return Объект {@link PortfolioCalculator}, который будет использоваться для дальнейших расчетов эффективной линии.
      */
-    PortfolioCalculator createPortfolioCalculator(Set<String> ids, LocalDate start, LocalDate end);
+    default PortfolioCalculator createPortfolioCalculator(Set<String> ids, LocalDate start, LocalDate end) {
+        return createPortfolioCalculator(ids, start, end, Frequency.DAILY);
+    }
+
+    /**
+     * Создает объект {@link PortfolioCalculator}, который ведёт расчёты по истории заданной частоты.
+     * <p>Для недельной и месячной частоты калькулятор читает заранее агрегированные бары,
+     * см. {@link MarketHistory#bars(Frequency)}.</p>
+     *
+     * @param ids Множество идентификаторов ценных бумаг.
+     * @param start Дата начала временного интервала.
+     * @param end Дата окончания временного интервала.
+     * @param frequency Частота наблюдений.
+     *
+     * @return Объект {@link PortfolioCalculator} для дальнейших расчетов эффективной линии.
+     */
+    PortfolioCalculator createPortfolioCalculator(Set<String> ids, LocalDate start, LocalDate end, Frequency frequency);
 
     /**
      * Генерирует список портфелей на основе заданных параметров.
@@ -77,5 +93,44 @@ public interface Exchange {
      */
     List<Portfolio> generatePortfolios(Set<String> ids, LocalDate start, LocalDate end, int amount);
 
+    /**
+     * Возвращает скринер ценных бумаг биржи.
+     * <p>Сводная статистика скринера обновляется только через {@link #refreshScreener(LocalDate, LocalDate)}
+     * по фиксированному окну, см. {@link ScreenerRefresher}.</p>
+     *
+     * @return Скринер {@link SecurityScreener} этой биржи.
+     */
+    SecurityScreener screener();
+
+    /**
+     * Загружает историю торгов по всем известным ценным бумагам за указанный интервал
+     * и пересчитывает по ней сводную статистику скринера.
+     * <p>История загружается через {@link ExchangeSecuritie#fetchMarketHistory(LocalDate, LocalDate)} и не подменяет
+     * {@link ExchangeSecuritie#lastLoadMarketHistory()}. Вызов долгий: по всему справочнику.</p>
+     *
+     * @param from Дата начала интервала.
+     * @param to Дата окончания интервала.
+     */
+    void refreshScreener(LocalDate from, LocalDate to);
+
+    /**
+     * Возвращает поисковый индекс по текущему справочнику ценных бумаг.
+     * <p>Индекс перестраивается при каждом обновлении справочника; возвращённый экземпляр не меняется.</p>
+     *
+     * @return Индекс {@link SecuritySearchIndex} или пустой индекс, если биржа поиск не поддерживает.
+     */
+    default SecuritySearchIndex searchIndex() {
+        return SecuritySearchIndex.EMPTY;
+    }
+
+    /**
+     * Возвращает счётчики работы биржи, например количество запросов к источнику данных.
+     *
+     * @return Карта с названием счётчика и его текущим значением.
+     */
+    default Map<String, Number> metrics() {
+        return Map.of();
+    }
+
     String name();
 }
@@ -1,5 +1,8 @@
 package ru.mslotvi.exchange;
 
+import java.time.LocalDate;
+import java.time.ZoneId;
+import java.util.Date;
 import java.util.List;
 
 /**
@@ -20,4 +23,92 @@ public interface ExchangeDateSnapshot {
      * @return Список записей сделок {@link ExchangeTradeRecord} для данной даты.
      */
     List<? extends ExchangeTradeRecord> tradeRecords();
+
+    /**
+     * Количество записей в снимке.
+     * <p>Методы доступа по индексу позволяют читать значения без создания объектов {@link ExchangeTradeRecord}.
+     * Реализации, хранящие данные по столбцам, переопределяют их; реализации по умолчанию читают
+     * {@link #tradeRecords()}.</p>
+     *
+     * @return Количество записей.
+     */
+    default int size() {
+        return tradeRecords().size();
+    }
+
+    /**
+     * @param i Индекс записи.
+     * @return Дата торгов в виде {@link LocalDate#toEpochDay()} или {@link #NO_DAY}, если дата неизвестна.
+     */
+    default int tradeDay(int i) {
+        Date tradeDate = tradeRecords().get(i).tradeDate();
+        return tradeDate != null
+                ? (int) tradeDate.toInstant().atZone(ZoneId.systemDefault()).toLocalDate().toEpochDay()
+                : NO_DAY;
+    }
+
+    /**
+     * @param i Индекс записи.
+     * @return Цена закрытия или {@link Double#NaN}, если она неизвестна.
+     */
+    default double close(int i) {
+        return orNaN(tradeRecords().get(i).close());
+    }
+
+    /**
+     * @param i Индекс записи.
+     * @return Цена открытия или {@link Double#NaN}, если она неизвестна.
+     */
+    default double open(int i) {
+        return orNaN(tradeRecords().get(i).open());
+    }
+
+    /**
+     * @param i Индекс записи.
+     * @return Максимальная цена или {@link Double#NaN}, если она неизвестна.
+     */
+    default double high(int i) {
+        return orNaN(tradeRecords().get(i).high());
+    }
+
+    /**
+     * @param i Индекс записи.
+     * @return Минимальная цена или {@link Double#NaN}, если она неизвестна.
+     */
+    default double low(int i) {
+        return orNaN(tradeRecords().get(i).low());
+    }
+
+    /**
+     * @param i Индекс записи.
+     * @return Объём торгов в бумагах или {@link Double#NaN}, если он неизвестен.
+     */
+    default double volume(int i) {
+        return orNaN(tradeRecords().get(i).volume());
+    }
+
+    /**
+     * @param i Индекс записи.
+     * @return Оборот в деньгах или {@link Double#NaN}, если он неизвестен.
+     */
+    default double value(int i) {
+        return orNaN(tradeRecords().get(i).value());
+    }
+
+    /**
+     * @param i Индекс записи.
+     * @return Количество сделок или {@link Double#NaN}, если оно неизвестно.
+     */
+    default double numTrades(int i) {
+        return orNaN(tradeRecords().get(i).numTrades());
+    }
+
+    /**
+     * Значение {@link #tradeDay(int)} для записи без даты.
+     */
+    int NO_DAY = Integer.MIN_VALUE;
+
+    private static double orNaN(Double value) {
+        return value != null ? value : Double.NaN;
+    }
 }
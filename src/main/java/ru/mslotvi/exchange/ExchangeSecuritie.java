@@ -2,7 +2,6 @@ package ru.mslotvi.exchange;
 
 import java.io.Serializable;
 import java.time.LocalDate;
-import java.util.List;
 
 /**
  * Интерфейс, представляющий ценную бумагу на бирже.
@@ -28,12 +27,14 @@ public interface ExchangeSecuritie extends Serializable {
     String secId();
 
     /**
-     * Загружает последние данные о сделках для данной ценной бумаги.
-     * <p>Этот метод возвращает список историй сделок для ценной бумаги, загруженных ранее, например, из кэша или из локального хранилища.</p>
+     * Возвращает последний загруженный снимок истории сделок.
+     * <p>Снимок не меняется после создания; параллельная загрузка с другим интервалом создаёт новый снимок,
+     * а не изменяет этот. Расчёты должны использовать снимок, возвращённый их собственным вызовом
+     * {@link #loadMarketHistory(LocalDate, LocalDate)}.</p>
      *
-     * @return Список {@link ExchangeDateSnapshot}, представляющий последние загруженные данные о сделках.
+     * @return Последний загруженный {@link MarketHistory} или {@code null}, если история ещё не загружалась.
      */
-    List<ExchangeDateSnapshot> lastLoadMarketHistory();
+    MarketHistory lastLoadMarketHistory();
 
     /**
      * Загружает историю сделок для данной ценной бумаги в указанный временной интервал.
@@ -42,13 +43,57 @@ public interface ExchangeSecuritie extends Serializable {
      * @param from Дата начала временного интервала.
      * @param to Дата окончания временного интервала.
      *
-     * @return Список {@link ExchangeDateSnapshot}, представляющий данные о сделках в указанном интервале времени.
+     * @return Новый неизменяемый снимок {@link MarketHistory} за указанный интервал.
      */
-    List<ExchangeDateSnapshot> loadMarketHistory(LocalDate from, LocalDate to);
+    MarketHistory loadMarketHistory(LocalDate from, LocalDate to);
+
+    /**
+     * Загружает историю сделок за интервал так же, как {@link #loadMarketHistory(LocalDate, LocalDate)},
+     * но не меняет {@link #lastLoadMarketHistory()}. Используется фоновыми расчётами, например скринером,
+     * которые не должны подменять историю, загруженную пользователем.
+     *
+     * @param from Дата начала временного интервала.
+     * @param to Дата окончания временного интервала.
+     * @return Новый неизменяемый снимок {@link MarketHistory} за указанный интервал.
+     */
+    MarketHistory fetchMarketHistory(LocalDate from, LocalDate to);
+
+    /**
+     * Загружает внутридневные свечи ценной бумаги за интервал дат.
+     * <p>Свечи не сохраняются в бумаге: каждый вызов возвращает собственный неизменяемый ряд. Статистики по нему
+     * считаются теми же методами {@link ru.mslotvi.util.MathUtil}, что и по дневной истории.</p>
+     *
+     * @param from Первый день интервала.
+     * @param to Последний день интервала включительно.
+     * @param interval Интервал свечей.
+     * @return Ряд свечей заданного интервала.
+     * @throws UnsupportedOperationException если биржа не отдаёт внутридневные данные, см. {@link #supportsCandles()}.
+     */
+    default CandleSeries loadCandles(LocalDate from, LocalDate to, CandleInterval interval) {
+        throw new UnsupportedOperationException("Intraday candles are not supported for " + secId());
+    }
+
+    /**
+     * @return {@code true}, если бумага отдаёт внутридневные свечи через {@link #loadCandles}.
+     */
+    default boolean supportsCandles() {
+        return false;
+    }
+
+    /**
+     * Возвращает дневной ряд цен последнего загруженного снимка истории.
+     *
+     * @return Ряд {@link PriceSeries}; пустой, если история ещё не загружалась.
+     */
+    default PriceSeries priceSeries() {
+        MarketHistory history = lastLoadMarketHistory();
+        return history != null ? history.series() : PriceSeries.EMPTY;
+    }
 
     /**
      * Рассчитывает стандартное отклонение для данной ценной бумаги.
-     * <p>Этот метод рассчитывает отклонение цен по сделкам ценной бумаги, что представляет собой риск этой бумаги на основе исторических данных.</p>
+     * <p>Этот метод рассчитывает отклонение цен по сделкам ценной бумаги, что представляет собой риск этой бумаги на основе исторических данных.
+     * Используется последний загруженный снимок истории, см. {@link #lastLoadMarketHistory()}.</p>
      *
      * @return Стандартное отклонение (риск) ценной бумаги.
      */
@@ -56,7 +101,8 @@ public interface ExchangeSecuritie extends Serializable {
 
     /**
      * Рассчитывает ожидаемую доходность для данной ценной бумаги.
-     * <p>Этот метод рассчитывает среднюю доходность по сделкам с ценной бумагой на основе исторических данных.</p>
+     * <p>Этот метод рассчитывает среднюю доходность по сделкам с ценной бумагой на основе исторических данных.
+     * Используется последний загруженный снимок истории, см. {@link #lastLoadMarketHistory()}.</p>
      *
      * @return Ожидаемая доходность ценной бумаги.
      */
@@ -4,14 +4,21 @@ import lombok.Getter;
 import lombok.experimental.Accessors;
 import lombok.extern.log4j.Log4j2;
 import org.springframework.stereotype.Service;
+import ru.mslotvi.config.PortfolioStoreConfig;
+import ru.mslotvi.data.GenerationRun;
+import ru.mslotvi.data.GenerationRunRepository;
+import ru.mslotvi.data.PortfolioBulkWriter;
 import ru.mslotvi.data.PortfolioRepository;
 import ru.mslotvi.data.StoragePortfolio;
 
 import java.time.Instant;
 import java.time.LocalDate;
+import java.time.Period;
+import java.util.ArrayList;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.Optional;
 import java.util.Set;
 
 @Log4j2
@@ -21,28 +28,100 @@ public class ExchangeService {
     private final Map<String, Exchange> exchanges = new HashMap<>();
 
     private final PortfolioRepository portfolioRepository;
+    private final PortfolioBulkWriter portfolioBulkWriter;
+    private final GenerationRunRepository generationRunRepository;
+    private final PortfolioStoreConfig portfolioStoreConfig;
+    private final PortfolioRevaluator portfolioRevaluator;
 
-    public ExchangeService(List<Exchange> exchanges, PortfolioRepository portfolioRepository) {
+    public ExchangeService(List<Exchange> exchanges, PortfolioRepository portfolioRepository,
+                           PortfolioBulkWriter portfolioBulkWriter, GenerationRunRepository generationRunRepository,
+                           PortfolioStoreConfig portfolioStoreConfig, PortfolioRevaluator portfolioRevaluator) {
         exchanges.forEach(this::registerExchange);
         this.portfolioRepository = portfolioRepository;
+        this.portfolioBulkWriter = portfolioBulkWriter;
+        this.generationRunRepository = generationRunRepository;
+        this.portfolioStoreConfig = portfolioStoreConfig;
+        this.portfolioRevaluator = portfolioRevaluator;
     }
 
+    /**
+     * Возвращает портфели, созданные в интервале: сохранённые построчно и портфели упакованных запусков
+     * {@link GenerationRun} в виде {@link StoragePortfolio} без идентификатора.
+     */
     public List<StoragePortfolio> getStoragePortfolios(Instant from, Instant to) {
-        return portfolioRepository.findByCreateDateBetween(from, to);
+        List<StoragePortfolio> result = new ArrayList<>(portfolioRepository.findByCreateDateBetween(from, to));
+        for (GenerationRun run : generationRunRepository.findByCreateDateBetween(from, to)) {
+            result.addAll(run.portfolios());
+        }
+        return result;
+    }
+
+
+    /**
+     * @return Запуск генерации с упакованными портфелями или пустой результат, если его нет.
+     */
+    public Optional<GenerationRun> findGenerationRun(long runId) {
+        return generationRunRepository.findById(runId);
     }
 
+    public CalculationResult<List<StoragePortfolio>> generatePortfolios(String exchangeId, LocalDate start, LocalDate end,
+                                                                        Set<String> ids, int amount) {
+        return generatePortfolios(exchangeId, start, end, ids, amount, Frequency.DAILY);
+    }
 
-    public List<StoragePortfolio> generatePortfolios(String exchangeId, LocalDate start, LocalDate end, Set<String> ids, int amount) {
+    /**
+     * Генерирует и сохраняет портфели.
+     *
+     * @return Сохранённые портфели и бумаги, история которых не загрузилась и в портфели не вошла.
+     */
+    public CalculationResult<List<StoragePortfolio>> generatePortfolios(String exchangeId, LocalDate start, LocalDate end,
+                                                                        Set<String> ids, int amount, Frequency frequency) {
         var exchange = exchanges.get(exchangeId);
         if (exchange == null) {
             throw new IllegalArgumentException("No exchange with id " + exchangeId + " found");
         }
 
-        var calculator = exchange.createPortfolioCalculator(ids, start, end);
+        var calculator = exchange.createPortfolioCalculator(ids, start, end, frequency);
         calculator.generatePortfolios(amount);
+        if (portfolioStoreConfig.getStorage() == PortfolioStoreConfig.Storage.RUNS) {
+            // Портфели запуска не имеют собственных идентификаторов, поэтому не переоцениваются.
+            List<GenerationRun> runs = generationRunRepository.saveAll(GenerationRun.chunked(exchangeId, start, end, frequency,
+                    calculator.getPortfolios(), portfolioStoreConfig.getWeightEncoding(),
+                    portfolioStoreConfig.getMaxRunSize().toBytes()));
+            List<StoragePortfolio> result = new ArrayList<>();
+            for (GenerationRun run : runs) {
+                log.debug("Stored generation run {}: {} portfolios in {} bytes", run.id(), run.portfolioCount(), run.packedBytes());
+                result.addAll(run.portfolios());
+            }
+            return CalculationResult.of(result, calculator);
+        }
         var result = calculator.getPortfolios().stream().map(Portfolio::toStoragePortfolio).toList();
-        portfolioRepository.saveAll(result);
-        return result;
+        portfolioBulkWriter.saveAll(result);
+        portfolioRevaluator.register(result);
+        return CalculationResult.of(result, calculator);
+    }
+
+    public CalculationResult<List<Portfolio>> generateResampledFrontier(String exchangeId, LocalDate start, LocalDate end, Set<String> ids,
+                                                     int amount, int resamples, int precision, Frequency frequency) {
+        var exchange = exchanges.get(exchangeId);
+        if (exchange == null) {
+            throw new IllegalArgumentException("No exchange with id " + exchangeId + " found");
+        }
+
+        var calculator = exchange.createPortfolioCalculator(ids, start, end, frequency);
+        return CalculationResult.of(calculator.calculateResampledFrontier(resamples, amount, precision), calculator);
+    }
+
+    public CalculationResult<List<FrontierCurve>> generateRollingFrontiers(String exchangeId, LocalDate start, LocalDate end, Set<String> ids,
+                                                        Period window, Period step, int amount, int precision,
+                                                        Frequency frequency) {
+        var exchange = exchanges.get(exchangeId);
+        if (exchange == null) {
+            throw new IllegalArgumentException("No exchange with id " + exchangeId + " found");
+        }
+
+        var calculator = exchange.createPortfolioCalculator(ids, start, end, frequency);
+        return CalculationResult.of(calculator.calculateRollingFrontiers(window, step, amount, precision), calculator);
     }
 
     public void registerExchange(Exchange exchange) {
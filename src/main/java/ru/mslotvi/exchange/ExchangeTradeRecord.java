@@ -50,7 +50,7 @@ public interface ExchangeTradeRecord {
      *
      * @return Количество сделок.
      */
-    Double с();
+    Double numTrades();
 
     /**
      * Получает общую стоимость сделок по данной ценной бумаге за торговый день.
@@ -68,6 +68,27 @@ public interface ExchangeTradeRecord {
      */
     Double volume();
 
+    /**
+     * Получает цену открытия ценной бумаги в начале торгового дня.
+     *
+     * @return Цена открытия или {@code null}, если торгов не было.
+     */
+    Double open();
+
+    /**
+     * Получает максимальную цену ценной бумаги за торговый день.
+     *
+     * @return Максимальная цена или {@code null}, если торгов не было.
+     */
+    Double high();
+
+    /**
+     * Получает минимальную цену ценной бумаги за торговый день.
+     *
+     * @return Минимальная цена или {@code null}, если торгов не было.
+     */
+    Double low();
+
     /**
      * Получает цену закрытия ценной бумаги по результатам торгов в конце дня.
      * <p>Цена закрытия является последней ценой, по которой была заключена сделка в конце торгового дня.</p>
@@ -0,0 +1,29 @@
+package ru.mslotvi.exchange;
+
+import java.time.DayOfWeek;
+import java.time.LocalDate;
+
+/**
+ * Частота наблюдений, с которой ведутся расчёты по истории торгов.
+ * <p>Дневные расчёты читают дневной ряд {@link PriceSeries}, а недельные и месячные — уровни {@link SeriesPyramid}:
+ * агрегированные бары, а не все дневные записи.</p>
+ */
+public enum Frequency {
+    DAILY,
+    WEEKLY,
+    MONTHLY;
+
+    /**
+     * Возвращает первый день периода, в который попадает торговый день.
+     *
+     * @param epochDay Торговый день в виде {@link LocalDate#toEpochDay()}.
+     * @return Начало периода в виде {@link LocalDate#toEpochDay()}.
+     */
+    public int periodStart(int epochDay) {
+        return switch (this) {
+            case DAILY -> epochDay;
+            case WEEKLY -> epochDay - (LocalDate.ofEpochDay(epochDay).getDayOfWeek().getValue() - DayOfWeek.MONDAY.getValue());
+            case MONTHLY -> (int) LocalDate.ofEpochDay(epochDay).withDayOfMonth(1).toEpochDay();
+        };
+    }
+}
@@ -0,0 +1,15 @@
+package ru.mslotvi.exchange;
+
+import java.time.LocalDate;
+
+/**
+ * Компактное представление эффективной линии за один период.
+ * <p>Точки линии хранятся в двух параллельных массивах, упорядоченных по возрастанию риска.</p>
+ *
+ * @param from Первый торговый день окна.
+ * @param to Последний торговый день окна.
+ * @param risks Риск (стандартное отклонение) точек линии.
+ * @param expectedReturns Ожидаемая доходность точек линии.
+ */
+public record FrontierCurve(LocalDate from, LocalDate to, double[] risks, double[] expectedReturns) {
+}
@@ -0,0 +1,93 @@
+package ru.mslotvi.exchange;
+
+import lombok.extern.log4j.Log4j2;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+
+/**
+ * Результат загрузки истории торгов по набору ценных бумаг.
+ * <p>Ошибка загрузки одной бумаги не прерывает загрузку остальных: успешно загруженные бумаги
+ * попадают в {@code loaded}, а причины ошибок — в {@code failures} по идентификатору бумаги.</p>
+ *
+ * @param loaded Снимки загруженной истории в исходном порядке бумаг.
+ * @param failures Ошибки загрузки по идентификатору ценной бумаги.
+ */
+@Log4j2
+public record HistoryLoadResult(List<MarketHistory> loaded, Map<String, Throwable> failures) {
+
+    /**
+     * Загрузка истории одной бумаги.
+     */
+    @FunctionalInterface
+    public interface Loader {
+        MarketHistory load(ExchangeSecuritie securitie) throws Exception;
+    }
+
+    /**
+     * Загружает историю бумаг на заданном исполнителе и собирает результат.
+     * <p>Выбор исполнителя и ограничение параллельности остаются за биржей; здесь задачи только ставятся
+     * в очередь и их итоги раскладываются по загруженным снимкам и ошибкам.</p>
+     *
+     * @param securities Ценные бумаги для загрузки.
+     * @param executor Исполнитель задач загрузки; закрывает его вызывающий.
+     * @param load Загрузка истории одной бумаги.
+     * @return Снимки загруженной истории и ошибки по остальным бумагам.
+     */
+    public static HistoryLoadResult collect(List<? extends ExchangeSecuritie> securities, ExecutorService executor,
+                                            Loader load) {
+        List<Future<MarketHistory>> futures = new ArrayList<>(securities.size());
+        for (ExchangeSecuritie securitie : securities) {
+            futures.add(executor.submit(() -> load.load(securitie)));
+        }
+
+        List<MarketHistory> loaded = new ArrayList<>();
+        Map<String, Throwable> failures = new LinkedHashMap<>();
+        for (int i = 0; i < futures.size(); i++) {
+            ExchangeSecuritie securitie = securities.get(i);
+            try {
+                loaded.add(futures.get(i).get());
+            } catch (ExecutionException e) {
+                failures.put(securitie.secId(), e.getCause());
+                log.warn("Failed to load market history for {}", securitie.secId(), e.getCause());
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                failures.put(securitie.secId(), e);
+            }
+        }
+        return new HistoryLoadResult(loaded, failures);
+    }
+
+    /**
+     * Создаёт калькулятор по загруженным бумагам, передавая ему ошибки остальных.
+     *
+     * @param frequency Частота наблюдений.
+     * @return Калькулятор портфелей.
+     * @throws IllegalStateException если не загрузилась ни одна бумага.
+     */
+    public PortfolioCalculator calculator(Frequency frequency) {
+        if (loaded.isEmpty() && hasFailures()) {
+            throw new IllegalStateException("Failed to load market history for " + failures.keySet());
+        }
+        return new PortfolioCalculator(loaded, frequency, failureMessages());
+    }
+
+    public boolean hasFailures() {
+        return !failures.isEmpty();
+    }
+
+    /**
+     * @return Причины ошибок в виде сообщений для ответов API, в исходном порядке бумаг.
+     */
+    public Map<String, String> failureMessages() {
+        Map<String, String> messages = new LinkedHashMap<>();
+        failures.forEach((secId, error) -> messages.put(secId,
+                error.getMessage() != null ? error.getMessage() : error.getClass().getSimpleName()));
+        return messages;
+    }
+}
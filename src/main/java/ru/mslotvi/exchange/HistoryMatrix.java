@@ -0,0 +1,212 @@
+package ru.mslotvi.exchange;
+
+import java.time.LocalDate;
+import java.util.*;
+
+/**
+ * Матрица исторических наблюдений, выровненная по общим торговым дням всех ценных бумаг.
+ * <p>Строка матрицы соответствует торговому дню, столбец — ценной бумаге из списка {@code companies}.
+ * Значения хранятся в одном плоском массиве (row-major), поэтому матрица строится один раз и затем
+ * используется повторно: выборки задаются массивом индексов строк, без копирования данных.</p>
+ *
+ * <p>В качестве наблюдений используются те же цены закрытия, по которым считает {@link ru.mslotvi.util.MathUtil}.</p>
+ */
+public final class HistoryMatrix {
+
+    private final List<ExchangeSecuritie> companies;
+    private final LocalDate[] dates;
+    private final double[] values;
+    private final int rows;
+    private final int columns;
+
+    private HistoryMatrix(List<ExchangeSecuritie> companies, LocalDate[] dates, double[] values) {
+        this.companies = companies;
+        this.dates = dates;
+        this.values = values;
+        this.rows = dates.length;
+        this.columns = companies.size();
+    }
+
+    /**
+     * Строит матрицу по снимкам дневной истории ценных бумаг.
+     *
+     * @see #of(List, Frequency)
+     */
+    public static HistoryMatrix of(List<MarketHistory> histories) {
+        return of(histories, Frequency.DAILY);
+    }
+
+    /**
+     * Строит матрицу по снимкам истории ценных бумаг с заданной частотой.
+     * <p>В матрицу попадают только периоды, в которые у всех бумаг есть цена закрытия.
+     * Датой строки считается начало периода.</p>
+     *
+     * @param histories Снимки истории ценных бумаг.
+     * @param frequency Частота наблюдений.
+     * @return Выровненная матрица наблюдений.
+     * @throws IllegalArgumentException если общих периодов меньше двух.
+     */
+    public static HistoryMatrix of(List<MarketHistory> histories, Frequency frequency) {
+        int n = histories.size();
+        TreeMap<Integer, double[]> rowsByPeriod = new TreeMap<>();
+
+        for (int column = 0; column < n; column++) {
+            CloseSeries bars = histories.get(column).bars(frequency);
+            for (int i = 0; i < bars.size(); i++) {
+                rowsByPeriod.computeIfAbsent(bars.key(i), d -> {
+                    double[] row = new double[n];
+                    Arrays.fill(row, Double.NaN);
+                    return row;
+                })[column] = bars.close(i);
+            }
+        }
+
+        List<LocalDate> commonDates = new ArrayList<>();
+        List<double[]> commonRows = new ArrayList<>();
+        for (Map.Entry<Integer, double[]> entry : rowsByPeriod.entrySet()) {
+            if (Arrays.stream(entry.getValue()).noneMatch(Double::isNaN)) {
+                commonDates.add(LocalDate.ofEpochDay(entry.getKey()));
+                commonRows.add(entry.getValue());
+            }
+        }
+
+        if (commonDates.size() < 2) {
+            throw new IllegalArgumentException("Нет общих дней торговли между компаниями.");
+        }
+
+        double[] values = new double[commonRows.size() * n];
+        for (int row = 0; row < commonRows.size(); row++) {
+            System.arraycopy(commonRows.get(row), 0, values, row * n, n);
+        }
+        List<ExchangeSecuritie> companies = histories.stream().map(MarketHistory::securitie).toList();
+        return new HistoryMatrix(companies, commonDates.toArray(LocalDate[]::new), values);
+    }
+
+    /**
+     * Строит матрицу простых доходностей {@code close / prevClose - 1} между соседними строками.
+     * <p>Строка {@code i} результата описывает изменение цены от строки {@code i} до строки {@code i + 1}
+     * этой матрицы, а её датой считается дата строки {@code i + 1}.</p>
+     *
+     * @return Матрица доходностей на одну строку короче.
+     * @throws IllegalArgumentException если доходностей получается меньше двух.
+     */
+    public HistoryMatrix returns() {
+        if (rows < 3) {
+            throw new IllegalArgumentException("Недостаточно общих дней торговли для расчёта доходностей.");
+        }
+        double[] result = new double[(rows - 1) * columns];
+        for (int row = 1; row < rows; row++) {
+            int offset = row * columns;
+            int previous = offset - columns;
+            for (int j = 0; j < columns; j++) {
+                // Строка доходности row - 1 лежит в результате по тому же смещению, что и предыдущая строка цен.
+                result[previous + j] = values[offset + j] / values[previous + j] - 1;
+            }
+        }
+        return new HistoryMatrix(companies, Arrays.copyOfRange(dates, 1, rows), result);
+    }
+
+    public List<ExchangeSecuritie> companies() {
+        return companies;
+    }
+
+    public int rows() {
+        return rows;
+    }
+
+    public int columns() {
+        return columns;
+    }
+
+    public LocalDate date(int row) {
+        return dates[row];
+    }
+
+    public double get(int row, int column) {
+        return values[row * columns + column];
+    }
+
+    /**
+     * Находит первую строку, дата которой не раньше заданной.
+     *
+     * @param date Искомая дата.
+     * @return Индекс строки в диапазоне [0, {@link #rows()}].
+     */
+    public int lowerBound(LocalDate date) {
+        int low = 0;
+        int high = rows;
+        while (low < high) {
+            int middle = (low + high) >>> 1;
+            if (dates[middle].isBefore(date)) {
+                low = middle + 1;
+            } else {
+                high = middle;
+            }
+        }
+        return low;
+    }
+
+    /**
+     * Возвращает индексы всех строк матрицы по порядку.
+     */
+    public int[] allRows() {
+        int[] indices = new int[rows];
+        for (int i = 0; i < rows; i++) {
+            indices[i] = i;
+        }
+        return indices;
+    }
+
+    /**
+     * Рассчитывает средние значения по столбцам для выборки строк.
+     *
+     * @param rowIndices Индексы строк выборки (могут повторяться).
+     * @return Массив средних значений длиной {@link #columns()}.
+     */
+    public double[] mean(int[] rowIndices) {
+        double[] mean = new double[columns];
+        for (int row : rowIndices) {
+            int offset = row * columns;
+            for (int j = 0; j < columns; j++) {
+                mean[j] += values[offset + j];
+            }
+        }
+        for (int j = 0; j < columns; j++) {
+            mean[j] /= rowIndices.length;
+        }
+        return mean;
+    }
+
+    /**
+     * Рассчитывает выборочную ковариационную матрицу для выборки строк.
+     *
+     * @param rowIndices Индексы строк выборки (могут повторяться).
+     * @param mean Средние значения по той же выборке, см. {@link #mean(int[])}.
+     * @return Симметричная ковариационная матрица размера {@link #columns()} x {@link #columns()}.
+     */
+    public double[][] covariance(int[] rowIndices, double[] mean) {
+        double[][] covariance = new double[columns][columns];
+        double[] deviation = new double[columns];
+        for (int row : rowIndices) {
+            int offset = row * columns;
+            for (int j = 0; j < columns; j++) {
+                deviation[j] = values[offset + j] - mean[j];
+            }
+            for (int i = 0; i < columns; i++) {
+                double di = deviation[i];
+                double[] covarianceRow = covariance[i];
+                for (int j = i; j < columns; j++) {
+                    covarianceRow[j] += di * deviation[j];
+                }
+            }
+        }
+        int denominator = Math.max(rowIndices.length - 1, 1);
+        for (int i = 0; i < columns; i++) {
+            for (int j = i; j < columns; j++) {
+                covariance[i][j] /= denominator;
+                covariance[j][i] = covariance[i][j];
+            }
+        }
+        return covariance;
+    }
+}
@@ -0,0 +1,78 @@
+package ru.mslotvi.exchange;
+
+import java.time.LocalDate;
+import java.util.List;
+
+/**
+ * Неизменяемый снимок истории торгов одной ценной бумаги за заданный интервал.
+ * <p>Каждая загрузка истории создаёт новый снимок, который принадлежит вызвавшему её расчёту. Снимок
+ * не меняется после создания, поэтому расчёты по одной и той же бумаге с разными интервалами дат
+ * выполняются параллельно и не влияют друг на друга.</p>
+ *
+ * <p>Дневной ряд {@link PriceSeries} строится один раз при создании снимка: страницы истории упорядочиваются
+ * и очищаются от повторов дней, после чего не хранятся. Дневные расчёты читают этот ряд напрямую,
+ * а недельные и месячные бары {@link SeriesPyramid} строятся по нему при первом обращении.</p>
+ */
+public final class MarketHistory {
+
+    private final ExchangeSecuritie securitie;
+    private final LocalDate from;
+    private final LocalDate to;
+    private final PriceSeries series;
+    private final SeriesPyramid pyramid;
+
+    private MarketHistory(ExchangeSecuritie securitie, LocalDate from, LocalDate to, PriceSeries series) {
+        this.securitie = securitie;
+        this.from = from;
+        this.to = to;
+        this.series = series;
+        this.pyramid = new SeriesPyramid(series);
+    }
+
+    /**
+     * Создаёт снимок истории.
+     *
+     * @param securitie Ценная бумага.
+     * @param from Дата начала интервала.
+     * @param to Дата окончания интервала.
+     * @param snapshots Страницы истории в порядке дат.
+     * @return Неизменяемый снимок истории.
+     */
+    public static MarketHistory of(ExchangeSecuritie securitie, LocalDate from, LocalDate to,
+                                   List<? extends ExchangeDateSnapshot> snapshots) {
+        return new MarketHistory(securitie, from, to, PriceSeries.of(snapshots));
+    }
+
+    public ExchangeSecuritie securitie() {
+        return securitie;
+    }
+
+    public String secId() {
+        return securitie.secId();
+    }
+
+    public LocalDate from() {
+        return from;
+    }
+
+    public LocalDate to() {
+        return to;
+    }
+
+    /**
+     * @return Дневной ряд цен, объёма, оборота и количества сделок.
+     */
+    public PriceSeries series() {
+        return series;
+    }
+
+    /**
+     * Возвращает историю, агрегированную с заданной частотой. Возвращаемый ряд не должен изменяться.
+     *
+     * @param frequency Частота наблюдений.
+     * @return Дневной ряд {@link #series()} или ряд баров {@link PriceBars} заданной частоты.
+     */
+    public CloseSeries bars(Frequency frequency) {
+        return frequency == Frequency.DAILY ? series : pyramid.level(frequency);
+    }
+}
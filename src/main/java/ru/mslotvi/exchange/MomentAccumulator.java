@@ -0,0 +1,111 @@
+package ru.mslotvi.exchange;
+
+import java.util.Arrays;
+
+/**
+ * Накопитель первых и вторых моментов по строкам {@link HistoryMatrix}.
+ * <p>Хранит суммы значений и попарных произведений, поэтому строки можно добавлять и удалять по одной:
+ * при сдвиге скользящего окна пересчитываются только вошедшие и вышедшие дни, а не всё окно.</p>
+ *
+ * <p>Каждое удаление оставляет в суммах ошибку округления, которая накапливается по длинному ряду, поэтому
+ * после {@link #REANCHOR_REMOVALS} удалений суммы следует пересчитать заново через {@link #reset(int, int)},
+ * см. {@link #drifted()}.</p>
+ *
+ * <p>Экземпляр не потокобезопасен: окно сдвигается последовательно, а для параллельных расчётов
+ * из него снимаются независимые копии через {@link #mean()} и {@link #covariance()}.</p>
+ */
+public final class MomentAccumulator {
+
+    /**
+     * Количество удалённых строк, после которого суммы пересчитываются заново.
+     */
+    public static final int REANCHOR_REMOVALS = 1024;
+
+    private final HistoryMatrix matrix;
+    private final int columns;
+    private final double[] sums;
+    private final double[] productSums;
+    private int count;
+    private int removals;
+
+    public MomentAccumulator(HistoryMatrix matrix) {
+        this.matrix = matrix;
+        this.columns = matrix.columns();
+        this.sums = new double[columns];
+        this.productSums = new double[columns * columns];
+    }
+
+    public void add(int row) {
+        update(row, 1);
+        count++;
+    }
+
+    public void remove(int row) {
+        update(row, -1);
+        count--;
+        removals++;
+    }
+
+    /**
+     * Пересчитывает суммы заново по строкам {@code [from, to)}, отбрасывая накопленную ошибку округления.
+     */
+    public void reset(int from, int to) {
+        Arrays.fill(sums, 0);
+        Arrays.fill(productSums, 0);
+        count = 0;
+        removals = 0;
+        for (int row = from; row < to; row++) {
+            add(row);
+        }
+    }
+
+    /**
+     * @return {@code true}, если с последнего {@link #reset(int, int)} удалено не меньше
+     * {@link #REANCHOR_REMOVALS} строк.
+     */
+    public boolean drifted() {
+        return removals >= REANCHOR_REMOVALS;
+    }
+
+    private void update(int row, double sign) {
+        for (int i = 0; i < columns; i++) {
+            double xi = matrix.get(row, i);
+            sums[i] += sign * xi;
+            int offset = i * columns;
+            for (int j = i; j < columns; j++) {
+                productSums[offset + j] += sign * xi * matrix.get(row, j);
+            }
+        }
+    }
+
+    public int count() {
+        return count;
+    }
+
+    /**
+     * @return Средние значения по столбцам для текущего набора строк.
+     */
+    public double[] mean() {
+        double[] mean = new double[columns];
+        for (int i = 0; i < columns; i++) {
+            mean[i] = sums[i] / count;
+        }
+        return mean;
+    }
+
+    /**
+     * @return Выборочная ковариационная матрица для текущего набора строк.
+     */
+    public double[][] covariance() {
+        double[][] covariance = new double[columns][columns];
+        int denominator = Math.max(count - 1, 1);
+        for (int i = 0; i < columns; i++) {
+            for (int j = i; j < columns; j++) {
+                double value = (productSums[i * columns + j] - sums[i] * sums[j] / count) / denominator;
+                covariance[i][j] = value;
+                covariance[j][i] = value;
+            }
+        }
+        return covariance;
+    }
+}
@@ -3,16 +3,45 @@ package ru.mslotvi.exchange;
 import lombok.Getter;
 import ru.mslotvi.util.MathUtil;
 
+import java.time.LocalDate;
+import java.time.Period;
 import java.util.*;
+import java.util.stream.IntStream;
 
 @Getter
 public class PortfolioCalculator {
 
+    private final List<MarketHistory> histories;
     private final List<ExchangeSecuritie> companies;
+    private final Frequency frequency;
+    /**
+     * Бумаги запроса, история которых не загрузилась и в расчёт не вошла, с причиной ошибки.
+     */
+    private final Map<String, String> failures;
     private final List<Portfolio> portfolios = new ArrayList<>();
 
-    public PortfolioCalculator(List<ExchangeSecuritie> companies) {
-        this.companies = companies;
+    public PortfolioCalculator(List<MarketHistory> histories) {
+        this(histories, Frequency.DAILY);
+    }
+
+    /**
+     * @param histories Снимки истории ценных бумаг, принадлежащие этому расчёту.
+     * @param frequency Частота наблюдений.
+     */
+    public PortfolioCalculator(List<MarketHistory> histories, Frequency frequency) {
+        this(histories, frequency, Map.of());
+    }
+
+    /**
+     * @param histories Снимки истории ценных бумаг, принадлежащие этому расчёту.
+     * @param frequency Частота наблюдений.
+     * @param failures Бумаги, история которых не загрузилась, с причиной ошибки.
+     */
+    public PortfolioCalculator(List<MarketHistory> histories, Frequency frequency, Map<String, String> failures) {
+        this.histories = List.copyOf(histories);
+        this.companies = this.histories.stream().map(MarketHistory::securitie).toList();
+        this.frequency = frequency;
+        this.failures = Collections.unmodifiableMap(new LinkedHashMap<>(failures));
     }
     /**
      * Метод для вычисления эффективной линии на основе существующих портфелей.
@@ -29,6 +58,194 @@ public class PortfolioCalculator {
         return MathUtil.calculateEfficientFrontier(this.portfolios, precision);
     }
 
+    /**
+     * Строит ресемплированную (bootstrap) эффективную линию.
+     *
+     * <p>Цены закрытия один раз выравниваются в {@link HistoryMatrix} и переводятся в доходности за период
+     * ({@code close / prevClose - 1}, см. {@link HistoryMatrix#returns()}). Затем {@code resamples} раз из истории
+     * доходностей выбираются строки с возвращением (выборка задаётся только массивом индексов, данные не копируются),
+     * по каждой выборке пересчитываются средние и ковариации, генерируется {@code amount} случайных портфелей
+     * и строится эффективная линия. Выборки независимы, поэтому обрабатываются параллельно на всех ядрах.</p>
+     *
+     * <p>Веса портфелей эффективных линий усредняются по уровням риска (риск округляется до {@code precision}
+     * знаков). Доходность и риск усреднённых портфелей пересчитываются по полной истории доходностей.</p>
+     *
+     * @param resamples Количество bootstrap-выборок.
+     * @param amount Количество случайных портфелей на одну выборку.
+     * @param precision Количество знаков после запятой, до которых округляется риск.
+     * @return Портфели ресемплированной эффективной линии, упорядоченные по возрастанию риска.
+     * @throws IllegalArgumentException если {@code resamples} или {@code amount} меньше 1 либо общих периодов
+     *                                  меньше трёх.
+     */
+    public List<Portfolio> calculateResampledFrontier(int resamples, int amount, int precision) {
+        if (resamples < 1 || amount < 1) {
+            throw new IllegalArgumentException("resamples and amount must be >= 1");
+        }
+        HistoryMatrix matrix = HistoryMatrix.of(histories, frequency).returns();
+
+        SplittableRandom root = new SplittableRandom();
+        SplittableRandom[] randoms = new SplittableRandom[resamples];
+        for (int b = 0; b < resamples; b++) {
+            randoms[b] = root.split();
+        }
+
+        List<Map<Double, double[]>> frontiers = IntStream.range(0, resamples)
+                .parallel()
+                .mapToObj(b -> resampledFrontier(matrix, randoms[b], amount, precision))
+                .toList();
+
+        Map<Double, double[]> weightSums = new TreeMap<>();
+        Map<Double, Integer> counts = new HashMap<>();
+        for (Map<Double, double[]> frontier : frontiers) {
+            frontier.forEach((risk, weights) -> {
+                double[] sum = weightSums.computeIfAbsent(risk, r -> new double[weights.length]);
+                for (int i = 0; i < weights.length; i++) {
+                    sum[i] += weights[i];
+                }
+                counts.merge(risk, 1, Integer::sum);
+            });
+        }
+
+        int[] allRows = matrix.allRows();
+        double[] expectedReturns = matrix.mean(allRows);
+        double[][] covarianceMatrix = matrix.covariance(allRows, expectedReturns);
+
+        List<Portfolio> result = new ArrayList<>(weightSums.size());
+        weightSums.forEach((risk, sum) -> {
+            double[] weights = new double[sum.length];
+            int count = counts.get(risk);
+            for (int i = 0; i < sum.length; i++) {
+                weights[i] = sum[i] / count;
+            }
+            result.add(toPortfolio(matrix.companies(), weights,
+                    MathUtil.portfolioReturn(weights, expectedReturns),
+                    MathUtil.portfolioRisk(weights, covarianceMatrix)));
+        });
+        return result;
+    }
+
+    /**
+     * Строит ряд эффективных линий по скользящему окну.
+     *
+     * <p>История загружается один раз на весь интервал. Окно длиной {@code window} сдвигается на {@code step},
+     * начиная с первого общего торгового дня; суммы в {@link MomentAccumulator} обновляются только по вошедшим
+     * и вышедшим дням. Снятые для каждого окна моменты затем обрабатываются параллельно.</p>
+     *
+     * @param window Длина окна, например {@code P1Y}.
+     * @param step Шаг сдвига окна, например {@code P1M}.
+     * @param amount Количество случайных портфелей на одно окно.
+     * @param precision Количество знаков после запятой, до которых округляется риск.
+     * @return Эффективные линии по окнам в хронологическом порядке.
+     * @throws IllegalArgumentException если окно или шаг не положительные, либо {@code amount} меньше 1.
+     */
+    public List<FrontierCurve> calculateRollingFrontiers(Period window, Period step, int amount, int precision) {
+        if (window.isZero() || window.isNegative() || step.isZero() || step.isNegative() || amount < 1) {
+            throw new IllegalArgumentException("window and step must be positive, amount must be >= 1");
+        }
+        HistoryMatrix matrix = HistoryMatrix.of(histories, frequency);
+        LocalDate last = matrix.date(matrix.rows() - 1);
+
+        record WindowMoments(LocalDate from, LocalDate to, double[] mean, double[][] covariance) {
+        }
+
+        List<WindowMoments> windows = new ArrayList<>();
+        MomentAccumulator accumulator = new MomentAccumulator(matrix);
+        int low = 0;
+        int high = 0;
+        // Начало окна отсчитывается от первой даты, а не от предыдущего окна: шаг в месяцах не сползает
+        // к концу коротких месяцев (31 января + 1 месяц + 1 месяц = 28 марта).
+        LocalDate origin = matrix.date(0);
+        for (int k = 0; ; k++) {
+            LocalDate from = origin.plus(step.multipliedBy(k));
+            if (from.plus(window).isAfter(last.plusDays(1))) {
+                break;
+            }
+            int newLow = matrix.lowerBound(from);
+            int newHigh = matrix.lowerBound(from.plus(window));
+            if (newLow >= high) {
+                // Окна не пересекаются — начинаем накопление заново с нового окна.
+                accumulator.reset(newLow, newLow);
+                low = high = newLow;
+            }
+            while (high < newHigh) {
+                accumulator.add(high++);
+            }
+            while (low < newLow) {
+                accumulator.remove(low++);
+            }
+            if (accumulator.drifted()) {
+                accumulator.reset(low, high);
+            }
+            if (accumulator.count() > 1) {
+                windows.add(new WindowMoments(matrix.date(low), matrix.date(high - 1),
+                        accumulator.mean(), accumulator.covariance()));
+            }
+        }
+
+        return windows.parallelStream()
+                .map(w -> frontierCurve(w.from(), w.to(), w.mean(), w.covariance(), amount, precision))
+                .toList();
+    }
+
+    private static FrontierCurve frontierCurve(LocalDate from, LocalDate to, double[] expectedReturns,
+                                               double[][] covarianceMatrix, int amount, int precision) {
+        SplittableRandom random = new SplittableRandom();
+        TreeMap<Double, Double> bestReturns = new TreeMap<>();
+        for (int p = 0; p < amount; p++) {
+            double[] weights = MathUtil.randomWeights(random, expectedReturns.length);
+            double portfolioReturn = MathUtil.portfolioReturn(weights, expectedReturns);
+            double roundedRisk = MathUtil.roundToPrecision(MathUtil.portfolioRisk(weights, covarianceMatrix), precision);
+            bestReturns.merge(roundedRisk, portfolioReturn, Math::max);
+        }
+
+        double[] risks = new double[bestReturns.size()];
+        double[] returns = new double[bestReturns.size()];
+        int i = 0;
+        for (Map.Entry<Double, Double> entry : bestReturns.entrySet()) {
+            risks[i] = entry.getKey();
+            returns[i] = entry.getValue();
+            i++;
+        }
+        return new FrontierCurve(from, to, risks, returns);
+    }
+
+    /**
+     * Строит эффективную линию по одной bootstrap-выборке строк матрицы доходностей.
+     *
+     * @return Карта: округлённый риск → веса лучшего по доходности портфеля с этим риском.
+     */
+    private static Map<Double, double[]> resampledFrontier(HistoryMatrix matrix, SplittableRandom random, int amount, int precision) {
+        int[] sample = new int[matrix.rows()];
+        for (int i = 0; i < sample.length; i++) {
+            sample[i] = random.nextInt(matrix.rows());
+        }
+        double[] expectedReturns = matrix.mean(sample);
+        double[][] covarianceMatrix = matrix.covariance(sample, expectedReturns);
+
+        Map<Double, double[]> bestWeights = new HashMap<>();
+        Map<Double, Double> bestReturns = new HashMap<>();
+        for (int p = 0; p < amount; p++) {
+            double[] weights = MathUtil.randomWeights(random, matrix.columns());
+            double portfolioReturn = MathUtil.portfolioReturn(weights, expectedReturns);
+            double roundedRisk = MathUtil.roundToPrecision(MathUtil.portfolioRisk(weights, covarianceMatrix), precision);
+
+            Double best = bestReturns.get(roundedRisk);
+            if (best == null || best < portfolioReturn) {
+                bestReturns.put(roundedRisk, portfolioReturn);
+                bestWeights.put(roundedRisk, weights);
+            }
+        }
+        return bestWeights;
+    }
+
+    private static Portfolio toPortfolio(List<ExchangeSecuritie> companies, double[] weights, double expectedReturn, double risk) {
+        Map<ExchangeSecuritie, Double> weightMap = new HashMap<>();
+        for (int i = 0; i < companies.size(); i++) {
+            weightMap.put(companies.get(i), weights[i]);
+        }
+        return new Portfolio(weightMap, expectedReturn, risk);
+    }
+
     /**
      * Генерирует заданное количество случайных портфелей и добавляет их в список {@link List<Portfolio>}.
      *
@@ -90,13 +307,13 @@ public class PortfolioCalculator {
     private Portfolio generateRandomPortfolio() {
         double[] expectedReturnsArray = new double[companies.size()];
         for (int i = 0; i < companies.size(); i++) {
-            expectedReturnsArray[i] = companies.get(i).calculateExpectedReturn();
+            expectedReturnsArray[i] = MathUtil.calculateExpectedReturn(histories.get(i), frequency);
         }
 
         double[][] covarianceMatrix = new double[companies.size()][companies.size()];
         for (int i = 0; i < companies.size(); i++) {
             for (int j = 0; j < companies.size(); j++) {
-                covarianceMatrix[i][j] = MathUtil.computeCovariance(companies.get(i), companies.get(j)).covariance();
+                covarianceMatrix[i][j] = MathUtil.computeCovariance(histories.get(i), histories.get(j), frequency).covariance();
             }
         }
 
@@ -0,0 +1,729 @@
+package ru.mslotvi.exchange;
+
+import jakarta.annotation.PreDestroy;
+import lombok.extern.log4j.Log4j2;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import ru.mslotvi.config.RevaluationConfig;
+import ru.mslotvi.data.PortfolioLeg;
+import ru.mslotvi.data.PortfolioRepository;
+import ru.mslotvi.data.StoragePortfolio;
+
+import java.util.*;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Consumer;
+
+/**
+ * Переоценка сохранённых портфелей по текущим ценам.
+ * <p>Состав портфелей хранится в примитивных массивах сегментов ({@link Segment}): доли портфеля {@code p} сегмента
+ * занимают отрезок {@code [legStart[p], legStart[p + 1])}, а обратный индекс для каждой бумаги перечисляет портфели
+ * сегмента, в которые она входит. Когда приходят новые цены ({@link #update}), для изменившихся бумаг пересчитывается
+ * отношение текущей цены к цене закрытия предыдущего дня, по обратному индексу отмечаются зависящие от них портфели,
+ * и пересчитываются только они — в порядке номеров, одним проходом по их долям. Если изменилась большая часть рынка,
+ * все портфели сегмента пересчитываются подряд без отметок: последовательный проход по миллионам долей занимает
+ * миллисекунды. В обоих случаях изменившимися считаются только портфели, стоимость которых действительно изменилась.</p>
+ *
+ * <p>Стоимость портфеля — стоимость единицы капитала, вложенной по ценам закрытия предыдущего дня:
+ * {@code Σ weight × last / prevClose}. Пока цена бумаги неизвестна, она считается неизменной.</p>
+ *
+ * <p>Состав портфелей перечитывается из базы данных раз в {@link RevaluationConfig#getReloadInterval()} в один
+ * сегмент. Новые портфели добавляются сразу при сохранении ({@link #register}) отдельным небольшим сегментом, не
+ * копируя уже загруженные; накопившиеся сегменты сливаются, когда их становится больше {@link #MAX_SEGMENTS}.</p>
+ *
+ * <p>Подписчики ({@link #subscribe}) получают после каждого обновления цен новые оценки своих портфелей, если те
+ * изменились. Оценки отправляются не в потоке, применившем цены, а в отдельном виртуальном потоке каждой подписки,
+ * поэтому медленный подписчик не задерживает опрос цен.</p>
+ */
+@Log4j2
+@Component
+public class PortfolioRevaluator {
+
+    /**
+     * Если изменившиеся бумаги затрагивают не меньше {@code 1 / FULL_RECOMPUTE_RATIO} долей сегмента,
+     * пересчитываются все портфели сегмента подряд.
+     */
+    private static final int FULL_RECOMPUTE_RATIO = 4;
+
+    /**
+     * Количество сегментов, после которого сегменты новых портфелей сливаются в один.
+     */
+    private static final int MAX_SEGMENTS = 16;
+
+    /**
+     * Количество неотправленных обновлений подписчика, после которого подписка закрывается как слишком медленная.
+     */
+    private static final int MAX_PENDING_DELIVERIES = 64;
+
+    /**
+     * Подписка на оценки набора портфелей; закрытие подписки прекращает доставку.
+     * <p>Если подписку закрывает сам переоценщик, вызывается {@code onClose}, переданный в {@link #subscribe}.</p>
+     */
+    public final class Subscription implements AutoCloseable {
+
+        private final long[] portfolioIds;
+        private final Consumer<List<PortfolioValuation>> listener;
+        private final Consumer<Throwable> onClose;
+        private final Queue<List<PortfolioValuation>> pending = new ConcurrentLinkedQueue<>();
+        private final AtomicInteger pendingCount = new AtomicInteger();
+        private final AtomicBoolean draining = new AtomicBoolean();
+        private final AtomicBoolean closed = new AtomicBoolean();
+        /**
+         * Положение портфелей в сегментах {@link #resolvedFor}; изменяются только под блокировкой переоценщика.
+         */
+        private List<Segment> resolvedFor;
+        private int[] segmentIndexes;
+        private int[] indexes;
+
+        private Subscription(long[] portfolioIds, Consumer<List<PortfolioValuation>> listener,
+                             Consumer<Throwable> onClose) {
+            this.portfolioIds = portfolioIds;
+            this.listener = listener;
+            this.onClose = onClose;
+        }
+
+        /**
+         * Закрывает подписку по инициативе подписчика; {@code onClose} не вызывается.
+         */
+        @Override
+        public void close() {
+            if (closed.compareAndSet(false, true)) {
+                subscriptions.remove(this);
+                pending.clear();
+            }
+        }
+
+        /**
+         * Закрывает подписку по инициативе переоценщика и сообщает об этом подписчику.
+         *
+         * @param cause Причина или {@code null}, если доставка прекращена при остановке приложения.
+         */
+        private void terminate(Throwable cause) {
+            if (closed.compareAndSet(false, true)) {
+                subscriptions.remove(this);
+                pending.clear();
+                onClose.accept(cause);
+            }
+        }
+
+        private void enqueue(List<PortfolioValuation> valuations) {
+            if (closed.get()) {
+                return;
+            }
+            if (pendingCount.incrementAndGet() > MAX_PENDING_DELIVERIES) {
+                log.debug("Revaluation subscriber is too slow, unsubscribing");
+                terminate(new IllegalStateException("Revaluation subscriber fell more than "
+                        + MAX_PENDING_DELIVERIES + " updates behind"));
+                return;
+            }
+            pending.add(valuations);
+            drain();
+        }
+
+        /**
+         * Запускает отправку очереди, если она ещё не идёт; оценки одной подписки отправляются по порядку.
+         */
+        private void drain() {
+            if (!draining.compareAndSet(false, true)) {
+                return;
+            }
+            try {
+                deliveryExecutor.execute(() -> {
+                    try {
+                        List<PortfolioValuation> next;
+                        while (!closed.get() && (next = pending.poll()) != null) {
+                            pendingCount.decrementAndGet();
+                            listener.accept(next);
+                        }
+                    } catch (RuntimeException e) {
+                        log.debug("Revaluation subscriber failed, unsubscribing", e);
+                        terminate(e);
+                    } finally {
+                        draining.set(false);
+                    }
+                    if (!closed.get() && !pending.isEmpty()) {
+                        drain();
+                    }
+                });
+            } catch (RejectedExecutionException e) {
+                draining.set(false);
+                terminate(null);
+            }
+        }
+    }
+
+    private record Delivery(Subscription subscription, List<PortfolioValuation> valuations) {
+    }
+
+    private final RevaluationConfig config;
+    private final PortfolioRepository portfolioRepository;
+    private final List<Subscription> subscriptions = new CopyOnWriteArrayList<>();
+    private final ExecutorService deliveryExecutor = Executors.newVirtualThreadPerTaskExecutor();
+
+    // Состояние ниже защищено блокировкой на экземпляре; сегменты и список бумаг публикуются ещё и для чтения без неё.
+    private volatile List<Segment> segments = List.of();
+    private volatile List<String> referencedSecurities = List.of();
+    private final Map<String, Integer> securityIndex = new HashMap<>();
+    private final List<String> securityNames = new ArrayList<>();
+    private double[] last = new double[0];
+    private double[] base = new double[0];
+    private double[] ratio = new double[0];
+
+    private long ticks;
+    private long lastTickNanos;
+    private int lastRevalued;
+
+    public PortfolioRevaluator(RevaluationConfig config, PortfolioRepository portfolioRepository) {
+        this.config = config;
+        this.portfolioRepository = portfolioRepository;
+    }
+
+    public boolean enabled() {
+        return config.isEnabled();
+    }
+
+    @PreDestroy
+    public void close() {
+        deliveryExecutor.shutdownNow();
+        for (Subscription subscription : subscriptions) {
+            subscription.terminate(null);
+        }
+    }
+
+    /**
+     * @return Бумаги, входящие хотя бы в один портфель; цены нужны только для них.
+     */
+    public List<String> referencedSecurities() {
+        return referencedSecurities;
+    }
+
+    /**
+     * Перечитывает состав всех портфелей из базы данных частями по {@link RevaluationConfig#getReloadBatchSize()}
+     * в один сегмент. Известные цены бумаг сохраняются, бумаги, не входящие больше ни в один портфель, забываются.
+     */
+    @Scheduled(fixedDelayString = "${revaluation.reload-interval:PT15M}")
+    public void reload() {
+        if (!config.isEnabled()) {
+            return;
+        }
+        long maxId = portfolioRepository.findMaxId();
+        long batch = Math.max(config.getReloadBatchSize(), 1);
+        SegmentBuilder builder = new SegmentBuilder();
+        for (long afterId = 0; afterId < maxId; afterId += batch) {
+            for (PortfolioLeg leg : portfolioRepository.findLegs(afterId, Math.min(afterId + batch, maxId))) {
+                builder.add(leg.getPortfolioId(), leg.getSecId(), leg.getWeight());
+            }
+        }
+        synchronized (this) {
+            // Портфели, добавленные register() во время чтения, в прочитанный состав могли не попасть.
+            for (Segment segment : segments) {
+                builder.addAfter(segment, securityNames, maxId);
+            }
+            resetSecurities(builder.securities);
+            segments = List.of(install(builder));
+            referencedSecurities = List.copyOf(securityNames);
+        }
+        log.info("Revaluation book loaded: {} portfolios, {} legs, {} securities",
+                portfolios(), legs(), referencedSecurities.size());
+    }
+
+    /**
+     * Добавляет только что сохранённые портфели отдельным сегментом, не дожидаясь перезагрузки.
+     * <p>Работа пропорциональна количеству долей новых портфелей, а не всей книги. Портфели без идентификатора
+     * и с идентификатором не больше уже известных пропускаются до перезагрузки.</p>
+     */
+    public void register(Collection<StoragePortfolio> portfolios) {
+        if (!config.isEnabled() || portfolios.isEmpty()) {
+            return;
+        }
+        List<StoragePortfolio> sorted = portfolios.stream()
+                .filter(portfolio -> portfolio.id() != null)
+                .sorted(Comparator.comparing(StoragePortfolio::id))
+                .toList();
+        synchronized (this) {
+            List<Segment> current = segments;
+            long lastId = current.isEmpty() ? Long.MIN_VALUE : current.getLast().lastId();
+            SegmentBuilder builder = new SegmentBuilder();
+            for (StoragePortfolio portfolio : sorted) {
+                if (portfolio.id() > lastId) {
+                    portfolio.securities().forEach((secId, weight) -> builder.add(portfolio.id(), secId, weight));
+                }
+            }
+            if (builder.portfolios == 0) {
+                return;
+            }
+            List<Segment> next = new ArrayList<>(current);
+            next.add(install(builder));
+            segments = next.size() > MAX_SEGMENTS ? compact(next) : List.copyOf(next);
+            referencedSecurities = List.copyOf(securityNames);
+        }
+    }
+
+    /**
+     * Применяет новые цены и пересчитывает портфели, в которые входят изменившиеся бумаги.
+     *
+     * @param secIds Идентификаторы бумаг.
+     * @param lastPrices Текущие цены; {@link Double#NaN}, если торгов ещё не было и цена равна цене закрытия.
+     * @param basePrices Цены закрытия предыдущего дня; {@link Double#NaN} оставляет прежнюю.
+     * @param count Количество бумаг в массивах.
+     * @return Количество пересчитанных портфелей.
+     */
+    public int update(String[] secIds, double[] lastPrices, double[] basePrices, int count) {
+        List<Delivery> deliveries;
+        int revalued = 0;
+        synchronized (this) {
+            long started = System.nanoTime();
+            List<Segment> current = segments;
+            int[] changedSecurities = new int[count];
+            int changed = 0;
+            for (int i = 0; i < count; i++) {
+                Integer security = securityIndex.get(secIds[i]);
+                if (security == null) {
+                    continue;
+                }
+                int s = security;
+                if (!Double.isNaN(basePrices[i])) {
+                    base[s] = basePrices[i];
+                }
+                last[s] = Double.isNaN(lastPrices[i]) ? base[s] : lastPrices[i];
+                double newRatio = ratio(last[s], base[s]);
+                if (newRatio != ratio[s]) {
+                    ratio[s] = newRatio;
+                    changedSecurities[changed++] = s;
+                }
+            }
+
+            for (Segment segment : current) {
+                revalued += segment.revalue(ratio, changedSecurities, changed);
+            }
+
+            deliveries = collectDeliveries(current);
+            for (Segment segment : current) {
+                Arrays.fill(segment.dirty, 0L);
+            }
+            ticks++;
+            lastRevalued = revalued;
+            lastTickNanos = System.nanoTime() - started;
+        }
+
+        for (Delivery delivery : deliveries) {
+            delivery.subscription().enqueue(delivery.valuations());
+        }
+        return revalued;
+    }
+
+    /**
+     * Возвращает текущие оценки портфелей; неизвестные портфели пропускаются.
+     */
+    public synchronized List<PortfolioValuation> valuations(Collection<Long> portfolioIds) {
+        List<Segment> current = segments;
+        List<PortfolioValuation> result = new ArrayList<>(portfolioIds.size());
+        for (long id : portfolioIds) {
+            int s = segmentOf(current, id);
+            int p = s >= 0 ? current.get(s).portfolioIndex(id) : -1;
+            if (p >= 0) {
+                result.add(current.get(s).valuation(p));
+            }
+        }
+        return result;
+    }
+
+    /**
+     * Подписывает на изменения оценок портфелей.
+     * <p>Слушатель вызывается в отдельном виртуальном потоке подписки, по порядку обновлений, и получает только
+     * изменившиеся портфели из подписки. Если слушатель бросает исключение или отстаёт больше чем на
+     * {@link #MAX_PENDING_DELIVERIES} обновлений, подписка закрывается и вызывается {@code onClose}.</p>
+     *
+     * @param portfolioIds Идентификаторы портфелей.
+     * @param listener Получатель оценок.
+     * @param onClose Вызывается один раз, если подписку закрыл переоценщик; получает причину или {@code null}
+     *                при остановке приложения.
+     * @return Подписка; её закрытие прекращает доставку.
+     */
+    public Subscription subscribe(Collection<Long> portfolioIds, Consumer<List<PortfolioValuation>> listener,
+                                  Consumer<Throwable> onClose) {
+        Subscription subscription = new Subscription(
+                portfolioIds.stream().mapToLong(Long::longValue).distinct().toArray(), listener, onClose);
+        subscriptions.add(subscription);
+        return subscription;
+    }
+
+    /**
+     * @return Размер книги портфелей, время последнего пересчёта и количество пересчитанных портфелей.
+     */
+    public synchronized Map<String, Number> metrics() {
+        Map<String, Number> metrics = new LinkedHashMap<>();
+        metrics.put("revaluation.portfolios", portfolios());
+        metrics.put("revaluation.legs", legs());
+        metrics.put("revaluation.securities", securityNames.size());
+        metrics.put("revaluation.segments", segments.size());
+        metrics.put("revaluation.subscriptions", subscriptions.size());
+        metrics.put("revaluation.ticks", ticks);
+        metrics.put("revaluation.lastRevalued", lastRevalued);
+        metrics.put("revaluation.lastTickMicros", lastTickNanos / 1_000);
+        return metrics;
+    }
+
+    private long portfolios() {
+        return segments.stream().mapToLong(Segment::portfolios).sum();
+    }
+
+    private long legs() {
+        return segments.stream().mapToLong(Segment::legs).sum();
+    }
+
+    private List<Delivery> collectDeliveries(List<Segment> current) {
+        if (subscriptions.isEmpty()) {
+            return List.of();
+        }
+        List<Delivery> deliveries = new ArrayList<>();
+        for (Subscription subscription : subscriptions) {
+            if (subscription.resolvedFor != current) {
+                resolve(subscription, current);
+            }
+            List<PortfolioValuation> changed = null;
+            for (int i = 0; i < subscription.indexes.length; i++) {
+                Segment segment = current.get(subscription.segmentIndexes[i]);
+                int p = subscription.indexes[i];
+                if ((segment.dirty[p >>> 6] & (1L << p)) != 0) {
+                    if (changed == null) {
+                        changed = new ArrayList<>();
+                    }
+                    changed.add(segment.valuation(p));
+                }
+            }
+            if (changed != null) {
+                deliveries.add(new Delivery(subscription, changed));
+            }
+        }
+        return deliveries;
+    }
+
+    private static void resolve(Subscription subscription, List<Segment> current) {
+        int[] segmentIndexes = new int[subscription.portfolioIds.length];
+        int[] indexes = new int[subscription.portfolioIds.length];
+        int n = 0;
+        for (long id : subscription.portfolioIds) {
+            int s = segmentOf(current, id);
+            int p = s >= 0 ? current.get(s).portfolioIndex(id) : -1;
+            if (p >= 0) {
+                segmentIndexes[n] = s;
+                indexes[n] = p;
+                n++;
+            }
+        }
+        subscription.segmentIndexes = Arrays.copyOf(segmentIndexes, n);
+        subscription.indexes = Arrays.copyOf(indexes, n);
+        subscription.resolvedFor = current;
+    }
+
+    /**
+     * Возвращает номер сегмента, в диапазон идентификаторов которого попадает портфель; сегменты идут по возрастанию
+     * идентификаторов и не пересекаются.
+     */
+    private static int segmentOf(List<Segment> current, long portfolioId) {
+        for (int s = 0; s < current.size(); s++) {
+            if (portfolioId <= current.get(s).lastId()) {
+                return s;
+            }
+        }
+        return -1;
+    }
+
+    /**
+     * Сливает сегменты новых портфелей в один. Если они вместе не меньше основного сегмента, сливаются все
+     * сегменты, поэтому каждая доля копируется при слиянии лишь логарифмическое число раз.
+     */
+    private List<Segment> compact(List<Segment> current) {
+        long deltaLegs = 0;
+        for (int s = 1; s < current.size(); s++) {
+            deltaLegs += current.get(s).legs();
+        }
+        int from = deltaLegs >= current.getFirst().legs() ? 0 : 1;
+        SegmentBuilder builder = new SegmentBuilder();
+        for (int s = from; s < current.size(); s++) {
+            builder.addAfter(current.get(s), securityNames, Long.MIN_VALUE);
+        }
+        List<Segment> result = new ArrayList<>(current.subList(0, from));
+        result.add(install(builder));
+        return List.copyOf(result);
+    }
+
+    /**
+     * Возвращает номер бумаги в общей таблице цен, добавляя бумагу при первом обращении.
+     */
+    private int security(String secId) {
+        Integer existing = securityIndex.get(secId);
+        if (existing != null) {
+            return existing;
+        }
+        int s = securityNames.size();
+        securityIndex.put(secId, s);
+        securityNames.add(secId);
+        if (s == last.length) {
+            int capacity = Math.max(s * 2, 64);
+            last = grow(last, capacity, Double.NaN);
+            base = grow(base, capacity, Double.NaN);
+            ratio = grow(ratio, capacity, 1);
+        }
+        return s;
+    }
+
+    /**
+     * Пересобирает таблицу цен из перечисленных бумаг, перенося известные цены.
+     */
+    private void resetSecurities(List<String> names) {
+        Map<String, Integer> previousIndex = new HashMap<>(securityIndex);
+        double[] previousLast = last;
+        double[] previousBase = base;
+        securityIndex.clear();
+        securityNames.clear();
+        last = new double[0];
+        base = new double[0];
+        ratio = new double[0];
+        for (String name : names) {
+            int s = security(name);
+            Integer old = previousIndex.get(name);
+            if (old != null) {
+                last[s] = previousLast[old];
+                base[s] = previousBase[old];
+                ratio[s] = ratio(last[s], base[s]);
+            }
+        }
+    }
+
+    /**
+     * Переводит собранный состав в сегмент с номерами бумаг общей таблицы цен и оценивает его портфели.
+     */
+    private Segment install(SegmentBuilder builder) {
+        int[] mapping = new int[builder.securities.size()];
+        for (int i = 0; i < mapping.length; i++) {
+            mapping[i] = security(builder.securities.get(i));
+        }
+        int[] legSecurity = Arrays.copyOf(builder.legSecurity, builder.legs);
+        for (int k = 0; k < legSecurity.length; k++) {
+            legSecurity[k] = mapping[legSecurity[k]];
+        }
+        Segment segment = new Segment(Arrays.copyOf(builder.portfolioIds, builder.portfolios),
+                Arrays.copyOf(builder.legStart, builder.portfolios + 1), legSecurity,
+                Arrays.copyOf(builder.legWeight, builder.legs), securityNames.size());
+        segment.recompute(ratio, 0, segment.portfolios());
+        Arrays.fill(segment.dirty, 0L);
+        return segment;
+    }
+
+    private static double[] grow(double[] values, int capacity, double fill) {
+        double[] result = Arrays.copyOf(values, capacity);
+        Arrays.fill(result, values.length, capacity, fill);
+        return result;
+    }
+
+    private static double ratio(double lastPrice, double basePrice) {
+        return basePrice > 0 && lastPrice > 0 ? lastPrice / basePrice : 1;
+    }
+
+    /**
+     * Неизменяемый состав портфелей с обратным индексом бумага → портфели и их текущие стоимости.
+     * <p>Номера бумаг — номера общей таблицы цен переоценщика; бумаги, добавленные в таблицу после сборки сегмента,
+     * в его портфели не входят.</p>
+     */
+    private static final class Segment {
+
+        final long[] portfolioIds;
+        final int[] legStart;
+        final int[] legSecurity;
+        final double[] legWeight;
+        final int[] dependentStart;
+        final int[] dependents;
+        final double[] value;
+        final long[] dirty;
+
+        Segment(long[] portfolioIds, int[] legStart, int[] legSecurity, double[] legWeight, int securities) {
+            this.portfolioIds = portfolioIds;
+            this.legStart = legStart;
+            this.legSecurity = legSecurity;
+            this.legWeight = legWeight;
+            this.value = new double[portfolioIds.length];
+            this.dirty = new long[(portfolioIds.length + 63) >>> 6];
+
+            // Обратный индекс сортировкой подсчётом: портфели бумаги идут подряд и по возрастанию номера.
+            dependentStart = new int[securities + 1];
+            for (int k = 0; k < legSecurity.length; k++) {
+                dependentStart[legSecurity[k] + 1]++;
+            }
+            for (int s = 0; s < securities; s++) {
+                dependentStart[s + 1] += dependentStart[s];
+            }
+            dependents = new int[legSecurity.length];
+            int[] fill = Arrays.copyOf(dependentStart, securities);
+            for (int p = 0; p < portfolioIds.length; p++) {
+                for (int k = legStart[p]; k < legStart[p + 1]; k++) {
+                    dependents[fill[legSecurity[k]]++] = p;
+                }
+            }
+        }
+
+        int portfolios() {
+            return portfolioIds.length;
+        }
+
+        int legs() {
+            return legSecurity.length;
+        }
+
+        long lastId() {
+            return portfolioIds.length > 0 ? portfolioIds[portfolioIds.length - 1] : Long.MIN_VALUE;
+        }
+
+        int portfolioIndex(long portfolioId) {
+            int p = Arrays.binarySearch(portfolioIds, portfolioId);
+            return p >= 0 ? p : -1;
+        }
+
+        PortfolioValuation valuation(int p) {
+            return new PortfolioValuation(portfolioIds[p], value[p], value[p] - 1);
+        }
+
+        /**
+         * Пересчитывает портфели, зависящие от изменившихся бумаг, и отмечает в {@link #dirty} изменившиеся стоимости.
+         *
+         * @return Количество пересчитанных портфелей.
+         */
+        int revalue(double[] ratio, int[] changedSecurities, int changed) {
+            long affectedLegs = 0;
+            for (int c = 0; c < changed; c++) {
+                int s = changedSecurities[c];
+                if (s + 1 < dependentStart.length) {
+                    affectedLegs += dependentStart[s + 1] - dependentStart[s];
+                }
+            }
+            if (affectedLegs == 0) {
+                return 0;
+            }
+            if (affectedLegs * FULL_RECOMPUTE_RATIO >= legs()) {
+                // Изменилась большая часть рынка: последовательный проход по всем долям дешевле отметок.
+                return recompute(ratio, 0, portfolios());
+            }
+            for (int c = 0; c < changed; c++) {
+                int s = changedSecurities[c];
+                if (s + 1 >= dependentStart.length) {
+                    continue;
+                }
+                for (int k = dependentStart[s]; k < dependentStart[s + 1]; k++) {
+                    int p = dependents[k];
+                    dirty[p >>> 6] |= 1L << p;
+                }
+            }
+            return recomputeDirty(ratio);
+        }
+
+        /**
+         * Пересчитывает отмеченные портфели в порядке номеров, чтобы доли читались последовательно.
+         */
+        private int recomputeDirty(double[] ratio) {
+            int revalued = 0;
+            for (int word = 0; word < dirty.length; word++) {
+                long bits = dirty[word];
+                while (bits != 0) {
+                    int p = (word << 6) + Long.numberOfTrailingZeros(bits);
+                    bits &= bits - 1;
+                    recompute(ratio, p, p + 1);
+                    revalued++;
+                }
+            }
+            return revalued;
+        }
+
+        /**
+         * Пересчитывает стоимость портфелей {@code [from, to)}; отметка в {@link #dirty} остаётся только у портфелей,
+         * стоимость которых изменилась.
+         */
+        int recompute(double[] ratio, int from, int to) {
+            for (int p = from; p < to; p++) {
+                double sum = 0;
+                for (int k = legStart[p]; k < legStart[p + 1]; k++) {
+                    sum += legWeight[k] * ratio[legSecurity[k]];
+                }
+                long bit = 1L << p;
+                if (sum != value[p]) {
+                    value[p] = sum;
+                    dirty[p >>> 6] |= bit;
+                } else {
+                    dirty[p >>> 6] &= ~bit;
+                }
+            }
+            return to - from;
+        }
+    }
+
+    /**
+     * Построчная сборка состава сегмента с собственной нумерацией бумаг; портфели добавляются по возрастанию
+     * идентификатора.
+     */
+    private static final class SegmentBuilder {
+
+        private long[] portfolioIds = new long[1024];
+        private int[] legStart = new int[1025];
+        private int[] legSecurity = new int[4096];
+        private double[] legWeight = new double[4096];
+        private int portfolios;
+        private int legs;
+        private final Map<String, Integer> securityIndex = new HashMap<>();
+        private final List<String> securities = new ArrayList<>();
+
+        long lastId() {
+            return portfolios > 0 ? portfolioIds[portfolios - 1] : Long.MIN_VALUE;
+        }
+
+        /**
+         * Добавляет долю бумаги в последний портфель или открывает следующий портфель.
+         *
+         * @throws IllegalArgumentException если портфель идёт раньше уже добавленных.
+         */
+        void add(long portfolioId, String secId, Double weight) {
+            if (secId == null || weight == null) {
+                return;
+            }
+            if (portfolios == 0 || portfolioIds[portfolios - 1] != portfolioId) {
+                if (portfolioId < lastId()) {
+                    throw new IllegalArgumentException("Portfolios must be added in ascending id order");
+                }
+                if (portfolios == portfolioIds.length) {
+                    portfolioIds = Arrays.copyOf(portfolioIds, portfolios * 2);
+                    legStart = Arrays.copyOf(legStart, portfolios * 2 + 1);
+                }
+                portfolioIds[portfolios++] = portfolioId;
+            }
+            if (legs == legSecurity.length) {
+                legSecurity = Arrays.copyOf(legSecurity, legs * 2);
+                legWeight = Arrays.copyOf(legWeight, legs * 2);
+            }
+            Integer security = securityIndex.get(secId);
+            if (security == null) {
+                security = securities.size();
+                securityIndex.put(secId, security);
+                securities.add(secId);
+            }
+            legSecurity[legs] = security;
+            legWeight[legs] = weight;
+            legs++;
+            legStart[portfolios] = legs;
+        }
+
+        /**
+         * Добавляет портфели сегмента с идентификатором больше {@code afterId}.
+         *
+         * @param names Названия бумаг общей таблицы цен, по номерам которой собран сегмент.
+         */
+        void addAfter(Segment segment, List<String> names, long afterId) {
+            int from = Arrays.binarySearch(segment.portfolioIds, afterId);
+            from = from >= 0 ? from + 1 : -from - 1;
+            for (int p = from; p < segment.portfolios(); p++) {
+                for (int k = segment.legStart[p]; k < segment.legStart[p + 1]; k++) {
+                    add(segment.portfolioIds[p], names.get(segment.legSecurity[k]), segment.legWeight[k]);
+                }
+            }
+        }
+    }
+}
@@ -0,0 +1,11 @@
+package ru.mslotvi.exchange;
+
+/**
+ * Текущая оценка сохранённого портфеля, см. {@link PortfolioRevaluator}.
+ *
+ * @param portfolioId Идентификатор портфеля.
+ * @param value Стоимость единицы капитала, вложенной в портфель по ценам закрытия предыдущего дня.
+ * @param pnl Изменение стоимости с закрытия предыдущего дня в долях капитала: {@code value - 1}.
+ */
+public record PortfolioValuation(long portfolioId, double value, double pnl) {
+}
@@ -0,0 +1,130 @@
+package ru.mslotvi.exchange;
+
+import java.util.Arrays;
+
+/**
+ * Ряд баров заданной частоты в примитивных столбцах.
+ * <p>Бар {@code i} описывает период, начинающийся в день {@link #periodStart(int)}: цена закрытия берётся
+ * из последнего торгового дня периода, объём и оборот суммируются. Хранятся только столбцы, которые читают
+ * статистики; цен открытия, максимума и минимума нет и в дневном ряде {@link PriceSeries}. Ряд собирается
+ * за один проход по дневному ряду: каждый день либо дополняет последний бар, либо открывает следующий.</p>
+ *
+ * <p>После сборки ряд не меняется, поэтому его можно читать из нескольких потоков.</p>
+ */
+public final class PriceBars implements CloseSeries {
+
+    private static final int INITIAL_CAPACITY = 64;
+
+    private final Frequency frequency;
+    private int[] periodStart = new int[INITIAL_CAPACITY];
+    private int[] lastDay = new int[INITIAL_CAPACITY];
+    private double[] close = new double[INITIAL_CAPACITY];
+    private double[] volume = new double[INITIAL_CAPACITY];
+    private double[] value = new double[INITIAL_CAPACITY];
+    private int size;
+
+    private PriceBars(Frequency frequency) {
+        this.frequency = frequency;
+    }
+
+    /**
+     * Агрегирует дневной ряд с заданной частотой.
+     *
+     * @param series Дневной ряд, упорядоченный по дням без повторов.
+     * @param frequency Частота баров.
+     * @return Ряд баров.
+     */
+    static PriceBars of(PriceSeries series, Frequency frequency) {
+        PriceBars bars = new PriceBars(frequency);
+        for (int i = 0; i < series.size(); i++) {
+            bars.append(series.day(i), series.close(i), series.volume(i), series.value(i));
+        }
+        return bars;
+    }
+
+    /**
+     * Добавляет торговый день в ряд.
+     *
+     * @param epochDay Торговый день в виде {@link java.time.LocalDate#toEpochDay()}, не раньше уже добавленных.
+     * @param dayClose Цена закрытия.
+     * @param dayVolume Объём торгов в бумагах.
+     * @param dayValue Оборот в деньгах.
+     * @throws IllegalArgumentException если день раньше последнего добавленного.
+     */
+    private void append(int epochDay, double dayClose, double dayVolume, double dayValue) {
+        if (size > 0 && epochDay < lastDay[size - 1]) {
+            throw new IllegalArgumentException("Trade days must be appended in ascending order");
+        }
+        int start = frequency.periodStart(epochDay);
+        if (size > 0 && periodStart[size - 1] == start) {
+            int i = size - 1;
+            close[i] = dayClose;
+            volume[i] += dayVolume;
+            value[i] += dayValue;
+            lastDay[i] = epochDay;
+            return;
+        }
+        if (size == periodStart.length) {
+            grow(size * 2);
+        }
+        periodStart[size] = start;
+        lastDay[size] = epochDay;
+        close[size] = dayClose;
+        volume[size] = dayVolume;
+        value[size] = dayValue;
+        size++;
+    }
+
+    public Frequency frequency() {
+        return frequency;
+    }
+
+    @Override
+    public int size() {
+        return size;
+    }
+
+    /**
+     * @return Начало периода бара {@code i}, см. {@link #periodStart(int)}.
+     */
+    @Override
+    public int key(int i) {
+        return periodStart[i];
+    }
+
+    public int periodStart(int i) {
+        return periodStart[i];
+    }
+
+    public int lastDay(int i) {
+        return lastDay[i];
+    }
+
+    @Override
+    public double close(int i) {
+        return close[i];
+    }
+
+    public double volume(int i) {
+        return volume[i];
+    }
+
+    public double value(int i) {
+        return value[i];
+    }
+
+    /**
+     * @return Копия столбца цен закрытия длиной {@link #size()}.
+     */
+    public double[] closes() {
+        return Arrays.copyOf(close, size);
+    }
+
+    private void grow(int capacity) {
+        periodStart = Arrays.copyOf(periodStart, capacity);
+        lastDay = Arrays.copyOf(lastDay, capacity);
+        close = Arrays.copyOf(close, capacity);
+        volume = Arrays.copyOf(volume, capacity);
+        value = Arrays.copyOf(value, capacity);
+    }
+}
@@ -0,0 +1,245 @@
+package ru.mslotvi.exchange;
+
+import java.time.LocalDate;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Компактный неизменяемый дневной ряд цен одной ценной бумаги.
+ * <p>Ряд хранит упорядоченные по возрастанию эпохальные дни и только те столбцы, которые читают статистики:
+ * цену закрытия, объём и оборот в {@code double[]} и количество сделок в {@code int[]} — 32 байта на торговый день
+ * вместо сотен байт на объект записи. Цены открытия, максимума и минимума не хранятся. В ряд попадают только дни
+ * с известной ценой закрытия; для дня, встретившегося несколько раз, остаётся последняя запись.</p>
+ *
+ * <p>Срезы по датам находятся бинарным поиском и разделяют массивы с исходным рядом, не копируя данных.</p>
+ */
+public final class PriceSeries implements CloseSeries {
+
+    public static final PriceSeries EMPTY = new PriceSeries(new int[0], new double[0], new double[0], new double[0],
+            new int[0], 0, 0);
+
+    private final int[] days;
+    private final double[] close;
+    private final double[] volume;
+    private final double[] value;
+    private final int[] numTrades;
+    private final int offset;
+    private final int length;
+
+    private PriceSeries(int[] days, double[] close, double[] volume, double[] value, int[] numTrades,
+                        int offset, int length) {
+        this.days = days;
+        this.close = close;
+        this.volume = volume;
+        this.value = value;
+        this.numTrades = numTrades;
+        this.offset = offset;
+        this.length = length;
+    }
+
+    /**
+     * Собирает ряд из страниц дневной истории.
+     * Записи без даты или цены закрытия пропускаются, отсутствующие объём, оборот и количество сделок считаются
+     * нулевыми.
+     *
+     * @param snapshots Страницы истории в порядке дат; порядок внутри и между страницами может нарушаться.
+     * @return Ряд цен.
+     */
+    public static PriceSeries of(List<? extends ExchangeDateSnapshot> snapshots) {
+        int capacity = 0;
+        for (ExchangeDateSnapshot snapshot : snapshots) {
+            capacity += snapshot.size();
+        }
+        int[] days = new int[capacity];
+        double[] close = new double[capacity];
+        double[] volume = new double[capacity];
+        double[] value = new double[capacity];
+        int[] numTrades = new int[capacity];
+        int n = 0;
+        boolean sorted = true;
+        for (ExchangeDateSnapshot snapshot : snapshots) {
+            for (int i = 0; i < snapshot.size(); i++) {
+                int day = snapshot.tradeDay(i);
+                double price = snapshot.close(i);
+                if (day == ExchangeDateSnapshot.NO_DAY || Double.isNaN(price)) {
+                    continue;
+                }
+                if (n > 0 && day <= days[n - 1]) {
+                    sorted = false;
+                }
+                days[n] = day;
+                close[n] = price;
+                volume[n] = zeroIfNaN(snapshot.volume(i));
+                value[n] = zeroIfNaN(snapshot.value(i));
+                numTrades[n] = (int) zeroIfNaN(snapshot.numTrades(i));
+                n++;
+            }
+        }
+        if (n == 0) {
+            return EMPTY;
+        }
+        if (!sorted) {
+            int[] order = sortAndDeduplicate(days, n);
+            n = order.length;
+            days = permute(days, order);
+            close = permute(close, order);
+            volume = permute(volume, order);
+            value = permute(value, order);
+            numTrades = permute(numTrades, order);
+        } else if (n < capacity) {
+            days = Arrays.copyOf(days, n);
+            close = Arrays.copyOf(close, n);
+            volume = Arrays.copyOf(volume, n);
+            value = Arrays.copyOf(value, n);
+            numTrades = Arrays.copyOf(numTrades, n);
+        }
+        return new PriceSeries(days, close, volume, value, numTrades, 0, n);
+    }
+
+    @Override
+    public int size() {
+        return length;
+    }
+
+    public boolean isEmpty() {
+        return length == 0;
+    }
+
+    /**
+     * @return Эпохальный день записи {@code i}.
+     */
+    public int day(int i) {
+        return days[offset + checkIndex(i)];
+    }
+
+    /**
+     * @return Эпохальный день записи {@code i}, см. {@link #day(int)}.
+     */
+    @Override
+    public int key(int i) {
+        return day(i);
+    }
+
+    public LocalDate date(int i) {
+        return LocalDate.ofEpochDay(day(i));
+    }
+
+    @Override
+    public double close(int i) {
+        return close[offset + checkIndex(i)];
+    }
+
+    public double volume(int i) {
+        return volume[offset + checkIndex(i)];
+    }
+
+    public double value(int i) {
+        return value[offset + checkIndex(i)];
+    }
+
+    public int numTrades(int i) {
+        return numTrades[offset + checkIndex(i)];
+    }
+
+    /**
+     * Находит первую запись, день которой не раньше заданного.
+     *
+     * @param epochDay Эпохальный день.
+     * @return Индекс записи в диапазоне [0, {@link #size()}].
+     */
+    public int lowerBound(int epochDay) {
+        int low = 0;
+        int high = length;
+        while (low < high) {
+            int middle = (low + high) >>> 1;
+            if (days[offset + middle] < epochDay) {
+                low = middle + 1;
+            } else {
+                high = middle;
+            }
+        }
+        return low;
+    }
+
+    /**
+     * Возвращает срез ряда за интервал дат без копирования данных.
+     *
+     * @param from Первый день интервала.
+     * @param to Последний день интервала включительно.
+     * @return Срез ряда; пустой, если в интервале нет торговых дней.
+     */
+    public PriceSeries slice(LocalDate from, LocalDate to) {
+        int fromIndex = lowerBound((int) from.toEpochDay());
+        int toIndex = Math.max(fromIndex, lowerBound((int) to.toEpochDay() + 1));
+        return slice(fromIndex, toIndex);
+    }
+
+    /**
+     * Возвращает срез ряда по индексам без копирования данных.
+     *
+     * @param fromIndex Первый индекс включительно.
+     * @param toIndex Последний индекс исключительно.
+     * @return Срез ряда.
+     * @throws IndexOutOfBoundsException если индексы вне ряда.
+     */
+    public PriceSeries slice(int fromIndex, int toIndex) {
+        if (fromIndex < 0 || toIndex > length || fromIndex > toIndex) {
+            throw new IndexOutOfBoundsException("Slice [" + fromIndex + ", " + toIndex + ") out of series of size " + length);
+        }
+        if (fromIndex == 0 && toIndex == length) {
+            return this;
+        }
+        return new PriceSeries(days, close, volume, value, numTrades, offset + fromIndex, toIndex - fromIndex);
+    }
+
+    private int checkIndex(int i) {
+        if (i < 0 || i >= length) {
+            throw new IndexOutOfBoundsException("Index " + i + " out of series of size " + length);
+        }
+        return i;
+    }
+
+    private static double zeroIfNaN(double value) {
+        return Double.isNaN(value) ? 0 : value;
+    }
+
+    /**
+     * Упорядочивает записи по дню устойчивой сортировкой и оставляет для каждого дня последнюю запись.
+     *
+     * @return Индексы оставшихся записей в порядке дней.
+     */
+    private static int[] sortAndDeduplicate(int[] days, int n) {
+        Integer[] order = new Integer[n];
+        for (int i = 0; i < n; i++) {
+            order[i] = i;
+        }
+        Arrays.sort(order, (a, b) -> Integer.compare(days[a], days[b]));
+
+        int[] kept = new int[n];
+        int m = 0;
+        for (int k = 0; k < n; k++) {
+            int i = order[k];
+            if (m > 0 && days[kept[m - 1]] == days[i]) {
+                m--;
+            }
+            kept[m++] = i;
+        }
+        return Arrays.copyOf(kept, m);
+    }
+
+    private static int[] permute(int[] column, int[] order) {
+        int[] result = new int[order.length];
+        for (int k = 0; k < order.length; k++) {
+            result[k] = column[order[k]];
+        }
+        return result;
+    }
+
+    private static double[] permute(double[] column, int[] order) {
+        double[] result = new double[order.length];
+        for (int k = 0; k < order.length; k++) {
+            result[k] = column[order[k]];
+        }
+        return result;
+    }
+}
@@ -0,0 +1,81 @@
+package ru.mslotvi.exchange;
+
+import jakarta.annotation.PreDestroy;
+import lombok.extern.log4j.Log4j2;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import ru.mslotvi.config.ScreenerConfig;
+
+import java.time.LocalDate;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+/**
+ * Обновление скринеров бирж по фиксированному окну истории.
+ * <p>Статистика скринера пересчитывается только здесь и всегда за окно {@link ScreenerConfig#getWindow()},
+ * заканчивающееся вчерашним днём, поэтому строки разных бумаг сравнимы между собой. Загрузка истории
+ * по всему справочнику занимает долго, поэтому она идёт в фоновом потоке, а запуск сразу возвращает управление;
+ * одновременно по одной бирже выполняется не больше одного обновления.</p>
+ */
+@Log4j2
+@Component
+public class ScreenerRefresher {
+
+    private final ScreenerConfig config;
+    private final ExchangeService exchangeService;
+    private final Set<String> running = ConcurrentHashMap.newKeySet();
+    private final ExecutorService executor = Executors.newSingleThreadExecutor(task -> {
+        Thread thread = new Thread(task, "screener-refresh");
+        thread.setDaemon(true);
+        return thread;
+    });
+
+    public ScreenerRefresher(ScreenerConfig config, ExchangeService exchangeService) {
+        this.config = config;
+        this.exchangeService = exchangeService;
+    }
+
+    /**
+     * Запускает обновление скринеров всех бирж по расписанию {@link ScreenerConfig#getRefreshCron()}.
+     */
+    @Scheduled(cron = "${screener.refresh-cron:0 0 4 * * *}")
+    public void schedule() {
+        if (!config.isEnabled()) {
+            return;
+        }
+        for (Exchange exchange : exchangeService.exchanges().values()) {
+            refresh(exchange);
+        }
+    }
+
+    /**
+     * Ставит обновление скринера биржи в очередь фонового потока.
+     *
+     * @param exchange Биржа.
+     * @return {@code false}, если обновление этой биржи уже запущено.
+     */
+    public boolean refresh(Exchange exchange) {
+        if (!running.add(exchange.name())) {
+            return false;
+        }
+        LocalDate to = LocalDate.now().minusDays(1);
+        LocalDate from = to.minus(config.getWindow());
+        executor.execute(() -> {
+            try {
+                exchange.refreshScreener(from, to);
+            } catch (RuntimeException e) {
+                log.warn("Failed to refresh screener of {}", exchange.name(), e);
+            } finally {
+                running.remove(exchange.name());
+            }
+        });
+        return true;
+    }
+
+    @PreDestroy
+    public void stop() {
+        executor.shutdownNow();
+    }
+}
@@ -0,0 +1,97 @@
+package ru.mslotvi.exchange;
+
+import java.time.LocalDate;
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Учёт спроса на историю ценных бумаг и эффективности её прогрева.
+ * <p>Для каждой бумаги считается количество пользовательских запросов истории. Счётчики периодически
+ * уменьшаются вдвое ({@link #decay()}), поэтому {@link #top(int)} отражает недавний спрос, а не накопленный
+ * за всё время работы.</p>
+ *
+ * <p>Каждый запрос отмечается как попадание, если последний прогрев загрузил историю бумаги с начала
+ * запрошенного интервала, или как промах в противном случае. Решение принимается по итогам прогрева в памяти,
+ * без обращения к хранилищу на пути запроса.</p>
+ */
+public class SecurityDemand {
+
+    private final Map<String, Long> requests = new ConcurrentHashMap<>();
+    private final LongAdder hits = new LongAdder();
+    private final LongAdder misses = new LongAdder();
+    private final LongAdder runs = new LongAdder();
+    private final LongAdder loaded = new LongAdder();
+    private final LongAdder failed = new LongAdder();
+    private volatile double coverage;
+    private volatile Map<String, LocalDate> warmFrom = Map.of();
+
+    /**
+     * Учитывает пользовательский запрос истории бумаги.
+     *
+     * @param secId Идентификатор ценной бумаги.
+     * @param from Дата начала запрошенного интервала.
+     */
+    public void record(String secId, LocalDate from) {
+        requests.merge(secId, 1L, Long::sum);
+        LocalDate warmedFrom = warmFrom.get(secId);
+        (warmedFrom != null && !from.isBefore(warmedFrom) ? hits : misses).increment();
+    }
+
+    /**
+     * Возвращает самые востребованные бумаги.
+     *
+     * @param n Максимальное количество бумаг.
+     * @return Идентификаторы бумаг по убыванию спроса.
+     */
+    public List<String> top(int n) {
+        return requests.entrySet().stream()
+                .sorted(Map.Entry.<String, Long>comparingByValue().reversed())
+                .limit(Math.max(n, 0))
+                .map(Map.Entry::getKey)
+                .toList();
+    }
+
+    /**
+     * Уменьшает все счётчики спроса вдвое и забывает бумаги, спрос на которые упал до нуля.
+     */
+    public void decay() {
+        requests.replaceAll((secId, count) -> count / 2);
+        requests.values().removeIf(count -> count == 0);
+    }
+
+    /**
+     * Учитывает итог прогрева.
+     *
+     * @param loadedCount Количество бумаг, история которых загружена.
+     * @param failedCount Количество бумаг, загрузка которых не удалась.
+     * @param warm Бумаги из прогреваемого списка, история которых загружена после прогрева, и начало загруженного
+     *             интервала; заменяет итоги предыдущего прогрева.
+     * @param total Размер прогреваемого списка.
+     */
+    public void prewarmed(int loadedCount, int failedCount, Map<String, LocalDate> warm, int total) {
+        runs.increment();
+        loaded.add(loadedCount);
+        failed.add(failedCount);
+        warmFrom = Map.copyOf(warm);
+        coverage = total > 0 ? (double) warm.size() / total : 0;
+    }
+
+    /**
+     * @return Счётчики спроса и прогрева.
+     */
+    public Map<String, Number> metrics() {
+        long hitCount = hits.sum();
+        long missCount = misses.sum();
+        Map<String, Number> metrics = new LinkedHashMap<>();
+        metrics.put("prewarm.tracked", requests.size());
+        metrics.put("prewarm.runs", runs.sum());
+        metrics.put("prewarm.loaded", loaded.sum());
+        metrics.put("prewarm.failed", failed.sum());
+        metrics.put("prewarm.coverage", coverage);
+        metrics.put("prewarm.hits", hitCount);
+        metrics.put("prewarm.misses", missCount);
+        metrics.put("prewarm.hitRate", hitCount + missCount > 0 ? (double) hitCount / (hitCount + missCount) : 0);
+        return metrics;
+    }
+}
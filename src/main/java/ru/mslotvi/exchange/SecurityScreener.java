@@ -0,0 +1,268 @@
+package ru.mslotvi.exchange;
+
+import java.util.*;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+/**
+ * Скринер ценных бумаг по сводной статистике торгов.
+ * <p>Статистика хранится по столбцам в примитивных массивах (одна позиция массива — одна бумага),
+ * поэтому фильтр по всем бумагам рынка выполняется одним линейным проходом без обращения к истории сделок.
+ * Сводка по бумаге пересчитывается при каждом обновлении её истории через {@link #refresh(String, PriceSeries)}.</p>
+ *
+ * <p>Неизвестные значения хранятся как {@link Double#NaN}: они не проходят ни один заданный фильтр
+ * и оказываются в конце при сортировке.</p>
+ */
+public class SecurityScreener {
+
+    /**
+     * Столбцы, по которым можно сортировать результат.
+     */
+    public enum Column {
+        VALUE, NUM_TRADES, VOLUME, VOLATILITY, LIST_LEVEL
+    }
+
+    /**
+     * Запрос к скринеру. Незаданные ({@code null}) границы не ограничивают выборку.
+     *
+     * @param minValue Минимальный средний дневной оборот в деньгах.
+     * @param minNumTrades Минимальное среднее количество сделок в день.
+     * @param minVolume Минимальный средний дневной объём в бумагах.
+     * @param maxVolatility Максимальная волатильность дневных доходностей.
+     * @param maxListLevel Максимальный уровень листинга.
+     * @param sortBy Столбец для ранжирования.
+     * @param descending Сортировать по убыванию.
+     * @param limit Максимальное количество строк в ответе.
+     */
+    public record Query(Double minValue, Double minNumTrades, Double minVolume, Double maxVolatility,
+                        Integer maxListLevel, Column sortBy, boolean descending, int limit) {
+    }
+
+    /**
+     * Строка результата скринера.
+     */
+    public record Row(String secId, double avgValue, double avgNumTrades, double avgVolume,
+                      double volatility, int listLevel, int observations) {
+    }
+
+    private static final int INITIAL_CAPACITY = 256;
+
+    private final ReadWriteLock lock = new ReentrantReadWriteLock();
+    private final Map<String, Integer> positions = new HashMap<>();
+
+    private String[] secIds = new String[INITIAL_CAPACITY];
+    private double[] avgValue = nanColumn(INITIAL_CAPACITY);
+    private double[] avgNumTrades = nanColumn(INITIAL_CAPACITY);
+    private double[] avgVolume = nanColumn(INITIAL_CAPACITY);
+    private double[] volatility = nanColumn(INITIAL_CAPACITY);
+    private int[] listLevel = new int[INITIAL_CAPACITY];
+    private int[] observations = new int[INITIAL_CAPACITY];
+    private int size;
+
+    /**
+     * Регистрирует бумагу в скринере (или обновляет её уровень листинга).
+     *
+     * @param secId Идентификатор ценной бумаги.
+     * @param level Уровень листинга, {@code 0} если неизвестен.
+     */
+    public void register(String secId, int level) {
+        lock.writeLock().lock();
+        try {
+            int i = position(secId);
+            listLevel[i] = level;
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * Удаляет из скринера бумаги, которых больше нет в справочнике биржи.
+     * <p>Оставшиеся строки сдвигаются к началу столбцов с сохранением порядка, освободившиеся позиции
+     * сбрасываются, чтобы следующая зарегистрированная бумага начинала с неизвестных значений.</p>
+     *
+     * @param listed Идентификаторы бумаг, которые остаются в скринере.
+     */
+    public void retain(Set<String> listed) {
+        lock.writeLock().lock();
+        try {
+            int kept = 0;
+            for (int i = 0; i < size; i++) {
+                if (!listed.contains(secIds[i])) {
+                    positions.remove(secIds[i]);
+                    continue;
+                }
+                if (kept != i) {
+                    secIds[kept] = secIds[i];
+                    avgValue[kept] = avgValue[i];
+                    avgNumTrades[kept] = avgNumTrades[i];
+                    avgVolume[kept] = avgVolume[i];
+                    volatility[kept] = volatility[i];
+                    listLevel[kept] = listLevel[i];
+                    observations[kept] = observations[i];
+                    positions.put(secIds[kept], kept);
+                }
+                kept++;
+            }
+            Arrays.fill(secIds, kept, size, null);
+            Arrays.fill(avgValue, kept, size, Double.NaN);
+            Arrays.fill(avgNumTrades, kept, size, Double.NaN);
+            Arrays.fill(avgVolume, kept, size, Double.NaN);
+            Arrays.fill(volatility, kept, size, Double.NaN);
+            Arrays.fill(listLevel, kept, size, 0);
+            Arrays.fill(observations, kept, size, 0);
+            size = kept;
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * Пересчитывает сводную статистику бумаги по её дневному ряду.
+     * <p>Бумаги, не зарегистрированные через {@link #register(String, int)}, пропускаются: загрузка истории,
+     * завершившаяся после {@link #retain(Set)}, не возвращает в скринер удалённую из справочника бумагу.</p>
+     *
+     * @param secId Идентификатор ценной бумаги.
+     * @param series Загруженный дневной ряд без повторов дней.
+     */
+    public void refresh(String secId, PriceSeries series) {
+        double valueSum = 0;
+        double numTradesSum = 0;
+        double volumeSum = 0;
+        int days = series.size();
+
+        double returnSum = 0;
+        double returnSquares = 0;
+        int returns = 0;
+        double previousClose = Double.NaN;
+
+        for (int r = 0; r < days; r++) {
+            valueSum += series.value(r);
+            numTradesSum += series.numTrades(r);
+            volumeSum += series.volume(r);
+
+            double close = series.close(r);
+            if (previousClose > 0) {
+                double dailyReturn = close / previousClose - 1;
+                returnSum += dailyReturn;
+                returnSquares += dailyReturn * dailyReturn;
+                returns++;
+            }
+            previousClose = close;
+        }
+
+        lock.writeLock().lock();
+        try {
+            Integer i = positions.get(secId);
+            if (i == null) {
+                return;
+            }
+            avgValue[i] = days > 0 ? valueSum / days : Double.NaN;
+            avgNumTrades[i] = days > 0 ? numTradesSum / days : Double.NaN;
+            avgVolume[i] = days > 0 ? volumeSum / days : Double.NaN;
+            volatility[i] = returns > 1
+                    ? Math.sqrt(Math.max(returnSquares - returnSum * returnSum / returns, 0) / (returns - 1))
+                    : Double.NaN;
+            observations[i] = days;
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * Выполняет запрос по всем зарегистрированным бумагам.
+     *
+     * @param query Фильтры и параметры ранжирования.
+     * @return Подходящие бумаги, отсортированные по {@link Query#sortBy()}.
+     */
+    public List<Row> screen(Query query) {
+        lock.readLock().lock();
+        try {
+            // Непроставленный фильтр пропускает любое значение, в том числе NaN у ещё не обновлённых бумаг
+            // и бумаг с недостаточной историей: каждое условие применяется только при заданном фильтре.
+            boolean anyValue = query.minValue() == null;
+            boolean anyNumTrades = query.minNumTrades() == null;
+            boolean anyVolume = query.minVolume() == null;
+            boolean anyVolatility = query.maxVolatility() == null;
+            double minValue = anyValue ? 0 : query.minValue();
+            double minNumTrades = anyNumTrades ? 0 : query.minNumTrades();
+            double minVolume = anyVolume ? 0 : query.minVolume();
+            double maxVolatility = anyVolatility ? 0 : query.maxVolatility();
+            int maxListLevel = query.maxListLevel() != null ? query.maxListLevel() : Integer.MAX_VALUE;
+
+            int[] matches = new int[size];
+            int count = 0;
+            for (int i = 0; i < size; i++) {
+                boolean match = (anyValue | avgValue[i] >= minValue)
+                        & (anyNumTrades | avgNumTrades[i] >= minNumTrades)
+                        & (anyVolume | avgVolume[i] >= minVolume)
+                        & (anyVolatility | volatility[i] <= maxVolatility)
+                        & listLevel[i] <= maxListLevel;
+                matches[count] = i;
+                count += match ? 1 : 0;
+            }
+
+            double[] keys = sortColumn(query.sortBy());
+            double sign = query.descending() ? -1 : 1;
+            return Arrays.stream(matches, 0, count)
+                    .boxed()
+                    .sorted(Comparator.comparingDouble((Integer i) -> Double.isNaN(keys[i]) ? Double.POSITIVE_INFINITY : sign * keys[i]))
+                    .limit(query.limit() > 0 ? query.limit() : Long.MAX_VALUE)
+                    .map(this::row)
+                    .toList();
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    private double[] sortColumn(Column column) {
+        if (column == null) {
+            return avgValue;
+        }
+        return switch (column) {
+            case VALUE -> avgValue;
+            case NUM_TRADES -> avgNumTrades;
+            case VOLUME -> avgVolume;
+            case VOLATILITY -> volatility;
+            case LIST_LEVEL -> Arrays.stream(listLevel, 0, size).asDoubleStream().toArray();
+        };
+    }
+
+    private Row row(int i) {
+        return new Row(secIds[i], avgValue[i], avgNumTrades[i], avgVolume[i], volatility[i], listLevel[i], observations[i]);
+    }
+
+    private int position(String secId) {
+        Integer existing = positions.get(secId);
+        if (existing != null) {
+            return existing;
+        }
+        if (size == secIds.length) {
+            grow(size * 2);
+        }
+        secIds[size] = secId;
+        positions.put(secId, size);
+        return size++;
+    }
+
+    private void grow(int capacity) {
+        secIds = Arrays.copyOf(secIds, capacity);
+        avgValue = growNan(avgValue, capacity);
+        avgNumTrades = growNan(avgNumTrades, capacity);
+        avgVolume = growNan(avgVolume, capacity);
+        volatility = growNan(volatility, capacity);
+        listLevel = Arrays.copyOf(listLevel, capacity);
+        observations = Arrays.copyOf(observations, capacity);
+    }
+
+    private static double[] growNan(double[] column, int capacity) {
+        double[] result = Arrays.copyOf(column, capacity);
+        Arrays.fill(result, column.length, capacity, Double.NaN);
+        return result;
+    }
+
+    private static double[] nanColumn(int capacity) {
+        double[] column = new double[capacity];
+        Arrays.fill(column, Double.NaN);
+        return column;
+    }
+}
@@ -0,0 +1,334 @@
+package ru.mslotvi.exchange;
+
+import java.util.*;
+
+/**
+ * Неизменяемый поисковый индекс по справочнику ценных бумаг для автодополнения.
+ * <p>Индекс строится один раз на каждый снимок справочника и затем только читается, поэтому поиск
+ * не требует блокировок. Текстовые поля ({@link Field}) приводятся к верхнему регистру и разбиваются на слова;
+ * в индекс попадает каждый хвост поля, начинающийся с начала слова. Хвосты хранятся в одном отсортированном
+ * массиве, так что все совпадения с префиксом запроса образуют непрерывный диапазон и находятся двоичным
+ * поиском — это плоское представление префиксного дерева без объектов-узлов.</p>
+ *
+ * <p>Для префиксов с широким диапазоном (короткие префиксы и общие слова вроде «ПАО») лучшие совпадения
+ * вычисляются заранее, поэтому время поиска не зависит от размера справочника. ISIN, регистрационный номер и код бумаги
+ * дополнительно ищутся точным совпадением, такие результаты идут первыми.</p>
+ *
+ * <p>Совпадения ранжируются по полю (см. порядок {@link Field}), затем совпадение с начала поля выше
+ * совпадения с середины, затем по уровню листинга, длине кода и самому коду.</p>
+ */
+public final class SecuritySearchIndex {
+
+    public static final SecuritySearchIndex EMPTY = of(List.of());
+
+    /**
+     * Поля, по которым ведётся поиск, в порядке убывания их веса при ранжировании.
+     */
+    public enum Field {
+        SECID, SHORTNAME, ISIN, SECNAME, LATNAME
+    }
+
+    /**
+     * Запись справочника, по которой строится индекс. Незаполненные поля равны {@code null}.
+     *
+     * @param listLevel Уровень листинга или {@code null}, если неизвестен.
+     */
+    public record Entry(String secId, String shortName, String secName, String latName, String isin,
+                        String regNumber, Integer listLevel) {
+    }
+
+    private record Term(String text, long rank) {
+    }
+
+    private static final int CACHED_RANGE = 256;
+    private static final int CACHED_HITS = 64;
+    private static final int MAX_LIMIT = CACHED_HITS;
+
+    /**
+     * Записи, отсортированные по коду бумаги; индекс записи участвует в ранжировании.
+     */
+    private final Entry[] entries;
+    /**
+     * Отсортированные хвосты полей.
+     */
+    private final String[] terms;
+    /**
+     * Ключ ранжирования каждого хвоста, младшие 32 бита — индекс записи, см. {@link #rank(int, int, Entry)}.
+     */
+    private final long[] ranks;
+    private final Map<String, int[]> cachedPrefixes;
+    private final Map<String, Integer> bySecId;
+    private final Map<String, Integer> byIsin;
+    private final Map<String, Integer> byRegNumber;
+
+    private SecuritySearchIndex(Entry[] entries, String[] terms, long[] ranks, Map<String, Integer> bySecId,
+                                Map<String, Integer> byIsin, Map<String, Integer> byRegNumber) {
+        this.entries = entries;
+        this.terms = terms;
+        this.ranks = ranks;
+        this.bySecId = bySecId;
+        this.byIsin = byIsin;
+        this.byRegNumber = byRegNumber;
+        this.cachedPrefixes = cachePrefixes();
+    }
+
+    /**
+     * Строит индекс по записям справочника.
+     *
+     * @param source Записи справочника; записи без кода бумаги пропускаются.
+     * @return Новый индекс.
+     */
+    public static SecuritySearchIndex of(Collection<Entry> source) {
+        Entry[] entries = source.stream()
+                .filter(entry -> entry.secId() != null)
+                .sorted(Comparator.comparing(Entry::secId))
+                .toArray(Entry[]::new);
+
+        List<Term> termList = new ArrayList<>();
+        Map<String, Integer> bySecId = new HashMap<>();
+        Map<String, Integer> byIsin = new HashMap<>();
+        Map<String, Integer> byRegNumber = new HashMap<>();
+
+        for (int i = 0; i < entries.length; i++) {
+            Entry entry = entries[i];
+            for (Field field : Field.values()) {
+                String text = normalize(value(entry, field));
+                for (int start = 0; start < text.length(); start = nextWord(text, start)) {
+                    termList.add(new Term(text.substring(start), rank(2 * field.ordinal() + (start > 0 ? 1 : 0), i, entry)));
+                }
+            }
+            bySecId.putIfAbsent(key(entry.secId()), i);
+            if (entry.isin() != null) {
+                byIsin.putIfAbsent(key(entry.isin()), i);
+            }
+            if (entry.regNumber() != null) {
+                byRegNumber.putIfAbsent(key(entry.regNumber()), i);
+            }
+        }
+
+        Term[] sorted = termList.toArray(Term[]::new);
+        Arrays.sort(sorted, Comparator.comparing(Term::text).thenComparingLong(Term::rank));
+        String[] terms = new String[sorted.length];
+        long[] ranks = new long[sorted.length];
+        for (int i = 0; i < sorted.length; i++) {
+            terms[i] = sorted[i].text();
+            ranks[i] = sorted[i].rank();
+        }
+        return new SecuritySearchIndex(entries, terms, ranks, Map.copyOf(bySecId), Map.copyOf(byIsin),
+                Map.copyOf(byRegNumber));
+    }
+
+    public int size() {
+        return entries.length;
+    }
+
+    /**
+     * Находит бумагу по точному ISIN.
+     */
+    public Optional<Entry> byIsin(String isin) {
+        return Optional.ofNullable(isin != null ? byIsin.get(key(isin)) : null).map(i -> entries[i]);
+    }
+
+    /**
+     * Находит бумагу по точному регистрационному номеру.
+     */
+    public Optional<Entry> byRegNumber(String regNumber) {
+        return Optional.ofNullable(regNumber != null ? byRegNumber.get(key(regNumber)) : null).map(i -> entries[i]);
+    }
+
+    /**
+     * Ищет бумаги, у которых одно из полей {@link Field} или слово в нём начинается с запроса.
+     *
+     * @param query Запрос без учёта регистра; пробелы между словами не важны.
+     * @param limit Максимальное количество результатов, не больше {@value #MAX_LIMIT}.
+     * @return Найденные записи по убыванию релевантности.
+     * @throws IllegalArgumentException если {@code limit} меньше 1.
+     */
+    public List<Entry> search(String query, int limit) {
+        if (limit < 1) {
+            throw new IllegalArgumentException("Limit must be positive: " + limit);
+        }
+        limit = Math.min(limit, MAX_LIMIT);
+        String prefix = normalize(query);
+        if (prefix.isEmpty()) {
+            return List.of();
+        }
+
+        LinkedHashSet<Integer> hits = new LinkedHashSet<>();
+        String key = key(query);
+        addIfPresent(hits, bySecId.get(key));
+        addIfPresent(hits, byIsin.get(key));
+        addIfPresent(hits, byRegNumber.get(key));
+
+        int[] ranked = cachedPrefixes.get(prefix);
+        if (ranked == null) {
+            ranked = rankRange(prefix, limit);
+        }
+        for (int i = 0; i < ranked.length && hits.size() < limit; i++) {
+            hits.add(ranked[i]);
+        }
+
+        List<Entry> result = new ArrayList<>(Math.min(hits.size(), limit));
+        for (int index : hits) {
+            if (result.size() == limit) {
+                break;
+            }
+            result.add(entries[index]);
+        }
+        return result;
+    }
+
+    /**
+     * Возвращает лучшие записи среди хвостов, начинающихся с префикса.
+     */
+    private int[] rankRange(String prefix, int limit) {
+        long[] best = new long[limit];
+        int count = 0;
+        for (int i = lowerBound(prefix); i < terms.length && terms[i].startsWith(prefix); i++) {
+            long rank = ranks[i];
+            if (count == limit && rank >= best[count - 1]) {
+                continue;
+            }
+            int duplicate = indexOfEntry(best, count, (int) rank);
+            if (duplicate >= 0) {
+                if (rank >= best[duplicate]) {
+                    continue;
+                }
+                System.arraycopy(best, duplicate + 1, best, duplicate, count - duplicate - 1);
+                count--;
+            } else if (count == limit) {
+                count--;
+            }
+            int position = count;
+            while (position > 0 && best[position - 1] > rank) {
+                best[position] = best[position - 1];
+                position--;
+            }
+            best[position] = rank;
+            count++;
+        }
+
+        int[] result = new int[count];
+        for (int i = 0; i < count; i++) {
+            result[i] = (int) best[i];
+        }
+        return result;
+    }
+
+    private static int indexOfEntry(long[] ranks, int count, int index) {
+        for (int i = 0; i < count; i++) {
+            if ((int) ranks[i] == index) {
+                return i;
+            }
+        }
+        return -1;
+    }
+
+    /**
+     * Заранее ранжирует префиксы, которым соответствует больше {@value #CACHED_RANGE} хвостов,
+     * чтобы поиск по любому префиксу просматривал не больше этого числа хвостов.
+     */
+    private Map<String, int[]> cachePrefixes() {
+        Map<String, int[]> cached = new HashMap<>();
+        cacheChildren("", 0, terms.length, cached);
+        return Map.copyOf(cached);
+    }
+
+    private void cacheChildren(String prefix, int from, int to, Map<String, int[]> cached) {
+        int depth = prefix.length();
+        int i = from;
+        while (i < to) {
+            if (terms[i].length() == depth) {
+                i++;
+                continue;
+            }
+            char c = terms[i].charAt(depth);
+            int end = i;
+            while (end < to && terms[end].length() > depth && terms[end].charAt(depth) == c) {
+                end++;
+            }
+            if (end - i > CACHED_RANGE) {
+                String child = prefix + c;
+                cached.put(child, rankRange(child, CACHED_HITS));
+                cacheChildren(child, i, end, cached);
+            }
+            i = end;
+        }
+    }
+
+    private int lowerBound(String prefix) {
+        int low = 0;
+        int high = terms.length;
+        while (low < high) {
+            int middle = (low + high) >>> 1;
+            if (terms[middle].compareTo(prefix) < 0) {
+                low = middle + 1;
+            } else {
+                high = middle;
+            }
+        }
+        return low;
+    }
+
+    /**
+     * Собирает ключ ранжирования: чем меньше ключ, тем выше запись в результатах.
+     */
+    private static long rank(int score, int index, Entry entry) {
+        int listLevel = entry.listLevel() != null ? Math.min(Math.max(entry.listLevel(), 0), 0xFF) : 0xFF;
+        int length = Math.min(entry.secId().length(), 0xFF);
+        return (long) score << 48 | (long) listLevel << 40 | (long) length << 32 | index;
+    }
+
+    private static void addIfPresent(Set<Integer> hits, Integer index) {
+        if (index != null) {
+            hits.add(index);
+        }
+    }
+
+    private static String value(Entry entry, Field field) {
+        return switch (field) {
+            case SECID -> entry.secId();
+            case SHORTNAME -> entry.shortName();
+            case ISIN -> entry.isin();
+            case SECNAME -> entry.secName();
+            case LATNAME -> entry.latName();
+        };
+    }
+
+    /**
+     * Приводит текст к виду, в котором он хранится в индексе: верхний регистр, Ё заменена на Е,
+     * слова из букв и цифр разделены одним пробелом.
+     */
+    static String normalize(String text) {
+        if (text == null) {
+            return "";
+        }
+        StringBuilder result = new StringBuilder(text.length());
+        boolean separator = false;
+        for (int i = 0; i < text.length(); i++) {
+            char c = Character.toUpperCase(text.charAt(i));
+            if (Character.isLetterOrDigit(c)) {
+                if (separator && !result.isEmpty()) {
+                    result.append(' ');
+                }
+                result.append(c == 'Ё' ? 'Е' : c);
+                separator = false;
+            } else {
+                separator = true;
+            }
+        }
+        return result.toString();
+    }
+
+    private static String key(String text) {
+        return text.strip().toUpperCase(Locale.ROOT);
+    }
+
+    /**
+     * @return Начало следующего слова нормализованного текста или длина текста, если слов больше нет.
+     */
+    private static int nextWord(String text, int start) {
+        int space = text.indexOf(' ', start);
+        return space < 0 ? text.length() : space + 1;
+    }
+}
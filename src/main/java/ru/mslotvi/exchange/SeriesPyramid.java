@@ -0,0 +1,50 @@
+package ru.mslotvi.exchange;
+
+/**
+ * Пирамида рядов одной ценной бумаги: недельные и месячные бары поверх дневного ряда.
+ * <p>Дневной уровень — это сам {@link PriceSeries}, без второй копии. Недельный и месячный уровни строятся
+ * по дневному ряду при первом обращении и дальше переиспользуются, поэтому снимки, которые считаются только
+ * по дням, не тратят на них ни времени, ни памяти. Многолетние расчёты с недельной или месячной частотой проходят
+ * по 5–20 раз меньшему числу наблюдений.</p>
+ *
+ * <p>Уровни строятся без блокировок: при одновременном первом обращении уровень может быть построен дважды,
+ * но оба результата одинаковы, и в поле остаётся один из них.</p>
+ */
+public final class SeriesPyramid {
+
+    private final PriceSeries series;
+    private volatile PriceBars weekly;
+    private volatile PriceBars monthly;
+
+    /**
+     * @param series Дневной ряд, упорядоченный по дням без повторов.
+     */
+    public SeriesPyramid(PriceSeries series) {
+        this.series = series;
+    }
+
+    /**
+     * @param frequency Недельная или месячная частота.
+     * @return Уровень пирамиды для заданной частоты; для дневной частоты уровня нет, см. {@link MarketHistory#bars}.
+     * @throws IllegalArgumentException если частота дневная.
+     */
+    public PriceBars level(Frequency frequency) {
+        return switch (frequency) {
+            case WEEKLY -> {
+                PriceBars bars = weekly;
+                if (bars == null) {
+                    weekly = bars = PriceBars.of(series, frequency);
+                }
+                yield bars;
+            }
+            case MONTHLY -> {
+                PriceBars bars = monthly;
+                if (bars == null) {
+                    monthly = bars = PriceBars.of(series, frequency);
+                }
+                yield bars;
+            }
+            case DAILY -> throw new IllegalArgumentException("Daily level is the series itself");
+        };
+    }
+}
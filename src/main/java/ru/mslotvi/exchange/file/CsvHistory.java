@@ -0,0 +1,286 @@
+package ru.mslotvi.exchange.file;
+
+import ru.mslotvi.exchange.DailyTradeRecord;
+import ru.mslotvi.exchange.ExchangeDateSnapshot;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.LocalDate;
+import java.util.AbstractList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Locale;
+
+/**
+ * Дневная история одной бумаги, прочитанная из выгрузки CSV, в примитивных столбцах.
+ * <p>Поддерживается выгрузка ISS ({@code history.csv}: строка с названием блока, заголовок и строки через
+ * {@code ;}) и обычный CSV через {@code ,}. Строки до заголовка со столбцом {@code TRADEDATE} или {@code DATE}
+ * пропускаются; из остальных столбцов читаются {@code OPEN}, {@code HIGH}, {@code LOW}, {@code CLOSE},
+ * {@code VOLUME}, {@code VALUE} и {@code NUMTRADES} без учёта регистра. Пустые и нечисловые значения хранятся как
+ * {@link Double#NaN}, строки с нераспознанной датой пропускаются.</p>
+ *
+ * <p>Строки упорядочиваются по дате, так как выгрузки нередко идут от новых дней к старым; из нескольких строк
+ * за один день остаётся последняя.</p>
+ */
+final class CsvHistory implements ExchangeDateSnapshot {
+
+    private static final int DATE = 0;
+    private static final int OPEN = 1;
+    private static final int HIGH = 2;
+    private static final int LOW = 3;
+    private static final int CLOSE = 4;
+    private static final int VOLUME = 5;
+    private static final int VALUE = 6;
+    private static final int NUM_TRADES = 7;
+    private static final int SKIP = -1;
+
+    private final String secId;
+    private final String boardId;
+    private final int size;
+    private final int[] tradeDay;
+    private final double[][] columns;
+
+    private CsvHistory(String secId, String boardId, int size, int[] tradeDay, double[][] columns) {
+        this.secId = secId;
+        this.boardId = boardId;
+        this.size = size;
+        this.tradeDay = tradeDay;
+        this.columns = columns;
+    }
+
+    /**
+     * Читает выгрузку CSV.
+     *
+     * @param file Файл выгрузки в кодировке UTF-8.
+     * @param secId Идентификатор ценной бумаги.
+     * @param boardId Код торговой доски.
+     * @return История, упорядоченная по дате.
+     * @throws IOException если файл не удалось прочитать или в нём нет заголовка со столбцом даты.
+     */
+    static CsvHistory read(Path file, String secId, String boardId) throws IOException {
+        try (BufferedReader reader = Files.newBufferedReader(file, StandardCharsets.UTF_8)) {
+            String line;
+            int[] mapping = null;
+            char delimiter = ',';
+            while (mapping == null && (line = reader.readLine()) != null) {
+                delimiter = line.indexOf(';') >= 0 ? ';' : ',';
+                mapping = readColumnMapping(line, delimiter);
+            }
+            if (mapping == null) {
+                throw new IOException("No TRADEDATE column in " + file);
+            }
+
+            int capacity = 256;
+            int size = 0;
+            int[] days = new int[capacity];
+            double[][] columns = new double[NUM_TRADES][capacity];
+            String[] fields = new String[mapping.length];
+            while ((line = reader.readLine()) != null) {
+                if (line.isBlank()) {
+                    continue;
+                }
+                int count = split(line, delimiter, fields);
+                int day = NO_DAY;
+                if (size == capacity) {
+                    capacity *= 2;
+                    days = Arrays.copyOf(days, capacity);
+                    for (int c = 0; c < columns.length; c++) {
+                        columns[c] = Arrays.copyOf(columns[c], capacity);
+                    }
+                }
+                for (int c = 0; c < columns.length; c++) {
+                    columns[c][size] = Double.NaN;
+                }
+                for (int i = 0; i < count; i++) {
+                    int column = mapping[i];
+                    if (column == SKIP || fields[i].isEmpty()) {
+                        continue;
+                    }
+                    if (column == DATE) {
+                        day = epochDay(fields[i]);
+                    } else {
+                        columns[column - 1][size] = number(fields[i]);
+                    }
+                }
+                if (day != NO_DAY) {
+                    days[size++] = day;
+                }
+            }
+            return sorted(secId, boardId, size, days, columns);
+        }
+    }
+
+    /**
+     * @return Первый день истории или {@link #NO_DAY}, если она пуста.
+     */
+    int firstDay() {
+        return size > 0 ? tradeDay[0] : NO_DAY;
+    }
+
+    /**
+     * @return Последний день истории или {@link #NO_DAY}, если она пуста.
+     */
+    int lastDay() {
+        return size > 0 ? tradeDay[size - 1] : NO_DAY;
+    }
+
+    @Override
+    public int size() {
+        return size;
+    }
+
+    @Override
+    public int tradeDay(int i) {
+        return tradeDay[i];
+    }
+
+    @Override
+    public double open(int i) {
+        return columns[OPEN - 1][i];
+    }
+
+    @Override
+    public double high(int i) {
+        return columns[HIGH - 1][i];
+    }
+
+    @Override
+    public double low(int i) {
+        return columns[LOW - 1][i];
+    }
+
+    @Override
+    public double close(int i) {
+        return columns[CLOSE - 1][i];
+    }
+
+    @Override
+    public double volume(int i) {
+        return columns[VOLUME - 1][i];
+    }
+
+    @Override
+    public double value(int i) {
+        return columns[VALUE - 1][i];
+    }
+
+    @Override
+    public double numTrades(int i) {
+        return columns[NUM_TRADES - 1][i];
+    }
+
+    @Override
+    public List<DailyTradeRecord> tradeRecords() {
+        return new AbstractList<>() {
+            @Override
+            public DailyTradeRecord get(int i) {
+                return DailyTradeRecord.of(CsvHistory.this, i, boardId, secId, null);
+            }
+
+            @Override
+            public int size() {
+                return size;
+            }
+        };
+    }
+
+    private static int[] readColumnMapping(String header, char delimiter) {
+        String[] names = header.split(String.valueOf(delimiter), -1);
+        int[] mapping = new int[names.length];
+        boolean hasDate = false;
+        for (int i = 0; i < names.length; i++) {
+            mapping[i] = switch (names[i].trim().toUpperCase(Locale.ROOT)) {
+                case "TRADEDATE", "DATE" -> DATE;
+                case "OPEN" -> OPEN;
+                case "HIGH" -> HIGH;
+                case "LOW" -> LOW;
+                case "CLOSE" -> CLOSE;
+                case "VOLUME" -> VOLUME;
+                case "VALUE" -> VALUE;
+                case "NUMTRADES" -> NUM_TRADES;
+                default -> SKIP;
+            };
+            hasDate |= mapping[i] == DATE;
+        }
+        return hasDate ? mapping : null;
+    }
+
+    /**
+     * Делит строку на поля без регулярных выражений; поля сверх заголовка отбрасываются.
+     *
+     * @return Количество заполненных полей.
+     */
+    private static int split(String line, char delimiter, String[] fields) {
+        int count = 0;
+        int start = 0;
+        while (count < fields.length) {
+            int end = line.indexOf(delimiter, start);
+            fields[count++] = (end < 0 ? line.substring(start) : line.substring(start, end)).trim();
+            if (end < 0) {
+                break;
+            }
+            start = end + 1;
+        }
+        return count;
+    }
+
+    private static double number(String field) {
+        try {
+            return Double.parseDouble(field);
+        } catch (NumberFormatException e) {
+            return Double.NaN;
+        }
+    }
+
+    /**
+     * Переводит дату {@code yyyy-MM-dd} (время после даты отбрасывается) в эпохальный день.
+     */
+    private static int epochDay(String date) {
+        if (date.length() < 10) {
+            return NO_DAY;
+        }
+        try {
+            return (int) LocalDate.of(Integer.parseInt(date, 0, 4, 10), Integer.parseInt(date, 5, 7, 10),
+                    Integer.parseInt(date, 8, 10, 10)).toEpochDay();
+        } catch (RuntimeException e) {
+            return NO_DAY;
+        }
+    }
+
+    private static CsvHistory sorted(String secId, String boardId, int size, int[] days, double[][] columns) {
+        boolean ascending = true;
+        for (int i = 1; i < size && ascending; i++) {
+            ascending = days[i - 1] < days[i];
+        }
+        if (ascending) {
+            return new CsvHistory(secId, boardId, size, days, columns);
+        }
+
+        // Устойчивая сортировка индексов: из строк за один день последней в порядке файла оказывается последняя строка.
+        Integer[] order = new Integer[size];
+        for (int i = 0; i < size; i++) {
+            order[i] = i;
+        }
+        int[] source = days;
+        Arrays.sort(order, (a, b) -> Integer.compare(source[a], source[b]));
+
+        int[] sortedDays = new int[size];
+        double[][] sortedColumns = new double[columns.length][size];
+        int n = 0;
+        for (int k = 0; k < size; k++) {
+            int row = order[k];
+            if (n > 0 && sortedDays[n - 1] == days[row]) {
+                n--;
+            }
+            sortedDays[n] = days[row];
+            for (int c = 0; c < columns.length; c++) {
+                sortedColumns[c][n] = columns[c][row];
+            }
+            n++;
+        }
+        return new CsvHistory(secId, boardId, n, sortedDays, sortedColumns);
+    }
+}
@@ -0,0 +1,12 @@
+package ru.mslotvi.exchange.file;
+
+import ru.mslotvi.exchange.ExchangeBoard;
+
+/**
+ * Торговая доска биржи на локальных файлах; код доски — имя её каталога.
+ *
+ * @param code Код торговой доски.
+ * @param description Описание доски.
+ */
+public record FileBoard(String code, String description) implements ExchangeBoard {
+}
@@ -0,0 +1,298 @@
+package ru.mslotvi.exchange.file;
+
+import lombok.AccessLevel;
+import lombok.Data;
+import lombok.Getter;
+import lombok.Setter;
+import lombok.experimental.Accessors;
+import lombok.extern.log4j.Log4j2;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.stereotype.Component;
+import ru.mslotvi.config.FileExchangeConfig;
+import ru.mslotvi.data.MarketDataStore;
+import ru.mslotvi.data.StoredSeries;
+import ru.mslotvi.exchange.*;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.LocalDate;
+import java.util.*;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.function.Function;
+import java.util.stream.Stream;
+
+/**
+ * Биржа на локальных файлах для исследований и тяжёлых пакетных расчётов без обращения к MOEX.
+ * <p>Справочник строится по каталогу {@link FileExchangeConfig#getDirectory()}: каждый каталог
+ * {@code {board}/{secId}} со столбцовыми файлами {@link StoredSeries} — это бумага на торговой доске. Формат тот же,
+ * что у локального хранилища {@link ru.mslotvi.data.MarketDataStore}, поэтому накопленную им историю можно
+ * использовать без преобразования. Если бумага есть на нескольких досках, берётся доска с самой длинной историей.</p>
+ *
+ * <p>История читается из отображённых в память файлов без копирования, поэтому загрузка ограничена только
+ * скоростью локального диска. Выгрузки CSV из {@link FileExchangeConfig#getImportDirectory()} переводятся
+ * в столбцовые файлы при загрузке справочника, см. {@link CsvHistory}.</p>
+ *
+ * <p>Биржа регистрируется в {@link ExchangeService} только при {@code file-exchange.enabled=true}.</p>
+ */
+@Data
+@Accessors(fluent = true)
+@Component
+@ConditionalOnProperty(prefix = "file-exchange", name = "enabled", havingValue = "true")
+@Log4j2
+public class FileExchange implements Exchange {
+
+    private final FileExchangeConfig config;
+    @Getter(AccessLevel.NONE)
+    @Setter(AccessLevel.NONE)
+    private final MarketDataStore marketDataStore;
+    private final AtomicReference<Map<String, FileSecuritie>> securities = new AtomicReference<>(Map.of());
+    private final AtomicReference<List<ExchangeBoard>> boards = new AtomicReference<>(List.of());
+    private final SecurityScreener screener = new SecurityScreener();
+    @Getter(AccessLevel.NONE)
+    @Setter(AccessLevel.NONE)
+    private final AtomicLong historyLoads = new AtomicLong();
+    @Getter(AccessLevel.NONE)
+    @Setter(AccessLevel.NONE)
+    private final AtomicLong importedFiles = new AtomicLong();
+    @Getter(AccessLevel.NONE)
+    @Setter(AccessLevel.NONE)
+    private final AtomicLong failedImports = new AtomicLong();
+    @Getter(AccessLevel.NONE)
+    @Setter(AccessLevel.NONE)
+    private volatile SecuritySearchIndex searchIndex = SecuritySearchIndex.EMPTY;
+
+    public FileExchange(FileExchangeConfig config, MarketDataStore marketDataStore) {
+        this.config = config;
+        this.marketDataStore = marketDataStore;
+    }
+
+    @Override
+    public String name() {
+        return config.getName();
+    }
+
+    /**
+     * Импортирует выгрузки CSV и перечитывает справочник из каталога истории.
+     * <p>Уже открытые бумаги не пересоздаются, поэтому их последние загруженные снимки сохраняются.</p>
+     */
+    @Override
+    public CompletableFuture<Void> loadData() {
+        return CompletableFuture.runAsync(() -> {
+            try {
+                importCsv();
+                scan();
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+        }).thenRun(() -> log.info("Load {} securities from {}", securities.get().size(), config.getDirectory()));
+    }
+
+    /**
+     * Переводит выгрузки {@code {importDirectory}/{board}/{secId}.csv} в столбцовые файлы.
+     * <p>Файл пропускается, если его интервал дат уже целиком сохранён; иначе его строки записываются поверх
+     * сохранённых за те же дни. Файл, который не удалось прочитать или записать, пропускается с предупреждением
+     * и учитывается в счётчике {@code file.failedImports}; остальные файлы импортируются.</p>
+     */
+    private void importCsv() throws IOException {
+        if (config.getImportDirectory() == null || config.getImportDirectory().isBlank()) {
+            return;
+        }
+        Path root = Path.of(config.getImportDirectory());
+        if (!Files.isDirectory(root)) {
+            log.warn("Import directory {} does not exist", root);
+            return;
+        }
+        Path target = Path.of(config.getDirectory());
+        for (Path boardDirectory : list(root)) {
+            if (!Files.isDirectory(boardDirectory)) {
+                continue;
+            }
+            String boardId = boardDirectory.getFileName().toString();
+            for (Path file : list(boardDirectory)) {
+                String fileName = file.getFileName().toString();
+                if (!fileName.toLowerCase(Locale.ROOT).endsWith(".csv")) {
+                    continue;
+                }
+                String secId = fileName.substring(0, fileName.length() - ".csv".length());
+                try {
+                    importCsv(file, target, boardId, secId);
+                } catch (IOException | RuntimeException e) {
+                    failedImports.incrementAndGet();
+                    log.warn("Failed to import {}", file, e);
+                }
+            }
+        }
+    }
+
+    private void importCsv(Path file, Path target, String boardId, String secId) throws IOException {
+        CsvHistory history = CsvHistory.read(file, secId, boardId);
+        if (history.size() == 0) {
+            return;
+        }
+        StoredSeries stored = series(target, boardId, secId);
+        if (!stored.missing(history.firstDay(), history.lastDay()).isEmpty()) {
+            stored.write(List.of(history), history.firstDay(), history.lastDay());
+            importedFiles.incrementAndGet();
+            log.debug("Imported {} rows of {}/{} from {}", history.size(), boardId, secId, file);
+        }
+    }
+
+    /**
+     * Строит справочник по каталогам истории и атомарно подменяет им текущий.
+     * <p>Каталог бумаги, файлы которого не удалось открыть, пропускается с предупреждением.</p>
+     */
+    private void scan() throws IOException {
+        Path root = Path.of(config.getDirectory());
+        if (!Files.isDirectory(root)) {
+            log.warn("File exchange directory {} does not exist", root);
+            return;
+        }
+        Map<String, FileSecuritie> previous = securities.get();
+        Map<String, FileSecuritie> next = new HashMap<>();
+        List<ExchangeBoard> scannedBoards = new ArrayList<>();
+        for (Path boardDirectory : list(root)) {
+            if (!Files.isDirectory(boardDirectory)) {
+                continue;
+            }
+            FileBoard board = new FileBoard(boardDirectory.getFileName().toString(), boardDirectory.toString());
+            scannedBoards.add(board);
+            for (Path securitieDirectory : list(boardDirectory)) {
+                if (!Files.isDirectory(securitieDirectory)) {
+                    continue;
+                }
+                String secId = securitieDirectory.getFileName().toString();
+                FileSecuritie existing = previous.get(secId);
+                FileSecuritie securitie;
+                try {
+                    securitie = existing != null && existing.board().equals(board) ? existing
+                            : new FileSecuritie(secId, secId, board, series(root, board.code(), secId));
+                } catch (IOException | RuntimeException e) {
+                    log.warn("Failed to open {}", securitieDirectory, e);
+                    continue;
+                }
+                if (securitie.rows() == 0) {
+                    continue;
+                }
+                next.merge(secId, securitie, (a, b) -> a.rows() >= b.rows() ? a : b);
+            }
+        }
+
+        for (FileSecuritie securitie : next.values()) {
+            screener.register(securitie.secId(), 0);
+        }
+        searchIndex = SecuritySearchIndex.of(next.values().stream()
+                .map(securitie -> new SecuritySearchIndex.Entry(securitie.secId(), securitie.shortName(),
+                        null, null, null, null, null))
+                .toList());
+        boards.set(List.copyOf(scannedBoards));
+        securities.set(Map.copyOf(next));
+        screener.retain(next.keySet());
+    }
+
+    /**
+     * Открывает историю бумаги в каталоге {@code root}.
+     * <p>Если это каталог включённого {@link MarketDataStore}, возвращается объект хранилища: у каждого
+     * {@link StoredSeries} свои строки в памяти и свой монитор, и два объекта над одними файлами перемешали бы записи.</p>
+     */
+    private StoredSeries series(Path root, String boardId, String secId) throws IOException {
+        if (marketDataStore.enabled() && marketDataStore.directory().equals(root.toAbsolutePath().normalize())) {
+            try {
+                return marketDataStore.series(boardId, secId);
+            } catch (UncheckedIOException e) {
+                throw e.getCause();
+            }
+        }
+        return StoredSeries.open(root.resolve(boardId).resolve(secId), secId, boardId);
+    }
+
+    private static List<Path> list(Path directory) throws IOException {
+        try (Stream<Path> entries = Files.list(directory)) {
+            return entries.sorted().toList();
+        }
+    }
+
+    /**
+     * Загружает историю торгов по нескольким бумагам одновременно.
+     * <p>Чтение отображённых файлов не ждёт сети, поэтому бумаги читаются пулом из
+     * {@link FileExchangeConfig#getHistoryConcurrency()} потоков. Ошибка по одной бумаге не прерывает остальные.</p>
+     *
+     * @param allSecurities Ценные бумаги для загрузки.
+     * @param start Дата начала интервала.
+     * @param end Дата окончания интервала.
+     * @return Снимки загруженной истории и ошибки по остальным бумагам.
+     */
+    public HistoryLoadResult loadMarketHistories(List<? extends ExchangeSecuritie> allSecurities, LocalDate start, LocalDate end) {
+        return loadMarketHistories(allSecurities, securitie -> securitie.loadMarketHistory(start, end));
+    }
+
+    private HistoryLoadResult loadMarketHistories(List<? extends ExchangeSecuritie> allSecurities,
+                                                  Function<ExchangeSecuritie, MarketHistory> load) {
+        try (ExecutorService executor = Executors.newFixedThreadPool(Math.max(config.getHistoryConcurrency(), 1))) {
+            return HistoryLoadResult.collect(allSecurities, executor, securitie -> {
+                MarketHistory history = load.apply(securitie);
+                historyLoads.incrementAndGet();
+                return history;
+            });
+        }
+    }
+
+    @Override
+    public PortfolioCalculator createPortfolioCalculator(Set<String> ids, LocalDate start, LocalDate end, Frequency frequency) {
+        List<ExchangeSecuritie> requested = new ArrayList<>(ids.size());
+        Map<String, FileSecuritie> current = securities.get();
+        for (String id : ids) {
+            FileSecuritie securitie = current.get(id);
+            if (securitie != null) {
+                requested.add(securitie);
+            }
+        }
+
+        return loadMarketHistories(requested, start, end).calculator(frequency);
+    }
+
+    @Override
+    public List<Portfolio> generatePortfolios(Set<String> ids, LocalDate start, LocalDate end, int amount) {
+        var calculator = createPortfolioCalculator(ids, start, end);
+        calculator.generatePortfolios(amount);
+        return calculator.getPortfolios();
+    }
+
+    @Override
+    public void refreshScreener(LocalDate from, LocalDate to) {
+        HistoryLoadResult result = loadMarketHistories(List.copyOf(securities.get().values()), securitie -> {
+            MarketHistory history = securitie.fetchMarketHistory(from, to);
+            screener.refresh(securitie.secId(), history.series());
+            return history;
+        });
+        log.info("Screener refreshed: {} loaded, {} failed", result.loaded().size(), result.failures().size());
+    }
+
+    @Override
+    public SecuritySearchIndex searchIndex() {
+        return searchIndex;
+    }
+
+    @Override
+    public Map<String, Number> metrics() {
+        Map<String, Number> metrics = new LinkedHashMap<>();
+        metrics.put("file.securities", securities.get().size());
+        metrics.put("file.historyLoads", historyLoads.get());
+        metrics.put("file.importedFiles", importedFiles.get());
+        metrics.put("file.failedImports", failedImports.get());
+        return metrics;
+    }
+
+    @Override
+    public List<ExchangeBoard> getBoards() {
+        return boards.get();
+    }
+
+    @Override
+    public Map<String, ExchangeSecuritie> getSecurities() {
+        return Collections.unmodifiableMap(securities.get());
+    }
+}
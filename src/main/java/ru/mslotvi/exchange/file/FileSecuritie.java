@@ -0,0 +1,77 @@
+package ru.mslotvi.exchange.file;
+
+import lombok.AccessLevel;
+import lombok.Getter;
+import lombok.SneakyThrows;
+import lombok.experimental.Accessors;
+import ru.mslotvi.data.StoredSeries;
+import ru.mslotvi.exchange.ExchangeSecuritie;
+import ru.mslotvi.exchange.MarketHistory;
+import ru.mslotvi.util.MathUtil;
+
+import java.time.LocalDate;
+import java.util.List;
+
+/**
+ * Ценная бумага биржи на локальных файлах.
+ * <p>История читается из отображённых в память столбцовых файлов {@link StoredSeries} без копирования данных
+ * и без обращения к сети. Интервалы, которых нет в файлах, просто не содержат записей.</p>
+ */
+@Getter
+@Accessors(fluent = true)
+public class FileSecuritie implements ExchangeSecuritie {
+
+    private final String secId;
+    private final String shortName;
+    private final FileBoard board;
+
+    @Getter(AccessLevel.NONE)
+    private final transient StoredSeries series;
+
+    @Getter(AccessLevel.NONE)
+    private transient volatile MarketHistory lastMarketHistory;
+
+    public FileSecuritie(String secId, String shortName, FileBoard board, StoredSeries series) {
+        this.secId = secId;
+        this.shortName = shortName;
+        this.board = board;
+        this.series = series;
+    }
+
+    /**
+     * @return Количество сохранённых дней истории.
+     */
+    public int rows() {
+        return series.rows();
+    }
+
+    @Override
+    public double calculateDeviation() {
+        MarketHistory history = lastMarketHistory;
+        return history != null ? MathUtil.calculateStandardDeviation(history.series()) : 0;
+    }
+
+    @Override
+    public double calculateExpectedReturn() {
+        MarketHistory history = lastMarketHistory;
+        return history != null ? MathUtil.calculateExpectedReturn(history) : 0;
+    }
+
+    @Override
+    public MarketHistory lastLoadMarketHistory() {
+        return lastMarketHistory;
+    }
+
+    @Override
+    public MarketHistory loadMarketHistory(LocalDate from, LocalDate to) {
+        MarketHistory history = fetchMarketHistory(from, to);
+        lastMarketHistory = history;
+        return history;
+    }
+
+    @Override
+    @SneakyThrows
+    public MarketHistory fetchMarketHistory(LocalDate from, LocalDate to) {
+        return MarketHistory.of(this, from, to, List.of(series.read((int) from.toEpochDay(), (int) to.toEpochDay())));
+    }
+}
@@ -4,6 +4,11 @@ import lombok.Getter;
 import lombok.experimental.Accessors;
 import ru.mslotvi.exchange.ExchangeBoard;
 
+import java.util.Arrays;
+import java.util.Map;
+import java.util.function.Function;
+import java.util.stream.Collectors;
+
 @Getter @Accessors(fluent = true)
 public enum MoexBoard implements ExchangeBoard {
     SMAL("SMAL", "Торги акциями малого и среднего капитала"),
@@ -20,6 +25,9 @@ public enum MoexBoard implements ExchangeBoard {
     SPEQ("SPEQ", "Торги акциями с равным весом (Invesco S&P 500 Equal Weight UCITS ETF Acc)");
 
 
+    private static final Map<String, MoexBoard> BY_CODE = Arrays.stream(values())
+            .collect(Collectors.toUnmodifiableMap(MoexBoard::code, Function.identity()));
+
     private final String code;
     private final String description;
 
@@ -27,4 +35,12 @@ public enum MoexBoard implements ExchangeBoard {
         this.code = code;
         this.description = description;
     }
+
+    /**
+     * @param code Код доски из ответа ISS.
+     * @return Доска или {@code null}, если код неизвестен.
+     */
+    public static MoexBoard of(String code) {
+        return BY_CODE.get(code);
+    }
 }
@@ -0,0 +1,153 @@
+package ru.mslotvi.exchange.moex;
+
+import lombok.extern.log4j.Log4j2;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import ru.mslotvi.config.MoexConfig;
+import ru.mslotvi.data.MarketDataStore;
+import ru.mslotvi.exchange.ExchangeSecuritie;
+import ru.mslotvi.util.QueryUtil;
+
+import java.io.IOException;
+import java.net.URI;
+import java.time.LocalDate;
+import java.util.*;
+
+/**
+ * Загрузка дневной истории торгов целыми торговыми досками.
+ * <p>Вместо запроса истории по каждой бумаге ISS отдаёт историю всех бумаг доски за один день постраничным
+ * ответом {@code /history/.../boards/{board}/securities.json?date=...}. Страницы разбираются
+ * {@link MoexHistoryParser#parseBoard}, раскладываются по бумагам за один проход
+ * ({@link MoexHistoryPage#bySecId()}) и сохраняются в {@link MarketDataStore}. Обновление всей доски за день
+ * занимает несколько запросов вместо сотен.</p>
+ *
+ * <p>Бумаги доски из справочника, по которым в этот день не было торгов, отмечаются в хранилище как загруженные
+ * без записей, чтобы {@link MarketDataStore#load} не запрашивал их по отдельности. Это делается только для дней
+ * старше {@link ru.mslotvi.config.MarketStoreConfig#getPublicationLag()}: по более свежим дням итоги бумаги могут
+ * быть ещё не опубликованы, и такие дни загружаются повторно следующими запусками. Если доска за день не вернула
+ * ни одной записи (выходной или итоги ещё не опубликованы), день не отмечается.</p>
+ */
+@Log4j2
+@Component
+public class MoexBoardIngestion {
+
+    /**
+     * Итог загрузки доски за день.
+     *
+     * @param rows Количество загруженных записей.
+     * @param securities Количество бумаг с записями.
+     * @param pages Количество страниц ответа (запросов к ISS).
+     */
+    public record Result(MoexBoard board, LocalDate date, int rows, int securities, int pages) {
+    }
+
+    private final MoexConfig config;
+    private final MoexIssClient issClient;
+    private final MoexExchange exchange;
+    private final MarketDataStore marketDataStore;
+
+    public MoexBoardIngestion(MoexConfig config, MoexIssClient issClient, MoexExchange exchange,
+                              MarketDataStore marketDataStore) {
+        this.config = config;
+        this.issClient = issClient;
+        this.exchange = exchange;
+        this.marketDataStore = marketDataStore;
+    }
+
+    /**
+     * Загружает последние {@link MoexConfig#getIngestionDays()} завершённых дней по доскам
+     * {@link MoexConfig#getIngestionBoards()}. Уже сохранённые дни пропускаются.
+     */
+    @Scheduled(cron = "${moex.ingestion-cron:0 30 3 * * *}")
+    public void ingestRecentDays() {
+        if (!marketDataStore.enabled()) {
+            log.debug("Board ingestion skipped: market store is disabled");
+            return;
+        }
+        LocalDate yesterday = LocalDate.now().minusDays(1);
+        for (String code : config.getIngestionBoards()) {
+            MoexBoard board = MoexBoard.valueOf(code);
+            for (int days = Math.max(config.getIngestionDays(), 1) - 1; days >= 0; days--) {
+                LocalDate date = yesterday.minusDays(days);
+                if (stored(board, date)) {
+                    continue;
+                }
+                try {
+                    Result result = ingest(board, date);
+                    log.info("Ingested {} {}: {} rows for {} securities in {} requests",
+                            board.code(), date, result.rows(), result.securities(), result.pages());
+                } catch (IOException e) {
+                    log.warn("Failed to ingest {} {}", board.code(), date, e);
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    return;
+                }
+            }
+        }
+    }
+
+    /**
+     * Загружает историю всех бумаг доски за день и сохраняет её по бумагам.
+     *
+     * @param board Торговая доска.
+     * @param date Завершённый торговый день.
+     * @return Итог загрузки.
+     * @throws IOException если не удалось загрузить ответ или записать файлы.
+     * @throws InterruptedException если загрузка была прервана.
+     * @throws IllegalArgumentException если день ещё не завершён.
+     */
+    public Result ingest(MoexBoard board, LocalDate date) throws IOException, InterruptedException {
+        if (!date.isBefore(LocalDate.now())) {
+            throw new IllegalArgumentException("Day is not finished yet: " + date);
+        }
+        List<MoexHistoryPage> pages = issClient.getHistoryPages(start -> pageUrl(board, date, start),
+                MoexHistoryParser.INSTANCE::parseBoard);
+
+        Map<String, List<MoexHistoryPage>> bySecId = new HashMap<>();
+        int rows = 0;
+        for (MoexHistoryPage page : pages) {
+            rows += page.size();
+            page.bySecId().forEach((secId, rowsOfSecurity) ->
+                    bySecId.computeIfAbsent(secId, id -> new ArrayList<>(1)).add(rowsOfSecurity));
+        }
+
+        for (Map.Entry<String, List<MoexHistoryPage>> entry : bySecId.entrySet()) {
+            marketDataStore.store(board.code(), entry.getKey(), entry.getValue(), date, date);
+        }
+
+        if (rows > 0) {
+            for (ExchangeSecuritie securitie : exchange.getSecurities().values()) {
+                if (securitie instanceof MoexSecuritie moex && moex.boardId() == board
+                        && !bySecId.containsKey(moex.secId())) {
+                    marketDataStore.store(board.code(), moex.secId(), List.of(), date, date);
+                }
+            }
+        }
+        return new Result(board, date, rows, bySecId.size(), pages.size());
+    }
+
+    /**
+     * Проверяет, сохранён ли день у всех бумаг доски из справочника.
+     */
+    private boolean stored(MoexBoard board, LocalDate date) {
+        int day = (int) date.toEpochDay();
+        boolean any = false;
+        for (ExchangeSecuritie securitie : exchange.getSecurities().values()) {
+            if (securitie instanceof MoexSecuritie moex && moex.boardId() == board) {
+                if (!marketDataStore.series(board.code(), moex.secId()).missing(day, day).isEmpty()) {
+                    return false;
+                }
+                any = true;
+            }
+        }
+        return any;
+    }
+
+    private URI pageUrl(MoexBoard board, LocalDate date, int start) {
+        Map<String, String> queryParams = issClient.historyProjection();
+        queryParams.put("date", date.toString());
+        queryParams.put("start", String.valueOf(start));
+        return URI.create(config.getBoardHistoryEntryPoint() + "/" + board.code() + "/securities.json?"
+                + QueryUtil.buildQueryString(queryParams));
+    }
+}
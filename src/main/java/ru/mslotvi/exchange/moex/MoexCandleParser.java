@@ -0,0 +1,172 @@
+package ru.mslotvi.exchange.moex;
+
+import com.google.gson.stream.JsonReader;
+import com.google.gson.stream.JsonToken;
+import ru.mslotvi.exchange.CandleSeries;
+import ru.mslotvi.exchange.ExchangeDateSnapshot;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+
+/**
+ * Потоковый разборщик ответа ISS {@code /securities/{secId}/candles.json}.
+ * <p>Как и {@link MoexHistoryParser}, читает ответ по токенам прямо из {@link InputStream} и пишет значения
+ * сразу в примитивные столбцы {@link CandleSeries.Builder}, не создавая объектов на строку. Все страницы одного
+ * запроса дописываются в один сборщик. Время {@code yyyy-MM-dd HH:mm:ss} переводится в эпохальную минуту
+ * арифметически.</p>
+ *
+ * <p>Разборщик не хранит состояния между вызовами, поэтому один экземпляр используется всеми потоками.</p>
+ */
+public final class MoexCandleParser {
+
+    public static final MoexCandleParser INSTANCE = new MoexCandleParser();
+
+    private static final int BEGIN = 0;
+    private static final int OPEN = 1;
+    private static final int HIGH = 2;
+    private static final int LOW = 3;
+    private static final int CLOSE = 4;
+    private static final int VOLUME = 5;
+    private static final int VALUE = 6;
+    private static final int SKIP = -1;
+
+    private static final int NO_MINUTE = Integer.MIN_VALUE;
+
+    private MoexCandleParser() {
+    }
+
+    /**
+     * Разбирает страницу свечей и дописывает её в сборщик.
+     *
+     * @param body Поток тела ответа в кодировке UTF-8. Поток закрывается после разбора.
+     * @param candles Сборщик ряда; свечи страницы должны начинаться не раньше уже добавленных.
+     * @return Количество строк страницы, включая пропущенные; 0 означает, что свечей больше нет.
+     * @throws IOException если ответ не удалось прочитать или он имеет неожиданный формат.
+     */
+    public int parse(InputStream body, CandleSeries.Builder candles) throws IOException {
+        try (JsonReader reader = new JsonReader(new InputStreamReader(body, StandardCharsets.UTF_8))) {
+            int rows = 0;
+            reader.beginObject();
+            while (reader.hasNext()) {
+                if ("candles".equals(reader.nextName())) {
+                    rows = readCandles(reader, candles);
+                } else {
+                    reader.skipValue();
+                }
+            }
+            reader.endObject();
+            return rows;
+        }
+    }
+
+    private int readCandles(JsonReader reader, CandleSeries.Builder candles) throws IOException {
+        int[] mapping = null;
+        int rows = 0;
+        reader.beginObject();
+        while (reader.hasNext()) {
+            String name = reader.nextName();
+            if ("columns".equals(name)) {
+                mapping = readColumnMapping(reader);
+            } else if ("data".equals(name)) {
+                if (mapping == null) {
+                    throw new IOException("ISS candles block has data before columns");
+                }
+                rows += readRows(reader, mapping, candles);
+            } else {
+                reader.skipValue();
+            }
+        }
+        reader.endObject();
+        return rows;
+    }
+
+    private int[] readColumnMapping(JsonReader reader) throws IOException {
+        int[] mapping = new int[8];
+        int count = 0;
+        reader.beginArray();
+        while (reader.hasNext()) {
+            if (count == mapping.length) {
+                mapping = Arrays.copyOf(mapping, count * 2);
+            }
+            mapping[count++] = switch (reader.nextString()) {
+                case "begin" -> BEGIN;
+                case "open" -> OPEN;
+                case "high" -> HIGH;
+                case "low" -> LOW;
+                case "close" -> CLOSE;
+                case "volume" -> VOLUME;
+                case "value" -> VALUE;
+                default -> SKIP;
+            };
+        }
+        reader.endArray();
+        return Arrays.copyOf(mapping, count);
+    }
+
+    private int readRows(JsonReader reader, int[] mapping, CandleSeries.Builder candles) throws IOException {
+        int rows = 0;
+        reader.beginArray();
+        while (reader.hasNext()) {
+            int minute = NO_MINUTE;
+            double open = Double.NaN;
+            double high = Double.NaN;
+            double low = Double.NaN;
+            double close = Double.NaN;
+            double volume = Double.NaN;
+            double value = Double.NaN;
+            reader.beginArray();
+            for (int column : mapping) {
+                if (column == SKIP || reader.peek() == JsonToken.NULL) {
+                    reader.skipValue();
+                    continue;
+                }
+                switch (column) {
+                    case BEGIN -> minute = epochMinute(reader.nextString());
+                    case OPEN -> open = reader.nextDouble();
+                    case HIGH -> high = reader.nextDouble();
+                    case LOW -> low = reader.nextDouble();
+                    case CLOSE -> close = reader.nextDouble();
+                    case VOLUME -> volume = reader.nextDouble();
+                    case VALUE -> value = reader.nextDouble();
+                    default -> reader.skipValue();
+                }
+            }
+            while (reader.hasNext()) {
+                reader.skipValue();
+            }
+            reader.endArray();
+            rows++;
+            if (minute != NO_MINUTE) {
+                candles.append(minute, open, high, low, close, volume, value);
+            }
+        }
+        reader.endArray();
+        return rows;
+    }
+
+    /**
+     * Переводит время {@code yyyy-MM-dd HH:mm:ss} в эпохальную минуту без создания {@link java.time.LocalDateTime}.
+     */
+    static int epochMinute(String time) {
+        int day = MoexHistoryParser.epochDay(time);
+        if (day == ExchangeDateSnapshot.NO_DAY) {
+            return NO_MINUTE;
+        }
+        int minute = day * 1440;
+        if (time.length() >= 16) {
+            minute += digits(time, 11, 13) * 60 + digits(time, 14, 16);
+        }
+        return minute;
+    }
+
+    private static int digits(String text, int from, int to) {
+        int result = 0;
+        for (int i = from; i < to; i++) {
+            result = result * 10 + (text.charAt(i) - '0');
+        }
+        return result;
+    }
+}
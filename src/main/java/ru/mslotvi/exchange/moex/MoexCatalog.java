@@ -0,0 +1,169 @@
+package ru.mslotvi.exchange.moex;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Map;
+
+/**
+ * Справочник ценных бумаг MOEX в виде исходного ответа ISS и границ значений в нём.
+ * <p>Заполняется {@link MoexCatalogParser}. Тело ответа хранится как есть, а для каждой ячейки блока
+ * {@code securities.data} запоминаются только начало и конец значения в байтах тела. Значение декодируется
+ * в строку или число лишь при обращении к нему, поэтому редко используемые столбцы не создают объектов,
+ * пока их никто не читает.</p>
+ *
+ * <p>Столбцы адресуются по именам из заголовка {@code securities.columns}. Отсутствующие в ответе столбцы
+ * и значения {@code null} возвращаются как {@code null}.</p>
+ */
+public final class MoexCatalog {
+
+    private final byte[] body;
+    private final Map<String, Integer> columns;
+    private final int columnCount;
+    private final int size;
+    /**
+     * Границы значений: для ячейки {@code (row, column)} по индексу {@code 2 * (row * columnCount + column)}
+     * хранится начало значения, следом — конец. Начало {@code -1} означает {@code null}.
+     */
+    private final int[] bounds;
+
+    MoexCatalog(byte[] body, Map<String, Integer> columns, int size, int[] bounds) {
+        this.body = body;
+        this.columns = columns;
+        this.columnCount = columns.size();
+        this.size = size;
+        this.bounds = bounds;
+    }
+
+    public int size() {
+        return size;
+    }
+
+    public Row row(int index) {
+        return new Row(this, index);
+    }
+
+    public boolean hasColumn(String column) {
+        return columns.containsKey(column);
+    }
+
+    String string(int row, String column) {
+        int cell = cell(row, column);
+        return cell >= 0 ? decode(body, bounds[cell], bounds[cell + 1]) : null;
+    }
+
+    Double number(int row, String column) {
+        int cell = cell(row, column);
+        return cell >= 0 ? Double.parseDouble(ascii(cell)) : null;
+    }
+
+    Integer integer(int row, String column) {
+        Long value = longValue(row, column);
+        return value != null ? value.intValue() : null;
+    }
+
+    Long longValue(int row, String column) {
+        int cell = cell(row, column);
+        if (cell < 0) {
+            return null;
+        }
+        String text = ascii(cell);
+        try {
+            return Long.parseLong(text);
+        } catch (NumberFormatException e) {
+            return (long) Double.parseDouble(text);
+        }
+    }
+
+    /**
+     * @return Индекс начала ячейки в {@link #bounds} или {@code -1}, если столбца нет или значение равно null.
+     */
+    private int cell(int row, String column) {
+        Integer index = columns.get(column);
+        if (index == null) {
+            return -1;
+        }
+        int cell = 2 * (row * columnCount + index);
+        return bounds[cell] >= 0 ? cell : -1;
+    }
+
+    private String ascii(int cell) {
+        return new String(body, bounds[cell], bounds[cell + 1] - bounds[cell], StandardCharsets.ISO_8859_1);
+    }
+
+    /**
+     * Декодирует значение из UTF-8 и раскрывает escape-последовательности JSON, если они есть.
+     */
+    static String decode(byte[] body, int start, int end) {
+        boolean escaped = false;
+        for (int i = start; i < end && !escaped; i++) {
+            escaped = body[i] == '\\';
+        }
+        String text = new String(body, start, end - start, StandardCharsets.UTF_8);
+        if (!escaped) {
+            return text;
+        }
+        StringBuilder result = new StringBuilder(text.length());
+        for (int i = 0; i < text.length(); i++) {
+            char c = text.charAt(i);
+            if (c != '\\' || i + 1 == text.length()) {
+                result.append(c);
+                continue;
+            }
+            char next = text.charAt(++i);
+            switch (next) {
+                case 'b' -> result.append('\b');
+                case 'f' -> result.append('\f');
+                case 'n' -> result.append('\n');
+                case 'r' -> result.append('\r');
+                case 't' -> result.append('\t');
+                case 'u' -> {
+                    result.append((char) Integer.parseInt(text, i + 1, i + 5, 16));
+                    i += 4;
+                }
+                default -> result.append(next);
+            }
+        }
+        return result.toString();
+    }
+
+    /**
+     * Строка справочника.
+     * <p>Справочные данные бумаги декодируются при первом обращении к {@link #details()} и затем
+     * переиспользуются.</p>
+     */
+    public static final class Row {
+
+        private final MoexCatalog catalog;
+        private final int index;
+        private volatile MoexSecuritieDetails details;
+
+        private Row(MoexCatalog catalog, int index) {
+            this.catalog = catalog;
+            this.index = index;
+        }
+
+        public String string(String column) {
+            return catalog.string(index, column);
+        }
+
+        public Double number(String column) {
+            return catalog.number(index, column);
+        }
+
+        public Integer integer(String column) {
+            return catalog.integer(index, column);
+        }
+
+        public Long longValue(String column) {
+            return catalog.longValue(index, column);
+        }
+
+        public MoexSecuritieDetails details() {
+            MoexSecuritieDetails result = details;
+            if (result == null) {
+                result = MoexSecuritieDetails.of(this);
+                details = result;
+            }
+            return result;
+        }
+    }
+}
@@ -0,0 +1,249 @@
+package ru.mslotvi.exchange.moex;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Потоковый разборщик ответа ISS {@code /securities.json} со справочником ценных бумаг.
+ * <p>Ответ просматривается один раз прямо в байтах тела, без промежуточной строки и дерева {@code JsonElement}.
+ * Из блока {@code securities} читается заголовок {@code columns}, а для каждой ячейки {@code data} запоминаются
+ * только границы значения, см. {@link MoexCatalog}. Остальные блоки ответа пропускаются.</p>
+ *
+ * <p>Разборщик не хранит состояния между вызовами, поэтому один экземпляр используется всеми потоками.</p>
+ */
+public final class MoexCatalogParser {
+
+    public static final MoexCatalogParser INSTANCE = new MoexCatalogParser();
+
+    private static final int DEFAULT_CAPACITY = 1024;
+
+    private MoexCatalogParser() {
+    }
+
+    /**
+     * Разбирает ответ ISS в справочник.
+     *
+     * @param body Тело ответа в кодировке UTF-8. Позиция буфера не меняется.
+     * @return Справочник, ссылающийся на копию тела ответа.
+     * @throws IOException если ответ имеет неожиданный формат или не содержит блока {@code securities}.
+     */
+    public MoexCatalog parse(ByteBuffer body) throws IOException {
+        byte[] bytes = new byte[body.remaining()];
+        body.duplicate().get(bytes);
+
+        Scanner in = new Scanner(bytes);
+        MoexCatalog catalog = null;
+        in.expect('{');
+        if (!in.consume('}')) {
+            do {
+                String block = in.name();
+                if ("securities".equals(block)) {
+                    catalog = readSecurities(in);
+                } else {
+                    in.skipValue();
+                }
+            } while (in.consume(','));
+            in.expect('}');
+        }
+        if (catalog == null) {
+            throw new IOException("ISS response has no securities block");
+        }
+        return catalog;
+    }
+
+    private MoexCatalog readSecurities(Scanner in) throws IOException {
+        Map<String, Integer> columns = null;
+        MoexCatalog catalog = null;
+        in.expect('{');
+        if (!in.consume('}')) {
+            do {
+                String name = in.name();
+                if ("columns".equals(name)) {
+                    columns = readColumns(in);
+                } else if ("data".equals(name)) {
+                    if (columns == null) {
+                        throw new IOException("ISS securities block has data before columns");
+                    }
+                    catalog = readRows(in, columns);
+                } else {
+                    in.skipValue();
+                }
+            } while (in.consume(','));
+            in.expect('}');
+        }
+        if (catalog == null) {
+            catalog = new MoexCatalog(in.body, columns != null ? columns : Map.of(), 0, new int[0]);
+        }
+        return catalog;
+    }
+
+    private Map<String, Integer> readColumns(Scanner in) throws IOException {
+        Map<String, Integer> columns = new HashMap<>();
+        in.expect('[');
+        if (!in.consume(']')) {
+            do {
+                in.string();
+                columns.put(MoexCatalog.decode(in.body, in.start, in.end), columns.size());
+            } while (in.consume(','));
+            in.expect(']');
+        }
+        return Map.copyOf(columns);
+    }
+
+    private MoexCatalog readRows(Scanner in, Map<String, Integer> columns) throws IOException {
+        int columnCount = columns.size();
+        int rowWidth = 2 * columnCount;
+        int[] bounds = new int[DEFAULT_CAPACITY * rowWidth];
+        int rows = 0;
+
+        in.expect('[');
+        if (!in.consume(']')) {
+            do {
+                if (bounds.length < (rows + 1) * rowWidth) {
+                    bounds = Arrays.copyOf(bounds, Math.max(bounds.length * 2, rowWidth));
+                }
+                int offset = rows * rowWidth;
+                Arrays.fill(bounds, offset, offset + rowWidth, -1);
+
+                in.expect('[');
+                if (!in.consume(']')) {
+                    int column = 0;
+                    do {
+                        in.value();
+                        if (column < columnCount) {
+                            bounds[offset + 2 * column] = in.start;
+                            bounds[offset + 2 * column + 1] = in.end;
+                        }
+                        column++;
+                    } while (in.consume(','));
+                    in.expect(']');
+                }
+                rows++;
+            } while (in.consume(','));
+            in.expect(']');
+        }
+        return new MoexCatalog(in.body, columns, rows, Arrays.copyOf(bounds, rows * rowWidth));
+    }
+
+    /**
+     * Минимальный сканер JSON поверх массива байтов.
+     * <p>Границы последнего прочитанного значения остаются в полях {@link #start} и {@link #end};
+     * для строк они не включают кавычки, для {@code null} и вложенных значений {@link #start} равен {@code -1}.</p>
+     */
+    private static final class Scanner {
+
+        private final byte[] body;
+        private int position;
+        private int start;
+        private int end;
+
+        private Scanner(byte[] body) {
+            this.body = body;
+        }
+
+        private int peek() {
+            while (position < body.length) {
+                byte c = body[position];
+                if (c != ' ' && c != '\n' && c != '\r' && c != '\t') {
+                    return c;
+                }
+                position++;
+            }
+            return -1;
+        }
+
+        private boolean consume(char c) {
+            if (peek() == c) {
+                position++;
+                return true;
+            }
+            return false;
+        }
+
+        private void expect(char c) throws IOException {
+            if (!consume(c)) {
+                throw new IOException("Malformed ISS response: expected '" + c + "' at " + position);
+            }
+        }
+
+        private String name() throws IOException {
+            string();
+            String name = MoexCatalog.decode(body, start, end);
+            expect(':');
+            return name;
+        }
+
+        private void string() throws IOException {
+            expect('"');
+            start = position;
+            while (position < body.length) {
+                byte c = body[position++];
+                if (c == '\\') {
+                    position++;
+                } else if (c == '"') {
+                    end = position - 1;
+                    return;
+                }
+            }
+            throw new IOException("Malformed ISS response: unterminated string at " + start);
+        }
+
+        /**
+         * Читает значение ячейки. Строки и числа запоминаются границами, остальное пропускается как {@code null}.
+         */
+        private void value() throws IOException {
+            int c = peek();
+            if (c == '"') {
+                string();
+                return;
+            }
+            if (c == '[' || c == '{') {
+                skipValue();
+                start = -1;
+                return;
+            }
+            start = position;
+            while (position < body.length) {
+                byte b = body[position];
+                if (b == ',' || b == ']' || b == '}' || b == ' ' || b == '\n' || b == '\r' || b == '\t') {
+                    break;
+                }
+                position++;
+            }
+            end = position;
+            if (start == end) {
+                throw new IOException("Malformed ISS response: expected value at " + position);
+            }
+            if (end - start == 4 && body[start] == 'n' && body[start + 1] == 'u'
+                    && body[start + 2] == 'l' && body[start + 3] == 'l') {
+                start = -1;
+            }
+        }
+
+        private void skipValue() throws IOException {
+            int c = peek();
+            if (c != '[' && c != '{') {
+                value();
+                return;
+            }
+            int depth = 0;
+            while (position < body.length) {
+                byte b = body[position];
+                if (b == '"') {
+                    string();
+                    continue;
+                }
+                position++;
+                if (b == '[' || b == '{') {
+                    depth++;
+                } else if ((b == ']' || b == '}') && --depth == 0) {
+                    return;
+                }
+            }
+            throw new IOException("Malformed ISS response: unterminated value");
+        }
+    }
+}
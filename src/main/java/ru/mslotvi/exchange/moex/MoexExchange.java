@@ -1,23 +1,27 @@
 package ru.mslotvi.exchange.moex;
 
-import com.google.gson.Gson;
-import com.google.gson.GsonBuilder;
-import com.google.gson.reflect.TypeToken;
+import lombok.AccessLevel;
 import lombok.Data;
-import lombok.SneakyThrows;
+import lombok.Getter;
+import lombok.Setter;
 import lombok.experimental.Accessors;
 import lombok.extern.log4j.Log4j2;
+import org.springframework.scheduling.annotation.Scheduled;
 import org.springframework.stereotype.Component;
 import ru.mslotvi.config.MoexConfig;
+import ru.mslotvi.data.HistoryCache;
+import ru.mslotvi.data.MarketDataStore;
 import ru.mslotvi.exchange.*;
-import ru.mslotvi.http.HttpRequestService;
+import ru.mslotvi.util.QueryUtil;
 
-import java.lang.reflect.Type;
+import java.io.IOException;
 import java.net.URI;
+import java.nio.ByteBuffer;
 import java.time.LocalDate;
 import java.util.*;
-import java.util.concurrent.CompletableFuture;
-import java.util.stream.Collectors;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.function.Function;
 
 @Data
 @Accessors(fluent = true)
@@ -26,21 +30,72 @@ import java.util.stream.Collectors;
 public class MoexExchange implements Exchange {
     private final String name = "MOEX";
     private final MoexConfig moexConfig;
-    private final Map<String, MoexSecuritie> securities = new HashMap<>();
+    private final MoexIssClient issClient;
+    private final MarketDataStore marketDataStore;
+    private final HistoryCache historyCache;
+    private final AtomicReference<Map<String, MoexSecuritie>> securities = new AtomicReference<>(Map.of());
+    private final AtomicReference<CompletableFuture<Void>> securitiesRefresh = new AtomicReference<>();
+    private final SecurityScreener screener = new SecurityScreener();
+    private final SecurityDemand demand = new SecurityDemand();
+    @Getter(AccessLevel.NONE)
+    @Setter(AccessLevel.NONE)
+    private volatile SecuritySearchIndex searchIndex = SecuritySearchIndex.EMPTY;
 
-    public MoexExchange(MoexConfig moexConfig) {
+    public MoexExchange(MoexConfig moexConfig, MoexIssClient issClient, MarketDataStore marketDataStore,
+                        HistoryCache historyCache) {
         this.moexConfig = moexConfig;
+        this.issClient = issClient;
+        this.marketDataStore = marketDataStore;
+        this.historyCache = historyCache;
     }
 
-    public PortfolioCalculator createPortfolioCalculator(List<ExchangeSecuritie> allSecurities, LocalDate start, LocalDate end) {
+    public PortfolioCalculator createPortfolioCalculator(List<ExchangeSecuritie> allSecurities, LocalDate start, LocalDate end, Frequency frequency) {
 
-        allSecurities.forEach(s -> s.loadMarketHistory(start, end));
+        return loadMarketHistories(allSecurities, start, end).calculator(frequency);
+    }
 
-        return new PortfolioCalculator(allSecurities);
+    /**
+     * Загружает историю торгов по нескольким бумагам одновременно.
+     * <p>Каждая бумага загружается в отдельном виртуальном потоке; одновременно загружается не более
+     * {@link MoexConfig#getHistoryConcurrency()} бумаг, а все запросы к ISS проходят через общий
+     * ограничитель частоты {@link MoexIssClient}. Ошибка по одной бумаге не прерывает остальные.</p>
+     *
+     * @param allSecurities Ценные бумаги для загрузки.
+     * @param start Дата начала интервала.
+     * @param end Дата окончания интервала.
+     * @return Снимки загруженной истории и ошибки по остальным бумагам.
+     */
+    public HistoryLoadResult loadMarketHistories(List<? extends ExchangeSecuritie> allSecurities, LocalDate start, LocalDate end) {
+        return loadMarketHistories(allSecurities, securitie -> securitie.loadMarketHistory(start, end));
     }
 
-    public PortfolioCalculator createPortfolioCalculator(Set<String> ids, LocalDate start, LocalDate end) {
-        return createPortfolioCalculator(ids.stream().map(i -> (ExchangeSecuritie) securities.get(i)).filter(Objects::nonNull).toList(), start, end);
+    private HistoryLoadResult loadMarketHistories(List<? extends ExchangeSecuritie> allSecurities,
+                                                  Function<ExchangeSecuritie, MarketHistory> load) {
+        Semaphore permits = new Semaphore(Math.max(moexConfig.getHistoryConcurrency(), 1));
+        try (ExecutorService executor = Executors.newVirtualThreadPerTaskExecutor()) {
+            return HistoryLoadResult.collect(allSecurities, executor, securitie -> {
+                permits.acquire();
+                try {
+                    return load.apply(securitie);
+                } finally {
+                    permits.release();
+                }
+            });
+        }
+    }
+
+    @Override
+    public PortfolioCalculator createPortfolioCalculator(Set<String> ids, LocalDate start, LocalDate end, Frequency frequency) {
+        List<ExchangeSecuritie> requested = new ArrayList<>(ids.size());
+        Map<String, MoexSecuritie> current = securities.get();
+        for (String id : ids) {
+            MoexSecuritie securitie = current.get(id);
+            if (securitie != null) {
+                demand.record(id, start);
+                requested.add(securitie);
+            }
+        }
+        return createPortfolioCalculator(requested, start, end, frequency);
     }
 
     @Override
@@ -51,31 +106,141 @@ public class MoexExchange implements Exchange {
     }
 
 
-    @SneakyThrows
-    public void loadSecurities() {
+    /**
+     * Загружает справочник ценных бумаг.
+     * <p>Справочник запрашивается условным запросом: если на ISS он не изменился с прошлой загрузки,
+     * используется ранее полученный ответ. Ответ разбирается потоково {@link MoexCatalogParser}: у бумаг сразу
+     * декодируются только ключевые столбцы, остальные — при обращении к {@link MoexSecuritie#details()}. Новый справочник собирается вне потоков, читающих текущий,
+     * и подменяет его атомарно, см. {@link #swapSecurities(List)}. Если загрузка уже выполняется,
+     * возвращается её future и второй запрос к ISS не отправляется.</p>
+     *
+     * @return Future, завершающееся после подмены справочника.
+     */
+    public CompletableFuture<Void> loadSecurities() {
+        // Адрес собирается до установки pending: ошибка здесь не должна оставить загрузку навсегда «выполняющейся».
+        Map<String, String> queryParams = issClient.projection(List.of("securities"), moexConfig.getSecuritiesColumns());
+        URI url = URI.create(moexConfig.getSecuritiesEntryPoint() + ".json?" + QueryUtil.buildQueryString(queryParams));
 
-        securities.clear();
+        CompletableFuture<Void> pending = new CompletableFuture<>();
+        CompletableFuture<Void> running = securitiesRefresh.compareAndExchange(null, pending);
+        if (running != null) {
+            return running;
+        }
 
-        String response = HttpRequestService.sendGetRequest(URI.create(moexConfig.getSecuritiesEntryPoint()+".json"));
-        Type securityListType = new TypeToken<List<MoexSecuritie>>(){}.getType();
+        CompletableFuture<ByteBuffer> response;
+        try {
+            response = issClient.getRevalidatedAsync(url);
+        } catch (RuntimeException e) {
+            response = CompletableFuture.failedFuture(e);
+        }
+        response.thenAcceptAsync(body -> {
+            MoexCatalog catalog;
+            try {
+                catalog = MoexCatalogParser.INSTANCE.parse(body);
+            } catch (IOException e) {
+                throw new CompletionException(e);
+            }
+            List<MoexSecuritie> loaded = new ArrayList<>(catalog.size());
+            int unknownBoards = 0;
+            for (int i = 0; i < catalog.size(); i++) {
+                // Бумаги на досках, которых нет в MoexBoard, пропускаются, а не обрывают обновление справочника.
+                MoexCatalog.Row row = catalog.row(i);
+                String board = row.string("BOARDID");
+                if (board != null && MoexBoard.of(board) == null) {
+                    unknownBoards++;
+                    continue;
+                }
+                loaded.add(new MoexSecuritie(issClient, marketDataStore, historyCache, row));
+            }
+            if (unknownBoards > 0) {
+                log.debug("Skipped {} securities on unknown boards", unknownBoards);
+            }
+            swapSecurities(loaded);
+        }).whenComplete((ignored, error) -> {
+            securitiesRefresh.set(null);
+            if (error != null) {
+                pending.completeExceptionally(error);
+            } else {
+                pending.complete(null);
+            }
+        });
+        return pending;
+    }
 
-        Gson gson = new GsonBuilder()
-                .registerTypeAdapter(securityListType, new SecurityDeserializer(moexConfig))
-                .create();
+    /**
+     * Обновляет справочник по расписанию {@link MoexConfig#getSecuritiesRefreshInterval()}.
+     */
+    @Scheduled(initialDelayString = "${moex.securities-refresh-interval:PT1H}",
+            fixedDelayString = "${moex.securities-refresh-interval:PT1H}")
+    public void refreshSecurities() {
+        loadSecurities().exceptionally(error -> {
+            log.warn("Failed to refresh MOEX securities", error);
+            return null;
+        });
+    }
 
-        List<MoexSecuritie> moexResponse = gson.fromJson(response, securityListType);
+    /**
+     * Собирает новый неизменяемый справочник и атомарно подменяет им текущий.
+     * <p>Бумаги, которые уже были в справочнике на той же торговой доске, не пересоздаются: у прежнего объекта
+     * обновляются справочные данные, а загруженная история и построенные по ней бары сохраняются.
+     * Вместе со справочником перестраивается поисковый индекс {@link #searchIndex()}, а из скринера удаляются
+     * бумаги, которых нет в новом справочнике.</p>
+     *
+     * @param loaded Бумаги из нового ответа ISS.
+     */
+    private void swapSecurities(List<MoexSecuritie> loaded) {
+        Map<String, MoexSecuritie> previous = securities.get();
+        Map<String, MoexSecuritie> next = new HashMap<>(loaded.size());
+        int kept = 0;
+        for (MoexSecuritie securitie : loaded) {
+            MoexSecuritie existing = previous.get(securitie.secId());
+            if (existing != null && existing.sameListing(securitie)) {
+                existing.updateFrom(securitie);
+                securitie = existing;
+                kept++;
+            }
+            next.put(securitie.secId(), securitie);
+            screener.register(securitie.secId(), securitie.listLevel() != null ? securitie.listLevel() : 0);
+        }
 
-        moexResponse.forEach(r -> securities.put(r.secId(), r));
+        SecuritySearchIndex index = SecuritySearchIndex.of(next.values().stream().map(MoexSecuritie::searchEntry).toList());
+        securities.set(Map.copyOf(next));
+        searchIndex = index;
+        screener.retain(next.keySet());
+        long removed = previous.keySet().stream().filter(secId -> !next.containsKey(secId)).count();
+        log.info("Securities swapped: {} kept, {} added, {} removed", kept, next.size() - kept, removed);
     }
 
     @Override
-    public CompletableFuture<Void> loadData() {
-        return CompletableFuture.runAsync(() -> {
+    public void refreshScreener(LocalDate from, LocalDate to) {
+        HistoryLoadResult result = loadMarketHistories(List.copyOf(securities.get().values()), securitie -> {
+            MarketHistory history = securitie.fetchMarketHistory(from, to);
+            screener.refresh(securitie.secId(), history.series());
+            return history;
+        });
+        log.info("Screener refreshed: {} loaded, {} failed", result.loaded().size(), result.failures().size());
+    }
 
-            loadSecurities();
+    @Override
+    public SecuritySearchIndex searchIndex() {
+        return searchIndex;
+    }
 
-            log.info("Load {} securities", securities.values().size());
-        });
+    @Override
+    public Map<String, Number> metrics() {
+        Map<String, Number> metrics = new LinkedHashMap<>();
+        metrics.put("history.calls", issClient.historyFlights().calls());
+        metrics.put("history.coalesced", issClient.historyFlights().coalesced());
+        metrics.put("history.inFlight", issClient.historyFlights().inFlight());
+        metrics.putAll(demand.metrics());
+        metrics.putAll(historyCache.metrics());
+        return metrics;
+    }
+
+    @Override
+    public CompletableFuture<Void> loadData() {
+        return loadSecurities()
+                .thenRun(() -> log.info("Load {} securities", securities.get().size()));
     }
 
 
@@ -86,8 +251,7 @@ public class MoexExchange implements Exchange {
 
     @Override
     public Map<String, ExchangeSecuritie> getSecurities() {
-        return securities.entrySet().stream()
-                .collect(Collectors.toMap(Map.Entry::getKey, Map.Entry::getValue));
+        return Collections.unmodifiableMap(securities.get());
     }
 
 }
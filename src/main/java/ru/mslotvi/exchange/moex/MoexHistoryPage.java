@@ -0,0 +1,252 @@
+package ru.mslotvi.exchange.moex;
+
+import ru.mslotvi.exchange.ExchangeDateSnapshot;
+
+import java.time.LocalDate;
+import java.time.ZoneId;
+import java.util.*;
+
+/**
+ * Страница истории торгов MOEX, хранящая данные по столбцам в примитивных массивах.
+ * <p>Заполняется {@link MoexHistoryParser} напрямую из потока ответа. Значения читаются методами доступа
+ * по индексу {@link ExchangeDateSnapshot}; объекты {@link MoexResponse.TradeRecord} создаются только
+ * при обращении к {@link #tradeRecords()}.</p>
+ *
+ * <p>Отсутствующие в ответе значения хранятся как {@link Double#NaN}.</p>
+ */
+public final class MoexHistoryPage implements ExchangeDateSnapshot {
+
+    final int size;
+    final int[] tradeDay;
+    final double[] close;
+    final double[] open;
+    final double[] high;
+    final double[] low;
+    final double[] volume;
+    final double[] value;
+    final double[] numTrades;
+    String boardId;
+    String secId;
+    String shortName;
+    /**
+     * Код бумаги каждой строки; заполняется только для истории всей торговой доски, см. {@link MoexHistoryParser#parseBoard}.
+     */
+    String[] rowSecIds;
+    /**
+     * Код торговой доски каждой строки; {@code null}, если ответ не содержал столбца {@code BOARDID} или ни одного
+     * его значения. Строки до первого значения и строки с {@code null} в столбце хранят {@code null}.
+     */
+    String[] rowBoardIds;
+
+    int cursorIndex = -1;
+    int cursorTotal = -1;
+    int cursorPageSize = -1;
+
+    MoexHistoryPage(int size, int[] tradeDay, double[] close, double[] open, double[] high, double[] low,
+                    double[] volume, double[] value, double[] numTrades) {
+        this.size = size;
+        this.tradeDay = tradeDay;
+        this.close = close;
+        this.open = open;
+        this.high = high;
+        this.low = low;
+        this.volume = volume;
+        this.value = value;
+        this.numTrades = numTrades;
+    }
+
+    /**
+     * @return {@code true}, если ответ содержал блок {@code history.cursor}.
+     */
+    public boolean hasCursor() {
+        return cursorTotal >= 0 && cursorPageSize > 0;
+    }
+
+    public int cursorIndex() {
+        return Math.max(cursorIndex, 0);
+    }
+
+    public int cursorTotal() {
+        return cursorTotal;
+    }
+
+    public int cursorPageSize() {
+        return cursorPageSize;
+    }
+
+    public String boardId() {
+        return boardId;
+    }
+
+    public String secId() {
+        return secId;
+    }
+
+    /**
+     * Раскладывает строки страницы по бумагам за один проход.
+     * <p>Для страницы истории одной бумаги возвращается сама страница под её кодом.</p>
+     *
+     * @return Страницы отдельных бумаг в порядке первого появления бумаги на странице.
+     */
+    public Map<String, MoexHistoryPage> bySecId() {
+        if (rowSecIds == null) {
+            return secId != null ? Map.of(secId, this) : Map.of();
+        }
+        // В первом элементе массива группы хранится количество строк, дальше — их индексы.
+        Map<String, int[]> groups = new LinkedHashMap<>();
+        for (int i = 0; i < size; i++) {
+            String id = rowSecIds[i];
+            if (id == null) {
+                continue;
+            }
+            int[] group = groups.get(id);
+            if (group == null) {
+                group = new int[2];
+                groups.put(id, group);
+            } else if (group[0] + 1 == group.length) {
+                group = Arrays.copyOf(group, group.length * 2);
+                groups.put(id, group);
+            }
+            group[++group[0]] = i;
+        }
+
+        Map<String, MoexHistoryPage> result = new LinkedHashMap<>(groups.size() * 2);
+        groups.forEach((id, group) -> result.put(id, select(id, group)));
+        return result;
+    }
+
+    /**
+     * Оставляет только строки одной торговой доски.
+     * <p>Ответ ISS по истории одной бумаги содержит строки всех досок, на которых она торгуется, в том числе
+     * несколько строк за один день. Строки без кода доски сохраняются.</p>
+     *
+     * @param board Код торговой доски.
+     * @return Эта же страница, если все строки относятся к доске, иначе новая страница с её строками.
+     */
+    public MoexHistoryPage forBoard(String board) {
+        if (rowBoardIds == null) {
+            return this;
+        }
+        int[] group = new int[size + 1];
+        for (int i = 0; i < size; i++) {
+            if (rowBoardIds[i] == null || board.equals(rowBoardIds[i])) {
+                group[++group[0]] = i;
+            }
+        }
+        if (group[0] == size) {
+            return this;
+        }
+        MoexHistoryPage page = select(secId, group);
+        page.boardId = board;
+        page.shortName = shortName;
+        page.cursorIndex = cursorIndex;
+        page.cursorTotal = cursorTotal;
+        page.cursorPageSize = cursorPageSize;
+        return page;
+    }
+
+    private MoexHistoryPage select(String id, int[] group) {
+        int count = group[0];
+        MoexHistoryPage page = new MoexHistoryPage(count, new int[count], new double[count], new double[count],
+                new double[count], new double[count], new double[count], new double[count], new double[count]);
+        for (int n = 0; n < count; n++) {
+            int i = group[n + 1];
+            page.tradeDay[n] = tradeDay[i];
+            page.close[n] = close[i];
+            page.open[n] = open[i];
+            page.high[n] = high[i];
+            page.low[n] = low[i];
+            page.volume[n] = volume[i];
+            page.value[n] = value[i];
+            page.numTrades[n] = numTrades[i];
+        }
+        page.boardId = boardId;
+        page.secId = id;
+        return page;
+    }
+
+    @Override
+    public int size() {
+        return size;
+    }
+
+    @Override
+    public int tradeDay(int i) {
+        return tradeDay[i];
+    }
+
+    @Override
+    public double close(int i) {
+        return close[i];
+    }
+
+    @Override
+    public double open(int i) {
+        return open[i];
+    }
+
+    @Override
+    public double high(int i) {
+        return high[i];
+    }
+
+    @Override
+    public double low(int i) {
+        return low[i];
+    }
+
+    @Override
+    public double volume(int i) {
+        return volume[i];
+    }
+
+    @Override
+    public double value(int i) {
+        return value[i];
+    }
+
+    @Override
+    public double numTrades(int i) {
+        return numTrades[i];
+    }
+
+    /**
+     * Возвращает записи страницы в виде объектов {@link MoexResponse.TradeRecord}.
+     * <p>Записи создаются при каждом обращении к элементу списка; для расчётов следует использовать
+     * методы доступа по индексу.</p>
+     */
+    @Override
+    public List<MoexResponse.TradeRecord> tradeRecords() {
+        return new AbstractList<>() {
+            @Override
+            public MoexResponse.TradeRecord get(int i) {
+                return tradeRecord(i);
+            }
+
+            @Override
+            public int size() {
+                return size;
+            }
+        };
+    }
+
+    private MoexResponse.TradeRecord tradeRecord(int i) {
+        return new MoexResponse.TradeRecord()
+                .boardId(boardId)
+                .secId(secId)
+                .shortName(shortName)
+                .tradeDate(tradeDay[i] == NO_DAY ? null
+                        : Date.from(LocalDate.ofEpochDay(tradeDay[i]).atStartOfDay(ZoneId.systemDefault()).toInstant()))
+                .close(boxed(close[i]))
+                .open(boxed(open[i]))
+                .high(boxed(high[i]))
+                .low(boxed(low[i]))
+                .volume(boxed(volume[i]))
+                .value(boxed(value[i]))
+                .numTrades(boxed(numTrades[i]));
+    }
+
+    private static Double boxed(double value) {
+        return Double.isNaN(value) ? null : value;
+    }
+}
@@ -0,0 +1,355 @@
+package ru.mslotvi.exchange.moex;
+
+import com.google.gson.stream.JsonReader;
+import com.google.gson.stream.JsonToken;
+import ru.mslotvi.exchange.ExchangeDateSnapshot;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+
+/**
+ * Потоковый разборщик ответа ISS {@code /history/.../securities/{secId}.json}.
+ * <p>Ответ читается по токенам через {@link JsonReader} прямо из {@link InputStream}, без промежуточной строки
+ * и дерева {@code JsonElement}. Индексы столбцов определяются по заголовку {@code columns}; нужные значения
+ * (дата, цены, объём, оборот, количество сделок) пишутся сразу в примитивные массивы, остальные
+ * пропускаются без разбора. Дата {@code yyyy-MM-dd} переводится в эпохальный день арифметически.</p>
+ *
+ * <p>Разбор не создаёт объектов записей, но не свободен от выделений памяти на строку: {@link JsonReader} отдаёт
+ * дату, код доски и (для истории доски) код бумаги строками, и каждая из них создаётся заново. Повторяющийся
+ * код доски хранится одной ссылкой, но прочитанная строка всё равно выделяется.</p>
+ *
+ * <p>Разборщик не хранит состояния между вызовами, поэтому один экземпляр используется всеми потоками.</p>
+ */
+public final class MoexHistoryParser {
+
+    public static final MoexHistoryParser INSTANCE = new MoexHistoryParser();
+
+    private static final int BOARDID = 0;
+    private static final int TRADEDATE = 1;
+    private static final int SHORTNAME = 2;
+    private static final int SECID = 3;
+    private static final int NUMTRADES = 4;
+    private static final int VALUE = 5;
+    private static final int OPEN = 6;
+    private static final int LOW = 7;
+    private static final int HIGH = 8;
+    private static final int CLOSE = 9;
+    private static final int VOLUME = 10;
+    private static final int SKIP = -1;
+
+    private static final int DEFAULT_CAPACITY = 100;
+
+    private MoexHistoryParser() {
+    }
+
+    /**
+     * Разбирает ответ ISS в страницу истории.
+     *
+     * @param body Поток тела ответа в кодировке UTF-8. Поток закрывается после разбора.
+     * @return Страница истории с примитивными столбцами и значениями курсора.
+     * @throws IOException если ответ не удалось прочитать или он имеет неожиданный формат.
+     */
+    public MoexHistoryPage parse(InputStream body) throws IOException {
+        return parse(body, false);
+    }
+
+    /**
+     * Разбирает ответ ISS с историей всех бумаг торговой доски за день
+     * ({@code /history/.../boards/{board}/securities.json?date=...}).
+     * <p>В отличие от {@link #parse(InputStream)} код бумаги сохраняется для каждой строки,
+     * см. {@link MoexHistoryPage#bySecId()}.</p>
+     *
+     * @param body Поток тела ответа в кодировке UTF-8. Поток закрывается после разбора.
+     * @return Страница истории с кодом бумаги в каждой строке.
+     * @throws IOException если ответ не удалось прочитать или он имеет неожиданный формат.
+     */
+    public MoexHistoryPage parseBoard(InputStream body) throws IOException {
+        return parse(body, true);
+    }
+
+    private MoexHistoryPage parse(InputStream body, boolean rowSecIds) throws IOException {
+        try (JsonReader reader = new JsonReader(new InputStreamReader(body, StandardCharsets.UTF_8))) {
+            Columns columns = new Columns(DEFAULT_CAPACITY, rowSecIds);
+            int[] cursor = {-1, -1, -1};
+
+            reader.beginObject();
+            while (reader.hasNext()) {
+                String block = reader.nextName();
+                if ("history".equals(block)) {
+                    readHistory(reader, columns);
+                } else if ("history.cursor".equals(block)) {
+                    readCursor(reader, cursor);
+                } else {
+                    reader.skipValue();
+                }
+            }
+            reader.endObject();
+
+            MoexHistoryPage page = columns.toPage();
+            page.cursorIndex = cursor[0];
+            page.cursorTotal = cursor[1];
+            page.cursorPageSize = cursor[2];
+            return page;
+        }
+    }
+
+    private void readHistory(JsonReader reader, Columns columns) throws IOException {
+        int[] mapping = null;
+        reader.beginObject();
+        while (reader.hasNext()) {
+            String name = reader.nextName();
+            if ("columns".equals(name)) {
+                mapping = readColumnMapping(reader);
+            } else if ("data".equals(name)) {
+                if (mapping == null) {
+                    throw new IOException("ISS history block has data before columns");
+                }
+                readRows(reader, mapping, columns);
+            } else {
+                reader.skipValue();
+            }
+        }
+        reader.endObject();
+    }
+
+    private int[] readColumnMapping(JsonReader reader) throws IOException {
+        int[] mapping = new int[32];
+        int count = 0;
+        reader.beginArray();
+        while (reader.hasNext()) {
+            if (count == mapping.length) {
+                mapping = Arrays.copyOf(mapping, count * 2);
+            }
+            mapping[count++] = switch (reader.nextString()) {
+                case "BOARDID" -> BOARDID;
+                case "TRADEDATE" -> TRADEDATE;
+                case "SHORTNAME" -> SHORTNAME;
+                case "SECID" -> SECID;
+                case "NUMTRADES" -> NUMTRADES;
+                case "VALUE" -> VALUE;
+                case "OPEN" -> OPEN;
+                case "LOW" -> LOW;
+                case "HIGH" -> HIGH;
+                case "CLOSE" -> CLOSE;
+                case "VOLUME" -> VOLUME;
+                default -> SKIP;
+            };
+        }
+        reader.endArray();
+        return Arrays.copyOf(mapping, count);
+    }
+
+    private void readRows(JsonReader reader, int[] mapping, Columns columns) throws IOException {
+        reader.beginArray();
+        while (reader.hasNext()) {
+            int row = columns.addRow();
+            reader.beginArray();
+            for (int column : mapping) {
+                if (column == SKIP || reader.peek() == JsonToken.NULL) {
+                    reader.skipValue();
+                    continue;
+                }
+                switch (column) {
+                    case TRADEDATE -> columns.tradeDay[row] = epochDay(reader.nextString());
+                    case BOARDID, SECID, SHORTNAME -> columns.setText(column, row, reader);
+                    case NUMTRADES -> columns.numTrades[row] = reader.nextDouble();
+                    case VALUE -> columns.value[row] = reader.nextDouble();
+                    case OPEN -> columns.open[row] = reader.nextDouble();
+                    case LOW -> columns.low[row] = reader.nextDouble();
+                    case HIGH -> columns.high[row] = reader.nextDouble();
+                    case CLOSE -> columns.close[row] = reader.nextDouble();
+                    case VOLUME -> columns.volume[row] = reader.nextDouble();
+                    default -> reader.skipValue();
+                }
+            }
+            while (reader.hasNext()) {
+                reader.skipValue();
+            }
+            reader.endArray();
+        }
+        reader.endArray();
+    }
+
+    private void readCursor(JsonReader reader, int[] cursor) throws IOException {
+        String[] names = new String[0];
+        reader.beginObject();
+        while (reader.hasNext()) {
+            String name = reader.nextName();
+            if ("columns".equals(name)) {
+                String[] result = new String[4];
+                int count = 0;
+                reader.beginArray();
+                while (reader.hasNext()) {
+                    if (count == result.length) {
+                        result = Arrays.copyOf(result, count * 2);
+                    }
+                    result[count++] = reader.nextString();
+                }
+                reader.endArray();
+                names = Arrays.copyOf(result, count);
+            } else if ("data".equals(name)) {
+                reader.beginArray();
+                if (reader.hasNext()) {
+                    reader.beginArray();
+                    for (int i = 0; reader.hasNext(); i++) {
+                        String column = i < names.length ? names[i] : "";
+                        if (reader.peek() != JsonToken.NUMBER) {
+                            reader.skipValue();
+                            continue;
+                        }
+                        int value = reader.nextInt();
+                        switch (column) {
+                            case "INDEX" -> cursor[0] = value;
+                            case "TOTAL" -> cursor[1] = value;
+                            case "PAGESIZE" -> cursor[2] = value;
+                            default -> {
+                            }
+                        }
+                    }
+                    reader.endArray();
+                }
+                while (reader.hasNext()) {
+                    reader.skipValue();
+                }
+                reader.endArray();
+            } else {
+                reader.skipValue();
+            }
+        }
+        reader.endObject();
+    }
+
+    /**
+     * Переводит дату {@code yyyy-MM-dd} в эпохальный день без создания {@link java.time.LocalDate}.
+     */
+    static int epochDay(String date) {
+        if (date.length() < 10) {
+            return ExchangeDateSnapshot.NO_DAY;
+        }
+        int year = digits(date, 0, 4);
+        int month = digits(date, 5, 7);
+        int day = digits(date, 8, 10);
+        // Алгоритм days_from_civil (H. Hinnant): сдвигаем начало года на март.
+        int y = month <= 2 ? year - 1 : year;
+        int era = Math.floorDiv(y, 400);
+        int yearOfEra = y - era * 400;
+        int dayOfYear = (153 * (month + (month > 2 ? -3 : 9)) + 2) / 5 + day - 1;
+        int dayOfEra = yearOfEra * 365 + yearOfEra / 4 - yearOfEra / 100 + dayOfYear;
+        return era * 146097 + dayOfEra - 719468;
+    }
+
+    private static int digits(String text, int from, int to) {
+        int result = 0;
+        for (int i = from; i < to; i++) {
+            result = result * 10 + (text.charAt(i) - '0');
+        }
+        return result;
+    }
+
+    /**
+     * Растущие примитивные столбцы одной страницы.
+     */
+    private static final class Columns {
+        private int size;
+        private int[] tradeDay;
+        private double[] close;
+        private double[] open;
+        private double[] high;
+        private double[] low;
+        private double[] volume;
+        private double[] value;
+        private double[] numTrades;
+        private String boardId;
+        private String secId;
+        private String shortName;
+        private String[] rowSecIds;
+        private String[] rowBoardIds;
+
+        Columns(int capacity, boolean rowSecIds) {
+            tradeDay = new int[capacity];
+            close = new double[capacity];
+            open = new double[capacity];
+            high = new double[capacity];
+            low = new double[capacity];
+            volume = new double[capacity];
+            value = new double[capacity];
+            numTrades = new double[capacity];
+            this.rowSecIds = rowSecIds ? new String[capacity] : null;
+        }
+
+        int addRow() {
+            if (size == tradeDay.length) {
+                int capacity = size * 2;
+                tradeDay = Arrays.copyOf(tradeDay, capacity);
+                close = Arrays.copyOf(close, capacity);
+                open = Arrays.copyOf(open, capacity);
+                high = Arrays.copyOf(high, capacity);
+                low = Arrays.copyOf(low, capacity);
+                volume = Arrays.copyOf(volume, capacity);
+                value = Arrays.copyOf(value, capacity);
+                numTrades = Arrays.copyOf(numTrades, capacity);
+                if (rowSecIds != null) {
+                    rowSecIds = Arrays.copyOf(rowSecIds, capacity);
+                }
+                if (rowBoardIds != null) {
+                    rowBoardIds = Arrays.copyOf(rowBoardIds, capacity);
+                }
+            }
+            int row = size++;
+            tradeDay[row] = ExchangeDateSnapshot.NO_DAY;
+            close[row] = Double.NaN;
+            open[row] = Double.NaN;
+            high[row] = Double.NaN;
+            low[row] = Double.NaN;
+            volume[row] = Double.NaN;
+            value[row] = Double.NaN;
+            numTrades[row] = Double.NaN;
+            return row;
+        }
+
+        void setText(int column, int row, JsonReader reader) throws IOException {
+            if (column == SECID && rowSecIds != null) {
+                rowSecIds[row] = reader.nextString();
+                return;
+            }
+            if (column == BOARDID) {
+                // История одной бумаги содержит строки всех досок, на которых она торгуется: доска хранится
+                // для каждой строки, а повторяющийся код доски — одной ссылкой.
+                // Массив создаётся при первом значении, поэтому без столбца BOARDID в ответе он остаётся null.
+                String board = reader.nextString();
+                if (rowBoardIds == null) {
+                    rowBoardIds = new String[tradeDay.length];
+                }
+                String previous = row > 0 ? rowBoardIds[row - 1] : boardId;
+                rowBoardIds[row] = board.equals(previous) ? previous : board;
+                if (boardId == null) {
+                    boardId = board;
+                }
+                return;
+            }
+            // Остальные текстовые поля одинаковы для всех строк страницы одной бумаги: сохраняем только первое значение.
+            switch (column) {
+                case SECID -> {
+                    if (secId == null) secId = reader.nextString(); else reader.skipValue();
+                }
+                case SHORTNAME -> {
+                    if (shortName == null) shortName = reader.nextString(); else reader.skipValue();
+                }
+                default -> reader.skipValue();
+            }
+        }
+
+        MoexHistoryPage toPage() {
+            MoexHistoryPage page = new MoexHistoryPage(size, tradeDay, close, open, high, low, volume, value, numTrades);
+            page.boardId = boardId;
+            page.secId = secId;
+            page.shortName = shortName;
+            page.rowSecIds = rowSecIds;
+            page.rowBoardIds = rowBoardIds;
+            return page;
+        }
+    }
+}
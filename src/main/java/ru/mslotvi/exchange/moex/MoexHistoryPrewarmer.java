@@ -0,0 +1,127 @@
+package ru.mslotvi.exchange.moex;
+
+import jakarta.annotation.PreDestroy;
+import lombok.extern.log4j.Log4j2;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import ru.mslotvi.config.MoexConfig;
+import ru.mslotvi.data.MarketDataStore;
+import ru.mslotvi.exchange.SecurityDemand;
+
+import java.time.LocalDate;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * Заблаговременная загрузка истории самых востребованных бумаг.
+ * <p>По расписанию {@link MoexConfig#getPrewarmCron()} (до открытия и после закрытия торгов) берёт
+ * {@link MoexConfig#getPrewarmTop()} бумаг с наибольшим недавним спросом ({@link SecurityDemand}) и загружает
+ * их историю за {@link MoexConfig#getPrewarmPeriod()} в {@link MarketDataStore}. Первый за день запрос пользователя
+ * по такой бумаге читает историю с диска и запрашивает у биржи только текущий день.</p>
+ *
+ * <p>Прогрев идёт в одном фоновом потоке, по одной бумаге и по одной странице истории: перед каждой страницей
+ * он ждёт, пока в ограничителе частоты ISS не наберётся запас {@link MoexConfig#getPrewarmHeadroom()}, и так
+ * уступает запросам пользователей. Без локального хранилища прогрев не выполняется: загруженную историю негде сохранить.</p>
+ */
+@Log4j2
+@Component
+public class MoexHistoryPrewarmer {
+
+    private static final long HEADROOM_WAIT_MILLIS = 200;
+
+    private final MoexConfig config;
+    private final MoexIssClient issClient;
+    private final MoexExchange exchange;
+    private final MarketDataStore marketDataStore;
+    private final AtomicBoolean running = new AtomicBoolean();
+    private final ExecutorService executor = Executors.newSingleThreadExecutor(task -> {
+        Thread thread = new Thread(task, "history-prewarm");
+        thread.setDaemon(true);
+        return thread;
+    });
+
+    public MoexHistoryPrewarmer(MoexConfig config, MoexIssClient issClient, MoexExchange exchange,
+                                MarketDataStore marketDataStore) {
+        this.config = config;
+        this.issClient = issClient;
+        this.exchange = exchange;
+        this.marketDataStore = marketDataStore;
+    }
+
+    /**
+     * Запускает прогрев в фоновом потоке, если предыдущий прогрев уже завершился.
+     */
+    @Scheduled(cron = "${moex.prewarm-cron:0 30 9,19 * * MON-FRI}", zone = "Europe/Moscow")
+    public void schedule() {
+        if (!marketDataStore.enabled() || config.getPrewarmTop() <= 0) {
+            return;
+        }
+        if (running.compareAndSet(false, true)) {
+            executor.execute(() -> {
+                try {
+                    prewarm();
+                } finally {
+                    running.set(false);
+                }
+            });
+        }
+    }
+
+    /**
+     * Загружает историю самых востребованных бумаг и уменьшает счётчики спроса, см. {@link SecurityDemand#decay()}.
+     */
+    void prewarm() {
+        SecurityDemand demand = exchange.demand();
+        List<String> top = demand.top(config.getPrewarmTop());
+        LocalDate to = LocalDate.now().minusDays(1);
+        LocalDate from = to.minus(config.getPrewarmPeriod());
+
+        int loaded = 0;
+        int failed = 0;
+        Map<String, LocalDate> warm = new HashMap<>();
+        for (String secId : top) {
+            MoexSecuritie securitie = exchange.securities().get().get(secId);
+            if (securitie == null) {
+                continue;
+            }
+            if (!securitie.historyStored(from, to)) {
+                try {
+                    securitie.storeHistory(from, to, this::awaitHeadroom);
+                    loaded++;
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    break;
+                } catch (Exception e) {
+                    failed++;
+                    log.warn("Failed to prewarm history of {}", secId, e);
+                }
+            }
+            if (securitie.historyStored(from, to)) {
+                warm.put(secId, from);
+            }
+        }
+        demand.decay();
+        demand.prewarmed(loaded, failed, warm, top.size());
+        log.info("History prewarm: {} of {} top securities warm, {} loaded, {} failed", warm.size(), top.size(), loaded, failed);
+    }
+
+    /**
+     * Ждёт, пока в ограничителе частоты ISS не освободится запас для запроса следующей страницы.
+     */
+    private void awaitHeadroom() throws InterruptedException {
+        double required = config.getRequestBurst() * config.getPrewarmHeadroom();
+        while (issClient.rateLimiter().available() < required) {
+            TimeUnit.MILLISECONDS.sleep(HEADROOM_WAIT_MILLIS);
+        }
+    }
+
+    @PreDestroy
+    public void stop() {
+        executor.shutdownNow();
+    }
+}
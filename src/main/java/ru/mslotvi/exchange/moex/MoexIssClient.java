@@ -0,0 +1,309 @@
+package ru.mslotvi.exchange.moex;
+
+import jakarta.annotation.PreDestroy;
+import lombok.Getter;
+import lombok.experimental.Accessors;
+import org.springframework.stereotype.Component;
+import ru.mslotvi.config.MoexConfig;
+import ru.mslotvi.exchange.CandleInterval;
+import ru.mslotvi.exchange.CandleSeries;
+import ru.mslotvi.http.HttpRequestService;
+import ru.mslotvi.http.RateLimiter;
+import ru.mslotvi.http.SingleFlight;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.URI;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.function.IntFunction;
+
+/**
+ * Клиент MOEX ISS.
+ * <p>Все запросы к ISS проходят через общий {@link RateLimiter}, поэтому параллельная загрузка истории
+ * по многим бумагам не превышает лимиты ISS независимо от количества одновременно работающих потоков.</p>
+ *
+ * <p>Одновременные запросы истории одной бумаги за один и тот же интервал объединяются {@link #historyFlights()}:
+ * к ISS уходит один запрос, а остальные вызовы получают его результат.</p>
+ *
+ * <p>Асинхронные методы ожидают токен ограничителя и ответ ISS без блокировки потоков, а разбор тела ответа,
+ * читающий поток, выполняется на виртуальных потоках.</p>
+ */
+@Getter
+@Accessors(fluent = true)
+@Component
+public class MoexIssClient {
+
+    /**
+     * Разборщик тела ответа ISS.
+     */
+    @FunctionalInterface
+    public interface BodyParser<T> {
+        T parse(InputStream body) throws IOException;
+    }
+
+    /**
+     * Ключ запроса истории торгов одной бумаги за интервал.
+     */
+    public record HistoryKey(String secId, String boardId, LocalDate from, LocalDate to) {
+    }
+
+    /**
+     * Столбцы истории, без которых строки нельзя отнести к бумаге и доске.
+     */
+    public static final List<String> HISTORY_KEY_COLUMNS = List.of("BOARDID", "SECID");
+
+    private final MoexConfig config;
+    private final RateLimiter rateLimiter;
+    private final SingleFlight<HistoryKey, List<MoexHistoryPage>> historyFlights = new SingleFlight<>();
+    private final ExecutorService parseExecutor = Executors.newVirtualThreadPerTaskExecutor();
+
+    public MoexIssClient(MoexConfig config) {
+        this.config = config;
+        this.rateLimiter = new RateLimiter(config.getRequestsPerSecond(), config.getRequestBurst());
+    }
+
+    @PreDestroy
+    public void close() {
+        parseExecutor.shutdownNow();
+    }
+
+    /**
+     * Формирует параметры проекции ответа ISS.
+     * <p>{@code iss.only} оставляет в ответе только перечисленные блоки, {@code <block>.columns} — только нужные
+     * столбцы основного блока, а {@code iss.meta=off} отключает блоки метаданных.</p>
+     *
+     * @param blocks Блоки ответа, первый из которых основной, например {@code history, history.cursor}.
+     * @param columns Столбцы основного блока; пустой список означает все столбцы.
+     * @return Параметры запроса в порядке добавления.
+     */
+    public Map<String, String> projection(List<String> blocks, List<String> columns) {
+        Map<String, String> queryParams = new LinkedHashMap<>();
+        queryParams.put("iss.meta", config.isIssMeta() ? "on" : "off");
+        queryParams.put("iss.only", String.join(",", blocks));
+        if (columns != null && !columns.isEmpty()) {
+            queryParams.put(blocks.get(0) + ".columns", String.join(",", columns));
+        }
+        return queryParams;
+    }
+
+    /**
+     * Формирует параметры проекции истории торгов по столбцам {@link MoexConfig#getHistoryColumns()}.
+     * <p>Столбцы {@link #HISTORY_KEY_COLUMNS} добавляются всегда, даже если их нет в настройке: без {@code BOARDID}
+     * {@link MoexHistoryPage#forBoard} не отличил бы строки других досок, а без {@code SECID} загрузка доски
+     * не разложила бы строки по бумагам.</p>
+     *
+     * @return Параметры запроса блоков {@code history, history.cursor}.
+     */
+    public Map<String, String> historyProjection() {
+        List<String> columns = config.getHistoryColumns();
+        if (columns != null && !columns.isEmpty()) {
+            columns = new ArrayList<>(columns);
+            for (String column : HISTORY_KEY_COLUMNS) {
+                if (!columns.contains(column)) {
+                    columns.add(column);
+                }
+            }
+        }
+        return projection(List.of("history", "history.cursor"), columns);
+    }
+
+    /**
+     * Выполняет GET-запрос к ISS с учётом ограничения частоты.
+     *
+     * @param url Адрес запроса.
+     * @return Тело ответа.
+     * @throws IOException если произошла ошибка при отправке запроса
+     * @throws InterruptedException если запрос был прерван
+     */
+    public String get(URI url) throws IOException, InterruptedException {
+        try (InputStream body = getStream(url)) {
+            return new String(body.readAllBytes(), StandardCharsets.UTF_8);
+        }
+    }
+
+    /**
+     * Выполняет GET-запрос к ISS с учётом ограничения частоты и возвращает тело ответа потоком.
+     *
+     * @param url Адрес запроса.
+     * @return Поток тела ответа; вызывающий код должен его закрыть.
+     * @throws IOException если произошла ошибка при отправке запроса
+     * @throws InterruptedException если запрос был прерван
+     */
+    public InputStream getStream(URI url) throws IOException, InterruptedException {
+        rateLimiter.acquire();
+        return HttpRequestService.sendGetRequestStream(url, config.getRequestTimeout());
+    }
+
+    /**
+     * Асинхронно выполняет GET-запрос к ISS с учётом ограничения частоты.
+     *
+     * @param url Адрес запроса.
+     * @return Future с потоком тела ответа; вызывающий код должен закрыть поток.
+     */
+    public CompletableFuture<InputStream> getAsync(URI url) {
+        return rateLimiter.acquireAsync()
+                .thenCompose(ignored -> HttpRequestService.sendGetRequestAsync(url, config.getRequestTimeout()));
+    }
+
+    /**
+     * Асинхронно выполняет GET-запрос к ISS и разбирает тело ответа на виртуальном потоке.
+     * Поток тела ответа закрывается после разбора.
+     *
+     * @param url Адрес запроса.
+     * @param parser Разборщик тела ответа.
+     * @return Future с результатом разбора.
+     */
+    public <T> CompletableFuture<T> getAsync(URI url, BodyParser<T> parser) {
+        return getAsync(url).thenApplyAsync(body -> {
+            try (body) {
+                return parser.parse(body);
+            } catch (IOException e) {
+                throw new CompletionException(e);
+            }
+        }, parseExecutor);
+    }
+
+    /**
+     * Асинхронно выполняет условный GET-запрос к ISS для справочных данных.
+     * <p>Повторный запрос того же адреса отправляется с {@code If-None-Match}/{@code If-Modified-Since},
+     * и если данные не изменились, возвращается ранее полученное тело.</p>
+     *
+     * @param url Адрес запроса.
+     * @return Future с телом ответа.
+     */
+    public CompletableFuture<ByteBuffer> getRevalidatedAsync(URI url) {
+        return rateLimiter.acquireAsync()
+                .thenCompose(ignored -> HttpRequestService.sendRevalidatedGetRequestAsync(url, config.getRequestTimeout()));
+    }
+
+    /**
+     * Загружает все страницы постраничного ответа истории ISS.
+     * <p>Первая страница запрашивается отдельно: из её блока {@code history.cursor} берутся общее количество
+     * записей и размер страницы. Остальные страницы запрашиваются асинхронно все сразу и собираются в исходном
+     * порядке, а завершающий пустой запрос не выполняется. Если курсор в ответе отсутствует, страницы
+     * запрашиваются последовательно до первой пустой.</p>
+     *
+     * @param pageUrl Адрес страницы по номеру её первой записи ({@code start}).
+     * @param parser Разборщик страницы.
+     * @return Страницы в порядке записей.
+     * @throws IOException если не удалось загрузить или разобрать страницу.
+     * @throws InterruptedException если загрузка была прервана.
+     */
+    public List<MoexHistoryPage> getHistoryPages(IntFunction<URI> pageUrl, BodyParser<MoexHistoryPage> parser)
+            throws IOException, InterruptedException {
+        List<MoexHistoryPage> pages = new ArrayList<>();
+        MoexHistoryPage first = await(getAsync(pageUrl.apply(0), parser));
+        pages.add(first);
+
+        if (first.hasCursor()) {
+            int total = first.cursorTotal();
+            int pageSize = first.cursorPageSize();
+            List<CompletableFuture<MoexHistoryPage>> futures = new ArrayList<>();
+            for (int start = first.cursorIndex() + pageSize; start < total; start += pageSize) {
+                futures.add(getAsync(pageUrl.apply(start), parser));
+            }
+            await(CompletableFuture.allOf(futures.toArray(CompletableFuture[]::new)));
+            for (CompletableFuture<MoexHistoryPage> future : futures) {
+                pages.add(future.join());
+            }
+        } else {
+            int start = first.size();
+            MoexHistoryPage page = first;
+            while (page.size() > 0) {
+                page = await(getAsync(pageUrl.apply(start), parser));
+                pages.add(page);
+                start += page.size();
+            }
+        }
+        return List.copyOf(pages);
+    }
+
+    /**
+     * Ожидание перед отправкой очередного запроса фоновой загрузки.
+     */
+    @FunctionalInterface
+    public interface RequestGate {
+        void await() throws InterruptedException;
+    }
+
+    /**
+     * Загружает все страницы ответа истории ISS последовательно, вызывая {@code gate} перед каждой страницей.
+     * <p>Используется фоновыми загрузками: в отличие от {@link #getHistoryPages(IntFunction, BodyParser)} страницы
+     * не запрашиваются все сразу, поэтому длинная история не выбирает разом весь запас ограничителя частоты.</p>
+     *
+     * @param pageUrl Адрес страницы по номеру её первой записи ({@code start}).
+     * @param parser Разборщик страницы.
+     * @param gate Ожидание перед запросом каждой страницы.
+     * @return Страницы в порядке записей.
+     * @throws IOException если не удалось загрузить или разобрать страницу.
+     * @throws InterruptedException если загрузка была прервана.
+     */
+    public List<MoexHistoryPage> getHistoryPages(IntFunction<URI> pageUrl, BodyParser<MoexHistoryPage> parser,
+                                                 RequestGate gate) throws IOException, InterruptedException {
+        List<MoexHistoryPage> pages = new ArrayList<>();
+        int start = 0;
+        while (true) {
+            gate.await();
+            MoexHistoryPage page = await(getAsync(pageUrl.apply(start), parser));
+            pages.add(page);
+            if (page.hasCursor()) {
+                start = page.cursorIndex() + page.cursorPageSize();
+                if (start >= page.cursorTotal()) {
+                    break;
+                }
+            } else if (page.size() > 0) {
+                start += page.size();
+            } else {
+                break;
+            }
+        }
+        return List.copyOf(pages);
+    }
+
+    /**
+     * Загружает все страницы свечей ISS в один ряд.
+     * <p>Ответ свечей не содержит курсора, поэтому страницы запрашиваются последовательно и разбираются
+     * {@link MoexCandleParser} прямо в общий сборщик ряда. Страницы ISS имеют постоянный размер, поэтому
+     * страница короче первой считается последней и завершающий пустой запрос не выполняется.</p>
+     *
+     * @param pageUrl Адрес страницы по номеру её первой записи ({@code start}).
+     * @param interval Интервал запрашиваемых свечей.
+     * @return Ряд свечей в порядке времени.
+     * @throws IOException если не удалось загрузить или разобрать страницу.
+     * @throws InterruptedException если загрузка была прервана.
+     */
+    public CandleSeries getCandles(IntFunction<URI> pageUrl, CandleInterval interval)
+            throws IOException, InterruptedException {
+        CandleSeries.Builder candles = CandleSeries.builder(interval);
+        int pageSize = await(getAsync(pageUrl.apply(0), body -> MoexCandleParser.INSTANCE.parse(body, candles)));
+        int start = pageSize;
+        int rows = pageSize;
+        while (rows > 0 && rows >= pageSize) {
+            rows = await(getAsync(pageUrl.apply(start), body -> MoexCandleParser.INSTANCE.parse(body, candles)));
+            start += rows;
+        }
+        return candles.build();
+    }
+
+    private static <T> T await(CompletableFuture<T> future) throws IOException, InterruptedException {
+        try {
+            return future.get();
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof IOException cause) {
+                throw cause;
+            }
+            throw new IOException("Failed to fetch ISS page", e.getCause());
+        }
+    }
+}
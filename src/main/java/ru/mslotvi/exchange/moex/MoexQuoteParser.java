@@ -0,0 +1,183 @@
+package ru.mslotvi.exchange.moex;
+
+import com.google.gson.stream.JsonReader;
+import com.google.gson.stream.JsonToken;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Потоковый разборщик текущих цен из ответа ISS {@code /securities.json?iss.only=securities,marketdata}.
+ * <p>Из блока {@code securities} берётся цена закрытия предыдущего дня ({@code PREVPRICE}), из блока
+ * {@code marketdata} — цена последней сделки ({@code LAST}); строки блоков сопоставляются по паре
+ * {@code SECID}/{@code BOARDID}. Остальные столбцы пропускаются без разбора.</p>
+ *
+ * <p>Разборщик не хранит состояния между вызовами, поэтому один экземпляр используется всеми потоками.</p>
+ */
+public final class MoexQuoteParser {
+
+    public static final MoexQuoteParser INSTANCE = new MoexQuoteParser();
+
+    private static final int SECID = 0;
+    private static final int BOARDID = 1;
+    private static final int PRICE = 2;
+    private static final int SKIP = -1;
+
+    /**
+     * Цены бумаг по торговым доскам в примитивных столбцах.
+     * Отсутствующая цена хранится как {@link Double#NaN}.
+     */
+    public static final class Quotes {
+        private int size;
+        private String[] secIds = new String[64];
+        private String[] boardIds = new String[64];
+        private double[] last = new double[64];
+        private double[] prevPrice = new double[64];
+        private final Map<String, Integer> rows = new HashMap<>();
+
+        public int size() {
+            return size;
+        }
+
+        public String secId(int i) {
+            return secIds[i];
+        }
+
+        public String boardId(int i) {
+            return boardIds[i];
+        }
+
+        public double last(int i) {
+            return last[i];
+        }
+
+        public double prevPrice(int i) {
+            return prevPrice[i];
+        }
+
+        private int row(String secId, String boardId) {
+            return rows.computeIfAbsent(secId + "/" + boardId, key -> {
+                if (size == secIds.length) {
+                    int capacity = size * 2;
+                    secIds = Arrays.copyOf(secIds, capacity);
+                    boardIds = Arrays.copyOf(boardIds, capacity);
+                    last = Arrays.copyOf(last, capacity);
+                    prevPrice = Arrays.copyOf(prevPrice, capacity);
+                }
+                secIds[size] = secId;
+                boardIds[size] = boardId;
+                last[size] = Double.NaN;
+                prevPrice[size] = Double.NaN;
+                return size++;
+            });
+        }
+    }
+
+    private MoexQuoteParser() {
+    }
+
+    /**
+     * Разбирает ответ ISS в цены бумаг.
+     *
+     * @param body Поток тела ответа в кодировке UTF-8. Поток закрывается после разбора.
+     * @return Цены по парам бумага/доска.
+     * @throws IOException если ответ не удалось прочитать или он имеет неожиданный формат.
+     */
+    public Quotes parse(InputStream body) throws IOException {
+        try (JsonReader reader = new JsonReader(new InputStreamReader(body, StandardCharsets.UTF_8))) {
+            Quotes quotes = new Quotes();
+            reader.beginObject();
+            while (reader.hasNext()) {
+                String block = reader.nextName();
+                if ("securities".equals(block)) {
+                    readBlock(reader, block, "PREVPRICE", quotes, false);
+                } else if ("marketdata".equals(block)) {
+                    readBlock(reader, block, "LAST", quotes, true);
+                } else {
+                    reader.skipValue();
+                }
+            }
+            reader.endObject();
+            return quotes;
+        }
+    }
+
+    private void readBlock(JsonReader reader, String block, String priceColumn, Quotes quotes, boolean last)
+            throws IOException {
+        int[] mapping = null;
+        reader.beginObject();
+        while (reader.hasNext()) {
+            String name = reader.nextName();
+            if ("columns".equals(name)) {
+                mapping = readColumnMapping(reader, priceColumn);
+            } else if ("data".equals(name)) {
+                if (mapping == null) {
+                    throw new IOException("ISS " + block + " block has data before columns");
+                }
+                readRows(reader, mapping, quotes, last);
+            } else {
+                reader.skipValue();
+            }
+        }
+        reader.endObject();
+    }
+
+    private int[] readColumnMapping(JsonReader reader, String priceColumn) throws IOException {
+        int[] mapping = new int[8];
+        int count = 0;
+        reader.beginArray();
+        while (reader.hasNext()) {
+            if (count == mapping.length) {
+                mapping = Arrays.copyOf(mapping, count * 2);
+            }
+            String column = reader.nextString();
+            mapping[count++] = switch (column) {
+                case "SECID" -> SECID;
+                case "BOARDID" -> BOARDID;
+                default -> column.equals(priceColumn) ? PRICE : SKIP;
+            };
+        }
+        reader.endArray();
+        return Arrays.copyOf(mapping, count);
+    }
+
+    private void readRows(JsonReader reader, int[] mapping, Quotes quotes, boolean last) throws IOException {
+        reader.beginArray();
+        while (reader.hasNext()) {
+            String secId = null;
+            String boardId = null;
+            double price = Double.NaN;
+            reader.beginArray();
+            for (int column : mapping) {
+                if (column == SKIP || reader.peek() == JsonToken.NULL) {
+                    reader.skipValue();
+                    continue;
+                }
+                switch (column) {
+                    case SECID -> secId = reader.nextString();
+                    case BOARDID -> boardId = reader.nextString();
+                    case PRICE -> price = reader.nextDouble();
+                    default -> reader.skipValue();
+                }
+            }
+            while (reader.hasNext()) {
+                reader.skipValue();
+            }
+            reader.endArray();
+            if (secId != null) {
+                int row = quotes.row(secId, boardId);
+                if (last) {
+                    quotes.last[row] = price;
+                } else {
+                    quotes.prevPrice[row] = price;
+                }
+            }
+        }
+        reader.endArray();
+    }
+}
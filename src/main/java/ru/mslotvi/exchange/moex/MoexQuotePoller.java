@@ -0,0 +1,100 @@
+package ru.mslotvi.exchange.moex;
+
+import lombok.extern.log4j.Log4j2;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import ru.mslotvi.config.MoexConfig;
+import ru.mslotvi.config.RevaluationConfig;
+import ru.mslotvi.exchange.PortfolioRevaluator;
+import ru.mslotvi.util.QueryUtil;
+
+import java.net.URI;
+import java.util.*;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+
+/**
+ * Опрос текущих цен MOEX для переоценки портфелей.
+ * <p>Раз в {@link RevaluationConfig#getPollInterval()} запрашивает у ISS цены только тех бумаг, которые входят
+ * в сохранённые портфели ({@link PortfolioRevaluator#referencedSecurities()}), пачками по
+ * {@link RevaluationConfig#getQuoteBatchSize()} бумаг в одном запросе; пачки запрашиваются одновременно через общий
+ * ограничитель частоты ISS. Из строк бумаги по разным доскам берётся строка её основной доски из справочника.
+ * Все полученные цены передаются в {@link PortfolioRevaluator#update} одним обновлением.</p>
+ */
+@Log4j2
+@Component
+public class MoexQuotePoller {
+
+    private final MoexConfig moexConfig;
+    private final RevaluationConfig config;
+    private final MoexIssClient issClient;
+    private final MoexExchange exchange;
+    private final PortfolioRevaluator revaluator;
+
+    public MoexQuotePoller(MoexConfig moexConfig, RevaluationConfig config, MoexIssClient issClient,
+                           MoexExchange exchange, PortfolioRevaluator revaluator) {
+        this.moexConfig = moexConfig;
+        this.config = config;
+        this.issClient = issClient;
+        this.exchange = exchange;
+        this.revaluator = revaluator;
+    }
+
+    @Scheduled(initialDelayString = "${revaluation.poll-interval:PT10S}",
+            fixedDelayString = "${revaluation.poll-interval:PT10S}")
+    public void poll() {
+        if (!revaluator.enabled()) {
+            return;
+        }
+        List<String> secIds = revaluator.referencedSecurities();
+        if (secIds.isEmpty()) {
+            return;
+        }
+
+        int batchSize = Math.max(config.getQuoteBatchSize(), 1);
+        List<CompletableFuture<MoexQuoteParser.Quotes>> batches = new ArrayList<>();
+        for (int from = 0; from < secIds.size(); from += batchSize) {
+            List<String> batch = secIds.subList(from, Math.min(from + batchSize, secIds.size()));
+            batches.add(issClient.getAsync(quotesUrl(batch), MoexQuoteParser.INSTANCE::parse));
+        }
+
+        Map<String, MoexSecuritie> securities = exchange.securities().get();
+        String[] updatedSecIds = new String[secIds.size()];
+        double[] last = new double[secIds.size()];
+        double[] prevPrice = new double[secIds.size()];
+        Set<String> seen = new HashSet<>();
+        int count = 0;
+        for (CompletableFuture<MoexQuoteParser.Quotes> batch : batches) {
+            MoexQuoteParser.Quotes quotes;
+            try {
+                quotes = batch.join();
+            } catch (CompletionException e) {
+                log.warn("Failed to poll quotes", e.getCause());
+                continue;
+            }
+            for (int i = 0; i < quotes.size(); i++) {
+                String secId = quotes.secId(i);
+                MoexSecuritie securitie = securities.get(secId);
+                boolean primary = securitie == null || securitie.boardId() == null
+                        || securitie.boardId().code().equals(quotes.boardId(i));
+                if (primary && seen.add(secId) && count < updatedSecIds.length) {
+                    updatedSecIds[count] = secId;
+                    last[count] = quotes.last(i);
+                    prevPrice[count] = quotes.prevPrice(i);
+                    count++;
+                }
+            }
+        }
+
+        int revalued = revaluator.update(updatedSecIds, last, prevPrice, count);
+        log.debug("Polled {} quotes, revalued {} portfolios", count, revalued);
+    }
+
+    private URI quotesUrl(List<String> secIds) {
+        Map<String, String> queryParams = issClient.projection(List.of("securities", "marketdata"),
+                List.of("SECID", "BOARDID", "PREVPRICE"));
+        queryParams.put("marketdata.columns", "SECID,BOARDID,LAST");
+        queryParams.put("securities", String.join(",", secIds));
+        return URI.create(moexConfig.getSecuritiesEntryPoint() + ".json?" + QueryUtil.buildQueryString(queryParams));
+    }
+}
@@ -23,6 +23,8 @@ import java.util.List;
 public class MoexResponse implements ExchangeDateSnapshot {
 
     private History history;
+
+    @SerializedName("history.cursor")
     private HistoryCursor historyCursor;
 
     /**
@@ -153,6 +155,39 @@ public class MoexResponse implements ExchangeDateSnapshot {
         private CursorMetadata metadata;
         private List<String> columns;
         private List<List<Object>> data;
+
+        /**
+         * @return Индекс первой записи текущей страницы или {@code 0}, если курсор пуст.
+         */
+        public int index() {
+            Integer index = value("INDEX");
+            return index != null ? index : 0;
+        }
+
+        /**
+         * @return Общее количество записей за запрошенный интервал или {@code null}, если курсор пуст.
+         */
+        public Integer total() {
+            return value("TOTAL");
+        }
+
+        /**
+         * @return Размер страницы или {@code null}, если курсор пуст.
+         */
+        public Integer pageSize() {
+            return value("PAGESIZE");
+        }
+
+        private Integer value(String column) {
+            if (columns == null || data == null || data.isEmpty()) {
+                return null;
+            }
+            int i = columns.indexOf(column);
+            if (i < 0 || data.get(0).size() <= i || !(data.get(0).get(i) instanceof Number number)) {
+                return null;
+            }
+            return number.intValue();
+        }
     }
 
     /**
@@ -1,172 +1,280 @@
 package ru.mslotvi.exchange.moex;
 
-import com.google.gson.Gson;
-import com.google.gson.GsonBuilder;
-import com.google.gson.annotations.SerializedName;
-import com.google.gson.reflect.TypeToken;
+import lombok.AccessLevel;
 import lombok.Getter;
 import lombok.Setter;
 import lombok.SneakyThrows;
 import lombok.experimental.Accessors;
-import ru.mslotvi.config.MoexConfig;
+import ru.mslotvi.data.HistoryCache;
+import ru.mslotvi.data.MarketDataStore;
+import ru.mslotvi.exchange.CandleInterval;
+import ru.mslotvi.exchange.CandleSeries;
 import ru.mslotvi.exchange.ExchangeDateSnapshot;
 import ru.mslotvi.exchange.ExchangeSecuritie;
-import ru.mslotvi.http.HttpRequestService;
+import ru.mslotvi.exchange.MarketHistory;
+import ru.mslotvi.exchange.SecuritySearchIndex;
 import ru.mslotvi.util.MathUtil;
 import ru.mslotvi.util.QueryUtil;
 
-import java.lang.reflect.Type;
+import java.io.IOException;
 import java.net.URI;
 import java.time.LocalDate;
 import java.time.format.DateTimeFormatter;
 import java.util.*;
+import java.util.function.IntFunction;
 
 @Getter
 @Setter
 @Accessors(fluent = true)
 public class MoexSecuritie implements ExchangeSecuritie {
 
-    private final MoexConfig moexConfig;
+    private final MoexIssClient issClient;
+    private final MarketDataStore marketDataStore;
+    private final HistoryCache historyCache;
 
-    public MoexSecuritie(MoexConfig moexConfig) {
-        this.moexConfig = moexConfig;
+    public MoexSecuritie(MoexIssClient issClient, MarketDataStore marketDataStore, HistoryCache historyCache) {
+        this.issClient = issClient;
+        this.marketDataStore = marketDataStore;
+        this.historyCache = historyCache;
     }
 
-    @SerializedName("SECID")
+    /**
+     * Создаёт бумагу по строке справочника.
+     * <p>Сразу декодируются только столбцы, которые читаются при каждом обновлении справочника и при поиске:
+     * {@code SECID}, {@code BOARDID}, {@code SHORTNAME} и {@code LISTLEVEL}. Остальные остаются в ответе ISS
+     * до первого обращения к {@link #details()}.</p>
+     */
+    public MoexSecuritie(MoexIssClient issClient, MarketDataStore marketDataStore, HistoryCache historyCache,
+                         MoexCatalog.Row row) {
+        this(issClient, marketDataStore, historyCache);
+        String board = row.string("BOARDID");
+        this.secId = row.string("SECID");
+        this.boardId = board != null ? MoexBoard.of(board) : null;
+        this.listing = new Listing(row.string("SHORTNAME"), row.integer("LISTLEVEL"), row);
+    }
+
+    @Setter(AccessLevel.NONE)
     private String secId;
 
-    @SerializedName("BOARDID")
+    @Setter(AccessLevel.NONE)
     private MoexBoard boardId;
 
-    @SerializedName("SHORTNAME")
-    private String shortName;
-
-    @SerializedName("PREVPRICE")
-    private Double prevPrice;
-
-    @SerializedName("LOTSIZE")
-    private Integer lotSize;
-
-    @SerializedName("FACEVALUE")
-    private Double faceValue;
-
-    @SerializedName("STATUS")
-    private String status;
-
-    @SerializedName("BOARDNAME")
-    private String boardName;
-
-    @SerializedName("DECIMALS")
-    private Integer decimals;
-
-    @SerializedName("SECNAME")
-    private String secName;
-
-    @SerializedName("REMARKS")
-    private String remarks;
-
-    @SerializedName("MARKETCODE")
-    private String marketCode;
-
-    @SerializedName("INSTRID")
-    private String instrId;
-
-    @SerializedName("SECTORID")
-    private String sectorId;
-
-    @SerializedName("MINSTEP")
-    private Double minStep;
-
-    @SerializedName("PREVWAPRICE")
-    private Double prevWapPrice;
-
-    @SerializedName("FACEUNIT")
-    private String faceUnit;
+    /**
+     * Справочные данные бумаги из одной записи справочника.
+     * <p>Заменяются одной записью в {@link #updateFrom(MoexSecuritie)}, поэтому поиск и API, читающие бумагу
+     * во время обновления справочника, не видят название из одной записи и уровень листинга из другой.</p>
+     *
+     * @param shortName Краткое название.
+     * @param listLevel Уровень листинга.
+     * @param row Строка справочника, из которой при обращении декодируются остальные справочные данные.
+     */
+    private record Listing(String shortName, Integer listLevel, MoexCatalog.Row row) {
+        static final Listing EMPTY = new Listing(null, null, null);
+    }
 
-    @SerializedName("PREVDATE")
-    private String prevDate;
+    @Getter(AccessLevel.NONE)
+    @Setter(AccessLevel.NONE)
+    private volatile Listing listing = Listing.EMPTY;
 
-    @SerializedName("ISSUESIZE")
-    private Long issueSize;
+    @Getter(AccessLevel.NONE)
+    @Setter(AccessLevel.NONE)
+    private volatile MarketHistory lastMarketHistory;
 
-    @SerializedName("ISIN")
-    private String isin;
+    /**
+     * Проверяет, описывают ли две записи справочника одну и ту же бумагу на одной торговой доске.
+     */
+    boolean sameListing(MoexSecuritie other) {
+        return Objects.equals(secId, other.secId) && boardId == other.boardId;
+    }
 
-    @SerializedName("LATNAME")
-    private String latName;
+    /**
+     * Обновляет справочные данные из более новой записи справочника той же бумаги.
+     * <p>Загруженная история и построенные по ней бары сохраняются.</p>
+     *
+     * @param other Новая запись справочника, см. {@link #sameListing(MoexSecuritie)}.
+     */
+    void updateFrom(MoexSecuritie other) {
+        listing = other.listing;
+    }
 
-    @SerializedName("REGNUMBER")
-    private String regNumber;
+    @Override
+    public String shortName() {
+        return listing.shortName();
+    }
 
-    @SerializedName("PREVLEGALCLOSEPRICE")
-    private Double prevLegalClosePrice;
+    public Integer listLevel() {
+        return listing.listLevel();
+    }
 
-    @SerializedName("CURRENCYID")
-    private String currencyId;
+    /**
+     * Возвращает справочные данные бумаги, декодируя их из ответа ISS при первом обращении.
+     */
+    public MoexSecuritieDetails details() {
+        MoexCatalog.Row row = listing.row();
+        return row != null ? row.details() : MoexSecuritieDetails.EMPTY;
+    }
 
-    @SerializedName("SECTYPE")
-    private String secType;
+    /**
+     * Собирает запись поискового индекса; названия и номера читаются прямо из строки справочника,
+     * не декодируя остальные справочные данные.
+     */
+    SecuritySearchIndex.Entry searchEntry() {
+        Listing current = listing;
+        MoexCatalog.Row row = current.row();
+        if (row == null) {
+            return new SecuritySearchIndex.Entry(secId, current.shortName(), null, null, null, null, current.listLevel());
+        }
+        return new SecuritySearchIndex.Entry(secId, current.shortName(), row.string("SECNAME"), row.string("LATNAME"),
+                row.string("ISIN"), row.string("REGNUMBER"), current.listLevel());
+    }
 
-    @SerializedName("LISTLEVEL")
-    private Integer listLevel;
+    @Override
+    public double calculateDeviation() {
+        MarketHistory history = lastMarketHistory;
+        return history != null ? MathUtil.calculateStandardDeviation(history.series()) : 0;
+    }
 
-    @SerializedName("SETTLEDATE")
-    private String settleDate;
+    @Override
+    public double calculateExpectedReturn() {
+        MarketHistory history = lastMarketHistory;
+        return history != null ? MathUtil.calculateExpectedReturn(history) : 0;
+    }
 
-    private final List<ExchangeDateSnapshot> marketHistory = new ArrayList<>();
+    @Override
+    public MarketHistory lastLoadMarketHistory() {
+        return lastMarketHistory;
+    }
 
+    /**
+     * Загружает историю торгов за интервал.
+     * <p>Если включено локальное хранилище {@link MarketDataStore}, с биржи запрашиваются только ещё не
+     * сохранённые промежутки интервала, остальное читается с диска. Если включён {@link HistoryCache},
+     * уже загруженные в память дни берутся из него без обращения к хранилищу и бирже.</p>
+     *
+     * <p>Каждый вызов возвращает собственный неизменяемый снимок, поэтому одновременные загрузки одной бумаги
+     * с разными интервалами не мешают друг другу.</p>
+     */
     @Override
-    public double calculateDeviation() {
-        return MathUtil.calculateStandardDeviation(marketHistory);
+    public MarketHistory loadMarketHistory(LocalDate from, LocalDate to) {
+        MarketHistory history = fetchMarketHistory(from, to);
+        lastMarketHistory = history;
+        return history;
     }
 
     @Override
-    public double calculateExpectedReturn() {
-        return MathUtil.calculateExpectedReturn(this);
+    @SneakyThrows
+    public MarketHistory fetchMarketHistory(LocalDate from, LocalDate to) {
+        MarketDataStore.HistoryFetcher source = marketDataStore != null && marketDataStore.enabled()
+                ? (fromDate, toDate) -> marketDataStore.load(boardCode(), secId, fromDate, toDate, this::fetchHistory)
+                : this::fetchHistory;
+        List<? extends ExchangeDateSnapshot> pages = historyCache != null && historyCache.enabled()
+                ? historyCache.load(boardCode(), secId, from, to, source)
+                : source.fetch(from, to);
+
+        return MarketHistory.of(this, from, to, pages);
     }
 
     @Override
-    public List<ExchangeDateSnapshot> lastLoadMarketHistory() {
-        return marketHistory;
+    public boolean supportsCandles() {
+        return true;
     }
 
+    /**
+     * Загружает внутридневные свечи за интервал дат.
+     * <p>Свечи запрашиваются у ISS с самым крупным поддерживаемым интервалом, из которого собирается
+     * запрошенный ({@link CandleInterval#source()}), и при необходимости агрегируются за один проход.</p>
+     */
     @Override
     @SneakyThrows
-    public List<ExchangeDateSnapshot> loadMarketHistory(LocalDate from, LocalDate to) {
-        marketHistory.clear();
-        DateTimeFormatter dateFormat = DateTimeFormatter.ofPattern("yyyy-MM-dd");
-        String fromDate = from.format(dateFormat);
-        String toDate = to.format(dateFormat);
+    public CandleSeries loadCandles(LocalDate from, LocalDate to, CandleInterval interval) {
+        CandleInterval source = interval.source();
+        CandleSeries candles = issClient.getCandles(start -> candlePageUrl(source, from, to, start), source);
+        return candles.slice(from, to).aggregate(interval);
+    }
+
+    /**
+     * Проверяет, сохранена ли опубликованная история бумаги за интервал в локальном хранилище, см. {@link MarketDataStore#covered}.
+     */
+    boolean historyStored(LocalDate from, LocalDate to) {
+        return marketDataStore != null && marketDataStore.covered(boardCode(), secId, from, to);
+    }
 
-        int start = 0;
-        boolean hasMoreData = true;
+    /**
+     * Догружает историю за интервал в локальное хранилище, не меняя {@link #lastLoadMarketHistory()}.
+     * <p>Страницы запрашиваются по одной, перед каждой вызывается {@code gate}. Загрузка не объединяется
+     * с одновременными запросами пользователей, чтобы они не ждали медленную фоновую загрузку.</p>
+     *
+     * @param gate Ожидание перед запросом каждой страницы, см. {@link MoexIssClient.RequestGate}.
+     */
+    void storeHistory(LocalDate from, LocalDate to, MoexIssClient.RequestGate gate) throws IOException, InterruptedException {
+        marketDataStore.load(boardCode(), secId, from, to,
+                (fromDate, toDate) -> forBoard(issClient.getHistoryPages(historyPages(fromDate, toDate),
+                        MoexHistoryParser.INSTANCE::parse, gate)));
+    }
 
-        while (hasMoreData) {
-            Map<String, String> queryParams = new HashMap<>();
-            queryParams.put("from", fromDate);
-            queryParams.put("till", toDate);
-            queryParams.put("start", String.valueOf(start));
+    /**
+     * Запрашивает историю торгов за интервал у ISS.
+     * <p>Если та же история уже запрашивается другим потоком, новый запрос не отправляется:
+     * вызов дожидается и возвращает результат уже выполняющегося запроса.</p>
+     *
+     * <p>ISS отдаёт историю бумаги по всем доскам, на которых она торгуется, поэтому строки других досок
+     * отбрасываются: история, хранилище и кэш ведутся по основной доске бумаги.</p>
+     */
+    private List<MoexHistoryPage> fetchHistory(LocalDate from, LocalDate to) throws IOException, InterruptedException {
+        return forBoard(issClient.historyFlights().execute(
+                new MoexIssClient.HistoryKey(secId, boardCode(), from, to), () -> requestHistory(from, to)));
+    }
 
-            String url = moexConfig.getEntryPoint() +"/"+secId+ ".json?" + QueryUtil.buildQueryString(queryParams);
+    private List<MoexHistoryPage> forBoard(List<MoexHistoryPage> pages) {
+        if (boardId == null) {
+            return pages;
+        }
+        List<MoexHistoryPage> board = new ArrayList<>(pages.size());
+        for (MoexHistoryPage page : pages) {
+            board.add(page.forBoard(boardId.code()));
+        }
+        return board;
+    }
+
+    /**
+     * Выполняет запрос истории торгов за интервал к ISS, см. {@link MoexIssClient#getHistoryPages}.
+     * <p>Ответы разбираются потоково {@link MoexHistoryParser} сразу в примитивные столбцы {@link MoexHistoryPage}.</p>
+     */
+    private List<MoexHistoryPage> requestHistory(LocalDate from, LocalDate to) throws IOException, InterruptedException {
+        return issClient.getHistoryPages(historyPages(from, to), MoexHistoryParser.INSTANCE::parse);
+    }
 
-            String response = HttpRequestService.sendGetRequest(URI.create(url));
+    private IntFunction<URI> historyPages(LocalDate from, LocalDate to) {
+        DateTimeFormatter dateFormat = DateTimeFormatter.ofPattern("yyyy-MM-dd");
+        String fromDate = from.format(dateFormat);
+        String toDate = to.format(dateFormat);
+        return start -> historyPageUrl(fromDate, toDate, start);
+    }
 
-            Type tradeRecordListType = new TypeToken<List<MoexResponse.TradeRecord>>(){}.getType();
-            Gson gson = new GsonBuilder()
-                    .registerTypeAdapter(tradeRecordListType, new TradeRecordDeserializer())
-                    .create();
+    private String boardCode() {
+        return boardId != null ? boardId.code() : "ALL";
+    }
 
-            MoexResponse moexResponse = gson.fromJson(response, MoexResponse.class);
+    /**
+     * Адрес страницы свечей; {@code till} берётся на день позже, а лишние свечи отрезаются срезом.
+     */
+    private URI candlePageUrl(CandleInterval interval, LocalDate from, LocalDate to, int start) {
+        Map<String, String> queryParams = issClient.projection(List.of("candles"), issClient.config().getCandleColumns());
+        queryParams.put("from", from.toString());
+        queryParams.put("till", to.plusDays(1).toString());
+        queryParams.put("interval", String.valueOf(interval.issCode()));
+        queryParams.put("start", String.valueOf(start));
+
+        return URI.create(issClient.config().getSecuritiesEntryPoint() + "/" + secId + "/candles.json?"
+                + QueryUtil.buildQueryString(queryParams));
+    }
 
-            List<MoexResponse.TradeRecord> tradeRecords = moexResponse.history().data();
-            if (tradeRecords.isEmpty()) {
-                hasMoreData = false;
-            } else {
-                marketHistory.add(moexResponse);
-                start += tradeRecords.size();
-            }
-        }
+    private URI historyPageUrl(String fromDate, String toDate, int start) {
+        Map<String, String> queryParams = issClient.historyProjection();
+        queryParams.put("from", fromDate);
+        queryParams.put("till", toDate);
+        queryParams.put("start", String.valueOf(start));
 
-        return marketHistory;
+        return URI.create(issClient.config().getEntryPoint() +"/"+secId+ ".json?" + QueryUtil.buildQueryString(queryParams));
     }
 }
@@ -0,0 +1,61 @@
+package ru.mslotvi.exchange.moex;
+
+/**
+ * Справочные данные ценной бумаги MOEX, которые не нужны для расчётов и поиска.
+ * <p>Декодируются из строки справочника только при первом обращении, см. {@link MoexSecuritie#details()}.
+ * Значения столбцов, отсутствующих в ответе ISS, равны {@code null}.</p>
+ */
+public record MoexSecuritieDetails(Double prevPrice,
+                                   Integer lotSize,
+                                   Double faceValue,
+                                   String status,
+                                   String boardName,
+                                   Integer decimals,
+                                   String secName,
+                                   String remarks,
+                                   String marketCode,
+                                   String instrId,
+                                   String sectorId,
+                                   Double minStep,
+                                   Double prevWapPrice,
+                                   String faceUnit,
+                                   String prevDate,
+                                   Long issueSize,
+                                   String isin,
+                                   String latName,
+                                   String regNumber,
+                                   Double prevLegalClosePrice,
+                                   String currencyId,
+                                   String secType,
+                                   String settleDate) {
+
+    public static final MoexSecuritieDetails EMPTY = new MoexSecuritieDetails(null, null, null, null, null, null,
+            null, null, null, null, null, null, null, null, null, null, null, null, null, null, null, null, null);
+
+    static MoexSecuritieDetails of(MoexCatalog.Row row) {
+        return new MoexSecuritieDetails(
+                row.number("PREVPRICE"),
+                row.integer("LOTSIZE"),
+                row.number("FACEVALUE"),
+                row.string("STATUS"),
+                row.string("BOARDNAME"),
+                row.integer("DECIMALS"),
+                row.string("SECNAME"),
+                row.string("REMARKS"),
+                row.string("MARKETCODE"),
+                row.string("INSTRID"),
+                row.string("SECTORID"),
+                row.number("MINSTEP"),
+                row.number("PREVWAPRICE"),
+                row.string("FACEUNIT"),
+                row.string("PREVDATE"),
+                row.longValue("ISSUESIZE"),
+                row.string("ISIN"),
+                row.string("LATNAME"),
+                row.string("REGNUMBER"),
+                row.number("PREVLEGALCLOSEPRICE"),
+                row.string("CURRENCYID"),
+                row.string("SECTYPE"),
+                row.string("SETTLEDATE"));
+    }
+}
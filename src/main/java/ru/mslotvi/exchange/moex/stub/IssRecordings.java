@@ -0,0 +1,57 @@
+package ru.mslotvi.exchange.moex.stub;
+
+import java.io.IOException;
+import java.net.URI;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.Arrays;
+import java.util.HexFormat;
+import java.util.Optional;
+
+/**
+ * Каталог записанных ответов ISS.
+ * <p>Ответ хранится в отдельном файле, имя которого складывается из пути запроса и хэша его параметров.
+ * Параметры перед хэшированием сортируются, поэтому порядок параметров в запросе не важен.</p>
+ */
+final class IssRecordings {
+
+    private final Path directory;
+
+    IssRecordings(Path directory) {
+        this.directory = directory;
+    }
+
+    Optional<byte[]> find(URI uri) throws IOException {
+        Path file = file(uri);
+        return Files.exists(file) ? Optional.of(Files.readAllBytes(file)) : Optional.empty();
+    }
+
+    void save(URI uri, byte[] body) throws IOException {
+        Path file = file(uri);
+        Files.createDirectories(file.getParent());
+        Path temp = file.resolveSibling(file.getFileName() + ".tmp");
+        Files.write(temp, body);
+        Files.move(temp, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+    }
+
+    private Path file(URI uri) {
+        String path = uri.getPath().replaceAll("[^A-Za-z0-9._-]", "_");
+        String query = uri.getRawQuery() == null ? "" : uri.getRawQuery();
+        String[] params = query.split("&");
+        Arrays.sort(params);
+        return directory.resolve(path + "-" + hash(String.join("&", params)) + ".json");
+    }
+
+    private static String hash(String value) {
+        try {
+            byte[] digest = MessageDigest.getInstance("SHA-1").digest(value.getBytes(StandardCharsets.UTF_8));
+            return HexFormat.of().formatHex(digest, 0, 8);
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+}
@@ -0,0 +1,331 @@
+package ru.mslotvi.exchange.moex.stub;
+
+import com.google.gson.stream.JsonWriter;
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.log4j.Log4j2;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.stereotype.Component;
+import ru.mslotvi.config.IssStubConfig;
+import ru.mslotvi.http.HttpRequestService;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.net.InetSocketAddress;
+import java.net.URI;
+import java.net.URLDecoder;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.time.LocalDate;
+import java.util.*;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * Заглушка MOEX ISS для нагрузочного тестирования без доступа к iss.moex.com.
+ * <p>Обслуживает те же адреса, что и ISS:
+ * <ul>
+ *   <li>{@code /iss/engines/stock/markets/shares/securities.json} — справочник бумаг;</li>
+ *   <li>{@code /iss/history/engines/stock/markets/shares/securities/{secId}.json} — постраничная история торгов
+ *   с блоком {@code history.cursor} и параметрами {@code from}, {@code till}, {@code start};</li>
+ *   <li>{@code /iss/history/engines/stock/markets/shares/boards/{board}/securities.json} — постраничная история
+ *   всех бумаг доски за день {@code date}.</li>
+ * </ul>
+ * Поддерживаются параметры проекции {@code iss.only} и {@code <block>.columns}, сжатие gzip и условный запрос
+ * справочника по {@code ETag}. Данные синтезируются {@link SyntheticMarket}, берутся из записей или проксируются
+ * на настоящий ISS с записью ответа, см. {@link IssStubConfig.Mode}.</p>
+ *
+ * <p>Для проверки устойчивости клиента заглушка может добавлять задержку ответа, отвечать ошибкой 500 с заданной
+ * вероятностью и отвечать 429 при превышении заданной частоты запросов.</p>
+ *
+ * <p>Чтобы направить приложение на заглушку, укажите {@code moex.entry-point}, {@code moex.securities-entry-point}
+ * и {@code moex.board-history-entry-point}
+ * с адресом {@code http://localhost:<port>/iss/...}. Заглушку можно запустить и отдельно, см. {@link #main(String[])}.</p>
+ */
+@Log4j2
+@Component
+@ConditionalOnProperty(prefix = "iss-stub", name = "enabled", havingValue = "true")
+public class IssStubServer {
+
+    private static final String SECURITIES_PATH = "/iss/engines/stock/markets/shares/securities.json";
+    private static final Pattern HISTORY_PATH =
+            Pattern.compile("/iss/history/engines/stock/markets/shares/securities/([^/]+)\\.json");
+    private static final Pattern BOARD_HISTORY_PATH =
+            Pattern.compile("/iss/history/engines/stock/markets/shares/boards/([^/]+)/securities\\.json");
+
+    private final IssStubConfig config;
+    private final SyntheticMarket market;
+    private final IssRecordings recordings;
+
+    private final AtomicLong throttleWindow = new AtomicLong();
+    private final AtomicLong throttleCount = new AtomicLong();
+
+    private HttpServer server;
+    private ExecutorService executor;
+
+    public IssStubServer(IssStubConfig config) {
+        this.config = config;
+        this.market = new SyntheticMarket(config.getTickers(), config.getHistoryStart(), config.getSeed());
+        this.recordings = new IssRecordings(Path.of(config.getRecordingsDirectory()));
+    }
+
+    /**
+     * Запускает заглушку отдельно от приложения с настройками по умолчанию.
+     *
+     * @param args Необязательный порт.
+     */
+    public static void main(String[] args) throws IOException {
+        IssStubConfig config = new IssStubConfig();
+        if (args.length > 0) {
+            config.setPort(Integer.parseInt(args[0]));
+        }
+        new IssStubServer(config).start();
+    }
+
+    @PostConstruct
+    public void start() throws IOException {
+        executor = Executors.newVirtualThreadPerTaskExecutor();
+        server = HttpServer.create(new InetSocketAddress(config.getBindAddress(), config.getPort()), 0);
+        server.setExecutor(executor);
+        server.createContext("/iss/", this::handle);
+        server.start();
+        log.info("ISS stub listening on {} in {} mode", server.getAddress(), config.getMode());
+    }
+
+    @PreDestroy
+    public void stop() {
+        server.stop(0);
+        executor.close();
+    }
+
+    public int port() {
+        return server.getAddress().getPort();
+    }
+
+    private void handle(HttpExchange exchange) {
+        // Ошибка отправляется до закрытия обмена: после выхода из try-with-resources соединение уже закрыто.
+        try (exchange) {
+            try {
+                serve(exchange);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                sendError(exchange, 503);
+            } catch (UpstreamException e) {
+                log.warn("ISS stub failed to record {}", exchange.getRequestURI(), e.getCause());
+                sendError(exchange, 502);
+            } catch (IOException | RuntimeException e) {
+                log.warn("ISS stub failed to serve {}", exchange.getRequestURI(), e);
+                sendError(exchange, 500);
+            }
+        }
+    }
+
+    /**
+     * Ошибка запроса к настоящему ISS в режиме {@link IssStubConfig.Mode#RECORD}.
+     */
+    private static final class UpstreamException extends RuntimeException {
+        UpstreamException(Throwable cause) {
+            super(cause);
+        }
+    }
+
+    private void serve(HttpExchange exchange) throws IOException, InterruptedException {
+        delay();
+        if (throttled()) {
+            exchange.getResponseHeaders().add("Retry-After", "1");
+            exchange.sendResponseHeaders(429, -1);
+            return;
+        }
+        if (config.getErrorRate() > 0 && ThreadLocalRandom.current().nextDouble() < config.getErrorRate()) {
+            exchange.sendResponseHeaders(500, -1);
+            return;
+        }
+
+        URI uri = exchange.getRequestURI();
+        switch (config.getMode()) {
+            case RECORD -> {
+                byte[] body;
+                try {
+                    body = HttpRequestService.sendGetRequest(URI.create(config.getUpstream() + uri))
+                            .getBytes(StandardCharsets.UTF_8);
+                } catch (IOException | RuntimeException e) {
+                    throw new UpstreamException(e);
+                }
+                recordings.save(uri, body);
+                send(exchange, body, null);
+            }
+            case REPLAY -> {
+                Optional<byte[]> recorded = recordings.find(uri);
+                if (recorded.isPresent()) {
+                    send(exchange, recorded.get(), null);
+                } else {
+                    synthesize(exchange, uri);
+                }
+            }
+            case SYNTHETIC -> synthesize(exchange, uri);
+        }
+    }
+
+    /**
+     * Отправляет код ошибки, если ответ ещё не начат; иначе клиент увидит оборванное тело.
+     */
+    private static void sendError(HttpExchange exchange, int status) {
+        if (exchange.getResponseCode() != -1) {
+            return;
+        }
+        try {
+            exchange.sendResponseHeaders(status, -1);
+        } catch (IOException e) {
+            log.debug("ISS stub failed to send {} for {}", status, exchange.getRequestURI(), e);
+        }
+    }
+
+    private void synthesize(HttpExchange exchange, URI uri) throws IOException {
+        Map<String, String> params = parameters(uri.getRawQuery());
+        Set<String> only = params.containsKey("iss.only") ? Set.of(params.get("iss.only").split(",")) : null;
+
+        if (SECURITIES_PATH.equals(uri.getPath())) {
+            LocalDate today = LocalDate.now();
+            String etag = "\"syn-" + config.getSeed() + "-" + market.tickers() + "-" + today + "\"";
+            if (etag.equals(exchange.getRequestHeaders().getFirst("If-None-Match"))) {
+                exchange.sendResponseHeaders(304, -1);
+                return;
+            }
+            List<String> columns = columns(params.get("securities.columns"), SyntheticMarket.SECURITIES_COLUMNS);
+            send(exchange, json(writer -> {
+                if (only == null || only.contains("securities")) {
+                    writer.name("securities").beginObject();
+                    writer.name("columns").beginArray();
+                    for (String column : columns) {
+                        writer.value(column);
+                    }
+                    writer.endArray();
+                    writer.name("data").beginArray();
+                    for (int i = 0; i < market.tickers(); i++) {
+                        market.writeSecurity(writer, i, columns, today);
+                    }
+                    writer.endArray();
+                    writer.endObject();
+                }
+            }), etag);
+            return;
+        }
+
+        Matcher history = HISTORY_PATH.matcher(uri.getPath());
+        if (history.matches()) {
+            LocalDate from = params.containsKey("from") ? LocalDate.parse(params.get("from")) : config.getHistoryStart();
+            LocalDate till = params.containsKey("till") ? LocalDate.parse(params.get("till")) : LocalDate.now();
+            int start = Integer.parseInt(params.getOrDefault("start", "0"));
+            List<String> columns = columns(params.get("history.columns"), SyntheticMarket.HISTORY_COLUMNS);
+            boolean cursor = only == null || only.contains("history.cursor");
+            send(exchange, json(writer -> market.writeHistory(writer, market.index(history.group(1)), from, till,
+                    start, config.getPageSize(), columns, cursor)), null);
+            return;
+        }
+
+        Matcher boardHistory = BOARD_HISTORY_PATH.matcher(uri.getPath());
+        if (boardHistory.matches()) {
+            LocalDate date = params.containsKey("date") ? LocalDate.parse(params.get("date")) : LocalDate.now().minusDays(1);
+            int start = Integer.parseInt(params.getOrDefault("start", "0"));
+            List<String> columns = columns(params.get("history.columns"), SyntheticMarket.HISTORY_COLUMNS);
+            boolean cursor = only == null || only.contains("history.cursor");
+            send(exchange, json(writer -> market.writeBoardHistory(writer, boardHistory.group(1), date,
+                    start, config.getPageSize(), columns, cursor)), null);
+            return;
+        }
+
+        exchange.sendResponseHeaders(404, -1);
+    }
+
+    @FunctionalInterface
+    private interface JsonBody {
+        void write(JsonWriter writer) throws IOException;
+    }
+
+    private byte[] json(JsonBody body) throws IOException {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        try (JsonWriter writer = new JsonWriter(new OutputStreamWriter(bytes, StandardCharsets.UTF_8))) {
+            writer.beginObject();
+            body.write(writer);
+            writer.endObject();
+        }
+        return bytes.toByteArray();
+    }
+
+    private void send(HttpExchange exchange, byte[] body, String etag) throws IOException {
+        exchange.getResponseHeaders().add("Content-Type", "application/json; charset=utf-8");
+        if (etag != null) {
+            exchange.getResponseHeaders().add("ETag", etag);
+        }
+        String acceptEncoding = exchange.getRequestHeaders().getFirst("Accept-Encoding");
+        if (acceptEncoding != null && acceptEncoding.contains("gzip")) {
+            exchange.getResponseHeaders().add("Content-Encoding", "gzip");
+            exchange.sendResponseHeaders(200, 0);
+            try (OutputStream out = new GZIPOutputStream(exchange.getResponseBody())) {
+                out.write(body);
+            }
+        } else {
+            exchange.sendResponseHeaders(200, body.length);
+            try (OutputStream out = exchange.getResponseBody()) {
+                out.write(body);
+            }
+        }
+    }
+
+    private void delay() throws InterruptedException {
+        long min = config.getLatencyMin().toMillis();
+        long max = Math.max(min, config.getLatencyMax().toMillis());
+        long millis = min == max ? min : ThreadLocalRandom.current().nextLong(min, max + 1);
+        if (millis > 0) {
+            Thread.sleep(millis);
+        }
+    }
+
+    /**
+     * Ограничивает частоту запросов фиксированным окном в одну секунду.
+     */
+    private boolean throttled() {
+        int limit = config.getRequestsPerSecond();
+        if (limit <= 0) {
+            return false;
+        }
+        long second = System.currentTimeMillis() / 1000;
+        long window = throttleWindow.get();
+        if (window != second && throttleWindow.compareAndSet(window, second)) {
+            throttleCount.set(0);
+        }
+        return throttleCount.incrementAndGet() > limit;
+    }
+
+    private static List<String> columns(String requested, List<String> all) {
+        if (requested == null || requested.isBlank()) {
+            return all;
+        }
+        Set<String> names = new HashSet<>(Arrays.asList(requested.toUpperCase(Locale.ROOT).split(",")));
+        return all.stream().filter(names::contains).toList();
+    }
+
+    private static Map<String, String> parameters(String query) {
+        Map<String, String> params = new HashMap<>();
+        if (query == null) {
+            return params;
+        }
+        for (String pair : query.split("&")) {
+            int separator = pair.indexOf('=');
+            if (separator > 0) {
+                params.put(URLDecoder.decode(pair.substring(0, separator), StandardCharsets.UTF_8),
+                        URLDecoder.decode(pair.substring(separator + 1), StandardCharsets.UTF_8));
+            }
+        }
+        return params;
+    }
+}
@@ -0,0 +1,368 @@
+package ru.mslotvi.exchange.moex.stub;
+
+import com.google.gson.stream.JsonWriter;
+
+import java.io.IOException;
+import java.time.DayOfWeek;
+import java.time.LocalDate;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.SplittableRandom;
+
+/**
+ * Детерминированный синтетический рынок для заглушки ISS.
+ * <p>Бумаги называются {@code SYN0000}, {@code SYN0001} и т.д. и торгуются на доске {@code TQBR} по будням.
+ * Цена закрытия каждой бумаги — геометрическое броуновское движение от {@code historyStart} со своими дрейфом
+ * и волатильностью; генератор бумаги инициализируется от общего начального значения и номера бумаги, поэтому
+ * один и тот же запрос всегда возвращает одни и те же данные, а страницы истории согласованы между собой.</p>
+ *
+ * <p>Путь цены бумаги генерируется один раз в день и хранится в кэше последних {@link #MAX_CACHED_SERIES} бумаг,
+ * поэтому постраничная загрузка истории не проходит путь от {@code historyStart} заново на каждой странице.</p>
+ */
+final class SyntheticMarket {
+
+    static final String BOARD = "TQBR";
+
+    static final List<String> HISTORY_COLUMNS = List.of(
+            "BOARDID", "TRADEDATE", "SHORTNAME", "SECID", "NUMTRADES", "VALUE",
+            "OPEN", "LOW", "HIGH", "WAPRICE", "CLOSE", "VOLUME");
+
+    static final List<String> SECURITIES_COLUMNS = List.of(
+            "SECID", "BOARDID", "SHORTNAME", "PREVPRICE", "LOTSIZE", "FACEVALUE", "STATUS", "BOARDNAME",
+            "DECIMALS", "SECNAME", "REMARKS", "MARKETCODE", "INSTRID", "SECTORID", "MINSTEP", "PREVWAPRICE",
+            "FACEUNIT", "PREVDATE", "ISSUESIZE", "ISIN", "LATNAME", "REGNUMBER", "PREVLEGALCLOSEPRICE",
+            "CURRENCYID", "SECTYPE", "LISTLEVEL", "SETTLEDATE");
+
+    /**
+     * Количество бумаг, пути цены которых хранятся одновременно; путь за 15 лет занимает около 180 КБ.
+     */
+    static final int MAX_CACHED_SERIES = 256;
+
+    private final int tickers;
+    private final LocalDate historyStart;
+    private final long seed;
+
+    /**
+     * Путь цены бумаги по торговым дням от {@code historyStart} до {@code to} включительно.
+     */
+    private record Series(LocalDate to, int[] days, double[] open, double[] high, double[] low, double[] close,
+                          double[] volume) {
+
+        /**
+         * @return Номер первого торгового дня не раньше {@code date}.
+         */
+        int lowerBound(LocalDate date) {
+            int i = Arrays.binarySearch(days, (int) date.toEpochDay());
+            return i >= 0 ? i : -i - 1;
+        }
+    }
+
+    private final Map<Integer, Series> seriesCache = new LinkedHashMap<>(16, 0.75f, true) {
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<Integer, Series> eldest) {
+            return size() > MAX_CACHED_SERIES;
+        }
+    };
+
+    /**
+     * Цены закрытия всех бумаг на день, предшествующий {@code day}; пересчитываются раз в день.
+     */
+    private record PreviousCloses(LocalDate day, double[] prices) {
+    }
+
+    private volatile PreviousCloses previousCloses;
+
+    SyntheticMarket(int tickers, LocalDate historyStart, long seed) {
+        this.tickers = tickers;
+        this.historyStart = historyStart;
+        this.seed = seed;
+    }
+
+    int tickers() {
+        return tickers;
+    }
+
+    static String secId(int index) {
+        return String.format("SYN%04d", index);
+    }
+
+    /**
+     * Возвращает номер синтетической бумаги или {@code -1}, если такой бумаги нет.
+     */
+    int index(String secId) {
+        if (secId == null || !secId.startsWith("SYN")) {
+            return -1;
+        }
+        try {
+            int index = Integer.parseInt(secId.substring(3));
+            return index >= 0 && index < tickers ? index : -1;
+        } catch (NumberFormatException e) {
+            return -1;
+        }
+    }
+
+    /**
+     * Пишет строку справочника бумаги в порядке {@code columns}.
+     */
+    void writeSecurity(JsonWriter writer, int index, List<String> columns, LocalDate today) throws IOException {
+        String secId = secId(index);
+        double prevPrice = previousCloses(today)[index];
+        writer.beginArray();
+        for (String column : columns) {
+            switch (column) {
+                case "SECID" -> writer.value(secId);
+                case "BOARDID" -> writer.value(BOARD);
+                case "SHORTNAME" -> writer.value("Synthetic " + index);
+                case "PREVPRICE", "PREVWAPRICE", "PREVLEGALCLOSEPRICE" -> writer.value(prevPrice);
+                case "LOTSIZE" -> writer.value(new int[]{1, 10, 100}[index % 3]);
+                case "FACEVALUE" -> writer.value(1);
+                case "STATUS" -> writer.value("A");
+                case "BOARDNAME" -> writer.value("Т+: Акции и ДР - безадрес.");
+                case "DECIMALS" -> writer.value(2);
+                case "SECNAME" -> writer.value("Synthetic security " + index);
+                case "MARKETCODE" -> writer.value("FNDT");
+                case "INSTRID" -> writer.value("EQIN");
+                case "MINSTEP" -> writer.value(0.01);
+                case "FACEUNIT", "CURRENCYID" -> writer.value("SUR");
+                case "PREVDATE", "SETTLEDATE" -> writer.value(today.minusDays(1).toString());
+                case "ISSUESIZE" -> writer.value(1_000_000L * (index + 1));
+                case "ISIN" -> writer.value(String.format("RU000SYN%04d", index));
+                case "LATNAME" -> writer.value("Synthetic " + index);
+                case "SECTYPE" -> writer.value("1");
+                case "LISTLEVEL" -> writer.value(index % 3 + 1);
+                default -> writer.nullValue();
+            }
+        }
+        writer.endArray();
+    }
+
+    /**
+     * Пишет блоки {@code history} и {@code history.cursor} для одной страницы истории.
+     *
+     * @param writer Писатель JSON, находящийся внутри корневого объекта ответа.
+     * @param index Номер бумаги или {@code -1} для неизвестной бумаги.
+     * @param from Первый день запроса.
+     * @param till Последний день запроса.
+     * @param start Номер первой записи страницы.
+     * @param pageSize Размер страницы.
+     * @param columns Выводимые столбцы истории.
+     * @param cursor Выводить ли блок {@code history.cursor}.
+     */
+    void writeHistory(JsonWriter writer, int index, LocalDate from, LocalDate till, int start, int pageSize,
+                      List<String> columns, boolean cursor) throws IOException {
+        writer.name("history").beginObject();
+        writer.name("columns").beginArray();
+        for (String column : columns) {
+            writer.value(column);
+        }
+        writer.endArray();
+
+        writer.name("data").beginArray();
+        int total = 0;
+        if (index >= 0) {
+            Series series = series(index, LocalDate.now());
+            int first = series.lowerBound(from);
+            total = Math.max(series.lowerBound(till.plusDays(1)) - first, 0);
+            for (int row = first + start; row < first + Math.min(start + pageSize, total); row++) {
+                writeHistoryRow(writer, index, series, row, columns);
+            }
+        }
+        writer.endArray();
+        writer.endObject();
+
+        if (cursor) {
+            writeCursor(writer, start, total, pageSize);
+        }
+    }
+
+    /**
+     * Пишет блоки {@code history} и {@code history.cursor} для одной страницы истории всех бумаг доски за день.
+     * <p>Синтетические бумаги торгуются каждый будний день, поэтому строки страницы вычисляются только для бумаг
+     * из диапазона страницы.</p>
+     *
+     * @param writer Писатель JSON, находящийся внутри корневого объекта ответа.
+     * @param board Код торговой доски.
+     * @param date День истории.
+     * @param start Номер первой записи страницы.
+     * @param pageSize Размер страницы.
+     * @param columns Выводимые столбцы истории.
+     * @param cursor Выводить ли блок {@code history.cursor}.
+     */
+    void writeBoardHistory(JsonWriter writer, String board, LocalDate date, int start, int pageSize,
+                           List<String> columns, boolean cursor) throws IOException {
+        writer.name("history").beginObject();
+        writer.name("columns").beginArray();
+        for (String column : columns) {
+            writer.value(column);
+        }
+        writer.endArray();
+
+        boolean tradingDay = BOARD.equals(board) && !date.isBefore(historyStart) && date.isBefore(LocalDate.now())
+                && date.getDayOfWeek() != DayOfWeek.SATURDAY && date.getDayOfWeek() != DayOfWeek.SUNDAY;
+        int total = tradingDay ? tickers : 0;
+
+        writer.name("data").beginArray();
+        for (int index = start; index < Math.min(start + pageSize, total); index++) {
+            Series series = series(index, LocalDate.now());
+            writeHistoryRow(writer, index, series, series.lowerBound(date), columns);
+        }
+        writer.endArray();
+        writer.endObject();
+
+        if (cursor) {
+            writeCursor(writer, start, total, pageSize);
+        }
+    }
+
+    private void writeCursor(JsonWriter writer, int start, int total, int pageSize) throws IOException {
+        writer.name("history.cursor").beginObject();
+        writer.name("columns").beginArray().value("INDEX").value("TOTAL").value("PAGESIZE").endArray();
+        writer.name("data").beginArray().beginArray().value(start).value(total).value(pageSize).endArray().endArray();
+        writer.endObject();
+    }
+
+    private void writeHistoryRow(JsonWriter writer, int index, Series series, int row, List<String> columns)
+            throws IOException {
+        double open = series.open()[row];
+        double high = series.high()[row];
+        double low = series.low()[row];
+        double close = series.close()[row];
+        double volume = series.volume()[row];
+        writer.beginArray();
+        for (String column : columns) {
+            switch (column) {
+                case "BOARDID" -> writer.value(BOARD);
+                case "TRADEDATE" -> writer.value(LocalDate.ofEpochDay(series.days()[row]).toString());
+                case "SHORTNAME" -> writer.value("Synthetic " + index);
+                case "SECID" -> writer.value(secId(index));
+                case "NUMTRADES" -> writer.value(Math.max(1, (long) (volume / 50)));
+                case "VALUE" -> writer.value(round(volume * (open + close) / 2));
+                case "OPEN" -> writer.value(round(open));
+                case "LOW" -> writer.value(round(low));
+                case "HIGH" -> writer.value(round(high));
+                case "WAPRICE" -> writer.value(round((open + high + low + close) / 4));
+                case "CLOSE" -> writer.value(round(close));
+                case "VOLUME" -> writer.value((long) volume);
+                default -> writer.nullValue();
+            }
+        }
+        writer.endArray();
+    }
+
+    /**
+     * Возвращает путь цены бумаги до {@code today}, генерируя его при первом обращении за день.
+     */
+    private Series series(int index, LocalDate today) {
+        synchronized (seriesCache) {
+            Series cached = seriesCache.get(index);
+            if (cached != null && cached.to().equals(today)) {
+                return cached;
+            }
+        }
+        // Путь генерируется вне блокировки: одновременные запросы разных бумаг не ждут друг друга.
+        int capacity = (int) (today.toEpochDay() - historyStart.toEpochDay() + 1);
+        int[] days = new int[Math.max(capacity, 0)];
+        double[] open = new double[days.length];
+        double[] high = new double[days.length];
+        double[] low = new double[days.length];
+        double[] close = new double[days.length];
+        double[] volume = new double[days.length];
+        int n = 0;
+        PricePath path = new PricePath(index);
+        while (path.next(today)) {
+            days[n] = (int) path.day.toEpochDay();
+            open[n] = path.open;
+            high[n] = path.high;
+            low[n] = path.low;
+            close[n] = path.close;
+            volume[n] = path.volume;
+            n++;
+        }
+        Series series = new Series(today, Arrays.copyOf(days, n), Arrays.copyOf(open, n), Arrays.copyOf(high, n),
+                Arrays.copyOf(low, n), Arrays.copyOf(close, n), Arrays.copyOf(volume, n));
+        synchronized (seriesCache) {
+            seriesCache.put(index, series);
+        }
+        return series;
+    }
+
+    private double[] previousCloses(LocalDate today) {
+        PreviousCloses cached = previousCloses;
+        if (cached == null || !cached.day().equals(today)) {
+            double[] prices = new double[tickers];
+            for (int i = 0; i < tickers; i++) {
+                PricePath path = new PricePath(i);
+                while (path.next(today.minusDays(1))) {
+                    // цена закрытия — последняя на пути до вчерашнего дня
+                }
+                prices[i] = round(path.close);
+            }
+            cached = new PreviousCloses(today, prices);
+            previousCloses = cached;
+        }
+        return cached.prices();
+    }
+
+    /**
+     * Путь цены одной бумаги по торговым дням начиная с {@code historyStart}.
+     */
+    private final class PricePath {
+
+        private final SplittableRandom random;
+        private final double drift;
+        private final double volatility;
+        private final double baseVolume;
+
+        LocalDate day = historyStart.minusDays(1);
+        double open;
+        double high;
+        double low;
+        double close;
+        double volume;
+
+        PricePath(int index) {
+            random = new SplittableRandom(seed * 1_000_003L + index);
+            drift = random.nextDouble(-0.0003, 0.0004);
+            volatility = random.nextDouble(0.008, 0.03);
+            close = random.nextDouble(10, 5000);
+            baseVolume = Math.exp(random.nextDouble(8, 14));
+        }
+
+        /**
+         * Переходит к следующему торговому дню.
+         *
+         * @param last Последний день пути.
+         * @return {@code false}, если следующий торговый день позже {@code last}.
+         */
+        boolean next(LocalDate last) {
+            LocalDate nextDay = day.plusDays(1);
+            while (nextDay.getDayOfWeek() == DayOfWeek.SATURDAY || nextDay.getDayOfWeek() == DayOfWeek.SUNDAY) {
+                nextDay = nextDay.plusDays(1);
+            }
+            if (nextDay.isAfter(last)) {
+                return false;
+            }
+            day = nextDay;
+            double previous = close;
+            close = previous * Math.exp(drift - volatility * volatility / 2 + volatility * gaussian(random));
+            open = previous * Math.exp(volatility / 4 * gaussian(random));
+            high = Math.max(open, close) * (1 + Math.abs(gaussian(random)) * volatility / 2);
+            low = Math.min(open, close) * (1 - Math.abs(gaussian(random)) * volatility / 2);
+            volume = Math.floor(baseVolume * Math.exp(0.5 * gaussian(random)));
+            return true;
+        }
+    }
+
+    private static double gaussian(SplittableRandom random) {
+        // Преобразование Бокса — Мюллера: SplittableRandom не генерирует нормальное распределение сам.
+        double u = 1 - random.nextDouble();
+        double v = random.nextDouble();
+        return Math.sqrt(-2 * Math.log(u)) * Math.cos(2 * Math.PI * v);
+    }
+
+    private static double round(double value) {
+        return Math.round(value * 100) / 100.0;
+    }
+}
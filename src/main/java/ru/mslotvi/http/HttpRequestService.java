@@ -1,19 +1,61 @@
 package ru.mslotvi.http;
 
 import lombok.experimental.UtilityClass;
-import org.springframework.stereotype.Service;
 
+import java.io.ByteArrayInputStream;
+import java.io.FilterInputStream;
 import java.io.IOException;
+import java.io.InputStream;
 import java.net.URI;
 import java.net.http.HttpClient;
+import java.net.http.HttpHeaders;
 import java.net.http.HttpRequest;
 import java.net.http.HttpResponse;
 import java.net.http.HttpTimeoutException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.zip.GZIPInputStream;
 
+/**
+ * HTTP-клиент приложения.
+ * <p>Используется один {@link HttpClient} с HTTP/2 (с откатом на HTTP/1.1, если сервер его не поддерживает)
+ * и общим пулом соединений. Все GET-запросы отправляются с {@code Accept-Encoding: gzip} и прозрачно
+ * распаковываются. Таймаут запроса задаётся для каждого вызова и ограничивает ожидание заголовков ответа;
+ * таймаут установки соединения общий для клиента.</p>
+ *
+ * <p>Асинхронные методы не блокируют вызывающий поток: ответ обрабатывается потоками {@link HttpClient}.</p>
+ */
 @UtilityClass
 public class HttpRequestService {
 
-    private final HttpClient client = HttpClient.newHttpClient();
+    /**
+     * Таймаут установки соединения.
+     */
+    public final Duration CONNECT_TIMEOUT = Duration.ofSeconds(10);
+
+    /**
+     * Таймаут запроса по умолчанию.
+     */
+    public final Duration DEFAULT_TIMEOUT = Duration.ofSeconds(30);
+
+    private final HttpClient client = HttpClient.newBuilder()
+            .version(HttpClient.Version.HTTP_2)
+            .connectTimeout(CONNECT_TIMEOUT)
+            .followRedirects(HttpClient.Redirect.NORMAL)
+            .build();
+
+    /**
+     * Валидаторы и тело последнего ответа для условных запросов, по адресу запроса.
+     */
+    private final Map<URI, CachedBody> revalidationCache = new ConcurrentHashMap<>();
+
+    private record CachedBody(String etag, String lastModified, ByteBuffer body) {
+    }
 
     /**
      * Метод для отправки GET запроса.
@@ -23,22 +65,86 @@ public class HttpRequestService {
      * @throws InterruptedException если запрос был прерван
      */
     public String sendGetRequest(URI url) throws IOException, InterruptedException {
-        HttpRequest request = HttpRequest.newBuilder()
-                .uri(url)
-                .build();
+        try (InputStream body = sendGetRequestStream(url, DEFAULT_TIMEOUT)) {
+            return new String(body.readAllBytes(), StandardCharsets.UTF_8);
+        }
+    }
 
+    /**
+     * Метод для отправки GET запроса с чтением ответа потоком.
+     * <p>Тело ответа не собирается в строку: вызывающий код читает его из потока и должен закрыть поток.</p>
+     * @param url строка URL для запроса
+     * @param timeout таймаут ожидания ответа
+     * @return поток тела ответа
+     * @throws IOException если произошла ошибка при отправке запроса
+     * @throws InterruptedException если запрос был прерван
+     */
+    public InputStream sendGetRequestStream(URI url, Duration timeout) throws IOException, InterruptedException {
         try {
-            HttpResponse<String> response = client.send(request, HttpResponse.BodyHandlers.ofString());
-            if (response.statusCode() == 200) {
-                return response.body();
-            } else {
-                throw new IOException("Error: Received non-OK response from server. Status code: " + response.statusCode());
-            }
+            return decode(client.send(getRequest(url, timeout).build(), HttpResponse.BodyHandlers.ofInputStream()));
         } catch (HttpTimeoutException e) {
             throw new IOException("Request timed out", e);
         }
     }
 
+    /**
+     * Асинхронно отправляет GET запрос и возвращает тело ответа потоком.
+     * <p>Future завершается, как только получены заголовки ответа; чтение из потока может блокировать,
+     * поэтому его следует выполнять вне потоков {@link HttpClient}.</p>
+     * @param url строка URL для запроса
+     * @param timeout таймаут ожидания ответа
+     * @return future с потоком тела ответа, который вызывающий код должен закрыть
+     */
+    public CompletableFuture<InputStream> sendGetRequestAsync(URI url, Duration timeout) {
+        return client.sendAsync(getRequest(url, timeout).build(), HttpResponse.BodyHandlers.ofInputStream())
+                .thenApply(response -> {
+                    try {
+                        return decode(response);
+                    } catch (IOException e) {
+                        throw new CompletionException(e);
+                    }
+                });
+    }
+
+    /**
+     * Асинхронно отправляет условный GET запрос для редко меняющихся ресурсов, например справочников.
+     * <p>Если ранее по тому же адресу был получен ответ с {@code ETag} или {@code Last-Modified}, запрос
+     * отправляется с {@code If-None-Match}/{@code If-Modified-Since}, и при ответе {@code 304 Not Modified}
+     * возвращается сохранённое тело без повторной передачи.</p>
+     * @param url строка URL для запроса
+     * @param timeout таймаут ожидания ответа
+     * @return future с распакованным телом ответа (только для чтения)
+     */
+    public CompletableFuture<ByteBuffer> sendRevalidatedGetRequestAsync(URI url, Duration timeout) {
+        CachedBody cached = revalidationCache.get(url);
+        HttpRequest.Builder request = getRequest(url, timeout);
+        if (cached != null) {
+            if (cached.etag() != null) {
+                request.header("If-None-Match", cached.etag());
+            }
+            if (cached.lastModified() != null) {
+                request.header("If-Modified-Since", cached.lastModified());
+            }
+        }
+
+        return client.sendAsync(request.build(), HttpResponse.BodyHandlers.ofByteArray())
+                .thenApply(response -> {
+                    if (response.statusCode() == 304 && cached != null) {
+                        return cached.body().duplicate();
+                    }
+                    checkStatus(response.statusCode(), 200);
+                    ByteBuffer body = ByteBuffer.wrap(decode(response.headers(), response.body())).asReadOnlyBuffer();
+                    String etag = response.headers().firstValue("ETag").orElse(null);
+                    String lastModified = response.headers().firstValue("Last-Modified").orElse(null);
+                    if (etag != null || lastModified != null) {
+                        revalidationCache.put(url, new CachedBody(etag, lastModified, body));
+                    } else {
+                        revalidationCache.remove(url);
+                    }
+                    return body.duplicate();
+                });
+    }
+
     /**
      * Метод для отправки POST запроса с телом запроса.
      * @param url строка URL для запроса
@@ -50,6 +156,7 @@ public class HttpRequestService {
     public String sendPostRequest(String url, String requestBody) throws IOException, InterruptedException {
         HttpRequest request = HttpRequest.newBuilder()
                 .uri(URI.create(url))
+                .timeout(DEFAULT_TIMEOUT)
                 .header("Content-Type", "application/json")
                 .POST(HttpRequest.BodyPublishers.ofString(requestBody))
                 .build();
@@ -65,4 +172,82 @@ public class HttpRequestService {
             throw new IOException("Request timed out", e);
         }
     }
+
+    private HttpRequest.Builder getRequest(URI url, Duration timeout) {
+        return HttpRequest.newBuilder()
+                .uri(url)
+                .timeout(timeout)
+                .header("Accept-Encoding", "gzip");
+    }
+
+    private InputStream decode(HttpResponse<InputStream> response) throws IOException {
+        if (response.statusCode() != 200) {
+            response.body().close();
+            throw new IOException("Error: Received non-OK response from server. Status code: " + response.statusCode());
+        }
+        return isGzip(response.headers()) ? new LazyGzipInputStream(response.body()) : response.body();
+    }
+
+    private byte[] decode(HttpHeaders headers, byte[] body) {
+        if (!isGzip(headers)) {
+            return body;
+        }
+        try (InputStream in = new GZIPInputStream(new ByteArrayInputStream(body))) {
+            return in.readAllBytes();
+        } catch (IOException e) {
+            throw new CompletionException(e);
+        }
+    }
+
+    private boolean isGzip(HttpHeaders headers) {
+        return headers.firstValue("Content-Encoding").map("gzip"::equalsIgnoreCase).orElse(false);
+    }
+
+    private void checkStatus(int statusCode, int expected) {
+        if (statusCode != expected) {
+            throw new CompletionException(new IOException(
+                    "Error: Received non-OK response from server. Status code: " + statusCode));
+        }
+    }
+
+    /**
+     * Распаковывающий поток, который читает заголовок gzip при первом чтении, а не в конструкторе,
+     * чтобы не блокировать поток, завершающий future с ответом.
+     */
+    private static final class LazyGzipInputStream extends FilterInputStream {
+
+        private boolean opened;
+
+        LazyGzipInputStream(InputStream in) {
+            super(in);
+        }
+
+        private InputStream delegate() throws IOException {
+            if (!opened) {
+                in = new GZIPInputStream(in, 8192);
+                opened = true;
+            }
+            return in;
+        }
+
+        @Override
+        public int read() throws IOException {
+            return delegate().read();
+        }
+
+        @Override
+        public int read(byte[] b, int off, int len) throws IOException {
+            return delegate().read(b, off, len);
+        }
+
+        @Override
+        public long skip(long n) throws IOException {
+            return delegate().skip(n);
+        }
+
+        @Override
+        public int available() throws IOException {
+            return opened ? in.available() : 0;
+        }
+    }
 }
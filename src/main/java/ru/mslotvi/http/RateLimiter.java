@@ -0,0 +1,90 @@
+package ru.mslotvi.http;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * Ограничитель частоты запросов по алгоритму token bucket.
+ * <p>Корзина пополняется со скоростью {@code permitsPerSecond} токенов в секунду и вмещает не более
+ * {@code burst} токенов. Каждый запрос забирает один токен; если токенов нет, поток ждёт их появления.
+ * Ожидание выполняется вне блокировки, поэтому ограничитель подходит и для виртуальных потоков.</p>
+ */
+public class RateLimiter {
+
+    private final double permitsPerNano;
+    private final double burst;
+
+    private double tokens;
+    private long lastRefill;
+
+    /**
+     * @param permitsPerSecond Средняя допустимая частота запросов в секунду.
+     * @param burst Максимальное количество запросов, которые можно выполнить подряд без ожидания.
+     * @throws IllegalArgumentException если параметры не положительные.
+     */
+    public RateLimiter(double permitsPerSecond, int burst) {
+        if (permitsPerSecond <= 0 || burst <= 0) {
+            throw new IllegalArgumentException("permitsPerSecond and burst must be positive");
+        }
+        this.permitsPerNano = permitsPerSecond / TimeUnit.SECONDS.toNanos(1);
+        this.burst = burst;
+        this.tokens = burst;
+        this.lastRefill = System.nanoTime();
+    }
+
+    /**
+     * Забирает один токен, при необходимости ожидая его появления.
+     *
+     * @throws InterruptedException если поток был прерван во время ожидания.
+     */
+    public void acquire() throws InterruptedException {
+        long waitNanos = reserve();
+        long deadline = System.nanoTime() + waitNanos;
+        while (waitNanos > 0) {
+            LockSupport.parkNanos(this, waitNanos);
+            if (Thread.interrupted()) {
+                throw new InterruptedException();
+            }
+            waitNanos = deadline - System.nanoTime();
+        }
+    }
+
+    /**
+     * Забирает один токен без блокировки потока.
+     *
+     * @return future, которое завершится, когда токен станет доступен.
+     */
+    public CompletableFuture<Void> acquireAsync() {
+        long waitNanos = reserve();
+        if (waitNanos <= 0) {
+            return CompletableFuture.completedFuture(null);
+        }
+        return CompletableFuture.runAsync(() -> {
+        }, CompletableFuture.delayedExecutor(waitNanos, TimeUnit.NANOSECONDS, Runnable::run));
+    }
+
+    /**
+     * Возвращает количество токенов, доступных прямо сейчас.
+     * <p>Позволяет фоновым задачам уступать запросам пользователей: фоновая задача отправляет запрос,
+     * только если в корзине остаётся запас.</p>
+     */
+    public synchronized double available() {
+        long now = System.nanoTime();
+        tokens = Math.min(burst, tokens + (now - lastRefill) * permitsPerNano);
+        lastRefill = now;
+        return tokens;
+    }
+
+    /**
+     * Резервирует токен и возвращает время, через которое он станет доступен.
+     * Баланс может уйти в минус: следующие запросы будут ждать соответственно дольше.
+     */
+    private synchronized long reserve() {
+        long now = System.nanoTime();
+        tokens = Math.min(burst, tokens + (now - lastRefill) * permitsPerNano);
+        lastRefill = now;
+        tokens -= 1;
+        return tokens >= 0 ? 0 : (long) Math.ceil(-tokens / permitsPerNano);
+    }
+}
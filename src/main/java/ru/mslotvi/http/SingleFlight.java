@@ -0,0 +1,98 @@
+package ru.mslotvi.http;
+
+import java.io.IOException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Объединение одинаковых одновременных запросов.
+ * <p>Первый вызов с данным ключом выполняет запрос, а вызовы с тем же ключом, пришедшие до его завершения,
+ * не выполняют собственный запрос и получают тот же результат или ту же ошибку. После завершения запроса
+ * ключ освобождается, поэтому результаты не кэшируются.</p>
+ *
+ * @param <K> Тип ключа запроса.
+ * @param <V> Тип результата запроса.
+ */
+public class SingleFlight<K, V> {
+
+    /**
+     * Запрос, выполняемый первым вызовом.
+     */
+    @FunctionalInterface
+    public interface Call<V> {
+        V call() throws IOException, InterruptedException;
+    }
+
+    private final ConcurrentMap<K, CompletableFuture<V>> inFlight = new ConcurrentHashMap<>();
+    private final LongAdder calls = new LongAdder();
+    private final LongAdder coalesced = new LongAdder();
+
+    /**
+     * Выполняет запрос или присоединяется к уже выполняющемуся запросу с тем же ключом.
+     *
+     * @param key Ключ запроса.
+     * @param call Запрос.
+     * @return Результат запроса.
+     * @throws IOException если запрос завершился ошибкой ввода-вывода.
+     * @throws InterruptedException если поток был прерван.
+     */
+    public V execute(K key, Call<V> call) throws IOException, InterruptedException {
+        calls.increment();
+        CompletableFuture<V> own = new CompletableFuture<>();
+        CompletableFuture<V> pending = inFlight.putIfAbsent(key, own);
+        if (pending != null) {
+            coalesced.increment();
+            return await(pending);
+        }
+
+        try {
+            V value = call.call();
+            own.complete(value);
+            return value;
+        } catch (Throwable e) {
+            own.completeExceptionally(e);
+            throw e;
+        } finally {
+            inFlight.remove(key, own);
+        }
+    }
+
+    /**
+     * Общее количество вызовов {@link #execute}.
+     */
+    public long calls() {
+        return calls.sum();
+    }
+
+    /**
+     * Количество вызовов, присоединившихся к уже выполняющемуся запросу.
+     */
+    public long coalesced() {
+        return coalesced.sum();
+    }
+
+    /**
+     * Количество запросов, выполняющихся в данный момент.
+     */
+    public int inFlight() {
+        return inFlight.size();
+    }
+
+    private V await(CompletableFuture<V> pending) throws IOException, InterruptedException {
+        try {
+            return pending.get();
+        } catch (ExecutionException e) {
+            Throwable cause = e.getCause();
+            if (cause instanceof IOException io) {
+                throw io;
+            }
+            if (cause instanceof RuntimeException runtime) {
+                throw runtime;
+            }
+            throw new IOException(cause);
+        }
+    }
+}
@@ -6,28 +6,46 @@ import lombok.SneakyThrows;
 import org.apache.poi.ss.usermodel.Workbook;
 import org.springframework.http.ContentDisposition;
 import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
 import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
 import org.springframework.security.access.prepost.PreAuthorize;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
 import ru.mslotvi.data.StoragePortfolio;
 import ru.mslotvi.exchange.*;
 import ru.mslotvi.util.MathUtil;
 
 import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.UncheckedIOException;
 import java.time.Instant;
 import java.time.LocalDate;
+import java.time.Period;
+import java.util.ArrayList;
 import java.util.Collection;
 import java.util.List;
 import java.util.Map;
+import java.util.Objects;
 import java.util.Set;
+import java.util.concurrent.locks.Lock;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.Function;
 
 @RestController
 @RequestMapping("/api/exchange")
 @RequiredArgsConstructor
 public class ExchangeController {
 
+    /**
+     * Заголовок ответа расчёта со списком бумаг запроса через запятую, история которых не загрузилась
+     * и в расчёт не вошла. Тело ответа при этом остаётся прежним массивом результатов.
+     */
+    public static final String FAILURES_HEADER = "X-Calculation-Failures";
+
     private final ExchangeService exchangeService;
+    private final PortfolioRevaluator portfolioRevaluator;
+    private final ScreenerRefresher screenerRefresher;
 
     @GetMapping("/list")
     @PreAuthorize("hasRole('MEMBER')")
@@ -74,6 +92,20 @@ public class ExchangeController {
         return ResponseEntity.notFound().build();
     }
 
+    @GetMapping("/{exchangeId}/search")
+    @PreAuthorize("hasRole('MEMBER')")
+    public ResponseEntity<Collection<SecuritySearchIndex.Entry>> search(
+            @PathVariable String exchangeId,
+            @RequestParam String q,
+            @RequestParam(defaultValue = "20") int limit) {
+
+        Map<String, Exchange> exchanges = exchangeService.exchanges();
+        if (exchanges.containsKey(exchangeId)) {
+            return ResponseEntity.ok(exchanges.get(exchangeId).searchIndex().search(q, limit));
+        }
+        return ResponseEntity.notFound().build();
+    }
+
     @GetMapping("/calculateEffectiveFrontier")
     @PreAuthorize("hasRole('MEMBER')")
     public ResponseEntity<Collection<PortfolioDto>> calculateEffectiveFrontier(
@@ -119,6 +151,73 @@ public class ExchangeController {
                 .body(outputStream.toByteArray());
     }
 
+    @GetMapping("/runs/{runId}")
+    @PreAuthorize("hasRole('MEMBER')")
+    public ResponseEntity<Collection<PortfolioDto>> generationRun(@PathVariable long runId) {
+        var run = exchangeService.findGenerationRun(runId);
+        if (run.isPresent()) {
+            return ResponseEntity.ok(run.get().portfolios().stream().map(PortfolioDto::from).toList());
+        }
+        return ResponseEntity.notFound().build();
+    }
+
+    @GetMapping("/revaluation")
+    @PreAuthorize("hasRole('MEMBER')")
+    public ResponseEntity<Collection<PortfolioValuation>> revaluation(@RequestParam Set<Long> ids) {
+        return ResponseEntity.ok(portfolioRevaluator.valuations(ids));
+    }
+
+    /**
+     * Поток оценок портфелей: сразу отправляются текущие оценки, затем — изменившиеся после каждого обновления цен.
+     * <p>Подписка оформляется до снимка текущих оценок, а обновления ждут его отправки, поэтому обновления между
+     * снимком и подпиской не теряются и не обгоняют снимок. Если переоценщик закрывает подписку, поток завершается.</p>
+     */
+    @GetMapping(value = "/revaluation/stream", produces = MediaType.TEXT_EVENT_STREAM_VALUE)
+    @PreAuthorize("hasRole('MEMBER')")
+    @SneakyThrows
+    public SseEmitter revaluationStream(@RequestParam Set<Long> ids) {
+        SseEmitter emitter = new SseEmitter(0L);
+        Lock sending = new ReentrantLock();
+        sending.lock();
+        PortfolioRevaluator.Subscription subscription;
+        try {
+            subscription = portfolioRevaluator.subscribe(ids, valuations -> {
+                sending.lock();
+                try {
+                    emitter.send(valuations);
+                } catch (IOException e) {
+                    throw new UncheckedIOException(e);
+                } finally {
+                    sending.unlock();
+                }
+            }, error -> {
+                if (error != null) {
+                    emitter.completeWithError(error);
+                } else {
+                    emitter.complete();
+                }
+            });
+            try {
+                emitter.send(portfolioRevaluator.valuations(ids));
+            } catch (IOException | RuntimeException e) {
+                subscription.close();
+                throw e;
+            }
+        } finally {
+            sending.unlock();
+        }
+        emitter.onCompletion(subscription::close);
+        emitter.onTimeout(subscription::close);
+        emitter.onError(error -> subscription.close());
+        return emitter;
+    }
+
+    @GetMapping("/revaluation/metrics")
+    @PreAuthorize("hasRole('MEMBER')")
+    public ResponseEntity<Map<String, Number>> revaluationMetrics() {
+        return ResponseEntity.ok(portfolioRevaluator.metrics());
+    }
+
     @GetMapping("/{exchangeId}/generatePortfolio")
     @PreAuthorize("hasRole('MEMBER')")
     public ResponseEntity<Collection<PortfolioDto>> generatePortfolio(
@@ -126,7 +225,8 @@ public class ExchangeController {
             @RequestParam Set<String> ids,
             @RequestParam LocalDate start,
             @Nullable @RequestParam LocalDate end,
-            @RequestParam int amount) {
+            @RequestParam int amount,
+            @RequestParam(defaultValue = "DAILY") Frequency frequency) {
 
         if (end == null) {
             end = LocalDate.now();
@@ -134,9 +234,153 @@ public class ExchangeController {
 
         Map<String, Exchange> exchanges = exchangeService.exchanges();
         if (exchanges.containsKey(exchangeId)) {
-            var result = exchangeService.generatePortfolios(exchangeId, start, end, ids, amount);
-            return ResponseEntity.ok(result.stream().map(PortfolioDto::from).toList());
+            var result = exchangeService.generatePortfolios(exchangeId, start, end, ids, amount, frequency);
+            return calculationResponse(result, portfolios -> portfolios.stream().map(PortfolioDto::from).toList());
         }
         return ResponseEntity.notFound().build();
     }
-}
\ No newline at end of file
+
+    @GetMapping("/{exchangeId}/resampledFrontier")
+    @PreAuthorize("hasRole('MEMBER')")
+    public ResponseEntity<Collection<PortfolioDto>> resampledFrontier(
+            @PathVariable String exchangeId,
+            @RequestParam Set<String> ids,
+            @RequestParam LocalDate start,
+            @Nullable @RequestParam LocalDate end,
+            @RequestParam int amount,
+            @RequestParam(defaultValue = "100") int resamples,
+            @RequestParam(defaultValue = "2") int precision,
+            @RequestParam(defaultValue = "DAILY") Frequency frequency) {
+
+        if (end == null) {
+            end = LocalDate.now();
+        }
+
+        Map<String, Exchange> exchanges = exchangeService.exchanges();
+        if (exchanges.containsKey(exchangeId)) {
+            var result = exchangeService.generateResampledFrontier(exchangeId, start, end, ids, amount, resamples, precision, frequency);
+            return calculationResponse(result, portfolios -> portfolios.stream().map(PortfolioDto::from).toList());
+        }
+        return ResponseEntity.notFound().build();
+    }
+
+    @GetMapping("/{exchangeId}/rollingFrontier")
+    @PreAuthorize("hasRole('MEMBER')")
+    public ResponseEntity<Collection<FrontierCurveDto>> rollingFrontier(
+            @PathVariable String exchangeId,
+            @RequestParam Set<String> ids,
+            @RequestParam LocalDate start,
+            @Nullable @RequestParam LocalDate end,
+            @RequestParam(defaultValue = "P1Y") Period window,
+            @RequestParam(defaultValue = "P1M") Period step,
+            @RequestParam int amount,
+            @RequestParam(defaultValue = "2") int precision,
+            @RequestParam(defaultValue = "DAILY") Frequency frequency) {
+
+        if (end == null) {
+            end = LocalDate.now();
+        }
+
+        Map<String, Exchange> exchanges = exchangeService.exchanges();
+        if (exchanges.containsKey(exchangeId)) {
+            var result = exchangeService.generateRollingFrontiers(exchangeId, start, end, ids, window, step, amount, precision, frequency);
+            return calculationResponse(result, curves -> curves.stream().map(FrontierCurveDto::from).toList());
+        }
+        return ResponseEntity.notFound().build();
+    }
+
+    @GetMapping("/{exchangeId}/intradayRisk")
+    @PreAuthorize("hasRole('MEMBER')")
+    public ResponseEntity<Collection<IntradayRiskDto>> intradayRisk(
+            @PathVariable String exchangeId,
+            @RequestParam Set<String> ids,
+            @RequestParam LocalDate start,
+            @Nullable @RequestParam LocalDate end,
+            @RequestParam(defaultValue = "HOUR_1") CandleInterval interval) {
+
+        if (end == null) {
+            end = LocalDate.now();
+        }
+
+        Map<String, Exchange> exchanges = exchangeService.exchanges();
+        if (exchanges.containsKey(exchangeId)) {
+            Map<String, ExchangeSecuritie> securities = exchanges.get(exchangeId).getSecurities();
+            List<ExchangeSecuritie> requested = ids.stream().map(securities::get).filter(Objects::nonNull).toList();
+            if (requested.stream().anyMatch(securitie -> !securitie.supportsCandles())) {
+                return ResponseEntity.status(HttpStatus.NOT_IMPLEMENTED).build();
+            }
+            List<IntradayRiskDto> result = new ArrayList<>();
+            for (ExchangeSecuritie securitie : requested) {
+                String id = securitie.secId();
+                CandleSeries candles = securitie.loadCandles(start, end, interval);
+                result.add(IntradayRiskDto.builder()
+                        .secId(id)
+                        .interval(interval)
+                        .bars(candles.size())
+                        .expectedReturn(MathUtil.calculateMeanClose(candles))
+                        .deviation(MathUtil.calculateStandardDeviation(candles))
+                        .build());
+            }
+            return ResponseEntity.ok(result);
+        }
+        return ResponseEntity.notFound().build();
+    }
+
+    @GetMapping("/{exchangeId}/screen")
+    @PreAuthorize("hasRole('MEMBER')")
+    public ResponseEntity<Collection<SecurityScreener.Row>> screen(
+            @PathVariable String exchangeId,
+            @Nullable @RequestParam Double minValue,
+            @Nullable @RequestParam Double minNumTrades,
+            @Nullable @RequestParam Double minVolume,
+            @Nullable @RequestParam Double maxVolatility,
+            @Nullable @RequestParam Integer maxListLevel,
+            @RequestParam(defaultValue = "VALUE") SecurityScreener.Column sortBy,
+            @RequestParam(defaultValue = "true") boolean descending,
+            @RequestParam(defaultValue = "50") int limit) {
+
+        Map<String, Exchange> exchanges = exchangeService.exchanges();
+        if (exchanges.containsKey(exchangeId)) {
+            var query = new SecurityScreener.Query(minValue, minNumTrades, minVolume, maxVolatility, maxListLevel,
+                    sortBy, descending, limit);
+            return ResponseEntity.ok(exchanges.get(exchangeId).screener().screen(query));
+        }
+        return ResponseEntity.notFound().build();
+    }
+
+    /**
+     * Запускает внеочередное обновление скринера биржи по окну {@code screener.window}.
+     * <p>Обновление загружает историю всего справочника, поэтому выполняется в фоне, см. {@link ScreenerRefresher}.</p>
+     *
+     * @return {@code 202}, если обновление запущено, и {@code 409}, если оно уже идёт.
+     */
+    @PostMapping("/{exchangeId}/screen/refresh")
+    @PreAuthorize("hasRole('ADMIN')")
+    public ResponseEntity<Void> refreshScreener(@PathVariable String exchangeId) {
+        Map<String, Exchange> exchanges = exchangeService.exchanges();
+        if (exchanges.containsKey(exchangeId)) {
+            return screenerRefresher.refresh(exchanges.get(exchangeId))
+                    ? ResponseEntity.accepted().build()
+                    : ResponseEntity.status(HttpStatus.CONFLICT).build();
+        }
+        return ResponseEntity.notFound().build();
+    }
+
+    @GetMapping("/{exchangeId}/metrics")
+    @PreAuthorize("hasRole('MEMBER')")
+    public ResponseEntity<Map<String, Number>> metrics(@PathVariable String exchangeId) {
+        Map<String, Exchange> exchanges = exchangeService.exchanges();
+        if (exchanges.containsKey(exchangeId)) {
+            return ResponseEntity.ok(exchanges.get(exchangeId).metrics());
+        }
+        return ResponseEntity.notFound().build();
+    }
+
+    private static <S, T> ResponseEntity<T> calculationResponse(CalculationResult<S> calculation, Function<S, T> mapper) {
+        ResponseEntity.BodyBuilder response = ResponseEntity.ok();
+        if (!calculation.failures().isEmpty()) {
+            response.header(FAILURES_HEADER, String.join(",", calculation.failures().keySet()));
+        }
+        return response.body(mapper.apply(calculation.result()));
+    }
+}
@@ -0,0 +1,18 @@
+package ru.mslotvi.rest.exchange;
+
+import ru.mslotvi.exchange.FrontierCurve;
+
+import java.time.LocalDate;
+
+public record FrontierCurveDto(
+        LocalDate from,
+        LocalDate to,
+        double[] risk,
+        double[] expectedReturn
+) {
+
+    public static FrontierCurveDto from(FrontierCurve curve) {
+        return new FrontierCurveDto(curve.from(), curve.to(), curve.risks(), curve.expectedReturns());
+    }
+
+}
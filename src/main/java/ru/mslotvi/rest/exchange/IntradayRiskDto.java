@@ -0,0 +1,14 @@
+package ru.mslotvi.rest.exchange;
+
+import lombok.Builder;
+import ru.mslotvi.exchange.CandleInterval;
+
+@Builder
+public record IntradayRiskDto(
+        String secId,
+        CandleInterval interval,
+        int bars,
+        double expectedReturn,
+        double deviation
+) {
+}
@@ -1,6 +1,6 @@
 package ru.mslotvi.rest.exchange;
 
-import ru.mslotvi.data.StoragePortfolio;
+import ru.mslotvi.exchange.DefaultPortfolio;
 
 import java.util.Map;
 
@@ -10,8 +10,8 @@ public record PortfolioDto(
        double risk
 ) {
 
-    public static PortfolioDto from(StoragePortfolio portfolio) {
-        return new PortfolioDto(portfolio.securities(), portfolio.expectedReturn(), portfolio.risk());
+    public static PortfolioDto from(DefaultPortfolio portfolio) {
+        return new PortfolioDto(portfolio.weights(), portfolio.expectedReturn(), portfolio.risk());
     }
 
 }
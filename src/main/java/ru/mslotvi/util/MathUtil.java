@@ -1,12 +1,17 @@
 package ru.mslotvi.util;
 
 import lombok.experimental.UtilityClass;
+import ru.mslotvi.exchange.CloseSeries;
 import ru.mslotvi.exchange.DefaultPortfolio;
 import ru.mslotvi.exchange.ExchangeDateSnapshot;
 import ru.mslotvi.exchange.ExchangeSecuritie;
-import ru.mslotvi.exchange.ExchangeTradeRecord;
+import ru.mslotvi.exchange.Frequency;
+import ru.mslotvi.exchange.MarketHistory;
+import ru.mslotvi.exchange.PriceBars;
+import ru.mslotvi.exchange.PriceSeries;
 
 import java.util.*;
+import java.util.random.RandomGenerator;
 
 @UtilityClass
 public class MathUtil {
@@ -66,142 +71,224 @@ public class MathUtil {
     }
 
     /**
-     * Рассчитывает стандартное отклонение для списка объектов {@link ExchangeDateSnapshot}, содержащих записи о торговых сделках.
-     * Стандартное отклонение измеряет, насколько значения отклоняются от среднего.
+     * Генерирует случайные веса активов, нормализованные так, чтобы их сумма была равна 1.
+     *
+     * @param random Генератор случайных чисел (свой для каждого потока).
+     * @param size Количество активов.
+     * @return Массив весов.
+     */
+    public double[] randomWeights(RandomGenerator random, int size) {
+        double[] weights = new double[size];
+        double sum = 0;
+        for (int i = 0; i < size; i++) {
+            weights[i] = random.nextDouble();
+            sum += weights[i];
+        }
+        for (int i = 0; i < size; i++) {
+            weights[i] /= sum;
+        }
+        return weights;
+    }
+
+    /**
+     * Ожидаемая доходность портфеля как взвешенная сумма доходностей активов.
      *
-     * <p>Метод сначала извлекает цены закрытия из всех торговых записей всех {@link ExchangeDateSnapshot} в списке.
-     * Затем рассчитывается среднее значение (средняя доходность), после чего вычисляется сумма квадратов отклонений
-     * от среднего для каждой цены закрытия. Итоговое стандартное отклонение вычисляется по формуле для выборки.
+     * @param weights Веса активов.
+     * @param expectedReturns Ожидаемые доходности активов.
+     * @return Ожидаемая доходность портфеля.
+     */
+    public double portfolioReturn(double[] weights, double[] expectedReturns) {
+        double result = 0;
+        for (int i = 0; i < weights.length; i++) {
+            result += weights[i] * expectedReturns[i];
+        }
+        return result;
+    }
+
+    /**
+     * Риск портфеля (стандартное отклонение) по ковариационной матрице активов.
+     *
+     * @param weights Веса активов.
+     * @param covarianceMatrix Ковариационная матрица активов.
+     * @return Риск портфеля.
+     */
+    public double portfolioRisk(double[] weights, double[][] covarianceMatrix) {
+        double variance = 0;
+        for (int i = 0; i < weights.length; i++) {
+            double[] row = covarianceMatrix[i];
+            double sum = 0;
+            for (int j = 0; j < weights.length; j++) {
+                sum += weights[j] * row[j];
+            }
+            variance += weights[i] * sum;
+        }
+        return Math.sqrt(Math.max(variance, 0));
+    }
+
+    /**
+     * Рассчитывает стандартное отклонение для списка объектов {@link ExchangeDateSnapshot}, содержащих записи о торговых сделках.
      *
      * @param snapshots Список объектов {@link ExchangeDateSnapshot}, содержащих данные о сделках с ценами закрытия.
      * @return Стандартное отклонение цен закрытия на основе переданных данных.
-     * @throws IllegalArgumentException Если список {@code snapshots} пуст.
+     * @see #calculateStandardDeviation(CloseSeries)
      */
     public double calculateStandardDeviation(List<ExchangeDateSnapshot> snapshots) {
-        int n = snapshots.stream().mapToInt(s -> s.tradeRecords().size()).sum();
-        double[] closes = new double[n];
-        int i = 0;
-        for (ExchangeDateSnapshot snapshot : snapshots) {
-            for (ExchangeTradeRecord tradeRecord: snapshot.tradeRecords()) {
-                var close = tradeRecord.close();
-                if (close != null) {
-                    closes[i] += close;
-                }
-                i++;
-            }
+        return calculateStandardDeviation(PriceSeries.of(snapshots));
+    }
+
+    /**
+     * Рассчитывает стандартное отклонение цен закрытия ряда.
+     * Стандартное отклонение измеряет, насколько значения отклоняются от среднего.
+     *
+     * <p>Сначала рассчитывается среднее значение (средняя доходность), после чего вычисляется сумма квадратов
+     * отклонений от среднего для каждой цены закрытия. Итоговое стандартное отклонение вычисляется по формуле
+     * для выборки.</p>
+     *
+     * @param series Ряд цен: дневной, бары или внутридневные свечи.
+     * @return Стандартное отклонение цен закрытия; {@code NaN}, если в ряду меньше двух записей.
+     */
+    public double calculateStandardDeviation(CloseSeries series) {
+        int n = series.size();
+        if (n < 2) {
+            return Double.NaN;
         }
-        double mean = averageYield(closes);
+        double mean = calculateMeanClose(series);
         double sumOfSquaredDifferences = 0;
-        for (double close : closes) {
-            double difference = close - mean;
+        for (int i = 0; i < n; i++) {
+            double difference = series.close(i) - mean;
             sumOfSquaredDifferences += difference * difference;
         }
 
         return Math.sqrt(sumOfSquaredDifferences / (n - 1));
     }
-    public record CovariantCompanyModel(ExchangeSecuritie company1, ExchangeSecuritie company2, double covariance) {
-    }
-
 
-    public double calculateExpectedReturn(ExchangeSecuritie company) {
-        List<ExchangeDateSnapshot> snapshots = company.lastLoadMarketHistory();
-        double sumReturns = 0;
-        int validRecordsCount = 0;  // Считаем количество валидных записей
-
-        for (ExchangeDateSnapshot snapshot : snapshots) {
-            for (ExchangeTradeRecord tradeRecord : snapshot.tradeRecords()) {
-                Double closePrice = tradeRecord.close();  // Получаем цену закрытия
-                if (closePrice != null) {  // Проверяем, не равна ли цена закрытия null
-                    sumReturns += closePrice;
-                    validRecordsCount++;
-                }
-            }
+    /**
+     * Рассчитывает среднюю цену закрытия ряда.
+     *
+     * @param series Ряд цен: дневной, бары или внутридневные свечи.
+     * @return Средняя цена закрытия или 0, если ряд пуст.
+     */
+    public double calculateMeanClose(CloseSeries series) {
+        int n = series.size();
+        if (n == 0) {
+            return 0;
         }
-
-        if (validRecordsCount > 0) {
-            return sumReturns / validRecordsCount;
-        } else {
-            return 0;  // Если нет валидных данных, возвращаем 0
+        double sum = 0;
+        for (int i = 0; i < n; i++) {
+            sum += series.close(i);
         }
+        return sum / n;
     }
 
-
-
     /**
-     * Вычисляет ковариантность между двумя компаниями на основе их исторических данных,
-     * учитывая только общие дни торговли.
+     * Вычисляет выборочную ковариацию цен закрытия двух рядов по их общим наблюдениям.
+     * <p>Ключи обоих рядов возрастают, поэтому общие наблюдения находятся слиянием, без промежуточных карт.
+     * Как и прежде, ковариация считается в два прохода: сначала средние, затем сумма произведений отклонений
+     * от них, что не теряет точность на близких по величине ценах.</p>
      *
-     * @param company1 Первая компания.
-     * @param company2 Вторая компания.
-     * @return Модель с ковариантностью между двумя компаниями.
+     * @param series1 Первый ряд.
+     * @param series2 Второй ряд с ключами того же вида, что у первого.
+     * @return Ковариация цен закрытия.
+     * @throws IllegalArgumentException если у рядов меньше двух общих наблюдений.
      */
-    public CovariantCompanyModel computeCovariance(ExchangeSecuritie company1, ExchangeSecuritie company2) {
-        List<ExchangeDateSnapshot> snapshots1 = company1.lastLoadMarketHistory();
-        List<ExchangeDateSnapshot> snapshots2 = company2.lastLoadMarketHistory();
-
-        Map<Date, Double> company1ClosingPrices = extractClosingPricesByDate(snapshots1);
-        Map<Date, Double> company2ClosingPrices = extractClosingPricesByDate(snapshots2);
-
-        Set<Date> commonTradeDays = new HashSet<>(company1ClosingPrices.keySet());
-        commonTradeDays.retainAll(company2ClosingPrices.keySet());  // Оставляем только общие дни
+    public double calculateCovariance(CloseSeries series1, CloseSeries series2) {
+        double sum1 = 0;
+        double sum2 = 0;
+        int n = 0;
+        int i = 0;
+        int j = 0;
+        while (i < series1.size() && j < series2.size()) {
+            int key1 = series1.key(i);
+            int key2 = series2.key(j);
+            if (key1 < key2) {
+                i++;
+            } else if (key1 > key2) {
+                j++;
+            } else {
+                sum1 += series1.close(i++);
+                sum2 += series2.close(j++);
+                n++;
+            }
+        }
 
-        if (commonTradeDays.isEmpty()) {
+        if (n < 2) {
             throw new IllegalArgumentException("Нет общих дней торговли между компаниями.");
         }
 
-        List<Double> closes1 = new ArrayList<>();
-        List<Double> closes2 = new ArrayList<>();
-
-        for (Date tradeDay : commonTradeDays) {
-            closes1.add(company1ClosingPrices.get(tradeDay));
-            closes2.add(company2ClosingPrices.get(tradeDay));
+        double mean1 = sum1 / n;
+        double mean2 = sum2 / n;
+        double covariance = 0.0;
+        i = 0;
+        j = 0;
+        while (i < series1.size() && j < series2.size()) {
+            int key1 = series1.key(i);
+            int key2 = series2.key(j);
+            if (key1 < key2) {
+                i++;
+            } else if (key1 > key2) {
+                j++;
+            } else {
+                covariance += (series1.close(i++) - mean1) * (series2.close(j++) - mean2);
+            }
         }
 
-        double mean1 = calculateMean(closes1);
-        double mean2 = calculateMean(closes2);
+        return covariance / (n - 1); // Для выборки, делим на (n-1)
+    }
 
-        double covariance = 0.0;
-        for (int i = 0; i < closes1.size(); i++) {
-            double deviation1 = closes1.get(i) - mean1;
-            double deviation2 = closes2.get(i) - mean2;
-            covariance += deviation1 * deviation2;
-        }
+    public record CovariantCompanyModel(ExchangeSecuritie company1, ExchangeSecuritie company2, double covariance) {
+    }
 
-        covariance /= (closes1.size() - 1); // Для выборки, делим на (n-1)
-        return new CovariantCompanyModel(company1, company2, covariance);
+
+    public double calculateExpectedReturn(MarketHistory history) {
+        return calculateMeanClose(history.series());
     }
 
     /**
-     * Извлекает все цены закрытия по дням из списка исторических данных для компании.
+     * Рассчитывает ожидаемую доходность по истории заданной частоты.
+     * <p>Для недельной и месячной частоты используются заранее агрегированные бары {@link PriceBars},
+     * а не все дневные записи.</p>
      *
-     * @param snapshots Список исторических данных.
-     * @return Карта с датами и соответствующими ценами закрытия.
+     * @param history Снимок истории ценной бумаги.
+     * @param frequency Частота наблюдений.
+     * @return Ожидаемая доходность ценной бумаги.
      */
-    private static Map<Date, Double> extractClosingPricesByDate(List<ExchangeDateSnapshot> snapshots) {
-        Map<Date, Double> closingPricesByDate = new HashMap<>();
-        for (ExchangeDateSnapshot snapshot : snapshots) {
-            for (ExchangeTradeRecord tradeRecord : snapshot.tradeRecords()) {
-                closingPricesByDate.put(tradeRecord.tradeDate(), tradeRecord.close());
-            }
+    public double calculateExpectedReturn(MarketHistory history, Frequency frequency) {
+        if (frequency == Frequency.DAILY) {
+            return calculateExpectedReturn(history);
         }
-        return closingPricesByDate;
+        return calculateMeanClose(history.bars(frequency));
     }
 
-
-
-
     /**
-     * Рассчитывает среднее значение из списка чисел.
+     * Вычисляет ковариантность между двумя компаниями по истории заданной частоты,
+     * учитывая только общие периоды торговли.
+     * <p>Бары обоих рядов упорядочены по началу периода, поэтому общие периоды находятся слиянием
+     * за один проход, без промежуточных карт.</p>
      *
-     * @param values Список чисел.
-     * @return Среднее значение.
+     * @param history1 Снимок истории первой компании.
+     * @param history2 Снимок истории второй компании.
+     * @param frequency Частота наблюдений.
+     * @return Модель с ковариантностью между двумя компаниями.
      */
-    private static double calculateMean(List<Double> values) {
-        double sum = 0.0;
-        for (Double value : values) {
-            sum += value;
+    public CovariantCompanyModel computeCovariance(MarketHistory history1, MarketHistory history2, Frequency frequency) {
+        if (frequency == Frequency.DAILY) {
+            return computeCovariance(history1, history2);
         }
-        return sum / values.size();
+        double covariance = calculateCovariance(history1.bars(frequency), history2.bars(frequency));
+        return new CovariantCompanyModel(history1.securitie(), history2.securitie(), covariance);
+    }
+
+    /**
+     * Вычисляет ковариантность между двумя компаниями на основе их исторических данных,
+     * учитывая только общие дни торговли.
+     *
+     * @param history1 Снимок истории первой компании.
+     * @param history2 Снимок истории второй компании.
+     * @return Модель с ковариантностью между двумя компаниями.
+     */
+    public CovariantCompanyModel computeCovariance(MarketHistory history1, MarketHistory history2) {
+        double covariance = calculateCovariance(history1.series(), history2.series());
+        return new CovariantCompanyModel(history1.securitie(), history2.securitie(), covariance);
     }
 
-}
\ No newline at end of file
+}